@@ -0,0 +1,123 @@
+package com.example.audiologin;
+
+import android.app.Instrumentation;
+import android.os.Debug;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Inserts one note at a time into a 5,000-note list shown by NotesAdapter on a RecyclerView, the
+ * way NotesActivity does: a NotesModel snapshot handed to submitList(), diffed off the main thread.
+ * Measures how long the diff takes to commit, then the main-thread layout pass that applies the
+ * insert (the frame, as in NotesScrollBenchmark), with its allocations and the rows it binds.
+ * Results go to logcat under "NotesBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotesDiffBenchmark {
+    private static final String TAG = "NotesBenchmark";
+    private static final int NOTES = 5000;
+    private static final int RUNS = 20;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private static class CountingAdapter extends NotesAdapter {
+        int binds;
+
+        CountingAdapter(ExecutorService textExecutor) {
+            super(note -> { }, textExecutor);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull NoteViewHolder holder, int position) {
+            binds++;
+            super.onBindViewHolder(holder, position);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void singleInsertInto5000Notes() throws Exception {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        ContextThemeWrapper context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_AudioLogin);
+        ExecutorService textExecutor = Executors.newSingleThreadExecutor();
+        NotesModel model = new NotesModel();
+        for (int i = 0; i < NOTES; i++) {
+            model.put(new Note(String.format("-N%06d", i * 2), "Dictated note number " + i));
+        }
+
+        RecyclerView[] view = new RecyclerView[1];
+        CountingAdapter adapter = new CountingAdapter(textExecutor);
+        instrumentation.runOnMainSync(() -> {
+            view[0] = new RecyclerView(context);
+            view[0].setLayoutManager(new LinearLayoutManager(context));
+            view[0].setAdapter(adapter);
+            // The first list is committed synchronously.
+            adapter.submitList(model.snapshot());
+            layout(view[0]);
+        });
+
+        long diffNanos = 0;
+        long frameNanos = 0;
+        long worstFrameNanos = 0;
+        long allocations = 0;
+        long binds = 0;
+        for (int run = 0; run < RUNS; run++) {
+            // Just after the first note, so the new row is on screen.
+            model.put(new Note(String.format("-N000001%02d", run), "Inserted note " + run));
+            List<Note> notes = model.snapshot();
+            CountDownLatch committed = new CountDownLatch(1);
+            long submitted = System.nanoTime();
+            instrumentation.runOnMainSync(() -> adapter.submitList(notes, committed::countDown));
+            assertTrue(committed.await(10, TimeUnit.SECONDS));
+            diffNanos += System.nanoTime() - submitted;
+
+            long[] frame = new long[3];
+            instrumentation.runOnMainSync(() -> {
+                adapter.binds = 0;
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                long start = System.nanoTime();
+                layout(view[0]);
+                frame[0] = System.nanoTime() - start;
+                Debug.stopAllocCounting();
+                frame[1] = Debug.getThreadAllocCount();
+                frame[2] = adapter.binds;
+            });
+            frameNanos += frame[0];
+            worstFrameNanos = Math.max(worstFrameNanos, frame[0]);
+            allocations += frame[1];
+            binds += frame[2];
+        }
+        textExecutor.shutdown();
+
+        assertEquals(NOTES + RUNS, adapter.getItemCount());
+        Log.i(TAG, "insert into " + NOTES + " notes: diff committed in " + diffNanos / RUNS / 1000
+                + "us (off main thread), frame " + frameNanos / RUNS / 1000 + "us (worst " + worstFrameNanos / 1000
+                + "us), " + allocations / RUNS + " allocations and " + (double) binds / RUNS
+                + " rows bound per insert");
+    }
+
+    private static void layout(RecyclerView recyclerView) {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
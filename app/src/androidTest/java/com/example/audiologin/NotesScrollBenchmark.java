@@ -0,0 +1,100 @@
+package com.example.audiologin;
+
+import android.app.Instrumentation;
+import android.os.Debug;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scrolls NotesAdapter through 10,000 notes, one in five long enough to be precomputed, and
+ * counts main-thread allocations and time per frame: one scrollBy plus the layout pass that binds
+ * the rows coming on screen. The list is scrolled down and back up, so the second half mostly
+ * rebinds notes whose layouts are cached. Results go to logcat under "NotesBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotesScrollBenchmark {
+    private static final String TAG = "NotesBenchmark";
+    private static final int NOTES = 10000;
+    private static final int WARMUP_FRAMES = 30;
+    private static final int FRAMES = 600;
+    private static final int PX_PER_FRAME = 120;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void scroll10000Notes() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        ContextThemeWrapper context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_AudioLogin);
+        ExecutorService textExecutor = Executors.newSingleThreadExecutor();
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < NOTES; i++) {
+            StringBuilder text = new StringBuilder("Dictated note number ").append(i).append('.');
+            if (i % 5 == 0) {
+                for (int sentence = 0; sentence < 6; sentence++) {
+                    text.append(" Remember to call the pharmacy about the refill before the weekend.");
+                }
+            }
+            notes.add(new Note(String.format("-N%06d", i), text.toString()));
+        }
+
+        long[] totals = new long[3];
+        instrumentation.runOnMainSync(() -> {
+            RecyclerView recyclerView = new RecyclerView(context);
+            recyclerView.setLayoutManager(new LinearLayoutManager(context));
+            NotesAdapter adapter = new NotesAdapter(note -> { }, textExecutor);
+            recyclerView.setAdapter(adapter);
+            // The first list is committed synchronously.
+            adapter.submitList(notes);
+            layout(recyclerView);
+
+            for (int frame = 0; frame < WARMUP_FRAMES; frame++) {
+                scrollFrame(recyclerView, PX_PER_FRAME);
+            }
+            for (int frame = 0; frame < FRAMES; frame++) {
+                int dy = frame < FRAMES / 2 ? PX_PER_FRAME : -PX_PER_FRAME;
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                long start = System.nanoTime();
+                scrollFrame(recyclerView, dy);
+                long elapsed = System.nanoTime() - start;
+                Debug.stopAllocCounting();
+                totals[0] += elapsed;
+                totals[1] = Math.max(totals[1], elapsed);
+                totals[2] += Debug.getThreadAllocCount();
+            }
+            assertTrue(recyclerView.getChildCount() > 0);
+        });
+        textExecutor.shutdown();
+
+        Log.i(TAG, "scroll " + NOTES + " notes: " + totals[0] / FRAMES / 1000 + "us per frame (worst "
+                + totals[1] / 1000 + "us), " + totals[2] / FRAMES + " allocations per frame");
+    }
+
+    private static void scrollFrame(RecyclerView recyclerView, int dy) {
+        recyclerView.scrollBy(0, dy);
+        layout(recyclerView);
+    }
+
+    private static void layout(RecyclerView recyclerView) {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
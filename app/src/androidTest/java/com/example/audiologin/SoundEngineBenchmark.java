@@ -0,0 +1,95 @@
+package com.example.audiologin;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares hand-off time and native handle growth of SoundEngine against MediaPlayer.create.
+ * Hand-off is the time from the tap until the call that starts the clip returns; neither API reports
+ * when the first sample is actually heard, so output latency of the audio path is not included.
+ * Results are written to logcat under the "SoundBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SoundEngineBenchmark {
+    private static final String TAG = "SoundBenchmark";
+    private static final int PLAYS = 1000;
+    private static final int MEDIA_PLAYER_PLAYS = 50;
+
+    @Test
+    public void soundEngine_thousandPlays() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SoundEngine engine = AudioLoginApp.from(context).getSoundEngine();
+        waitUntilLoaded(engine);
+
+        int fdsBefore = openFileDescriptors();
+        long[] handoffs = new long[PLAYS];
+        for (int i = 0; i < PLAYS; i++) {
+            String animal = SoundEngine.ANIMALS[i % SoundEngine.ANIMALS.length];
+            long start = System.nanoTime();
+            int streamId = engine.play(animal);
+            handoffs[i] = System.nanoTime() - start;
+            assertTrue(streamId != 0);
+        }
+        engine.stop();
+        int fdsAfter = openFileDescriptors();
+
+        report("SoundEngine", handoffs, fdsBefore, fdsAfter);
+        assertTrue("native handles grew by " + (fdsAfter - fdsBefore), fdsAfter - fdsBefore <= 4);
+    }
+
+    @Test
+    public void mediaPlayer_baseline() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        int fdsBefore = openFileDescriptors();
+        long[] handoffs = new long[MEDIA_PLAYER_PLAYS];
+        for (int i = 0; i < MEDIA_PLAYER_PLAYS; i++) {
+            String animal = SoundEngine.ANIMALS[i % SoundEngine.ANIMALS.length];
+            long start = System.nanoTime();
+            MediaPlayer mediaPlayer = MediaPlayer.create(context, SoundEngine.getSoundResourceId(animal));
+            mediaPlayer.start();
+            handoffs[i] = System.nanoTime() - start;
+            mediaPlayer.stop();
+            mediaPlayer.release();
+        }
+        int fdsAfter = openFileDescriptors();
+
+        report("MediaPlayer", handoffs, fdsBefore, fdsAfter);
+    }
+
+    private static void waitUntilLoaded(SoundEngine engine) {
+        long deadline = SystemClock.elapsedRealtime() + 5000;
+        for (String animal : SoundEngine.ANIMALS) {
+            while (!engine.isLoaded(animal)) {
+                assertTrue("clips not decoded in time", SystemClock.elapsedRealtime() < deadline);
+                SystemClock.sleep(10);
+            }
+        }
+    }
+
+    private static int openFileDescriptors() {
+        String[] fds = new File("/proc/self/fd").list();
+        return fds == null ? -1 : fds.length;
+    }
+
+    private static void report(String name, long[] handoffs, int fdsBefore, int fdsAfter) {
+        long[] sorted = handoffs.clone();
+        Arrays.sort(sorted);
+        Log.i(TAG, name + " plays=" + sorted.length
+                + " handoff p50=" + sorted[sorted.length / 2] / 1000 + "us"
+                + " handoff p99=" + sorted[sorted.length * 99 / 100] / 1000 + "us"
+                + " fds " + fdsBefore + " -> " + fdsAfter);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.audiologin;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.speech.RecognitionListener;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+// Recognizer backed by the platform SpeechRecognizer, running in-process with partial results
+// rather than through the RecognizerIntent activity. The engine is created on first use and kept
+// for chained sessions; call release() when done. Call from the main thread.
+public class AndroidRecognizer implements Recognizer {
+    private final Context context;
+    private SpeechRecognizer recognizer;
+    private Listener listener;
+
+    public AndroidRecognizer(Context context) {
+        this.context = context;
+    }
+
+    public static boolean isAvailable(Context context) {
+        return SpeechRecognizer.isRecognitionAvailable(context);
+    }
+
+    @Override
+    public void start(Listener listener) {
+        if (recognizer == null) {
+            recognizer = SpeechRecognizer.createSpeechRecognizer(context);
+            recognizer.setRecognitionListener(new Callbacks());
+        }
+        this.listener = listener;
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault().toLanguageTag());
+        intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+        intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 1);
+        recognizer.startListening(intent);
+    }
+
+    @Override
+    public void stop() {
+        if (recognizer != null) {
+            recognizer.stopListening();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        listener = null;
+        if (recognizer != null) {
+            recognizer.cancel();
+        }
+    }
+
+    public void release() {
+        listener = null;
+        if (recognizer != null) {
+            recognizer.destroy();
+            recognizer = null;
+        }
+    }
+
+    private static String best(Bundle results) {
+        List<String> texts = results == null ? null : results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        return texts == null || texts.isEmpty() ? "" : texts.get(0);
+    }
+
+    private class Callbacks implements RecognitionListener {
+        @Override
+        public void onPartialResults(Bundle partialResults) {
+            String text = best(partialResults);
+            if (listener != null && !text.isEmpty()) {
+                listener.onPartial(text);
+            }
+        }
+
+        @Override
+        public void onResults(Bundle results) {
+            Listener current = listener;
+            listener = null;
+            if (current == null) {
+                return;
+            }
+            String text = best(results);
+            if (text.isEmpty()) {
+                current.onNoSpeech();
+            } else {
+                current.onResult(text);
+            }
+        }
+
+        @Override
+        public void onError(int error) {
+            Listener current = listener;
+            listener = null;
+            if (current == null) {
+                return;
+            }
+            if (error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT) {
+                current.onNoSpeech();
+            } else {
+                current.onError(new IOException("Speech recognizer error " + error));
+            }
+        }
+
+        @Override
+        public void onReadyForSpeech(Bundle params) {
+        }
+
+        @Override
+        public void onBeginningOfSpeech() {
+        }
+
+        @Override
+        public void onRmsChanged(float rmsdB) {
+        }
+
+        @Override
+        public void onBufferReceived(byte[] buffer) {
+        }
+
+        @Override
+        public void onEndOfSpeech() {
+        }
+
+        @Override
+        public void onEvent(int eventType, Bundle params) {
+        }
+    }
+}
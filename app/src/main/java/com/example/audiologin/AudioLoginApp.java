@@ -0,0 +1,416 @@
+package com.example.audiologin;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.google.firebase.FirebaseApp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AudioLoginApp extends Application {
+    private static final long SYNC_FLUSH_DELAY_MS = 500;
+    private static final int SYNC_MAX_BATCH = 100;
+    private static final long SYNC_INITIAL_BACKOFF_MS = 2000;
+    private static final long SYNC_MAX_BACKOFF_MS = 5 * 60 * 1000;
+    private static final int SYNCED_NOTES = NotesActivity.PAGE_SIZE;
+    private static final int CRYPTO_THREADS = 2;
+    private static final long CREDENTIAL_DEBOUNCE_MS = 300;
+    private static final long CREDENTIAL_TTL_MS = 60 * 1000;
+    private static final int CREDENTIAL_CACHE_SIZE = 8;
+    private static final String LATENCY_FILE = "latency.bin";
+    private static final String LATENCY_REPORT_FILE = "latency.csv";
+    private static final String STARTUP_TAG = "Startup";
+    private static final long SUBSCRIPTION_GRACE_MS = 30 * 1000;
+    // A blind user hears nothing while the main thread is blocked, so even short freezes count.
+    private static final long STALL_SAMPLE_MS = 50;
+    private static final long STALL_THRESHOLD_MS = 250;
+    private static final int STALL_HISTORY = 32;
+    private static final String STALL_REPORT_FILE = "stalls.txt";
+    private static final int ARCHIVE_PAGE_SIZE = 500;
+    private static final int ARCHIVE_BATCH_SIZE = 500;
+    private static final int ARCHIVE_MAX_IN_FLIGHT = 4;
+    // Firebase holds writes made offline without calling back; a restore gives up after this.
+    private static final long ARCHIVE_WRITE_TIMEOUT_MS = 30000;
+    // About eight seconds of audio note: the most an interrupted upload sends again.
+    public static final int AUDIO_CHUNK_BYTES = 32 * 1024;
+    private static final String AUDIO_DIR = "audio";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder(new SystemTracer());
+    private boolean eagerStartup;
+    private boolean firstPromptReported;
+    private ExecutorService startupExecutor;
+    private SoundEngine soundEngine;
+    private SpeechService speechService;
+    private CryptoService cryptoService;
+    private ExecutorService diskExecutor;
+    private NotesDatabase notesDatabase;
+    private IndexedNotesStore indexedNotes;
+    private ExecutorService archiveExecutor;
+    private NotesArchive notesArchive;
+    private FileAudioStore audioSpool;
+    private AudioStore audioStore;
+    private ClipUploader clipUploader;
+    private AudioNoteRecorder audioRecorder;
+    private StallWatchdog stallWatchdog;
+    private DataLayer dataLayer;
+    private SyncQueue syncQueue;
+    private final NoteKeyring noteKeyring = new NoteKeyring();
+    private SubscriptionRegistry subscriptionRegistry;
+    private OfflineNotesRepository notesRepository;
+    private OfflineUserRepository userRepository;
+    private NotesPrefetch notesPrefetch;
+    private CredentialPrefetcher credentialPrefetcher;
+
+    public static AudioLoginApp from(Context context) {
+        return (AudioLoginApp) context.getApplicationContext();
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // The pre-pipeline start-up, for before/after comparisons of the first prompt:
+        //   adb shell setprop log.tag.Startup VERBOSE
+        eagerStartup = Log.isLoggable(STARTUP_TAG, Log.VERBOSE);
+        stallWatchdog = new StallWatchdog(mainHandler::post, Looper.getMainLooper().getThread(), STALL_SAMPLE_MS,
+                STALL_THRESHOLD_MS, STALL_HISTORY, incident -> {
+            Throwable where = new Throwable("Main thread stack");
+            where.setStackTrace(incident.getStack());
+            Log.w("Watchdog", "Main thread blocked " + incident.getDurationMs() + "ms during "
+                    + incident.getStage(), where);
+        });
+        // Watches the launch; stopped while no screen is visible, see watchStalls().
+        stallWatchdog.start();
+        startupExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "startup"));
+        speechService = new SpeechService(this, latencyRecorder);
+        soundEngine = new SoundEngine(this);
+        cryptoService = new CryptoService(CRYPTO_THREADS, mainHandler::post);
+        diskExecutor = Executors.newSingleThreadExecutor();
+        notesDatabase = new NotesDatabase(this, diskExecutor);
+        indexedNotes = new IndexedNotesStore(notesDatabase);
+
+        // Firebase starts on the first read or write rather than before the first frame.
+        dataLayer = eagerStartup ? createDataLayer()
+                : new LazyDataLayer(this::createDataLayer, startupExecutor, mainHandler::post);
+        // Reads the writes left in the outbox by the previous run on the disk thread, then flushes them.
+        syncQueue = new SyncQueue(notesDatabase, dataLayer.getRemoteWriter(), new HandlerClock(mainHandler),
+                diskExecutor, mainHandler::post, SYNC_FLUSH_DELAY_MS, SYNC_MAX_BATCH, SYNC_INITIAL_BACKOFF_MS,
+                SYNC_MAX_BACKOFF_MS);
+        subscriptionRegistry = new SubscriptionRegistry(dataLayer.getNotesRepository(), new HandlerClock(mainHandler),
+                SUBSCRIPTION_GRACE_MS);
+        notesRepository = new OfflineNotesRepository(subscriptionRegistry, indexedNotes, syncQueue,
+                noteKeyring, diskExecutor, mainHandler::post);
+        userRepository = new OfflineUserRepository(dataLayer.getUserRepository(), syncQueue);
+        // Backups read and write the server copy directly; its thread starts with the first one.
+        archiveExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "archive"));
+        notesArchive = new NotesArchive(dataLayer.getNotesRepository(), dataLayer.getRemoteWriter(), syncQueue,
+                noteKeyring, archiveExecutor, mainHandler::post, ARCHIVE_PAGE_SIZE, ARCHIVE_BATCH_SIZE,
+                ARCHIVE_MAX_IN_FLIGHT, ARCHIVE_WRITE_TIMEOUT_MS);
+        // Recordings are spooled to disk chunk by chunk and uploaded from there, so neither holds a whole clip.
+        audioSpool = new FileAudioStore(new File(getFilesDir(), AUDIO_DIR), diskExecutor, mainHandler::post);
+        audioStore = createAudioStore();
+        clipUploader = new ClipUploader(audioSpool, audioStore, new HandlerClock(mainHandler),
+                SYNC_INITIAL_BACKOFF_MS, SYNC_MAX_BACKOFF_MS, new ClipUploader.Listener() {
+            @Override
+            public void onUploaded(String username, String clipId, long length) {
+                Log.d("AudioNotes", "Uploaded clip " + clipId + ", " + length + " bytes");
+            }
+
+            @Override
+            public void onFailed(String username, String clipId, Exception e) {
+                Log.w("AudioNotes", "Dropped clip " + clipId, e);
+            }
+        });
+        audioRecorder = new AudioNoteRecorder(audioSpool, clipUploader, notesRepository, AUDIO_CHUNK_BYTES,
+                mainHandler::post);
+        notesPrefetch = new NotesPrefetch(notesRepository, NotesActivity.PAGE_SIZE);
+        credentialPrefetcher = new CredentialPrefetcher(userRepository, new HandlerClock(mainHandler),
+                CREDENTIAL_DEBOUNCE_MS, CREDENTIAL_TTL_MS, CREDENTIAL_CACHE_SIZE,
+                (hit, savedMs) -> Log.d("CredentialPrefetch", (hit ? "hit, saved " + savedMs + "ms" : "miss")
+                        + ", hit rate " + Math.round(credentialPrefetcher.getHitRate() * 100) + "%"));
+
+        StartupPipeline startup = new StartupPipeline(eagerStartup ? Runnable::run : startupExecutor,
+                new SystemTracer(), new StartupPipeline.Listener() {
+            @Override
+            public void onStepFinished(String name, long elapsedNanos) {
+                Log.d(STARTUP_TAG, name + " took " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms");
+            }
+
+            @Override
+            public void onStepFailed(String name, Exception e) {
+                Log.e(STARTUP_TAG, name + " failed", e);
+            }
+        });
+        // The welcome prompt needs the speech engine first; the clips are not played before login.
+        startup.add("speech", speechService::start);
+        startup.add("sounds", soundEngine::load, "speech");
+        startup.add("latency", this::loadLatency);
+        startup.start();
+    }
+
+    // Called when the welcome prompt starts playing; only the first call in a process counts.
+    public void reportFirstPrompt() {
+        if (firstPromptReported) {
+            return;
+        }
+        firstPromptReported = true;
+        long elapsedMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        Log.i(STARTUP_TAG, "First prompt " + elapsedMs + "ms after process start ("
+                + (eagerStartup ? "eager" : "deferred") + " start-up)");
+        if (!eagerStartup) {
+            // Keeps the persisted histogram to the shipped start-up path.
+            latencyRecorder.record(Stage.APP_START_TO_FIRST_PROMPT, TimeUnit.MILLISECONDS.toNanos(elapsedMs));
+        }
+    }
+
+    // Override to run the app against InMemoryDataLayer, e.g. in instrumented load tests.
+    // Runs on the start-up thread when the first read or write needs it.
+    protected DataLayer createDataLayer() {
+        FirebaseApp.initializeApp(this);
+        return new FirebaseDataLayer(new FirebaseRefs(FirebaseRefs.DATABASE_URL, SYNCED_NOTES));
+    }
+
+    // Override to keep clips in a FileAudioStore, e.g. in instrumented tests.
+    protected AudioStore createAudioStore() {
+        return new FirebaseAudioStore(this);
+    }
+
+    // Clips left in the spool by an earlier run are queued for upload. One cut off by a killed
+    // process ends at its last whole chunk and is saved as a note, since its recording never was;
+    // so is a closed clip whose note was never marked saved.
+    public void resumeAudioUploads(String username) {
+        diskExecutor.execute(() -> {
+            for (String clipId : audioSpool.listClips(username)) {
+                AudioStore.Status status;
+                try {
+                    status = audioSpool.status(username, clipId);
+                } catch (IOException e) {
+                    Log.w("AudioNotes", "Skipping unreadable clip " + clipId, e);
+                    continue;
+                }
+                boolean noted = audioSpool.isNoted(username, clipId);
+                mainHandler.post(() -> resumeClip(username, clipId, status, noted));
+            }
+        });
+    }
+
+    private void resumeClip(String username, String clipId, AudioStore.Status status, boolean noted) {
+        if (audioRecorder.isActive(clipId)) {
+            return;
+        }
+        if (status.isFinished()) {
+            if (noted) {
+                clipUploader.upload(username, clipId);
+            } else {
+                // Closed, but the app stopped before its note was saved.
+                audioRecorder.saveNote(username, clipId,
+                        AudioNote.durationMs(status.getLength(), AudioNoteRecorder.BIT_RATE));
+            }
+            return;
+        }
+        int chunks = status.getStoredChunks();
+        if (chunks == 0) {
+            audioSpool.delete(username, clipId, new DataCallback<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    Log.w("AudioNotes", "Failed to delete empty clip " + clipId, e);
+                }
+            });
+            return;
+        }
+        long length = (long) chunks * AUDIO_CHUNK_BYTES;
+        audioSpool.finish(username, clipId, chunks, length, new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                audioRecorder.saveNote(username, clipId, AudioNote.durationMs(length, AudioNoteRecorder.BIT_RATE));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.w("AudioNotes", "Failed to close clip " + clipId, e);
+            }
+        });
+    }
+
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    // Refreshed whenever the app leaves the foreground; pull it with
+    // adb shell run-as com.example.audiologin cat files/latency.csv
+    public File getLatencyReportFile() {
+        return new File(getFilesDir(), LATENCY_REPORT_FILE);
+    }
+
+    private void loadLatency() {
+        AtomicFile file = new AtomicFile(new File(getFilesDir(), LATENCY_FILE));
+        if (!file.getBaseFile().exists()) {
+            return;
+        }
+        try (InputStream in = new BufferedInputStream(file.openRead())) {
+            latencyRecorder.load(in);
+        } catch (IOException e) {
+            Log.w("Latency", "Discarding unreadable latency histograms", e);
+            file.delete();
+        }
+    }
+
+    // Refreshed whenever the app leaves the foreground; pull it with
+    // adb shell run-as com.example.audiologin cat files/stalls.txt
+    public File getStallReportFile() {
+        return new File(getFilesDir(), STALL_REPORT_FILE);
+    }
+
+    private void saveStalls() {
+        try (Writer report = new BufferedWriter(new FileWriter(getStallReportFile()))) {
+            stallWatchdog.export(report);
+        } catch (IOException e) {
+            Log.w("Watchdog", "Failed to export the stall report", e);
+        }
+    }
+
+    private void saveLatency() {
+        AtomicFile file = new AtomicFile(new File(getFilesDir(), LATENCY_FILE));
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            latencyRecorder.save(new BufferedOutputStream(out));
+            file.finishWrite(out);
+        } catch (IOException e) {
+            file.failWrite(out);
+            Log.w("Latency", "Failed to save latency histograms", e);
+        }
+        try (Writer report = new BufferedWriter(new FileWriter(getLatencyReportFile()))) {
+            latencyRecorder.exportCsv(report);
+        } catch (IOException e) {
+            Log.w("Latency", "Failed to export the latency report", e);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // Nothing on screen to stall; the next screen to resume starts it again.
+            stallWatchdog.stop();
+            diskExecutor.execute(this::saveLatency);
+            diskExecutor.execute(this::saveStalls);
+        }
+    }
+
+    public SoundEngine getSoundEngine() {
+        return soundEngine;
+    }
+
+    public SpeechService getSpeechService() {
+        return speechService;
+    }
+
+    public CryptoService getCryptoService() {
+        return cryptoService;
+    }
+
+    public NoteKeyring getNoteKeyring() {
+        return noteKeyring;
+    }
+
+    public DataLayer getDataLayer() {
+        return dataLayer;
+    }
+
+    public SubscriptionRegistry getSubscriptionRegistry() {
+        return subscriptionRegistry;
+    }
+
+    public OfflineNotesRepository getNotesRepository() {
+        return notesRepository;
+    }
+
+    public OfflineUserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    public CredentialPrefetcher getCredentialPrefetcher() {
+        return credentialPrefetcher;
+    }
+
+    public NotesPrefetch getNotesPrefetch() {
+        return notesPrefetch;
+    }
+
+    public StallWatchdog getStallWatchdog() {
+        return stallWatchdog;
+    }
+
+    // Called by each screen as it resumes: main-thread stalls from here on are reported against stage.
+    public void watchStalls(String stage) {
+        stallWatchdog.setStage(stage);
+        stallWatchdog.start();
+    }
+
+    // Search indexes over the local notes; use from the disk executor, search from anywhere.
+    public IndexedNotesStore getIndexedNotes() {
+        return indexedNotes;
+    }
+
+    public NotesArchive getNotesArchive() {
+        return notesArchive;
+    }
+
+    // Recordings not yet uploaded; players read from here first.
+    public AudioStore getAudioSpool() {
+        return audioSpool;
+    }
+
+    public AudioStore getAudioStore() {
+        return audioStore;
+    }
+
+    public AudioNoteRecorder getAudioRecorder() {
+        return audioRecorder;
+    }
+
+    public DraftStore getDraftStore() {
+        return notesDatabase;
+    }
+
+    // For blocking local reads, such as loading a draft; results go back to the main thread.
+    public Executor getDiskExecutor() {
+        return diskExecutor;
+    }
+
+    @Override
+    public void onTerminate() {
+        stallWatchdog.stop();
+        speechService.shutdown();
+        soundEngine.release();
+        cryptoService.shutdown();
+        startupExecutor.shutdown();
+        diskExecutor.shutdown();
+        archiveExecutor.shutdown();
+        notesDatabase.close();
+        super.onTerminate();
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.audiologin;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Records audio notes. One thread reads the microphone into a BufferRing of direct buffers; a
+// second encodes them to AAC with MediaCodec and hands ADTS frames to a ClipWriter, which spools
+// fixed-size chunks to local storage as they fill. Memory is the ring, the codec and one chunk
+// however long the recording runs. Each stored chunk is handed to the uploader straight away, and
+// when the clip is finished it is saved as a note naming it, and only then sent whole. If the
+// recording fails, what was stored is kept as a shorter clip. Use from the main thread; the
+// listener is called there. The recorder outlives the screen, so a recording stopped as the
+// screen goes away is still finished, uploaded and saved.
+public class AudioNoteRecorder {
+    public static final int SAMPLE_RATE = 16000;
+    public static final int BIT_RATE = 32000;
+    private static final int BYTES_PER_SAMPLE = 2;
+    // 40ms of 16-bit mono; the ring holds about 0.6s before the microphone thread waits.
+    private static final int BUFFER_BYTES = SAMPLE_RATE * BYTES_PER_SAMPLE * 40 / 1000;
+    private static final int RING_BUFFERS = 16;
+    private static final int MAX_PENDING_CHUNKS = 2;
+    private static final long POLL_MS = 50;
+    private static final long CODEC_TIMEOUT_US = 10_000;
+    private static final int ADTS_HEADER_BYTES = 7;
+    // ADTS sampling frequency index for 16kHz.
+    private static final int ADTS_FREQUENCY_INDEX = 8;
+
+    public interface Listener {
+        void onSaved(Note note);
+
+        void onError(Exception e);
+    }
+
+    private final FileAudioStore spool;
+    private final ClipUploader uploader;
+    private final NotesRepository notes;
+    private final int chunkBytes;
+    private final Executor main;
+    private Listener listener;
+    private volatile boolean recording;
+    private volatile long capturedBytes;
+    // Set from start() until the clip is closed and handed to saveNote(), or given up.
+    private String activeClip;
+    private String failedClip;
+    // Clips whose note is being saved.
+    private final Set<String> noting = new HashSet<>();
+
+    public AudioNoteRecorder(FileAudioStore spool, ClipUploader uploader, NotesRepository notes, int chunkBytes,
+                             Executor main) {
+        this.spool = spool;
+        this.uploader = uploader;
+        this.notes = notes;
+        this.chunkBytes = chunkBytes;
+        this.main = main;
+    }
+
+    // Null stops callbacks, e.g. when the screen that asked for them is destroyed.
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    // True while the clip is recording, its last chunks are still being written or its note is
+    // being saved.
+    public boolean isActive(String clipId) {
+        return clipId.equals(activeClip) || noting.contains(clipId);
+    }
+
+    // Callers check the microphone permission first.
+    @SuppressLint("MissingPermission")
+    public void start(String username, Listener listener) throws IOException {
+        if (activeClip != null) {
+            throw new IllegalStateException("Still finishing clip " + activeClip);
+        }
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord record = new AudioRecord(MediaRecorder.AudioSource.MIC, SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT, Math.max(minBuffer, BUFFER_BYTES * 4));
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            throw new IOException("Microphone unavailable");
+        }
+        MediaCodec codec;
+        try {
+            codec = createEncoder();
+        } catch (IOException | RuntimeException e) {
+            record.release();
+            throw e;
+        }
+        String clipId = PushIds.generate(System.currentTimeMillis());
+        BufferRing ring = new BufferRing(RING_BUFFERS, BUFFER_BYTES);
+        ClipWriter writer = new ClipWriter(spool, username, clipId, chunkBytes, MAX_PENDING_CHUNKS,
+                new ClipWriter.Listener() {
+            @Override
+            public void onChunkStored(int index) {
+                uploader.upload(username, clipId);
+            }
+
+            @Override
+            public void onFinished(int totalChunks, long length) {
+                // A failed recording was cut short at its last stored chunk.
+                long durationMs = clipId.equals(failedClip) ? AudioNote.durationMs(length, BIT_RATE)
+                        : capturedBytes * 1000 / (SAMPLE_RATE * BYTES_PER_SAMPLE);
+                Log.d("AudioNotes", "Recorded " + durationMs + "ms in " + totalChunks + " chunks, microphone waited "
+                        + ring.getProducerWaits() + " times");
+                saveNote(username, clipId, durationMs);
+                activeClip = null;
+            }
+
+            @Override
+            public void onError(Exception e) {
+                fail(clipId, e);
+            }
+
+            @Override
+            public void onAbandoned() {
+                activeClip = null;
+                uploader.drop(username, clipId);
+            }
+        });
+        this.listener = listener;
+        activeClip = clipId;
+        failedClip = null;
+        capturedBytes = 0;
+        recording = true;
+        record.startRecording();
+        new Thread(() -> capture(record, ring), "audio-capture").start();
+        new Thread(() -> encode(codec, ring, writer, clipId), "audio-encode").start();
+    }
+
+    // Returns at once; the clip is finished and saved in the background.
+    public void stop() {
+        recording = false;
+    }
+
+    // Saves the note naming a closed clip, marks the clip noted in the spool, then uploads it. Also
+    // used for clips recovered from an earlier run. If the note cannot be saved the clip stays in
+    // the spool for the next recovery pass.
+    public void saveNote(String username, String clipId, long durationMs) {
+        noting.add(clipId);
+        notes.saveNote(username, AudioNote.text(clipId, durationMs), new DataCallback<Note>() {
+            @Override
+            public void onSuccess(Note note) {
+                if (listener != null) {
+                    listener.onSaved(note);
+                }
+                spool.markNoted(username, clipId, new DataCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void value) {
+                        noting.remove(clipId);
+                        uploader.upload(username, clipId);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        // The note is saved; at worst a recovery pass saves it twice.
+                        Log.w("AudioNotes", "Failed to mark clip " + clipId + " noted", e);
+                        noting.remove(clipId);
+                        uploader.upload(username, clipId);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.w("AudioNotes", "Failed to save the note for clip " + clipId, e);
+                noting.remove(clipId);
+                uploader.drop(username, clipId);
+                if (listener != null) {
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    // Reports the first failure of a recording; the writer then closes or gives up the clip.
+    private void fail(String clipId, Exception e) {
+        if (!clipId.equals(activeClip) || clipId.equals(failedClip)) {
+            return;
+        }
+        Log.w("AudioNotes", "Recording " + clipId + " failed", e);
+        failedClip = clipId;
+        recording = false;
+        if (listener != null) {
+            listener.onError(e);
+        }
+    }
+
+    private static MediaCodec createEncoder() throws IOException {
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, SAMPLE_RATE, 1);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, BUFFER_BYTES);
+        MediaCodec codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+        try {
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+        } catch (RuntimeException e) {
+            codec.release();
+            throw e;
+        }
+        return codec;
+    }
+
+    private void capture(AudioRecord record, BufferRing ring) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        try {
+            while (recording) {
+                ByteBuffer buffer = ring.takeFree();
+                int read = record.read(buffer, buffer.capacity());
+                if (read > 0) {
+                    buffer.limit(read);
+                    ring.publish(buffer);
+                    capturedBytes += read;
+                } else {
+                    ring.release(buffer);
+                    if (read < 0) {
+                        Log.w("AudioNotes", "Microphone read failed: " + read);
+                        recording = false;
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            record.stop();
+            record.release();
+            ring.close();
+        }
+    }
+
+    private void encode(MediaCodec codec, BufferRing ring, ClipWriter writer, String clipId) {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        byte[] header = new byte[ADTS_HEADER_BYTES];
+        long fedBytes = 0;
+        try {
+            while (true) {
+                ByteBuffer pcm = ring.takeFilled(POLL_MS);
+                if (pcm == null) {
+                    if (ring.isDrained()) {
+                        break;
+                    }
+                    drain(codec, info, header, writer, false);
+                    continue;
+                }
+                while (pcm.hasRemaining()) {
+                    int index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (index >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(index);
+                        int n = Math.min(input.remaining(), pcm.remaining());
+                        ByteBuffer part = pcm.duplicate();
+                        part.limit(pcm.position() + n);
+                        input.put(part);
+                        pcm.position(pcm.position() + n);
+                        codec.queueInputBuffer(index, 0, n, presentationUs(fedBytes), 0);
+                        fedBytes += n;
+                    }
+                    drain(codec, info, header, writer, false);
+                }
+                ring.release(pcm);
+            }
+            int index;
+            while ((index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US)) < 0) {
+                drain(codec, info, header, writer, false);
+            }
+            codec.queueInputBuffer(index, 0, 0, presentationUs(fedBytes), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            drain(codec, info, header, writer, true);
+            writer.finish();
+        } catch (Exception e) {
+            recording = false;
+            // Frees the microphone thread if it is waiting for a buffer, so it sees the stop.
+            ByteBuffer left;
+            while ((left = ring.takeFilledNow()) != null) {
+                ring.release(left);
+            }
+            main.execute(() -> fail(clipId, e));
+            try {
+                writer.abandon();
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            codec.release();
+        }
+    }
+
+    private static long presentationUs(long pcmBytes) {
+        return pcmBytes * 1_000_000L / (SAMPLE_RATE * BYTES_PER_SAMPLE);
+    }
+
+    // Writes each encoded frame with an ADTS header, so the clip plays as a plain .aac stream.
+    private static void drain(MediaCodec codec, MediaCodec.BufferInfo info, byte[] header, ClipWriter writer,
+                              boolean endOfStream) throws IOException, InterruptedException {
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, endOfStream ? CODEC_TIMEOUT_US : 0);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream) {
+                    return;
+                }
+                continue;
+            }
+            if (index < 0) {
+                // Output format changed; ADTS needs nothing from it.
+                continue;
+            }
+            ByteBuffer output = codec.getOutputBuffer(index);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+                output.position(info.offset);
+                output.limit(info.offset + info.size);
+                adtsHeader(header, info.size);
+                writer.write(header, 0, header.length);
+                writer.write(output);
+            }
+            codec.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                return;
+            }
+        }
+    }
+
+    // AAC LC, mono, no CRC.
+    private static void adtsHeader(byte[] header, int payloadBytes) {
+        int frameBytes = payloadBytes + ADTS_HEADER_BYTES;
+        int profile = MediaCodecInfo.CodecProfileLevel.AACObjectLC;
+        int channels = 1;
+        header[0] = (byte) 0xFF;
+        header[1] = (byte) 0xF1;
+        header[2] = (byte) (((profile - 1) << 6) | (ADTS_FREQUENCY_INDEX << 2) | (channels >> 2));
+        header[3] = (byte) (((channels & 3) << 6) | (frameBytes >> 11));
+        header[4] = (byte) ((frameBytes & 0x7FF) >> 3);
+        header[5] = (byte) (((frameBytes & 7) << 5) | 0x1F);
+        header[6] = (byte) 0xFC;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.audiologin;
+
+import android.media.MediaDataSource;
+
+import java.io.IOException;
+
+// Lets MediaPlayer pull a stored clip through a ClipReader, so playback starts once the first
+// chunk arrives rather than after the whole clip is downloaded. The player reads on its own thread.
+public class ClipDataSource extends MediaDataSource {
+    private final ClipReader reader;
+
+    public ClipDataSource(ClipReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        return reader.readAt(position, buffer, offset, size);
+    }
+
+    // Unknown: the player reads until the end of the stream.
+    @Override
+    public long getSize() {
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
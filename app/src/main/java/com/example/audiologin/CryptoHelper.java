@@ -1,26 +0,0 @@
-package com.example.audiologin;
-
-import android.util.Base64;
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
-
-public class CryptoHelper {
-    private static final String ALGORITHM = "AES";
-    private static final String KEY = "MySecretKey12345";
-
-    public static String encrypt(String data) throws Exception {
-        SecretKeySpec secretKey = new SecretKeySpec(KEY.getBytes(), ALGORITHM);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-        byte[] encryptedBytes = cipher.doFinal(data.getBytes());
-        return Base64.encodeToString(encryptedBytes, Base64.DEFAULT);
-    }
-
-    public static String decrypt(String encryptedData) throws Exception {
-        SecretKeySpec secretKey = new SecretKeySpec(KEY.getBytes(), ALGORITHM);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.DECRYPT_MODE, secretKey);
-        byte[] decodedBytes = Base64.decode(encryptedData, Base64.DEFAULT);
-        return new String(cipher.doFinal(decodedBytes));
-    }
-}
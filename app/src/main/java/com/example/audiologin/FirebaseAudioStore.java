@@ -0,0 +1,118 @@
+package com.example.audiologin;
+
+import android.content.Context;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Keeps clips in Cloud Storage as audio/{username}/{clipId}/{index}, one small object per chunk,
+// so a dropped connection costs at most the chunk in flight. An empty "finished" object carries
+// the chunk count and length as metadata. Firebase calls back on the main thread.
+public class FirebaseAudioStore implements AudioStore {
+    private static final String FINISHED = "finished";
+    private static final String META_CHUNKS = "chunks";
+    private static final String META_LENGTH = "length";
+    private static final long MAX_CHUNK_BYTES = 1024 * 1024;
+
+    private final Context context;
+    private StorageReference root;
+
+    public FirebaseAudioStore(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    // The data layer has normally started Firebase already; this covers a clip touched first.
+    private synchronized StorageReference clipRef(String username, String clipId) {
+        if (root == null) {
+            FirebaseApp.initializeApp(context);
+            root = FirebaseStorage.getInstance().getReference("audio");
+        }
+        return root.child(username).child(clipId);
+    }
+
+    @Override
+    public void writeChunk(String username, String clipId, int index, byte[] data, int length,
+                           DataCallback<Void> callback) {
+        byte[] bytes = length == data.length ? data : Arrays.copyOf(data, length);
+        clipRef(username, clipId).child(String.valueOf(index)).putBytes(bytes)
+                .addOnSuccessListener(snapshot -> callback.onSuccess(null))
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void readChunk(String username, String clipId, int index, DataCallback<byte[]> callback) {
+        clipRef(username, clipId).child(String.valueOf(index)).getBytes(MAX_CHUNK_BYTES)
+                .addOnSuccessListener(callback::onSuccess)
+                .addOnFailureListener(e -> {
+                    if (e instanceof StorageException
+                            && ((StorageException) e).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND) {
+                        callback.onSuccess(null);
+                    } else {
+                        callback.onFailure(e);
+                    }
+                });
+    }
+
+    @Override
+    public void finish(String username, String clipId, int totalChunks, long length, DataCallback<Void> callback) {
+        StorageMetadata metadata = new StorageMetadata.Builder()
+                .setCustomMetadata(META_CHUNKS, String.valueOf(totalChunks))
+                .setCustomMetadata(META_LENGTH, String.valueOf(length))
+                .build();
+        clipRef(username, clipId).child(FINISHED).putBytes(new byte[0], metadata)
+                .addOnSuccessListener(snapshot -> callback.onSuccess(null))
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void loadStatus(String username, String clipId, DataCallback<Status> callback) {
+        StorageReference clip = clipRef(username, clipId);
+        clip.listAll().addOnSuccessListener(listing -> {
+            Set<String> names = new HashSet<>();
+            for (StorageReference item : listing.getItems()) {
+                names.add(item.getName());
+            }
+            int stored = 0;
+            while (names.contains(String.valueOf(stored))) {
+                stored++;
+            }
+            if (!names.contains(FINISHED)) {
+                callback.onSuccess(new Status(stored, -1, -1));
+                return;
+            }
+            int storedChunks = stored;
+            clip.child(FINISHED).getMetadata().addOnSuccessListener(metadata -> {
+                try {
+                    callback.onSuccess(new Status(storedChunks, Integer.parseInt(metadata.getCustomMetadata(META_CHUNKS)),
+                            Long.parseLong(metadata.getCustomMetadata(META_LENGTH))));
+                } catch (NumberFormatException e) {
+                    callback.onFailure(e);
+                }
+            }).addOnFailureListener(callback::onFailure);
+        }).addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void delete(String username, String clipId, DataCallback<Void> callback) {
+        clipRef(username, clipId).listAll().addOnSuccessListener(listing -> {
+            List<Task<Void>> deletes = new ArrayList<>();
+            for (StorageReference item : listing.getItems()) {
+                deletes.add(item.delete());
+            }
+            Tasks.whenAll(deletes)
+                    .addOnSuccessListener(aVoid -> callback.onSuccess(null))
+                    .addOnFailureListener(callback::onFailure);
+        }).addOnFailureListener(callback::onFailure);
+    }
+}
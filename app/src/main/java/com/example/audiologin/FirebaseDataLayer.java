@@ -0,0 +1,35 @@
+package com.example.audiologin;
+
+public class FirebaseDataLayer implements DataLayer {
+    private final FirebaseRefs refs;
+    private final FirebaseUserRepository userRepository;
+    private final FirebaseNotesRepository notesRepository;
+    private final FirebaseRemoteWriter remoteWriter;
+
+    public FirebaseDataLayer(FirebaseRefs refs) {
+        this.refs = refs;
+        userRepository = new FirebaseUserRepository(refs);
+        notesRepository = new FirebaseNotesRepository(refs);
+        remoteWriter = new FirebaseRemoteWriter(refs);
+    }
+
+    @Override
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    @Override
+    public NotesRepository getNotesRepository() {
+        return notesRepository;
+    }
+
+    @Override
+    public SyncQueue.RemoteWriter getRemoteWriter() {
+        return remoteWriter;
+    }
+
+    @Override
+    public void setCurrentUser(String username) {
+        refs.keepSynced(username);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.audiologin;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FirebaseNotesRepository implements NotesRepository {
+    private final FirebaseRefs refs;
+
+    public FirebaseNotesRepository(FirebaseRefs refs) {
+        this.refs = refs;
+    }
+
+    private DatabaseReference notesRef(String username) {
+        return refs.ref("users/" + username + "/notes");
+    }
+
+    @Override
+    public void loadPage(String username, String beforeKey, int limit, DataCallback<List<Note>> callback) {
+        Query query = notesRef(username).orderByKey();
+        if (beforeKey != null) {
+            query = query.endBefore(beforeKey);
+        }
+        fetch(query.limitToLast(limit), callback);
+    }
+
+    @Override
+    public void loadRange(String username, String startKey, String endKey, DataCallback<List<Note>> callback) {
+        fetch(notesRef(username).orderByKey().startAt(startKey).endAt(endKey), callback);
+    }
+
+    private static void fetch(Query query, DataCallback<List<Note>> callback) {
+        query.get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                callback.onFailure(task.getException());
+                return;
+            }
+            List<Note> notes = new ArrayList<>();
+            for (DataSnapshot child : task.getResult().getChildren()) {
+                String text = child.getValue(String.class);
+                if (text != null) {
+                    notes.add(new Note(child.getKey(), text));
+                }
+            }
+            callback.onSuccess(notes);
+        });
+    }
+
+    @Override
+    public void saveNote(String username, String text, DataCallback<Note> callback) {
+        DatabaseReference noteRef = notesRef(username).push();
+        noteRef.setValue(text)
+                .addOnSuccessListener(aVoid -> callback.onSuccess(new Note(noteRef.getKey(), text)))
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public Subscription observe(String username, String startKey, NotesListener listener) {
+        Query query = notesRef(username).orderByKey();
+        if (startKey != null) {
+            query = query.startAt(startKey);
+        }
+        ChildEventListener childListener = query.addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                notify(snapshot);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+                notify(snapshot);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                listener.onNoteRemoved(snapshot.getKey());
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+                // Ordered by key, so a move never changes a note's position.
+                notify(snapshot);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                listener.onError(error.toException());
+            }
+
+            private void notify(DataSnapshot snapshot) {
+                String text = snapshot.getValue(String.class);
+                if (text != null) {
+                    listener.onNoteChanged(new Note(snapshot.getKey(), text));
+                }
+            }
+        });
+        Query observed = query;
+        return () -> observed.removeEventListener(childListener);
+    }
+}
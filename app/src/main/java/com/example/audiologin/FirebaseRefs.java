@@ -0,0 +1,53 @@
+package com.example.audiologin;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Owns the database instance. Disk persistence is switched on before first use, each path's
+// reference is built once, and the signed-in user's credential and newest notes are kept synced
+// so reopening the app reads them from disk.
+public class FirebaseRefs {
+    public static final String DATABASE_URL = "https://audiologin-951fa-default-rtdb.asia-southeast1.firebasedatabase.app/";
+
+    private final DatabaseReference root;
+    private final Map<String, DatabaseReference> refs = new ConcurrentHashMap<>();
+    private final int syncedNotes;
+    private Query syncedNotesQuery;
+    private DatabaseReference syncedCredential;
+
+    public FirebaseRefs(String url, int syncedNotes) {
+        FirebaseDatabase database = FirebaseDatabase.getInstance(url);
+        database.setPersistenceEnabled(true);
+        root = database.getReference();
+        this.syncedNotes = syncedNotes;
+    }
+
+    public DatabaseReference root() {
+        return root;
+    }
+
+    public DatabaseReference ref(String path) {
+        return refs.computeIfAbsent(path, root::child);
+    }
+
+    // Null releases the previous user's synced data, e.g. on logout.
+    public synchronized void keepSynced(String username) {
+        if (syncedNotesQuery != null) {
+            syncedNotesQuery.keepSynced(false);
+            syncedCredential.keepSynced(false);
+            syncedNotesQuery = null;
+            syncedCredential = null;
+        }
+        if (username != null) {
+            // Only the newest page: syncing a long history would download all of it.
+            syncedNotesQuery = ref("users/" + username + "/notes").orderByKey().limitToLast(syncedNotes);
+            syncedNotesQuery.keepSynced(true);
+            syncedCredential = ref("users/" + username + "/AudioLogin");
+            syncedCredential.keepSynced(true);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.audiologin;
+
+import java.util.Map;
+
+public class FirebaseRemoteWriter implements SyncQueue.RemoteWriter {
+    private final FirebaseRefs refs;
+
+    public FirebaseRemoteWriter(FirebaseRefs refs) {
+        this.refs = refs;
+    }
+
+    @Override
+    public void write(Map<String, Object> updates, DataCallback<Void> callback) {
+        refs.root().updateChildren(updates)
+                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
+                .addOnFailureListener(callback::onFailure);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.audiologin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class FirebaseUserRepository implements UserRepository {
+    private final FirebaseRefs refs;
+
+    public FirebaseUserRepository(FirebaseRefs refs) {
+        this.refs = refs;
+    }
+
+    @Override
+    public void userExists(String username, DataCallback<Boolean> callback) {
+        refs.ref("usernames/" + username).get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                callback.onFailure(task.getException());
+            } else if (task.getResult().exists()) {
+                callback.onSuccess(true);
+            } else {
+                // Accounts registered before the index existed only have the credential leaf.
+                probeCredentialLeaf(username, callback);
+            }
+        });
+    }
+
+    private void probeCredentialLeaf(String username, DataCallback<Boolean> callback) {
+        refs.ref("users/" + username + "/AudioLogin").get().addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                callback.onSuccess(task.getResult().exists());
+            } else {
+                callback.onFailure(task.getException());
+            }
+        });
+    }
+
+    @Override
+    public void loadCredential(String username, DataCallback<String> callback) {
+        refs.ref("users/" + username + "/AudioLogin").get().addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                callback.onSuccess(task.getResult().getValue(String.class));
+            } else {
+                callback.onFailure(task.getException());
+            }
+        });
+    }
+
+    @Override
+    public void register(String username, String encryptedAudioPassword, DataCallback<Void> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("users/" + username + "/AudioLogin", encryptedAudioPassword);
+        updates.put("usernames/" + username, true);
+        refs.root().updateChildren(updates)
+                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
+                .addOnFailureListener(callback::onFailure);
+    }
+}
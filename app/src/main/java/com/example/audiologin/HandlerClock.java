@@ -0,0 +1,32 @@
+package com.example.audiologin;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+public class HandlerClock implements Clock {
+    private final Handler handler;
+
+    public HandlerClock() {
+        this(new Handler(Looper.getMainLooper()));
+    }
+
+    public HandlerClock(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        handler.postDelayed(task, delayMs);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+}
@@ -1,41 +1,44 @@
 package com.example.audiologin;
 
-import android.media.MediaPlayer;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
+import android.text.Editable;
 import android.text.TextUtils;
-import android.view.GestureDetector;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.MotionEvent;
+import android.view.ViewConfiguration;
 import android.widget.EditText;
 import android.view.inputmethod.EditorInfo;
 import android.content.Intent;
 
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-
-public class LoginActivity extends AppCompatActivity {
-
-    private TextToSpeech tts;
-    private Handler handler;
+import java.util.concurrent.CompletableFuture;
+
+public class LoginActivity extends AppCompatActivity implements LoginFlow.Listener {
+    private static final String SPEECH_OWNER = "login";
+    private static final long PROMPT_GAP_MS = 150;
+    private static final long SELECTION_WINDOW_MS = 400;
+    private static final long REACTION_MS = 250;
+    private static final long MAX_TAP_MS = 200;
+    private static final long MAX_TAP_GAP_MS = 250;
+
+    private SpeechService speech;
+    private PromptScheduler scheduler;
+    private SoundEngine soundEngine;
+    private CredentialPrefetcher credentialPrefetcher;
+    private LoginFlow loginFlow;
+    private CompletableFuture<Void> notesUnlocked;
     private EditText etUsername;
-    private GestureDetector gestureDetector;
+    private DoubleTapRecognizer doubleTap;
+    private final SelectionTimeline selection = new SelectionTimeline(SELECTION_WINDOW_MS, REACTION_MS);
     private String[] animalNames = {"cat", "cow", "crow", "sheep"};
     private int soundIndex = 0;
-    private List<String> loginAnimals;
-    private List<String> storedAnimals;
-    private String username;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -43,33 +46,50 @@ public class LoginActivity extends AppCompatActivity {
         setContentView(R.layout.activity_login);
 
         etUsername = findViewById(R.id.etUsernameLogin);
-        loginAnimals = new ArrayList<>();
+        AudioLoginApp app = AudioLoginApp.from(this);
+        soundEngine = app.getSoundEngine();
+        credentialPrefetcher = app.getCredentialPrefetcher();
+        loginFlow = new LoginFlow(credentialPrefetcher, app.getCryptoService(), app.getNoteKeyring(),
+                app.getNotesPrefetch(), app.getLatencyRecorder(), this);
+
+        speech = AudioLoginApp.from(this).getSpeechService();
+        speech.speak(SPEECH_OWNER, "Please enter your username and press Enter to start login.", TextToSpeech.QUEUE_FLUSH);
+
+        scheduler = new PromptScheduler(new HandlerClock(), PROMPT_GAP_MS);
+        shuffleSounds();
+
+        // Picks the clip that was playing when the first tap landed, however long the gesture takes.
+        doubleTap = new DoubleTapRecognizer(MAX_TAP_MS, MAX_TAP_GAP_MS,
+                ViewConfiguration.get(this).getScaledDoubleTapSlop(), firstDownAt -> {
+            String selectedAnimal = selection.resolve(firstDownAt);
+            if (selectedAnimal == null) {
+                return;
+            }
+            speech.speak(SPEECH_OWNER, selectedAnimal + " selected.", TextToSpeech.QUEUE_FLUSH);
 
-        tts = new TextToSpeech(this, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                tts.setLanguage(Locale.US);
-                tts.speak("Please enter your username and press Enter to start login.", TextToSpeech.QUEUE_FLUSH, null, null);
+            if (loginFlow.getSelectedCount() == LoginFlow.SELECTIONS - 1) {
+                scheduler.cancel();
+                soundEngine.stop();
+                selection.clear();
+                speech.speak(SPEECH_OWNER, "You have selected two sounds. Please wait for verification.", TextToSpeech.QUEUE_FLUSH);
             }
+            // The second selection verifies, and the result may be spoken before this returns.
+            loginFlow.select(selectedAnimal);
         });
 
-        handler = new Handler();
-        shuffleSounds();
+        // Fetches the credential while the name is typed, so Enter rarely waits on the network.
+        etUsername.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-        gestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
             @Override
-            public boolean onDoubleTap(MotionEvent e) {
-                if (soundIndex > 0 && soundIndex <= animalNames.length) {
-                    String selectedAnimal = animalNames[soundIndex - 1];
-                    loginAnimals.add(selectedAnimal.toLowerCase().trim());
-                    tts.speak(selectedAnimal + " selected.", TextToSpeech.QUEUE_FLUSH, null, null);
-
-                    if (loginAnimals.size() == 2) {
-                        handler.removeCallbacksAndMessages(null);
-                        tts.speak("You have selected two sounds. Please wait for verification.", TextToSpeech.QUEUE_FLUSH, null, null);
-                        verifyLogin();
-                    }
-                }
-                return true;
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                credentialPrefetcher.onUsernameChanged(s.toString().trim());
             }
         });
 
@@ -90,133 +110,142 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void startLoginProcess() {
-        username = etUsername.getText().toString().trim();
+        String username = etUsername.getText().toString().trim();
 
         if (TextUtils.isEmpty(username)) {
-            tts.speak("Username cannot be empty. Please enter your username.", TextToSpeech.QUEUE_FLUSH, null, null);
+            speech.speak(SPEECH_OWNER, "Username cannot be empty. Please enter your username.", TextToSpeech.QUEUE_FLUSH);
             return;
         }
 
-        DatabaseReference dbRef = FirebaseDatabase.getInstance("https://audiologin-951fa-default-rtdb.asia-southeast1.firebasedatabase.app/")
-                .getReference("users")
-                .child(username)
-                .child("AudioLogin");
+        speech.speak(SPEECH_OWNER, "Retrieving saved audio password.", TextToSpeech.QUEUE_FLUSH);
+        loginFlow.start(username);
+    }
 
-        tts.speak("Retrieving saved audio password.", TextToSpeech.QUEUE_FLUSH, null, null);
+    @Override
+    public void onChallenge(String username) {
+        scheduler.cancel();
+        scheduler.then(done -> speech.speak(SPEECH_OWNER, "Saved audio for " + username + " retrieved. Please select 2 of your saved animal sounds.", TextToSpeech.QUEUE_FLUSH, done))
+                .then(done -> {
+                    playAllAnimalSounds();
+                    done.run();
+                });
+    }
 
-        dbRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                try {
-                    String encryptedPassword = snapshot.getValue(String.class);
-                    if (encryptedPassword != null) {
-                        String decryptedPassword = CryptoHelper.decrypt(encryptedPassword);
-                        storedAnimals = new ArrayList<>();
-                        Collections.addAll(storedAnimals, decryptedPassword.split(","));
-                        tts.speak("Saved audio for " + username + " retrieved. Please select 2 of your saved animal sounds.", TextToSpeech.QUEUE_FLUSH, null, null);
-                        handler.postDelayed(() -> playAllAnimalSounds(), 6000);
-
-                    } else {
-                        tts.speak("No audio password found for this username.", TextToSpeech.QUEUE_FLUSH, null, null);
-                    }
-                } catch (Exception e) {
-                    tts.speak("Failed to retrieve password. Please try again.", TextToSpeech.QUEUE_FLUSH, null, null);
-                }
-            }
+    @Override
+    public void onNoCredential(String username) {
+        speech.speak(SPEECH_OWNER, "No audio password found for this username.", TextToSpeech.QUEUE_FLUSH);
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                tts.speak("Failed to retrieve data. Please try again.", TextToSpeech.QUEUE_FLUSH, null, null);
-            }
-        });
+    @Override
+    public void onLookupFailed(Exception e) {
+        speech.speak(SPEECH_OWNER, "Failed to retrieve data. Please try again.", TextToSpeech.QUEUE_FLUSH);
+    }
 
+    @Override
+    public void onDecryptFailed(Exception e) {
+        speech.speak(SPEECH_OWNER, "Failed to retrieve password. Please try again.", TextToSpeech.QUEUE_FLUSH);
     }
 
     private void playAllAnimalSounds() {
         soundIndex = 0;
-        loginAnimals.clear();
+        selection.clear();
+        loginFlow.beginSelection();
+        playNextAnimalSound();
+    }
 
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                if (loginAnimals.size() < 2) {
-                    if (soundIndex >= animalNames.length) {
-                        soundIndex = 0;
-                    }
-                    String animal = animalNames[soundIndex];
-                    playSound(animal);
-                    soundIndex++;
-                    handler.postDelayed(this, 2000);
-                } else {
-                    handler.removeCallbacksAndMessages(null);
-                    tts.speak("You have selected two sounds. Please wait for verification.", TextToSpeech.QUEUE_FLUSH, null, null);
-                    verifyLogin();
-                }
+    // Each clip is followed by a short window for the double-tap, then the next clip is queued.
+    private void playNextAnimalSound() {
+        scheduler.then(done -> {
+            if (loginFlow.getSelectedCount() >= LoginFlow.SELECTIONS) {
+                done.run();
+                return;
+            }
+            if (soundIndex >= animalNames.length) {
+                soundIndex = 0;
             }
+            String animal = animalNames[soundIndex];
+            soundIndex++;
+            soundEngine.play(animal, () -> selection.onStarted(animal, SystemClock.uptimeMillis()), () -> {
+                selection.onEnded(SystemClock.uptimeMillis());
+                done.run();
+            });
+        }).pause(SELECTION_WINDOW_MS).then(done -> {
+            if (loginFlow.getSelectedCount() < LoginFlow.SELECTIONS) {
+                playNextAnimalSound();
+            }
+            done.run();
         });
     }
 
-    private void playSound(String animal) {
-        int soundResId = getSoundResourceId(animal);
-        if (soundResId != -1) {
-            MediaPlayer mediaPlayer = MediaPlayer.create(this, soundResId);
-            mediaPlayer.start();
-            handler.postDelayed(() -> {
-                if (mediaPlayer.isPlaying()) {
-                    mediaPlayer.stop();
-                    mediaPlayer.release();
-                }
-            }, 2000);
-        }
+    @Override
+    public void onRejected() {
+        speech.speak(SPEECH_OWNER, "Login failed. Incorrect audio password.", TextToSpeech.QUEUE_FLUSH);
     }
 
-    private int getSoundResourceId(String animal) {
-        switch (animal.toLowerCase()) {
-            case "cat":
-                return R.raw.cat;
-            case "cow":
-                return R.raw.cow;
-            case "crow":
-                return R.raw.crow;
-            case "sheep":
-                return R.raw.sheep;
-            default:
-                return -1;
-        }
+    @Override
+    public void onVerified() {
+        long verifiedAt = SystemClock.elapsedRealtime();
+        String username = loginFlow.getUsername();
+        notesUnlocked = new CompletableFuture<>();
+        CompletableFuture<Void> unlocked = notesUnlocked;
+        scheduler.then(done -> speech.speak(SPEECH_OWNER, "Login successful. Welcome" + username + "!", TextToSpeech.QUEUE_FLUSH, done))
+                .then(done -> unlocked.thenRun(done))
+                .then(done -> {
+                    loginFlow.finish();
+                    Intent intent = new Intent(LoginActivity.this, NotesActivity.class);
+                    intent.putExtra("USERNAME", username);
+                    intent.putExtra(NotesActivity.EXTRA_LOGIN_VERIFIED_AT, verifiedAt);
+                    startActivity(intent);
+                    finish();
+                    done.run();
+                });
     }
 
-    private void verifyLogin() {
-        List<String> formattedLoginAnimals = new ArrayList<>();
-        for (String animal : loginAnimals) {
-            formattedLoginAnimals.add(animal.toLowerCase().trim());
-        }
-
-        if (formattedLoginAnimals.equals(storedAnimals)) {
-            tts.speak("Login successful. Welcome" + username + "!", TextToSpeech.QUEUE_FLUSH, null, null);
-            handler.postDelayed(() -> {
-                Intent intent = new Intent(LoginActivity.this, NotesActivity.class);
-                intent.putExtra("USERNAME", username);
-                startActivity(intent);
-                finish();
-            }, 2000);
-        } else {
-            tts.speak("Login failed. Incorrect audio password.", TextToSpeech.QUEUE_FLUSH, null, null);
-        }
+    @Override
+    public void onNotesUnlocked() {
+        notesUnlocked.complete(null);
     }
 
-
+    // Without the key the notes cannot be read or saved, so the login starts over instead.
+    @Override
+    public void onKeyDeriveFailed(Exception e) {
+        Log.e("Encryption", "Failed to derive the note key", e);
+        scheduler.cancel();
+        speech.speak(SPEECH_OWNER, "Could not unlock your notes. Please press Enter to log in again.",
+                TextToSpeech.QUEUE_FLUSH);
+    }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                doubleTap.onDown(event.getEventTime(), event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                doubleTap.onMove(event.getEventTime(), event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+                doubleTap.onUp(event.getEventTime());
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                doubleTap.onCancel();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        AudioLoginApp.from(this).watchStalls("login");
     }
 
     @Override
     protected void onDestroy() {
-        if (tts != null) {
-            tts.stop();
-            tts.shutdown();
-        }
+        scheduler.cancel();
+        soundEngine.stop();
+        speech.cancel(SPEECH_OWNER);
         super.onDestroy();
     }
 }
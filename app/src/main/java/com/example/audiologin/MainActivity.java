@@ -6,26 +6,25 @@ import android.speech.tts.TextToSpeech;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import androidx.appcompat.app.AppCompatActivity;
-import java.util.Locale;
-import com.google.firebase.FirebaseApp;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String SPEECH_OWNER = "main";
 
-    private TextToSpeech tts;
+    private SpeechService speech;
     private GestureDetector gestureDetector;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        FirebaseApp.initializeApp(this);
         setContentView(R.layout.activity_main);
 
-        tts = new TextToSpeech(this, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                tts.setLanguage(Locale.US);
-                tts.speak(" Welcome to Voice Vault. Swipe up to log in, or swipe down to register.", TextToSpeech.QUEUE_FLUSH, null, null);
-            }
-        });
+        AudioLoginApp app = AudioLoginApp.from(this);
+        speech = app.getSpeechService();
+        speech.speak(SPEECH_OWNER, " Welcome to Voice Vault. Swipe up to log in, or swipe down to register.",
+                TextToSpeech.QUEUE_FLUSH, () -> {
+                    app.reportFirstPrompt();
+                    reportFullyDrawn();
+                }, null);
         gestureDetector = new GestureDetector(this, new GestureListener());
     }
 
@@ -39,22 +38,26 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
             if (e2.getY() < e1.getY()) {
-                tts.speak("You have selected Login", TextToSpeech.QUEUE_FLUSH, null, null);
+                speech.speak(SPEECH_OWNER, "You have selected Login", TextToSpeech.QUEUE_FLUSH);
                 startActivity(new Intent(MainActivity.this, LoginActivity.class));
             } else if (e2.getY() > e1.getY()) {
-                tts.speak("You have selected Register", TextToSpeech.QUEUE_FLUSH, null, null);
+                speech.speak(SPEECH_OWNER, "You have selected Register", TextToSpeech.QUEUE_FLUSH);
                 startActivity(new Intent(MainActivity.this, RegistrationActivity.class));
             }
             return true;
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Main-thread stalls from here on are reported against this flow.
+        AudioLoginApp.from(this).watchStalls("welcome");
+    }
+
     @Override
     protected void onDestroy() {
-        if (tts != null) {
-            tts.stop();
-            tts.shutdown();
-        }
+        speech.cancel(SPEECH_OWNER);
         super.onDestroy();
     }
 }
@@ -3,94 +3,232 @@ package com.example.audiologin;
 import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.net.Uri;
 import android.os.Bundle;
-import android.speech.RecognizerIntent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
+import android.util.Log;
+import android.view.KeyEvent;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
+import androidx.activity.OnBackPressedCallback;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-
-import java.util.ArrayList;
-import java.util.Locale;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class  NotesActivity extends AppCompatActivity {
+    private static final String SPEECH_OWNER = "notes";
+    private static final String READER_OWNER = "notes.reader";
+    private static final int READER_LOOKAHEAD = 2;
+    // About one spoken sentence: the first audio never waits on more than this.
+    private static final int READER_MAX_CHUNK_CHARS = 200;
     private static final int REQUEST_PERMISSION_RECORD_AUDIO = 1;
+    // Words dictated since the last checkpoint are all a killed process can lose.
+    private static final long DRAFT_CHECKPOINT_MS = 2000;
+    private static final int SEARCH_RESULTS = 10;
+    // Server notes copied into the search index per request.
+    private static final int SEARCH_BACKFILL_PAGE = 200;
+    // Chunks fetched ahead of the player; a little over 15 seconds of audio.
+    private static final int CLIP_PREFETCH_CHUNKS = 2;
+    private static final long CLIP_READ_TIMEOUT_MS = 15000;
+    public static final int PAGE_SIZE = 50;
+    public static final String EXTRA_LOGIN_VERIFIED_AT = "LOGIN_VERIFIED_AT";
+    private static final int KEEP_PAGES = 2;
+    private static final long FIRST_PAGE_BUDGET_MS = 1500;
+    private static final long FIRST_NOTE_SPOKEN_BUDGET_MS = 3000;
     private EditText noteEditText;
     private Button voiceNoteButton;
+    private Button recordAudioButton;
     private Button logoutButton;
     private RecyclerView notesRecyclerView;
     private NotesAdapter notesAdapter;
-    private ArrayList<String> notesList = new ArrayList<>();
+    private ExecutorService textExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean submitPending;
+    private NotesPager notesPager;
+    private OfflineNotesRepository notesRepository;
+    private LatencyRecorder latency;
+    private boolean firstPageShown;
+    private long loginVerifiedAt;
     private String username;
-    private TextToSpeech textToSpeech;
-    private ActivityResultLauncher<Intent> speechRecognitionResultLauncher;
+    private SpeechService speech;
+    private NoteReader noteReader;
+    private String readingNote;
+    private AndroidRecognizer recognizer;
+    private DictationSession dictation;
+    private DraftStore drafts;
+    private NotesIndex searchIndex;
+    // False while older notes are still being copied into the index.
+    private boolean searchComplete;
+    private List<Note> searchResults;
+    private OnBackPressedCallback leaveSearch;
+    private ActivityResultLauncher<String> backupLauncher;
+    private ActivityResultLauncher<String[]> restoreLauncher;
+    private AudioNoteRecorder audioRecorder;
+    private MediaPlayer clipPlayer;
+    private String playingClip;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        username = getIntent().getStringExtra("USERNAME");
+        // After a process restart, or a login whose key failed, the notes cannot be opened or saved.
+        if (username == null || !AudioLoginApp.from(this).getNoteKeyring().isUnlocked(username)) {
+            returnToLogin();
+            return;
+        }
         setContentView(R.layout.activity_notes);
 
         noteEditText = findViewById(R.id.noteEditText);
         voiceNoteButton = findViewById(R.id.voiceNoteButton);
+        recordAudioButton = findViewById(R.id.recordAudioButton);
         notesRecyclerView = findViewById(R.id.notesRecyclerView);
         logoutButton = findViewById(R.id.logoutButton);
 
-        username = getIntent().getStringExtra("USERNAME");
-        notesAdapter = new NotesAdapter(notesList, note -> playNoteWithTTS(note));
-        notesRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        loginVerifiedAt = getIntent().getLongExtra(EXTRA_LOGIN_VERIFIED_AT, 0);
+        notesRepository = AudioLoginApp.from(this).getNotesRepository();
+        latency = AudioLoginApp.from(this).getLatencyRecorder();
+        AudioLoginApp.from(this).getDataLayer().setCurrentUser(username);
+        // Long notes are laid out here rather than on the main thread while scrolling; searches run here too.
+        textExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "note-text"));
+        notesAdapter = new NotesAdapter(this::onNoteTapped, textExecutor);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        notesRecyclerView.setLayoutManager(layoutManager);
         notesRecyclerView.setAdapter(notesAdapter);
+        notesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (notesPager != null) {
+                    notesPager.onVisibleRange(layoutManager.findFirstVisibleItemPosition(),
+                            layoutManager.findLastVisibleItemPosition());
+                }
+            }
+        });
 
-        textToSpeech = new TextToSpeech(this, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                textToSpeech.setLanguage(Locale.getDefault());
+        speech = AudioLoginApp.from(this).getSpeechService();
+        noteReader = new NoteReader(new NoteReader.Speaker() {
+            @Override
+            public void speak(String text, Runnable onStart, Runnable onDone) {
+                speech.speak(READER_OWNER, text, TextToSpeech.QUEUE_ADD, onStart, onDone);
+            }
 
-                textToSpeech.speak("..Tap the upper button to dictate notes..", TextToSpeech.QUEUE_ADD, null, "utterance1");
-                textToSpeech.speak("Tap the lower button to log out..", TextToSpeech.QUEUE_ADD, null, "utterance2");
-                textToSpeech.speak("Tap the notes once to read the note..", TextToSpeech.QUEUE_ADD, null, "utterance3");
-            } else {
-                Toast.makeText(this, "TTS initialization failed.", Toast.LENGTH_SHORT).show();
+            @Override
+            public void stop() {
+                speech.cancel(READER_OWNER);
+            }
+        }, READER_LOOKAHEAD, Math.min(READER_MAX_CHUNK_CHARS, TextToSpeech.getMaxSpeechInputLength()), null);
+        // A prefetched page is ready now, so its latest note is read before the instructions.
+        loadNotesFromFirebase();
+        speech.speak(SPEECH_OWNER, "..Tap the upper button to dictate notes..", TextToSpeech.QUEUE_ADD);
+        speech.speak(SPEECH_OWNER, "Press and hold it to search your notes.", TextToSpeech.QUEUE_ADD);
+        speech.speak(SPEECH_OWNER, "Tap the second button to record an audio note..", TextToSpeech.QUEUE_ADD);
+        speech.speak(SPEECH_OWNER, "Tap the lower button to log out..", TextToSpeech.QUEUE_ADD);
+        speech.speak(SPEECH_OWNER, "Tap the notes once to read the note..", TextToSpeech.QUEUE_ADD);
+        speech.ready().thenAccept(success -> {
+            if (!success) {
+                runOnUiThread(() -> Toast.makeText(this, "TTS initialization failed.", Toast.LENGTH_SHORT).show());
             }
         });
 
+        drafts = AudioLoginApp.from(this).getDraftStore();
+        recognizer = new AndroidRecognizer(this);
+        dictation = new DictationSession(recognizer, drafts, username, new HandlerClock(mainHandler),
+                DRAFT_CHECKPOINT_MS, new DictationSession.Listener() {
+            @Override
+            public void onTranscript(String text) {
+                noteEditText.setText(text);
+                noteEditText.setSelection(text.length());
+            }
 
+            @Override
+            public void onFinished(String text) {
+                voiceNoteButton.setText("Dictate Note");
+                if (text.isEmpty()) {
+                    Toast.makeText(NotesActivity.this, "No speech detected. Try again.", Toast.LENGTH_SHORT).show();
+                } else {
+                    saveNote(text);
+                }
+            }
 
-        speechRecognitionResultLauncher = registerForActivityResult(
-                new ActivityResultContracts.StartActivityForResult(),
-                result -> {
-                    if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                        ArrayList<String> results = result.getData().getStringArrayListExtra(RecognizerIntent.EXTRA_RESULTS);
-                        if (results != null && !results.isEmpty()) {
-                            noteEditText.setText(results.get(0));
-                            saveNoteToFirebase(results.get(0));
-                        } else {
-                            Toast.makeText(this, "No speech detected. Try again.", Toast.LENGTH_SHORT).show();
-                        }
-                    }
-                });
+            @Override
+            public void onError(Exception e) {
+                Log.w("NotesActivity", "Dictation stopped", e);
+                voiceNoteButton.setText("Dictate Note");
+                Toast.makeText(NotesActivity.this, "Dictation stopped. Your words are kept as a draft.",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+        restoreDraft();
+        loadSearchIndex();
+        leaveSearch = new OnBackPressedCallback(false) {
+            @Override
+            public void handleOnBackPressed() {
+                leaveSearch();
+            }
+        };
+        getOnBackPressedDispatcher().addCallback(this, leaveSearch);
+        backupLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument("text/plain"), uri -> {
+            if (uri != null) {
+                backUpNotes(uri);
+            }
+        });
+        restoreLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+            if (uri != null) {
+                restoreNotes(uri);
+            }
+        });
+        logoutButton.setOnLongClickListener(v -> {
+            showBackupChoices();
+            return true;
+        });
 
         checkMicrophonePermission();
-        loadNotesFromFirebase();
 
-        voiceNoteButton.setOnClickListener(v -> startVoiceRecognition());
+        voiceNoteButton.setOnClickListener(v -> toggleDictation());
+        voiceNoteButton.setOnLongClickListener(v -> {
+            startSpokenSearch();
+            return true;
+        });
+
+        audioRecorder = AudioLoginApp.from(this).getAudioRecorder();
+        recordAudioButton.setOnClickListener(v -> toggleRecording());
+        if (username != null && !username.isEmpty()) {
+            AudioLoginApp.from(this).resumeAudioUploads(username);
+        }
 
         logoutButton.setOnClickListener(v -> {
-            if (textToSpeech.isSpeaking()) {
-                textToSpeech.stop();
-            }
-            textToSpeech.speak("Logging out.", TextToSpeech.QUEUE_FLUSH, null, null);
+            speech.speak(SPEECH_OWNER, "Logging out.", TextToSpeech.QUEUE_FLUSH);
+            AudioLoginApp.from(this).getDataLayer().setCurrentUser(null);
+            AudioLoginApp.from(this).getNoteKeyring().lock();
+            AudioLoginApp.from(this).getDiskExecutor().execute(
+                    () -> AudioLoginApp.from(this).getIndexedNotes().forget(username));
             Toast.makeText(NotesActivity.this, "Logging out...", Toast.LENGTH_SHORT).show();
             Intent intent = new Intent(NotesActivity.this, MainActivity.class);
             intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -100,6 +238,15 @@ public class  NotesActivity extends AppCompatActivity {
 
     }
 
+    private void returnToLogin() {
+        AudioLoginApp.from(this).getSpeechService().speak(SPEECH_OWNER, "Please log in again to open your notes.",
+                TextToSpeech.QUEUE_FLUSH);
+        Intent intent = new Intent(this, LoginActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
+    }
+
     private void checkMicrophonePermission() {
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -111,37 +258,375 @@ public class  NotesActivity extends AppCompatActivity {
         }
     }
 
-    private void startVoiceRecognition() {
+    // Dictation keeps listening across pauses until the button is tapped again or the user stays quiet.
+    private void toggleDictation() {
+        if (dictation.isActive()) {
+            dictation.stop();
+            return;
+        }
+        if (canListen()) {
+            // The microphone would pick up our own speech.
+            speech.cancel(SPEECH_OWNER);
+            noteReader.pause();
+            stopClip();
+            voiceNoteButton.setText("Stop Dictating");
+            dictation.start(noteEditText.getText().toString());
+        }
+    }
+
+    private boolean canRecord() {
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
-                == PackageManager.PERMISSION_GRANTED) {
-            Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
-            intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
-            intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault());
-            intent.putExtra(RecognizerIntent.EXTRA_PROMPT, "Speak now to add a note");
+                != PackageManager.PERMISSION_GRANTED) {
+            Toast.makeText(this, "Permission not granted. Please allow microphone access.", Toast.LENGTH_SHORT).show();
+            return false;
+        } else if (dictation.isActive() || audioRecorder.isRecording()) {
+            // One microphone: dictation and recording take turns.
+            Toast.makeText(this, "Stop the current recording first.", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean canListen() {
+        if (!canRecord()) {
+            return false;
+        } else if (!AndroidRecognizer.isAvailable(this)) {
+            Toast.makeText(this, "Speech recognition is not supported on this device.", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        return true;
+    }
+
+    // The audio is kept as recorded, for speech the recognizer gets wrong. It is spooled and uploaded
+    // chunk by chunk while recording, and saved as a note once stopped.
+    private void toggleRecording() {
+        if (audioRecorder.isRecording()) {
+            audioRecorder.stop();
+            recordAudioButton.setText("Record Audio Note");
+            return;
+        }
+        if (username == null || username.isEmpty() || !canRecord()) {
+            return;
+        }
+        speech.cancel(SPEECH_OWNER);
+        noteReader.pause();
+        stopClip();
+        try {
+            audioRecorder.start(username, new AudioNoteRecorder.Listener() {
+                @Override
+                public void onSaved(Note note) {
+                    speech.speak(SPEECH_OWNER, "Audio note saved.", TextToSpeech.QUEUE_FLUSH);
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    recordAudioButton.setText("Record Audio Note");
+                    Toast.makeText(NotesActivity.this, "Recording failed.", Toast.LENGTH_SHORT).show();
+                }
+            });
+        } catch (IOException | IllegalStateException e) {
+            Log.w("NotesActivity", "Cannot start recording", e);
+            Toast.makeText(this, "Cannot record right now.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        recordAudioButton.setText("Stop Recording");
+    }
+
+    private void onNoteTapped(String note) {
+        String clipId = AudioNote.clipIdOf(note);
+        if (clipId == null) {
+            stopClip();
+            playNoteWithTTS(note);
+        } else {
+            playClip(clipId);
+        }
+    }
+
+    // Streams the clip a couple of chunks ahead of the player. Tapping it again pauses or resumes.
+    private void playClip(String clipId) {
+        if (clipPlayer != null && clipId.equals(playingClip)) {
+            if (clipPlayer.isPlaying()) {
+                clipPlayer.pause();
+            } else {
+                clipPlayer.start();
+            }
+            return;
+        }
+        stopClip();
+        speech.cancel(SPEECH_OWNER);
+        noteReader.stop();
+        readingNote = null;
+        AudioLoginApp app = AudioLoginApp.from(this);
+        ClipReader reader = new ClipReader(app.getAudioSpool(), app.getAudioStore(), username, clipId,
+                AudioLoginApp.AUDIO_CHUNK_BYTES, CLIP_PREFETCH_CHUNKS, CLIP_READ_TIMEOUT_MS);
+        MediaPlayer player = new MediaPlayer();
+        player.setAudioAttributes(new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_MEDIA)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                .build());
+        player.setDataSource(new ClipDataSource(reader));
+        player.setOnPreparedListener(MediaPlayer::start);
+        player.setOnCompletionListener(mp -> stopClip());
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.w("NotesActivity", "Playback of clip " + clipId + " failed: " + what + "/" + extra);
+            Toast.makeText(this, "Cannot play this audio note.", Toast.LENGTH_SHORT).show();
+            stopClip();
+            return true;
+        });
+        clipPlayer = player;
+        playingClip = clipId;
+        player.prepareAsync();
+    }
+
+    private void stopClip() {
+        if (clipPlayer != null) {
+            clipPlayer.release();
+            clipPlayer = null;
+            playingClip = null;
+        }
+    }
 
+    // Built from the local notes on the disk executor; saves and syncs keep it current after that.
+    // The local notes are only the pages already seen, so the rest are copied in from the server
+    // the first time, and searches say so until that is done.
+    private void loadSearchIndex() {
+        if (username == null || username.isEmpty()) {
+            return;
+        }
+        AudioLoginApp app = AudioLoginApp.from(this);
+        IndexedNotesStore indexedNotes = app.getIndexedNotes();
+        app.getDiskExecutor().execute(() -> {
+            NotesIndex index = indexedNotes.indexFor(username);
+            boolean complete = indexedNotes.isComplete(username);
+            mainHandler.post(() -> {
+                searchIndex = index;
+                searchComplete = complete;
+                if (!complete) {
+                    backfillSearchIndex(app, indexedNotes);
+                }
+            });
+        });
+    }
+
+    private void backfillSearchIndex(AudioLoginApp app, IndexedNotesStore indexedNotes) {
+        String user = username;
+        notesRepository.backfill(user, SEARCH_BACKFILL_PAGE, new DataCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer copied) {
+                Log.d("NotesActivity", "Search index covers " + copied + " server notes");
+                app.getDiskExecutor().execute(() -> indexedNotes.markComplete(user));
+                searchComplete = true;
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // Searches keep saying older notes may be missing; the next visit tries again.
+                Log.w("NotesActivity", "Failed to copy older notes for search", e);
+            }
+        });
+    }
+
+    // One recognizer session for the query; the matches replace the list until back is pressed.
+    private void startSpokenSearch() {
+        if (dictation.isActive() || !canListen()) {
+            return;
+        }
+        if (searchIndex == null) {
+            speech.speak(SPEECH_OWNER, "Your notes are still loading. Try again in a moment.", TextToSpeech.QUEUE_FLUSH);
+            return;
+        }
+        speech.cancel(SPEECH_OWNER);
+        noteReader.pause();
+        recognizer.start(new Recognizer.Listener() {
+            @Override
+            public void onPartial(String text) {
+            }
+
+            @Override
+            public void onResult(String text) {
+                showSearchResults(text);
+            }
+
+            @Override
+            public void onNoSpeech() {
+                speech.speak(SPEECH_OWNER, "No search heard.", TextToSpeech.QUEUE_FLUSH);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w("NotesActivity", "Spoken search failed", e);
+                speech.speak(SPEECH_OWNER, "Search failed. Try again.", TextToSpeech.QUEUE_FLUSH);
+            }
+        });
+    }
+
+    // The index lock is shared with the disk thread's updates, so the search runs off the main thread.
+    private void showSearchResults(String query) {
+        long searchSpan = latency.begin(Stage.NOTES_SEARCH);
+        NotesIndex index = searchIndex;
+        textExecutor.execute(() -> {
+            List<Note> results = index.search(query, SEARCH_RESULTS);
+            mainHandler.post(() -> {
+                latency.end(Stage.NOTES_SEARCH, searchSpan);
+                onSearchResults(query, results);
+            });
+        });
+    }
+
+    private void onSearchResults(String query, List<Note> results) {
+        String partial = searchComplete ? "" : " Older notes are still loading, so some may be missing.";
+        if (results.isEmpty()) {
+            speech.speak(SPEECH_OWNER, "No notes match " + query + "." + partial, TextToSpeech.QUEUE_FLUSH);
+            return;
+        }
+        searchResults = results;
+        leaveSearch.setEnabled(true);
+        notesAdapter.submitList(results);
+        speech.speak(SPEECH_OWNER, (results.size() == 1 ? "One note matches " : results.size() + " notes match ")
+                + query + "." + partial + " Press back for all notes. The best match.", TextToSpeech.QUEUE_FLUSH);
+        readingNote = results.get(0).getText();
+        noteReader.read(readingNote);
+    }
+
+    private void showBackupChoices() {
+        speech.speak(SPEECH_OWNER, "Back up or restore your notes.", TextToSpeech.QUEUE_FLUSH);
+        new AlertDialog.Builder(this)
+                .setTitle("Notes backup")
+                .setItems(new String[]{"Back up notes to a file", "Restore notes from a file"}, (dialog, which) -> {
+                    if (which == 0) {
+                        backupLauncher.launch("notes-" + username + ".txt");
+                    } else {
+                        restoreLauncher.launch(new String[]{"text/plain"});
+                    }
+                })
+                .show();
+    }
+
+    // Streams every note on the server to the chosen file, a page at a time.
+    private void backUpNotes(Uri uri) {
+        speech.speak(SPEECH_OWNER, "Backing up your notes.", TextToSpeech.QUEUE_FLUSH);
+        AudioLoginApp app = AudioLoginApp.from(this);
+        app.getDiskExecutor().execute(() -> {
+            Writer out;
             try {
-                speechRecognitionResultLauncher.launch(intent);
-            } catch (Exception e) {
-                Toast.makeText(this, "Speech recognition is not supported on this device.", Toast.LENGTH_SHORT).show();
+                OutputStream stream = getContentResolver().openOutputStream(uri);
+                if (stream == null) {
+                    throw new IOException("Cannot write " + uri);
+                }
+                out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                mainHandler.post(() -> reportArchiveFailure("Backup", e));
+                return;
             }
-        } else {
-            Toast.makeText(this, "Permission not granted. Please allow microphone access.", Toast.LENGTH_SHORT).show();
+            app.getNotesArchive().export(username, out, new DataCallback<Integer>() {
+                @Override
+                public void onSuccess(Integer count) {
+                    speech.speak(SPEECH_OWNER, count + " notes backed up.", TextToSpeech.QUEUE_FLUSH);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    reportArchiveFailure("Backup", e);
+                }
+            });
+        });
+    }
+
+    // Writes the file's notes back to the server in batches; the list picks them up as they sync.
+    private void restoreNotes(Uri uri) {
+        speech.speak(SPEECH_OWNER, "Restoring your notes.", TextToSpeech.QUEUE_FLUSH);
+        AudioLoginApp app = AudioLoginApp.from(this);
+        app.getDiskExecutor().execute(() -> {
+            Reader in;
+            try {
+                InputStream stream = getContentResolver().openInputStream(uri);
+                if (stream == null) {
+                    throw new IOException("Cannot read " + uri);
+                }
+                in = new InputStreamReader(stream, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                mainHandler.post(() -> reportArchiveFailure("Restore", e));
+                return;
+            }
+            app.getNotesArchive().importInto(username, in, new DataCallback<Integer>() {
+                @Override
+                public void onSuccess(Integer count) {
+                    speech.speak(SPEECH_OWNER, count + " notes restored.", TextToSpeech.QUEUE_FLUSH);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    if (e instanceof GeneralSecurityException) {
+                        // Checked before anything was sent.
+                        Log.w("NotesActivity", "Restore refused", e);
+                        speech.speak(SPEECH_OWNER, "This backup is from another account or is damaged. "
+                                + "Nothing was restored.", TextToSpeech.QUEUE_FLUSH);
+                        return;
+                    }
+                    reportArchiveFailure("Restore", e);
+                }
+            });
+        });
+    }
+
+    private void reportArchiveFailure(String action, Exception e) {
+        Log.w("NotesActivity", action + " failed", e);
+        speech.speak(SPEECH_OWNER, action + " failed.", TextToSpeech.QUEUE_FLUSH);
+        Toast.makeText(this, action + " failed.", Toast.LENGTH_SHORT).show();
+    }
+
+    private void leaveSearch() {
+        searchResults = null;
+        leaveSearch.setEnabled(false);
+        noteReader.stop();
+        readingNote = null;
+        if (notesPager != null) {
+            notesAdapter.submitList(notesPager.getNotes());
         }
     }
 
-    private void saveNoteToFirebase(String note) {
+    // A dictation cut short by a crash or a killed process comes back into the edit field.
+    private void restoreDraft() {
+        if (username == null || username.isEmpty()) {
+            return;
+        }
+        AudioLoginApp.from(this).getDiskExecutor().execute(() -> {
+            String draft = drafts.load(username);
+            if (draft == null) {
+                return;
+            }
+            mainHandler.post(() -> {
+                if (dictation.isActive() || noteEditText.length() > 0) {
+                    return;
+                }
+                noteEditText.setText(draft);
+                speech.speak(SPEECH_OWNER, "You have an unsaved note. Tap the upper button to continue dictating it.",
+                        TextToSpeech.QUEUE_ADD);
+            });
+        });
+    }
+
+    private void saveNote(String note) {
         if (username != null && !username.isEmpty()) {
-            DatabaseReference dbRef = FirebaseDatabase.getInstance("https://audiologin-951fa-default-rtdb.asia-southeast1.firebasedatabase.app/")
-                    .getReference("users")
-                    .child(username)
-                    .child("notes");
+            // Lands in the local store at once; the sync queue uploads it when the network allows.
+            long saveSpan = latency.begin(Stage.NOTE_SAVE);
+            notesRepository.saveNote(username, note, new DataCallback<Note>() {
+                @Override
+                public void onSuccess(Note saved) {
+                    latency.end(Stage.NOTE_SAVE, saveSpan);
+                    drafts.clear(username);
+                    if (!dictation.isActive()) {
+                        noteEditText.setText("");
+                    }
+                    Toast.makeText(NotesActivity.this, "Note saved.", Toast.LENGTH_SHORT).show();
+                }
 
-            String noteId = dbRef.push().getKey();
-            if (noteId != null) {
-                dbRef.child(noteId).setValue(note)
-                        .addOnSuccessListener(aVoid -> Toast.makeText(NotesActivity.this, "Note saved successfully!", Toast.LENGTH_SHORT).show())
-                        .addOnFailureListener(e -> Toast.makeText(NotesActivity.this, "Failed to save note.", Toast.LENGTH_SHORT).show());
-            }
+                @Override
+                public void onFailure(Exception e) {
+                    latency.end(Stage.NOTE_SAVE, saveSpan);
+                    Toast.makeText(NotesActivity.this, "Failed to save note.", Toast.LENGTH_SHORT).show();
+                }
+            });
         } else {
             Toast.makeText(this, "User not logged in.", Toast.LENGTH_SHORT).show();
         }
@@ -149,45 +634,186 @@ public class  NotesActivity extends AppCompatActivity {
 
     private void loadNotesFromFirebase() {
         if (username != null && !username.isEmpty()) {
-            DatabaseReference dbRef = FirebaseDatabase.getInstance("https://audiologin-951fa-default-rtdb.asia-southeast1.firebasedatabase.app/")
-                    .getReference("users")
-                    .child(username)
-                    .child("notes");
+            long startedAt = SystemClock.elapsedRealtime();
+            long localSpan = latency.begin(Stage.NOTES_LOCAL_PAGE);
+            long firstPageSpan = latency.begin(Stage.NOTES_FIRST_PAGE);
+            // Show the cached notes straight away; the pager replaces them once the server answers.
+            notesRepository.loadLocalPage(username, PAGE_SIZE, new DataCallback<List<Note>>() {
+                @Override
+                public void onSuccess(List<Note> notes) {
+                    latency.end(Stage.NOTES_LOCAL_PAGE, localSpan);
+                    if (!firstPageShown && searchResults == null && !notes.isEmpty()) {
+                        Collections.reverse(notes);
+                        notesAdapter.submitList(notes);
+                        Log.d("NotesActivity", "Cached notes shown after " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+                    }
+                }
 
-            dbRef.addValueEventListener(new ValueEventListener() {
                 @Override
-                public void onDataChange(DataSnapshot dataSnapshot) {
-                    notesList.clear();
-                    for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                        String note = snapshot.getValue(String.class);
-                        if (note != null) {
-                            notesList.add(note);
+                public void onFailure(Exception e) {
+                    latency.end(Stage.NOTES_LOCAL_PAGE, localSpan);
+                }
+            });
+            notesPager = new NotesPager(notesRepository, username, PAGE_SIZE, KEEP_PAGES, new NotesPager.Listener() {
+                @Override
+                public void onNotesChanged() {
+                    if (!firstPageShown) {
+                        firstPageShown = true;
+                        latency.end(Stage.NOTES_FIRST_PAGE, firstPageSpan);
+                        long elapsed = SystemClock.elapsedRealtime() - startedAt;
+                        Log.d("NotesActivity", "First page of notes after " + elapsed + "ms");
+                        if (elapsed > FIRST_PAGE_BUDGET_MS) {
+                            Log.w("NotesActivity", "First page exceeded the " + FIRST_PAGE_BUDGET_MS + "ms budget");
                         }
+                        announceLatestNote(notesPager.getNotes());
                     }
-                    notesAdapter.notifyDataSetChanged();
+                    scheduleSubmit();
                 }
 
                 @Override
-                public void onCancelled(DatabaseError databaseError) {
+                public void onError(Exception e) {
                     Toast.makeText(NotesActivity.this, "Failed to load notes.", Toast.LENGTH_SHORT).show();
                 }
             });
+            boolean prefetched = AudioLoginApp.from(this).getNotesPrefetch().take(username, new DataCallback<List<Note>>() {
+                @Override
+                public void onSuccess(List<Note> newestPage) {
+                    notesPager.start(newestPage);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    notesPager.start();
+                }
+            });
+            if (!prefetched) {
+                notesPager.start();
+            }
+        }
+    }
+
+    private void announceLatestNote(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return;
+        }
+        speech.speak(SPEECH_OWNER, "Your latest note. " + notes.get(0).getText(), TextToSpeech.QUEUE_ADD, () -> {
+            if (loginVerifiedAt > 0) {
+                long elapsed = SystemClock.elapsedRealtime() - loginVerifiedAt;
+                Log.d("NotesActivity", "First note spoken " + elapsed + "ms after login");
+                latency.record(Stage.NOTES_FIRST_NOTE_SPOKEN, TimeUnit.MILLISECONDS.toNanos(elapsed));
+                if (elapsed > FIRST_NOTE_SPOKEN_BUDGET_MS) {
+                    Log.w("NotesActivity", "First note spoken exceeded the " + FIRST_NOTE_SPOKEN_BUDGET_MS + "ms budget");
+                }
+                loginVerifiedAt = 0;
+            }
+        }, null);
+    }
+
+    // The initial load fires one change per note; coalesce them into one submit per frame.
+    private void scheduleSubmit() {
+        if (!submitPending) {
+            submitPending = true;
+            mainHandler.post(() -> {
+                submitPending = false;
+                // Search results stay up until back is pressed.
+                if (searchResults == null) {
+                    notesAdapter.submitList(notesPager.getNotes());
+                }
+            });
         }
     }
 
+    // Tapping the note being read pauses or resumes it; any other note, or one read to the end,
+    // starts from its beginning.
     private void playNoteWithTTS(String note) {
-        if (textToSpeech.isSpeaking()) {
-            textToSpeech.stop();
+        if (note.equals(readingNote) && noteReader.getPosition() < noteReader.getChunkCount()) {
+            if (noteReader.isPlaying()) {
+                noteReader.pause();
+            } else {
+                noteReader.resume();
+            }
+            return;
+        }
+        speech.cancel(SPEECH_OWNER);
+        readingNote = note;
+        noteReader.read(note);
+    }
+
+    // Headset and media buttons move through the note being read a sentence at a time.
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (readingNote == null) {
+            return super.onKeyDown(keyCode, event);
+        }
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_MEDIA_NEXT:
+                noteReader.skip(1);
+                return true;
+            case KeyEvent.KEYCODE_MEDIA_PREVIOUS:
+                noteReader.skip(-1);
+                return true;
+            case KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE:
+            case KeyEvent.KEYCODE_HEADSETHOOK:
+                playNoteWithTTS(readingNote);
+                return true;
+            default:
+                return super.onKeyDown(keyCode, event);
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (notesPager != null) {
+            notesPager.resume();
         }
-        textToSpeech.speak(note, TextToSpeech.QUEUE_FLUSH, null, null);
+    }
+
+    @Override
+    protected void onStop() {
+        // Recording is not allowed in the background; the words so far stay in the draft.
+        if (dictation.isActive()) {
+            dictation.cancel();
+            voiceNoteButton.setText("Dictate Note");
+        } else {
+            recognizer.cancel();
+        }
+        // An audio note is kept up to here, finished and saved in the background.
+        if (audioRecorder.isRecording()) {
+            audioRecorder.stop();
+            recordAudioButton.setText("Record Audio Note");
+        }
+        stopClip();
+        if (notesPager != null) {
+            notesPager.pause();
+        }
+        super.onStop();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        AudioLoginApp.from(this).watchStalls("notes");
     }
 
     @Override
     protected void onDestroy() {
-        if (textToSpeech != null) {
-            textToSpeech.stop();
-            textToSpeech.shutdown();
+        if (noteReader == null) {
+            // Sent back to login from onCreate; nothing was set up.
+            super.onDestroy();
+            return;
+        }
+        if (notesPager != null) {
+            notesPager.stop();
         }
+        mainHandler.removeCallbacksAndMessages(null);
+        noteReader.stop();
+        dictation.cancel();
+        recognizer.release();
+        audioRecorder.setListener(null);
+        stopClip();
+        textExecutor.shutdownNow();
+        speech.cancel(SPEECH_OWNER);
         super.onDestroy();
     }
 }
@@ -1,51 +1,140 @@
 package com.example.audiologin;
 
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
-public class NotesAdapter extends RecyclerView.Adapter<NotesAdapter.NoteViewHolder> {
+// Lists are diffed on a background thread by ListAdapter; only changed rows are rebound.
+// Binding allocates nothing for a row seen before: each holder has one click listener that looks
+// the note up by position, and long notes get a text layout computed on textExecutor, cached by
+// note key. Short and long notes are separate view types, so a recycled row is re-measured
+// against text of about the size it last held.
+public class NotesAdapter extends ListAdapter<Note, NotesAdapter.NoteViewHolder> {
+    static final int VIEW_TYPE_SHORT = 0;
+    static final int VIEW_TYPE_LONG = 1;
+    // Roughly two lines on a phone; below this, laying out on the main thread is cheap.
+    private static final int LONG_NOTE_CHARS = 120;
+    private static final int PRECOMPUTED_CACHE_SIZE = 200;
+    private static final int SHORT_POOL_SIZE = 15;
+    private static final int LONG_POOL_SIZE = 5;
+
+    private static final DiffUtil.ItemCallback<Note> DIFF_CALLBACK = new DiffUtil.ItemCallback<Note>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+            return oldItem.getKey().equals(newItem.getKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+            return oldItem.getText().equals(newItem.getText());
+        }
+    };
 
-    private final ArrayList<String> notes;
     private final OnNoteClickListener noteClickListener;
+    private final Executor textExecutor;
+    private final Map<String, Long> stableIds = new HashMap<>();
+    private final LruCache<String, Precomputed> precomputed = new LruCache<>(PRECOMPUTED_CACHE_SIZE);
+    // Every row has the same text style, so the first holder's params serve them all.
+    private PrecomputedTextCompat.Params textParams;
 
-    public NotesAdapter(ArrayList<String> notes, OnNoteClickListener noteClickListener) {
-        this.notes = notes;
+    public NotesAdapter(OnNoteClickListener noteClickListener, Executor textExecutor) {
+        super(DIFF_CALLBACK);
         this.noteClickListener = noteClickListener;
+        this.textExecutor = textExecutor;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(VIEW_TYPE_SHORT, SHORT_POOL_SIZE);
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(VIEW_TYPE_LONG, LONG_POOL_SIZE);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).getText().length() > LONG_NOTE_CHARS ? VIEW_TYPE_LONG : VIEW_TYPE_SHORT;
     }
 
     @NonNull
     @Override
     public NoteViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(android.R.layout.simple_list_item_1, parent, false);
-        return new NoteViewHolder(view);
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_note_text, parent, false);
+        NoteViewHolder holder = new NoteViewHolder(view);
+        if (textParams == null) {
+            textParams = TextViewCompat.getTextMetricsParams(holder.textView);
+        }
+        view.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                noteClickListener.onNoteClick(getItem(position).getText());
+            }
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull NoteViewHolder holder, int position) {
-        String note = notes.get(position);
-        holder.textView.setText(note);
-        holder.itemView.setOnClickListener(v -> noteClickListener.onNoteClick(note));
+        Note note = getItem(position);
+        if (holder.getItemViewType() == VIEW_TYPE_LONG) {
+            // Measuring waits on the future only if the background layout has not finished yet.
+            holder.textView.setTextFuture(precompute(note));
+        } else {
+            holder.textView.setText(note.getText());
+        }
+    }
+
+    private Future<PrecomputedTextCompat> precompute(Note note) {
+        Precomputed cached = precomputed.get(note.getKey());
+        if (cached != null && cached.text.equals(note.getText())) {
+            return cached.layout;
+        }
+        Future<PrecomputedTextCompat> layout = PrecomputedTextCompat.getTextFuture(note.getText(), textParams, textExecutor);
+        precomputed.put(note.getKey(), new Precomputed(note.getText(), layout));
+        return layout;
     }
 
     @Override
-    public int getItemCount() {
-        return notes.size();
+    public long getItemId(int position) {
+        String key = getItem(position).getKey();
+        Long id = stableIds.get(key);
+        if (id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(key, id);
+        }
+        return id;
+    }
+
+    private static class Precomputed {
+        final String text;
+        final Future<PrecomputedTextCompat> layout;
+
+        Precomputed(String text, Future<PrecomputedTextCompat> layout) {
+            this.text = text;
+            this.layout = layout;
+        }
     }
 
     static class NoteViewHolder extends RecyclerView.ViewHolder {
-        TextView textView;
+        AppCompatTextView textView;
 
         NoteViewHolder(@NonNull View itemView) {
             super(itemView);
-            textView = itemView.findViewById(android.R.id.text1);
+            textView = itemView.findViewById(R.id.noteText);
         }
     }
 
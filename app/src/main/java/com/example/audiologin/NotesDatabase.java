@@ -0,0 +1,184 @@
+package com.example.audiologin;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// On-device source of truth: a notes cache per user, the sync outbox and dictation drafts.
+// LocalNotesStore calls block and belong on the disk executor. Outbox and draft writes arrive from
+// the main thread and are handed to the same executor, so they apply in the order they were made.
+public class NotesDatabase extends SQLiteOpenHelper implements LocalNotesStore, SyncQueue.Store, DraftStore {
+    private static final String NAME = "audiologin.db";
+    private static final int VERSION = 2;
+    private static final String TYPE_STRING = "s";
+    private static final String TYPE_BOOLEAN = "b";
+
+    private final Executor diskExecutor;
+
+    public NotesDatabase(Context context, Executor diskExecutor) {
+        super(context, NAME, null, VERSION);
+        this.diskExecutor = diskExecutor;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE notes (username TEXT NOT NULL, note_key TEXT NOT NULL, text TEXT NOT NULL, "
+                + "PRIMARY KEY (username, note_key))");
+        db.execSQL("CREATE TABLE outbox (seq INTEGER PRIMARY KEY AUTOINCREMENT, path TEXT NOT NULL UNIQUE, "
+                + "value TEXT NOT NULL, type TEXT NOT NULL)");
+        createDrafts(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createDrafts(db);
+        }
+    }
+
+    private static void createDrafts(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE drafts (username TEXT PRIMARY KEY, text TEXT NOT NULL)");
+    }
+
+    @Override
+    public List<Note> loadPage(String username, String beforeKey, int limit) {
+        String selection = beforeKey == null ? "username = ?" : "username = ? AND note_key < ?";
+        String[] args = beforeKey == null ? new String[]{username} : new String[]{username, beforeKey};
+        List<Note> notes = queryNotes(selection, args, "note_key DESC", String.valueOf(limit));
+        Collections.reverse(notes);
+        return notes;
+    }
+
+    @Override
+    public List<Note> loadRange(String username, String startKey, String endKey) {
+        return queryNotes("username = ? AND note_key >= ? AND note_key <= ?",
+                new String[]{username, startKey, endKey}, "note_key ASC", null);
+    }
+
+    private List<Note> queryNotes(String selection, String[] args, String orderBy, String limit) {
+        List<Note> notes = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query("notes", new String[]{"note_key", "text"},
+                selection, args, null, null, orderBy, limit)) {
+            while (cursor.moveToNext()) {
+                notes.add(new Note(cursor.getString(0), cursor.getString(1)));
+            }
+        }
+        return notes;
+    }
+
+    @Override
+    public void putAll(String username, List<Note> notes) {
+        if (notes.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Note note : notes) {
+                values.put("username", username);
+                values.put("note_key", note.getKey());
+                values.put("text", note.getText());
+                db.insertWithOnConflict("notes", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void remove(String username, String key) {
+        getWritableDatabase().delete("notes", "username = ? AND note_key = ?", new String[]{username, key});
+    }
+
+    // Read once at startup, before the queue takes new writes.
+    @Override
+    public Map<String, Object> loadPending() {
+        Map<String, Object> pending = new LinkedHashMap<>();
+        try (Cursor cursor = getReadableDatabase().query("outbox", new String[]{"path", "value", "type"},
+                null, null, null, null, "seq ASC")) {
+            while (cursor.moveToNext()) {
+                pending.put(cursor.getString(0), decode(cursor.getString(1), cursor.getString(2)));
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public void put(Map<String, Object> values) {
+        Map<String, Object> copy = new LinkedHashMap<>(values);
+        diskExecutor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (Map.Entry<String, Object> entry : copy.entrySet()) {
+                    // Replacing deletes the old row, so an overwritten path moves to the back.
+                    ContentValues row = new ContentValues();
+                    row.put("path", entry.getKey());
+                    row.put("value", String.valueOf(entry.getValue()));
+                    row.put("type", entry.getValue() instanceof Boolean ? TYPE_BOOLEAN : TYPE_STRING);
+                    db.insertWithOnConflict("outbox", null, row, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    @Override
+    public void removeIfUnchanged(Map<String, Object> written) {
+        Map<String, Object> copy = new LinkedHashMap<>(written);
+        diskExecutor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (Map.Entry<String, Object> entry : copy.entrySet()) {
+                    db.delete("outbox", "path = ? AND value = ?",
+                            new String[]{entry.getKey(), String.valueOf(entry.getValue())});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    private static Object decode(String value, String type) {
+        return TYPE_BOOLEAN.equals(type) ? Boolean.valueOf(value) : value;
+    }
+
+    @Override
+    public String load(String username) {
+        try (Cursor cursor = getReadableDatabase().query("drafts", new String[]{"text"},
+                "username = ?", new String[]{username}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    @Override
+    public void save(String username, String text) {
+        diskExecutor.execute(() -> {
+            ContentValues row = new ContentValues();
+            row.put("username", username);
+            row.put("text", text);
+            getWritableDatabase().insertWithOnConflict("drafts", null, row, SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    @Override
+    public void clear(String username) {
+        diskExecutor.execute(() ->
+                getWritableDatabase().delete("drafts", "username = ?", new String[]{username}));
+    }
+}
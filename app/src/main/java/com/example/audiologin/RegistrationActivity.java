@@ -2,187 +2,202 @@ package com.example.audiologin;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.util.Log;
-import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.ViewConfiguration;
 import android.view.inputmethod.EditorInfo;
 import android.widget.EditText;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
-public class RegistrationActivity extends AppCompatActivity {
-    private TextToSpeech tts;
-    private GestureDetector gestureDetector;
-    private List<Integer> selectedSounds;
+public class RegistrationActivity extends AppCompatActivity implements RegistrationFlow.Listener {
+    private static final String SPEECH_OWNER = "registration";
+    private static final long PROMPT_GAP_MS = 150;
+    private static final long SELECTION_WINDOW_MS = 400;
+    private static final long REACTION_MS = 250;
+    private static final long MAX_TAP_MS = 200;
+    private static final long MAX_TAP_GAP_MS = 250;
+    private SpeechService speech;
+    private DoubleTapRecognizer doubleTap;
+    private final SelectionTimeline selection = new SelectionTimeline(SELECTION_WINDOW_MS, REACTION_MS);
     private EditText etUsername;
-    private int[] soundFiles = {R.raw.cat, R.raw.cow, R.raw.crow, R.raw.sheep};
     private String[] animalNames = {"Cat", "Cow", "Crow", "Sheep"};
     private int soundIndex = 0;
     private boolean isSelectingSounds = false;
-    private List<String> selectedAnimals;
-    private int maxSounds = 2;
-    private DatabaseReference dbRef;
+    private RegistrationFlow registrationFlow;
+    private SoundEngine soundEngine;
+    private PromptScheduler scheduler;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_registration);
 
-        dbRef = FirebaseDatabase.getInstance("https://audiologin-951fa-default-rtdb.asia-southeast1.firebasedatabase.app/").getReference("users");
+        AudioLoginApp app = AudioLoginApp.from(this);
+        registrationFlow = new RegistrationFlow(app.getUserRepository(), app.getCryptoService(),
+                app.getLatencyRecorder(), this);
 
+        soundEngine = AudioLoginApp.from(this).getSoundEngine();
+        scheduler = new PromptScheduler(new HandlerClock(), PROMPT_GAP_MS);
         etUsername = findViewById(R.id.etUsername);
-        selectedSounds = new ArrayList<>();
-        selectedAnimals = new ArrayList<>();
-
-        tts = new TextToSpeech(this, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                tts.setLanguage(Locale.US);
-                startRegistrationInstructions();
-            } else {
-                Log.e("TTS", "Initialization failed");
-            }
-        });
+
+        speech = AudioLoginApp.from(this).getSpeechService();
+        startRegistrationInstructions();
 
         etUsername.setOnEditorActionListener((v, actionId, event) -> {
             if (actionId == EditorInfo.IME_ACTION_DONE) {
-                if (tts != null && tts.isSpeaking()) {
-                    tts.stop();
-                }
+                speech.cancel(SPEECH_OWNER);
                 readUsernameAndStartSelection();
                 return true;
             }
             return false;
         });
 
-        gestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
-            @Override
-            public boolean onDoubleTap(MotionEvent e) {
-                if (isSelectingSounds && selectedSounds.size() < maxSounds) {
-                    addSoundSelection();
-                }
-                return true;
+        // Picks the animal being offered when the first tap landed, however long the gesture takes.
+        doubleTap = new DoubleTapRecognizer(MAX_TAP_MS, MAX_TAP_GAP_MS,
+                ViewConfiguration.get(this).getScaledDoubleTapSlop(), firstDownAt -> {
+            if (isSelectingSounds && registrationFlow.getSelectedCount() < RegistrationFlow.SELECTIONS) {
+                addSoundSelection(selection.resolve(firstDownAt));
             }
         });
     }
 
     private void startRegistrationInstructions() {
-        tts.speak("Please enter your username.", TextToSpeech.QUEUE_FLUSH, null, null);
+        speech.speak(SPEECH_OWNER, "Please enter your username.", TextToSpeech.QUEUE_FLUSH);
     }
 
     private void readUsernameAndStartSelection() {
         String username = etUsername.getText().toString().trim();
         if (!username.isEmpty()) {
-            dbRef.child(username).get().addOnCompleteListener(task -> {
-                if (task.isSuccessful() && task.getResult().exists()) {
-                    tts.speak("Username already exists. Please choose a different username.", TextToSpeech.QUEUE_FLUSH, null, null);
-                } else {
-                    isSelectingSounds = true;
-                    tts.speak("You entered " + username, TextToSpeech.QUEUE_ADD, null, null);
-                    tts.speak("Double-tap to select two animals as your audio password.", TextToSpeech.QUEUE_ADD, null, null);
-                    new Handler().postDelayed(this::announceAnimalsWithDelay, 5000);
-                }
-            }).addOnFailureListener(e -> {
-                tts.speak("An error occurred while checking the username. Please try again.", TextToSpeech.QUEUE_FLUSH, null, null);
-                Log.e("Firebase", "Error checking username existence", e);
-            });
+            registrationFlow.checkUsername(username);
         } else {
-            tts.speak("Please enter a valid username.", TextToSpeech.QUEUE_FLUSH, null, null);
+            speech.speak(SPEECH_OWNER, "Please enter a valid username.", TextToSpeech.QUEUE_FLUSH);
         }
     }
-    private void announceAnimalsWithDelay() {
-        soundIndex = 0;
-        Handler handler = new Handler();
-        Runnable announceNextAnimal = new Runnable() {
-            @Override
-            public void run() {
-                if (selectedSounds.size() < maxSounds) {
-                    if (soundIndex >= animalNames.length) {
-                        soundIndex = 0;
-                    }
-                    tts.speak(animalNames[soundIndex], TextToSpeech.QUEUE_FLUSH, null, null);
-                    soundIndex++;
-                    handler.postDelayed(this, 3000);
-                }
-            }
-        };
-        handler.post(announceNextAnimal);
+
+    @Override
+    public void onUsernameAvailable(String username) {
+        isSelectingSounds = true;
+        scheduler.cancel();
+        scheduler.then(speech.prompt(SPEECH_OWNER, "You entered " + username))
+                .then(speech.prompt(SPEECH_OWNER, "Double-tap to select two animals as your audio password."))
+                .then(done -> {
+                    announceAnimalsWithDelay();
+                    done.run();
+                });
     }
 
+    @Override
+    public void onUsernameTaken(String username) {
+        speech.speak(SPEECH_OWNER, "Username already exists. Please choose a different username.", TextToSpeech.QUEUE_FLUSH);
+    }
 
-    private void addSoundSelection() {
-        if (soundIndex > 0 && selectedSounds.size() < maxSounds) {
-            int selectedIndex = soundIndex - 1;
-            selectedSounds.add(soundFiles[selectedIndex]);
-            selectedAnimals.add(animalNames[selectedIndex]);
+    @Override
+    public void onCheckFailed(Exception e) {
+        speech.speak(SPEECH_OWNER, "An error occurred while checking the username. Please try again.", TextToSpeech.QUEUE_FLUSH);
+        Log.e("Firebase", "Error checking username existence", e);
+    }
 
-            int progress = selectedSounds.size();
-            tts.speak(progress == 1
-                    ? "First sound selected: " + animalNames[selectedIndex]
-                    : "Second sound selected: " + animalNames[selectedIndex], TextToSpeech.QUEUE_FLUSH, null, null);
+    private void announceAnimalsWithDelay() {
+        soundIndex = 0;
+        selection.clear();
+        announceNextAnimal();
+    }
 
-            if (progress == maxSounds) {
-                confirmSelectionAndCompleteRegistration();
-            }
+    // Clip, then its name, then a short window for the double-tap before the next animal.
+    private void announceNextAnimal() {
+        if (registrationFlow.getSelectedCount() >= RegistrationFlow.SELECTIONS) {
+            return;
         }
+        int index = soundIndex % animalNames.length;
+        String animal = animalNames[index];
+        scheduler.then(done -> {
+            soundIndex = index + 1;
+            soundEngine.play(animal, () -> selection.onStarted(animal, SystemClock.uptimeMillis()), done);
+        }).then(done -> speech.speak(SPEECH_OWNER, animal, TextToSpeech.QUEUE_ADD, () -> {
+            // The animal is on offer until its name has been said.
+            selection.onEnded(SystemClock.uptimeMillis());
+            done.run();
+        })).pause(SELECTION_WINDOW_MS)
+                .then(done -> {
+                    announceNextAnimal();
+                    done.run();
+                });
     }
 
-    private void confirmSelectionAndCompleteRegistration() {
-        String username = etUsername.getText().toString().trim();
-
-        if (!username.isEmpty()) {
-            try {
-                List<String> lowercaseAnimals = new ArrayList<>();
-                for (String animal : selectedAnimals) {
-                    lowercaseAnimals.add(animal.toLowerCase().trim()); // Convert to lowercase and trim spaces
-                }
-                String audioPassword = String.join(",", lowercaseAnimals);
-
-                String encryptedAudioPassword = CryptoHelper.encrypt(audioPassword);
 
-                dbRef.child(username).child("AudioLogin").setValue(encryptedAudioPassword)
-                        .addOnSuccessListener(aVoid -> Log.d("Firebase", "Audio password saved successfully!"))
-                        .addOnFailureListener(e -> Log.e("Firebase", "Failed to save audio password", e));
+    private void addSoundSelection(String selectedAnimal) {
+        if (selectedAnimal != null && registrationFlow.getSelectedCount() < RegistrationFlow.SELECTIONS) {
+            int progress = registrationFlow.select(selectedAnimal);
+            speech.speak(SPEECH_OWNER, progress == 1
+                    ? "First sound selected: " + selectedAnimal
+                    : "Second sound selected: " + selectedAnimal, TextToSpeech.QUEUE_FLUSH);
 
-                String animal1 = selectedAnimals.get(0);
-                String animal2 = selectedAnimals.get(1);
-                tts.speak("You have selected " + animal1 + " and " + animal2 + " as your password.", TextToSpeech.QUEUE_FLUSH, null, null);
-
-                tts.speak("Registration complete. Redirecting to login.", TextToSpeech.QUEUE_ADD, null, null);
+            if (progress == RegistrationFlow.SELECTIONS) {
+                scheduler.cancel();
+                soundEngine.stop();
+                selection.clear();
+                List<String> selected = registrationFlow.getSelected();
+                speech.speak(SPEECH_OWNER, "You have selected " + selected.get(0) + " and " + selected.get(1) + " as your password.", TextToSpeech.QUEUE_FLUSH);
+            }
+        }
+    }
 
-                long ttsDuration = 7000;
-                new Handler().postDelayed(() -> {
+    @Override
+    public void onRegistered(String username) {
+        scheduler.then(speech.prompt(SPEECH_OWNER, "Registration complete. Redirecting to login."))
+                .then(done -> {
                     startActivity(new Intent(RegistrationActivity.this, LoginActivity.class));
                     finish();
-                }, ttsDuration);
+                    done.run();
+                });
+    }
 
-            } catch (Exception e) {
-                tts.speak("Error during encryption. Please try again.", TextToSpeech.QUEUE_FLUSH, null, null);
-                Log.e("Encryption", "Error encrypting audio password", e);
-            }
-        } else {
-            tts.speak("Failed to save data. Username is empty.", TextToSpeech.QUEUE_FLUSH, null, null);
-        }
+    @Override
+    public void onEncryptFailed(Exception e) {
+        speech.speak(SPEECH_OWNER, "Error during encryption. Please try again.", TextToSpeech.QUEUE_FLUSH);
+        Log.e("Encryption", "Error encrypting audio password", e);
+    }
+
+    @Override
+    public void onSaveFailed(Exception e) {
+        Log.e("Firebase", "Failed to save audio password", e);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                doubleTap.onDown(event.getEventTime(), event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                doubleTap.onMove(event.getEventTime(), event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+                doubleTap.onUp(event.getEventTime());
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                doubleTap.onCancel();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
     }
+    @Override
+    protected void onResume() {
+        super.onResume();
+        AudioLoginApp.from(this).watchStalls("registration");
+    }
+
     @Override
     protected void onDestroy() {
-        if (tts != null) {
-            tts.stop();
-            tts.shutdown();
-        }
+        scheduler.cancel();
+        soundEngine.stop();
+        speech.cancel(SPEECH_OWNER);
         super.onDestroy();
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.example.audiologin;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioAttributes;
+import android.media.MediaMetadataRetriever;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Decodes the animal clips once into a SoundPool and plays them from memory.
+// Only one clip is audible at a time so native streams never pile up. load() does the decoding
+// and may run on a start-up thread; a clip played before it is ready starts once it has loaded.
+public class SoundEngine {
+    public static final String[] ANIMALS = {"cat", "cow", "crow", "sheep"};
+    private static final long DEFAULT_CLIP_MS = 2000;
+
+    private final Context context;
+    private final SoundPool soundPool;
+    private final Map<String, Integer> soundIds = new HashMap<>();
+    private final Map<String, Long> durations = new HashMap<>();
+    private final Set<Integer> loadedIds = new HashSet<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable clipEnded = this::onClipEnded;
+    private int currentStreamId;
+    private String pendingAnimal;
+    private Runnable onClipStart;
+    private Runnable onClipEnd;
+
+    public SoundEngine(Context context) {
+        this.context = context.getApplicationContext();
+        AudioAttributes attributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_ASSISTANCE_ACCESSIBILITY)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build();
+        soundPool = new SoundPool.Builder()
+                .setMaxStreams(1)
+                .setAudioAttributes(attributes)
+                .build();
+
+        soundPool.setOnLoadCompleteListener((pool, sampleId, status) -> {
+            if (status != 0) {
+                return;
+            }
+            synchronized (this) {
+                loadedIds.add(sampleId);
+                Integer pendingId = pendingAnimal != null ? soundIds.get(pendingAnimal) : null;
+                if (pendingId != null && pendingId == sampleId) {
+                    String animal = pendingAnimal;
+                    Runnable onStart = onClipStart;
+                    Runnable onEnd = onClipEnd;
+                    pendingAnimal = null;
+                    onClipStart = null;
+                    onClipEnd = null;
+                    play(animal, onStart, onEnd);
+                }
+            }
+        });
+    }
+
+    public void load() {
+        for (String animal : ANIMALS) {
+            int resId = getSoundResourceId(animal);
+            long duration = readDuration(context, resId);
+            synchronized (this) {
+                durations.put(animal, duration);
+                soundIds.put(animal, soundPool.load(context, resId, 1));
+            }
+        }
+    }
+
+    private static long readDuration(Context context, int resId) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try (AssetFileDescriptor afd = context.getResources().openRawResourceFd(resId)) {
+            retriever.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration != null ? Long.parseLong(duration) : DEFAULT_CLIP_MS;
+        } catch (Exception e) {
+            Log.e("SoundEngine", "Could not read clip duration", e);
+            return DEFAULT_CLIP_MS;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    public static int getSoundResourceId(String animal) {
+        switch (animal.toLowerCase()) {
+            case "cat":
+                return R.raw.cat;
+            case "cow":
+                return R.raw.cow;
+            case "crow":
+                return R.raw.crow;
+            case "sheep":
+                return R.raw.sheep;
+            default:
+                return -1;
+        }
+    }
+
+    public synchronized boolean isLoaded(String animal) {
+        Integer soundId = soundIds.get(animal.toLowerCase());
+        return soundId != null && loadedIds.contains(soundId);
+    }
+
+    public synchronized long getDuration(String animal) {
+        Long duration = durations.get(animal.toLowerCase());
+        return duration != null ? duration : DEFAULT_CLIP_MS;
+    }
+
+    public int play(String animal) {
+        return play(animal, null);
+    }
+
+    // Returns the stream id, or 0 if the clip is unknown or not loaded yet (it then starts once loaded).
+    // onEnd runs on the main thread when the clip finishes or is cut off by stop() or another play().
+    public int play(String animal, Runnable onEnd) {
+        return play(animal, null, onEnd);
+    }
+
+    // onStart runs the moment the clip is handed to the SoundPool (on the main thread for a clip that
+    // was still loading), so callers can timestamp what the user hears. It never runs for a clip
+    // that does not play.
+    public synchronized int play(String animal, Runnable onStart, Runnable onEnd) {
+        String key = animal.toLowerCase();
+        Integer soundId = soundIds.get(key);
+        stop();
+        if (soundId == null && getSoundResourceId(key) == -1) {
+            if (onEnd != null) {
+                mainHandler.post(onEnd);
+            }
+            return 0;
+        }
+        onClipEnd = onEnd;
+        if (soundId == null || !loadedIds.contains(soundId)) {
+            pendingAnimal = key;
+            onClipStart = onStart;
+            return 0;
+        }
+        currentStreamId = soundPool.play(soundId, 1f, 1f, 1, 0, 1f);
+        mainHandler.postDelayed(clipEnded, getDuration(key));
+        if (onStart != null) {
+            onStart.run();
+        }
+        return currentStreamId;
+    }
+
+    public PromptScheduler.Step clip(String animal) {
+        return done -> play(animal, done);
+    }
+
+    public synchronized void stop() {
+        pendingAnimal = null;
+        onClipStart = null;
+        if (currentStreamId != 0) {
+            soundPool.stop(currentStreamId);
+            currentStreamId = 0;
+        }
+        mainHandler.removeCallbacks(clipEnded);
+        onClipEnded();
+    }
+
+    private synchronized void onClipEnded() {
+        currentStreamId = 0;
+        Runnable onEnd = onClipEnd;
+        onClipEnd = null;
+        if (onEnd != null) {
+            mainHandler.post(onEnd);
+        }
+    }
+
+    public synchronized void release() {
+        stop();
+        soundPool.release();
+        loadedIds.clear();
+    }
+}
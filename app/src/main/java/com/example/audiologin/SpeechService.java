@@ -0,0 +1,233 @@
+package com.example.audiologin;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+// One TextToSpeech engine for the whole app. Screens speak under an owner tag so
+// they can flush or cancel their own prompts without cutting off another screen.
+// The engine is given the next utterance while the current one plays, so it can synthesize ahead
+// and consecutive prompts follow without a gap; all calls must be made on the main thread.
+// The engine itself is built by start(), which may run on a start-up thread; prompts spoken
+// before it is ready wait in the queue.
+public class SpeechService {
+    private static final String TAG = "SpeechService";
+    private static final int ENGINE_LOOKAHEAD = 2;
+
+    private final Context context;
+    private volatile TextToSpeech tts;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CompletableFuture<Boolean> ready = new CompletableFuture<>();
+    private final ArrayDeque<Utterance> queue = new ArrayDeque<>();
+    // Handed to the engine, oldest (the one playing) first.
+    private final ArrayDeque<Utterance> speaking = new ArrayDeque<>();
+    private final LatencyRecorder latency;
+    private int nextId;
+
+    private static class Utterance {
+        final String id;
+        final String owner;
+        final String text;
+        final Runnable onStart;
+        final Runnable onDone;
+        final long queuedAt = SystemClock.elapsedRealtime();
+
+        Utterance(String id, String owner, String text, Runnable onStart, Runnable onDone) {
+            this.id = id;
+            this.owner = owner;
+            this.text = text;
+            this.onStart = onStart;
+            this.onDone = onDone;
+        }
+    }
+
+    public SpeechService(Context context, LatencyRecorder latency) {
+        this.context = context.getApplicationContext();
+        this.latency = latency;
+    }
+
+    public void start() {
+        long createdAt = SystemClock.elapsedRealtime();
+        long initSpan = latency.begin(Stage.TTS_INIT);
+        tts = new TextToSpeech(context, status -> {
+            if (status == TextToSpeech.SUCCESS) {
+                tts.setLanguage(Locale.US);
+                tts.setOnUtteranceProgressListener(new ProgressListener());
+                latency.end(Stage.TTS_INIT, initSpan);
+                Log.d(TAG, "TTS ready after " + (SystemClock.elapsedRealtime() - createdAt) + "ms");
+                ready.complete(true);
+                mainHandler.post(this::speakNext);
+            } else {
+                Log.e(TAG, "Initialization failed");
+                ready.complete(false);
+                mainHandler.post(this::speakNext);
+            }
+        });
+    }
+
+    public CompletableFuture<Boolean> ready() {
+        return ready;
+    }
+
+    public void whenReady(Runnable action) {
+        ready.thenAccept(success -> {
+            if (success) {
+                mainHandler.post(action);
+            }
+        });
+    }
+
+    public void speak(String owner, String text, int queueMode) {
+        speak(owner, text, queueMode, null);
+    }
+
+    // onDone also runs if the utterance is cancelled or fails, so callers waiting on it never stall.
+    public void speak(String owner, String text, int queueMode, Runnable onDone) {
+        speak(owner, text, queueMode, null, onDone);
+    }
+
+    // onStart runs when the engine starts saying the text, and not at all if it never does.
+    public void speak(String owner, String text, int queueMode, Runnable onStart, Runnable onDone) {
+        if (queueMode == TextToSpeech.QUEUE_FLUSH) {
+            cancel(owner);
+        }
+        queue.add(new Utterance(owner + "#" + nextId++, owner, text, onStart, onDone));
+        speakNext();
+    }
+
+    public PromptScheduler.Step prompt(String owner, String text) {
+        return done -> speak(owner, text, TextToSpeech.QUEUE_ADD, done);
+    }
+
+    public boolean isSpeaking(String owner) {
+        for (Utterance utterance : speaking) {
+            if (utterance.owner.equals(owner)) {
+                return true;
+            }
+        }
+        for (Utterance utterance : queue) {
+            if (utterance.owner.equals(owner)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void cancel(String owner) {
+        Iterator<Utterance> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Utterance utterance = iterator.next();
+            if (utterance.owner.equals(owner)) {
+                iterator.remove();
+                notifyDone(utterance);
+            }
+        }
+        boolean handedOver = false;
+        for (Utterance utterance : speaking) {
+            handedOver |= utterance.owner.equals(owner);
+        }
+        if (handedOver) {
+            // stop() empties the engine; other owners' utterances go back to the front of the queue.
+            tts.stop();
+            Iterator<Utterance> newestFirst = speaking.descendingIterator();
+            while (newestFirst.hasNext()) {
+                Utterance utterance = newestFirst.next();
+                if (utterance.owner.equals(owner)) {
+                    notifyDone(utterance);
+                } else {
+                    queue.addFirst(utterance);
+                }
+            }
+            speaking.clear();
+            speakNext();
+        }
+    }
+
+    private void notifyDone(Utterance utterance) {
+        if (utterance.onDone != null) {
+            mainHandler.post(utterance.onDone);
+        }
+    }
+
+    private void speakNext() {
+        if (!ready.isDone()) {
+            return;
+        }
+        if (!ready.getNow(false)) {
+            while (!queue.isEmpty()) {
+                notifyDone(queue.poll());
+            }
+            return;
+        }
+        while (speaking.size() < ENGINE_LOOKAHEAD && !queue.isEmpty()) {
+            Utterance next = queue.poll();
+            speaking.add(next);
+            tts.speak(next.text, TextToSpeech.QUEUE_ADD, null, next.id);
+        }
+    }
+
+    private Utterance findSpeaking(String utteranceId) {
+        for (Utterance utterance : speaking) {
+            if (utterance.id.equals(utteranceId)) {
+                return utterance;
+            }
+        }
+        return null;
+    }
+
+    // The engine plays in order, so anything handed over before this utterance is finished too.
+    private void onUtteranceFinished(String utteranceId) {
+        if (findSpeaking(utteranceId) == null) {
+            return;
+        }
+        Utterance finished;
+        do {
+            finished = speaking.poll();
+            notifyDone(finished);
+        } while (!finished.id.equals(utteranceId));
+        speakNext();
+    }
+
+    private class ProgressListener extends UtteranceProgressListener {
+        @Override
+        public void onStart(String utteranceId) {
+            mainHandler.post(() -> {
+                Utterance started = findSpeaking(utteranceId);
+                if (started != null) {
+                    Log.d(TAG, utteranceId + " started after " + (SystemClock.elapsedRealtime() - started.queuedAt) + "ms");
+                    if (started.onStart != null) {
+                        started.onStart.run();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+            mainHandler.post(() -> onUtteranceFinished(utteranceId));
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+            mainHandler.post(() -> onUtteranceFinished(utteranceId));
+        }
+    }
+
+    public void shutdown() {
+        queue.clear();
+        speaking.clear();
+        if (tts != null) {
+            tts.stop();
+            tts.shutdown();
+        }
+    }
+}
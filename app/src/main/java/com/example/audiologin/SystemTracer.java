@@ -0,0 +1,22 @@
+package com.example.audiologin;
+
+import android.os.Build;
+import android.os.Trace;
+
+// Async trace sections, so a span can end on another thread or after a callback.
+// They need API 29; on older devices spans still feed the histograms but leave no trace.
+public class SystemTracer implements LatencyRecorder.Tracer {
+    @Override
+    public void beginAsync(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    @Override
+    public void endAsync(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+// JVM microbenchmarks for the plain-Java parts of the app.
+// Run with ./gradlew :benchmarks:jmh; results land in benchmarks/build/results/jmh/results.json,
+// and each run is also copied to benchmarks/results/history, outside build/ so that clean keeps
+// it, so runs can be compared with each other.
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    implementation(project(":core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
+
+val archiveJmhResults by tasks.registering(Copy::class) {
+    from(layout.buildDirectory.file("results/jmh/results.json"))
+    into(layout.projectDirectory.dir("results/history"))
+    rename { "results-${System.currentTimeMillis()}.json" }
+}
+
+tasks.named("jmh") {
+    finalizedBy(archiveJmhResults)
+}
@@ -0,0 +1,95 @@
+package com.example.audiologin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Throughput of the audio-password cipher: the original per-call implementation against the
+ * cached-key, per-thread-cipher CryptoHelper. Run with the gc profiler (the default in
+ * build.gradle.kts) to compare gc.alloc.rate.norm, the bytes allocated per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CryptoBenchmark {
+    private static final String PASSWORD = "cat,sheep";
+
+    private String encrypted;
+    private byte[] encryptedBytes;
+    private ByteBuffer encryptedBuffer;
+    private ByteBuffer decryptedBuffer;
+
+    @Setup
+    public void setUp() throws Exception {
+        encrypted = CryptoHelper.encrypt(PASSWORD);
+        encryptedBytes = Base64.getMimeDecoder().decode(encrypted);
+        encryptedBuffer = ByteBuffer.allocateDirect(encryptedBytes.length);
+        encryptedBuffer.put(encryptedBytes).flip();
+        decryptedBuffer = ByteBuffer.allocateDirect(encryptedBytes.length);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        return Legacy.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        return Legacy.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public String cachedEncrypt() throws Exception {
+        return CryptoHelper.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public String cachedDecrypt() throws Exception {
+        return CryptoHelper.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public byte[] cachedDecryptBytes() throws Exception {
+        return CryptoHelper.decrypt(encryptedBytes);
+    }
+
+    @Benchmark
+    public int cachedDecryptBuffer() throws Exception {
+        encryptedBuffer.rewind();
+        decryptedBuffer.clear();
+        return CryptoHelper.decrypt(encryptedBuffer, decryptedBuffer);
+    }
+
+    // The implementation before the cipher cache, with java.util.Base64 standing in for android.util.Base64.
+    static class Legacy {
+        private static final String ALGORITHM = "AES";
+        private static final String KEY = "MySecretKey12345";
+
+        static String encrypt(String data) throws Exception {
+            SecretKeySpec secretKey = new SecretKeySpec(KEY.getBytes(), ALGORITHM);
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            byte[] encryptedBytes = cipher.doFinal(data.getBytes());
+            return Base64.getMimeEncoder().encodeToString(encryptedBytes);
+        }
+
+        static String decrypt(String encryptedData) throws Exception {
+            SecretKeySpec secretKey = new SecretKeySpec(KEY.getBytes(), ALGORITHM);
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey);
+            byte[] decodedBytes = Base64.getMimeDecoder().decode(encryptedData);
+            return new String(cipher.doFinal(decodedBytes));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic stand-in for real dictated notes: short reminders mixed with longer run-on
+// dictation, built from everyday phrases the way speech recognition returns them.
+public class DictationCorpus {
+    private static final String[] OPENERS = {
+            "remember to", "don't forget to", "I need to", "tomorrow morning", "note to self",
+            "after lunch", "on Friday", "tonight"};
+    private static final String[] ACTIONS = {
+            "call the pharmacy about the refill", "pick up milk and bread", "email the landlord about the heater",
+            "book a doctor's appointment", "pay the electricity bill", "water the plants on the balcony",
+            "ask Sam about the weekend plans", "take the blue medication with food", "charge the hearing aid",
+            "check the bus times for the number twelve", "return the library audiobooks", "buy batteries for the radio"};
+    private static final String[] TAILS = {
+            "", "before five", "if it is not raining", "and write down the reference number",
+            "because they close early", "then let Alex know", "the same as last week"};
+
+    public static List<Note> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int sentences = random.nextInt(10) < 7 ? 1 : 2 + random.nextInt(5);
+            StringBuilder text = new StringBuilder();
+            for (int s = 0; s < sentences; s++) {
+                if (s > 0) {
+                    text.append(' ');
+                }
+                text.append(OPENERS[random.nextInt(OPENERS.length)]).append(' ')
+                        .append(ACTIONS[random.nextInt(ACTIONS.length)]);
+                String tail = TAILS[random.nextInt(TAILS.length)];
+                if (!tail.isEmpty()) {
+                    text.append(' ').append(tail);
+                }
+            }
+            notes.add(new Note(String.format("-N%07d", i), text.toString()));
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.audiologin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The small per-login steps: parsing the decrypted password and comparing it with the two
+ * selections, as LoginFlow does and as the old verifyLogin did, and shuffling the four animal
+ * names as LoginActivity.shuffleSounds does, against an in-place shuffle of the array.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoginBenchmark {
+    private static final String[] ANIMALS = {"cat", "cow", "crow", "sheep"};
+
+    private String decrypted;
+    private String encrypted;
+    private List<String> selected;
+    private List<String> typedSelections;
+    private String[] animalNames;
+    private Random random;
+
+    @Setup
+    public void setUp() throws Exception {
+        decrypted = "cow,sheep";
+        encrypted = CryptoHelper.encrypt(decrypted);
+        selected = Arrays.asList("cow", "sheep");
+        typedSelections = Arrays.asList("Cow ", " sheep");
+        animalNames = ANIMALS.clone();
+        random = new Random(42);
+    }
+
+    @Benchmark
+    public boolean parseAndCompare() {
+        return selected.equals(Arrays.asList(decrypted.split(",")));
+    }
+
+    // verifyLogin before LoginFlow: a new stored list, and each selection normalised into another list.
+    @Benchmark
+    public boolean legacyParseAndCompare() {
+        List<String> storedAnimals = new ArrayList<>();
+        Collections.addAll(storedAnimals, decrypted.split(","));
+        List<String> formatted = new ArrayList<>();
+        for (String animal : typedSelections) {
+            formatted.add(animal.toLowerCase().trim());
+        }
+        return formatted.equals(storedAnimals);
+    }
+
+    @Benchmark
+    public boolean decryptParseAndCompare() throws Exception {
+        return selected.equals(Arrays.asList(CryptoHelper.decrypt(encrypted).split(",")));
+    }
+
+    @Benchmark
+    public String[] shuffleViaList() {
+        List<String> animalList = new ArrayList<>();
+        Collections.addAll(animalList, animalNames);
+        Collections.shuffle(animalList);
+        animalList.toArray(animalNames);
+        return animalNames;
+    }
+
+    @Benchmark
+    public String[] shuffleInPlace() {
+        for (int i = animalNames.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String swap = animalNames[i];
+            animalNames[i] = animalNames[j];
+            animalNames[j] = swap;
+        }
+        return animalNames;
+    }
+}
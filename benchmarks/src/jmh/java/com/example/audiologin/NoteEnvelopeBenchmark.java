@@ -0,0 +1,127 @@
+package com.example.audiologin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Decode throughput of note envelopes over 10k generated dictated notes, one page at a time:
+ * openAll, which shares the cipher and buffers across the page, against opening each note with
+ * its own Cipher.getInstance and key spec. The stored sizes (plain JSON values vs envelopes) are
+ * printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class NoteEnvelopeBenchmark {
+    private static final int CORPUS = 10000;
+
+    @Param({"50"})
+    public int pageSize;
+
+    private NoteEnvelope envelope;
+    private byte[] keyBytes;
+    private List<List<Note>> pages;
+    private int nextPage;
+
+    @Setup
+    public void setUp() throws Exception {
+        envelope = NoteEnvelope.derive("alice", "cat,sheep");
+        keyBytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+                .generateSecret(new PBEKeySpec("cat,sheep".toCharArray(),
+                        "audiologin-notes:alice".getBytes(StandardCharsets.UTF_8), 20000, 256))
+                .getEncoded();
+
+        List<Note> corpus = DictationCorpus.generate(CORPUS, 42);
+        long plainBytes = 0;
+        long sealedBytes = 0;
+        List<Note> sealed = new ArrayList<>(corpus.size());
+        for (Note note : corpus) {
+            String value = envelope.seal(note.getText());
+            plainBytes += jsonSize(note.getText());
+            sealedBytes += jsonSize(value);
+            sealed.add(new Note(note.getKey(), value));
+        }
+        System.out.printf("%n%d notes: plain %d bytes, sealed %d bytes (%.1f%%)%n",
+                CORPUS, plainBytes, sealedBytes, 100.0 * sealedBytes / plainBytes);
+
+        pages = new ArrayList<>();
+        for (int i = 0; i < sealed.size(); i += pageSize) {
+            pages.add(sealed.subList(i, Math.min(sealed.size(), i + pageSize)));
+        }
+    }
+
+    // A JSON string value: the text plus quotes; envelope text never needs escaping.
+    private static long jsonSize(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length + 2;
+    }
+
+    private List<Note> nextPage() {
+        List<Note> page = pages.get(nextPage);
+        nextPage = (nextPage + 1) % pages.size();
+        return page;
+    }
+
+    @Benchmark
+    public List<Note> openAllPage() {
+        return envelope.openAll(nextPage());
+    }
+
+    @Benchmark
+    public List<Note> openEachWithOwnCipher() throws Exception {
+        List<Note> page = nextPage();
+        List<Note> notes = new ArrayList<>(page.size());
+        for (Note note : page) {
+            // What a per-note decode does without a shared cipher: fresh key spec and Cipher every time.
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            SecretKeySpec key = new SecretKeySpec(keyBytes, "AES");
+            byte[] payload = Base64.getDecoder().decode(note.getText().substring(NoteEnvelope.PREFIX.length()));
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, payload, 1, 12));
+            cipher.updateAAD("alice".getBytes(StandardCharsets.UTF_8));
+            byte[] body = cipher.doFinal(payload, 13, payload.length - 13);
+            notes.add(new Note(note.getKey(), inflateIfNeeded(payload[0], body)));
+        }
+        return notes;
+    }
+
+    private static String inflateIfNeeded(byte flags, byte[] body) throws Exception {
+        if ((flags & 1) == 0) {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(NoteEnvelope.DICTIONARY);
+            inflater.setInput(body);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 3);
+            byte[] chunk = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                out.write(chunk, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.audiologin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spoken search over {@code notes} dictated notes: a one-word query matching about a twelfth of
+ * them, a two-word query with a prefix, a query nothing matches, and keeping the index in step
+ * with one saved note. A frame is 16ms; a search should take a small fraction of that. The size
+ * of the postings is printed at setup, at four bytes per entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NotesIndexBenchmark {
+    private static final int RESULTS = 5;
+
+    @Param({"50000"})
+    public int notes;
+
+    private NotesIndex index;
+    private Note dictated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Note> corpus = DictationCorpus.generate(notes + 1, 42);
+        index = new NotesIndex();
+        index.putAll(corpus.subList(0, notes));
+        dictated = corpus.get(notes);
+        System.out.println("index: " + index.size() + " notes, " + index.getTermCount() + " terms, "
+                + index.getPostingCount() * 4 / 1024 + " KiB of postings");
+    }
+
+    @Benchmark
+    public List<Note> searchOneWord() {
+        return index.search("pharmacy", RESULTS);
+    }
+
+    @Benchmark
+    public List<Note> searchTwoWordsWithPrefix() {
+        return index.search("library audio", RESULTS);
+    }
+
+    @Benchmark
+    public List<Note> searchNoMatch() {
+        return index.search("passport", RESULTS);
+    }
+
+    // Removing the note again marks it dead; compaction is amortized into the measured calls.
+    @Benchmark
+    public int putAndRemove() {
+        index.put(dictated);
+        index.remove(dictated.getKey());
+        return index.size();
+    }
+}
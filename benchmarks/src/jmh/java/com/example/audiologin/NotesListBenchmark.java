@@ -0,0 +1,108 @@
+package com.example.audiologin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JVM side of a notes list update: inserting a dictated note into a NotesModel of
+ * {@code notes} entries and taking the snapshot handed to the adapter, diffing two snapshots by
+ * push id, and serializing a page for the outbox (sealed values keyed by their database path).
+ * DiffUtil itself is Android-only and is measured on device by NotesDiffBenchmark; keyedDiff is
+ * the linear merge its result reduces to for key-ordered lists.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NotesListBenchmark {
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"5000"})
+    public int notes;
+
+    private List<Note> corpus;
+    private NotesModel model;
+    private List<Note> before;
+    private List<Note> after;
+    private Note dictated;
+    private NoteEnvelope envelope;
+    private List<Note> page;
+
+    @Setup
+    public void setUp() throws Exception {
+        corpus = DictationCorpus.generate(notes + 1, 42);
+        model = new NotesModel();
+        for (int i = 0; i < notes; i++) {
+            model.put(corpus.get(i));
+        }
+        before = model.snapshot();
+        dictated = corpus.get(notes);
+        // One note added and one edited, as after a dictation and a re-read correction.
+        NotesModel changed = new NotesModel();
+        for (Note note : before) {
+            changed.put(note);
+        }
+        changed.put(dictated);
+        Note edited = before.get(notes / 2);
+        changed.put(new Note(edited.getKey(), edited.getText() + " please"));
+        after = changed.snapshot();
+
+        envelope = NoteEnvelope.derive("alice", "cat,sheep");
+        page = new ArrayList<>(corpus.subList(0, PAGE_SIZE));
+    }
+
+    // Removing the note again keeps the model at its size; a TreeMap remove is small next to the copy.
+    @Benchmark
+    public List<Note> insertAndSnapshot() {
+        model.put(dictated);
+        List<Note> snapshot = model.snapshot();
+        model.remove(dictated.getKey());
+        return snapshot;
+    }
+
+    @Benchmark
+    public int keyedDiff() {
+        int changes = 0;
+        int i = 0;
+        int j = 0;
+        while (i < before.size() && j < after.size()) {
+            Note old = before.get(i);
+            Note now = after.get(j);
+            int order = old.getKey().compareTo(now.getKey());
+            if (order == 0) {
+                if (!old.getText().equals(now.getText())) {
+                    changes++;
+                }
+                i++;
+                j++;
+            } else if (order < 0) {
+                changes++;
+                i++;
+            } else {
+                changes++;
+                j++;
+            }
+        }
+        return changes + (before.size() - i) + (after.size() - j);
+    }
+
+    @Benchmark
+    public Map<String, Object> serializePage() throws Exception {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Note note : page) {
+            values.put("users/alice/notes/" + note.getKey(), envelope.seal(note.getText()));
+        }
+        return values;
+    }
+}
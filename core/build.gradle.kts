@@ -0,0 +1,14 @@
+// Plain-Java logic shared by the app, the benchmarks and the load test. No Android dependencies,
+// so everything here runs and is tested on a stock JVM: ./gradlew :core:test
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,31 @@
+package com.example.audiologin;
+
+// An audio note is an ordinary note whose text names its clip, e.g.
+// "Audio note, 42 seconds. [audio:-Nx...]", so it syncs, archives and lists like any other note.
+// Tapping it plays the clip instead of reading the text.
+public class AudioNote {
+    private static final String MARKER = "[audio:";
+
+    private AudioNote() {
+    }
+
+    public static String text(String clipId, long durationMs) {
+        long seconds = Math.max(1, Math.round(durationMs / 1000.0));
+        return "Audio note, " + seconds + (seconds == 1 ? " second. " : " seconds. ") + MARKER + clipId + "]";
+    }
+
+    // Null for a note that is not an audio note.
+    public static String clipIdOf(String text) {
+        int start = text.lastIndexOf(MARKER);
+        if (start < 0 || !text.endsWith("]")) {
+            return null;
+        }
+        String clipId = text.substring(start + MARKER.length(), text.length() - 1);
+        return clipId.isEmpty() || clipId.indexOf('/') >= 0 ? null : clipId;
+    }
+
+    // For a constant bit rate encoding, such as the recorder's.
+    public static long durationMs(long length, int bitRate) {
+        return length * 8 * 1000 / bitRate;
+    }
+}
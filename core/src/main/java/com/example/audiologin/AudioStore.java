@@ -0,0 +1,55 @@
+package com.example.audiologin;
+
+// Where recorded clips live, as numbered chunks: FileAudioStore on local disk, FirebaseAudioStore
+// on the server. Every chunk but the last is the same size, so a byte position maps straight to a
+// chunk. A clip is finished once its chunk count and length are known; until then readers only see
+// the chunks stored so far. Methods may be called from any thread.
+public interface AudioStore {
+
+    class Status {
+        private final int storedChunks;
+        private final int totalChunks;
+        private final long length;
+
+        public Status(int storedChunks, int totalChunks, long length) {
+            this.storedChunks = storedChunks;
+            this.totalChunks = totalChunks;
+            this.length = length;
+        }
+
+        // Chunks stored from 0 without a gap: where an interrupted upload picks up.
+        public int getStoredChunks() {
+            return storedChunks;
+        }
+
+        // -1 until the clip is finished.
+        public int getTotalChunks() {
+            return totalChunks;
+        }
+
+        // Bytes in the whole clip, -1 until it is finished.
+        public long getLength() {
+            return length;
+        }
+
+        public boolean isFinished() {
+            return totalChunks >= 0;
+        }
+
+        public boolean isComplete() {
+            return isFinished() && storedChunks >= totalChunks;
+        }
+    }
+
+    // Writing an index again replaces it. data may be kept until the callback runs.
+    void writeChunk(String username, String clipId, int index, byte[] data, int length, DataCallback<Void> callback);
+
+    // Null when there is no such chunk.
+    void readChunk(String username, String clipId, int index, DataCallback<byte[]> callback);
+
+    void finish(String username, String clipId, int totalChunks, long length, DataCallback<Void> callback);
+
+    void loadStatus(String username, String clipId, DataCallback<Status> callback);
+
+    void delete(String username, String clipId, DataCallback<Void> callback);
+}
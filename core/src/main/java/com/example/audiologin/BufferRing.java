@@ -0,0 +1,72 @@
+package com.example.audiologin;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// A fixed set of direct buffers passed between one producer and one consumer, such as the thread
+// reading the microphone and the one encoding it. Everything is allocated up front, so a long
+// recording costs no more memory than a short one. The producer waits when every buffer is full,
+// and each wait is counted. After close() the consumer drains what is left and then gets null.
+public class BufferRing {
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> filled;
+    private volatile boolean closed;
+    private volatile int producerWaits;
+
+    public BufferRing(int buffers, int bufferBytes) {
+        free = new ArrayBlockingQueue<>(buffers);
+        filled = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferBytes));
+        }
+    }
+
+    // A cleared buffer to fill; blocks while the consumer is behind.
+    public ByteBuffer takeFree() throws InterruptedException {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            producerWaits++;
+            buffer = free.take();
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    // Hands over a buffer filled between position and limit.
+    public void publish(ByteBuffer buffer) {
+        filled.add(buffer);
+    }
+
+    // Null once closed and drained, or when nothing arrives within timeoutMs.
+    public ByteBuffer takeFilled(long timeoutMs) throws InterruptedException {
+        ByteBuffer buffer = filled.poll();
+        if (buffer != null || closed) {
+            return buffer;
+        }
+        return filled.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Null when nothing is waiting.
+    public ByteBuffer takeFilledNow() {
+        return filled.poll();
+    }
+
+    public void release(ByteBuffer buffer) {
+        free.add(buffer);
+    }
+
+    // Called by the producer after its last publish.
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isDrained() {
+        return closed && filled.isEmpty();
+    }
+
+    public int getProducerWaits() {
+        return producerWaits;
+    }
+}
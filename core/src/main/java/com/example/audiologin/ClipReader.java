@@ -0,0 +1,144 @@
+package com.example.audiologin;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Random access to a stored clip for a player that pulls bytes as it goes. Only the chunk under
+// the read position, the one before it and the next `ahead` are fetched or kept, so playback
+// starts after one chunk arrives and never holds the whole clip. A chunk missing from primary,
+// such as a local copy deleted after its upload, is read from fallback. Blocking: call from the
+// player's thread, never from the thread the stores call back on.
+public class ClipReader {
+    private final AudioStore primary;
+    private final AudioStore fallback;
+    private final String username;
+    private final String clipId;
+    private final int chunkBytes;
+    private final int ahead;
+    private final long timeoutMs;
+    private final TreeMap<Integer, CompletableFuture<byte[]>> window = new TreeMap<>();
+    private int fetches;
+    private boolean closed;
+
+    public ClipReader(AudioStore primary, AudioStore fallback, String username, String clipId, int chunkBytes,
+                      int ahead, long timeoutMs) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.username = username;
+        this.clipId = clipId;
+        this.chunkBytes = chunkBytes;
+        this.ahead = ahead;
+        this.timeoutMs = timeoutMs;
+    }
+
+    // Bytes copied, at most up to the end of the chunk holding position; -1 past the end of the clip.
+    public synchronized int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (closed) {
+            throw new IOException("Clip reader closed");
+        }
+        int index = (int) (position / chunkBytes);
+        int within = (int) (position % chunkBytes);
+        byte[] data = chunk(index);
+        if (data == null || within >= data.length) {
+            return -1;
+        }
+        int n = Math.min(size, data.length - within);
+        System.arraycopy(data, within, buffer, offset, n);
+        return n;
+    }
+
+    public synchronized void close() {
+        closed = true;
+        window.clear();
+    }
+
+    // Chunk fetches started, prefetches included.
+    public synchronized int getFetches() {
+        return fetches;
+    }
+
+    public synchronized int getWindowSize() {
+        return window.size();
+    }
+
+    private byte[] chunk(int index) throws IOException {
+        Iterator<Map.Entry<Integer, CompletableFuture<byte[]>>> entries = window.entrySet().iterator();
+        while (entries.hasNext()) {
+            int kept = entries.next().getKey();
+            if (kept < index - 1 || kept > index + ahead) {
+                entries.remove();
+            }
+        }
+        CompletableFuture<byte[]> wanted = fetch(index);
+        for (int i = index + 1; i <= index + ahead; i++) {
+            fetch(i);
+        }
+        try {
+            byte[] data = wanted.get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (data == null) {
+                // Past the end: nothing beyond it is worth keeping.
+                window.tailMap(index, false).clear();
+            }
+            return data;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted reading chunk " + index, e);
+        } catch (ExecutionException | TimeoutException e) {
+            window.remove(index);
+            throw new IOException("Cannot read chunk " + index + " of clip " + clipId, e);
+        }
+    }
+
+    private CompletableFuture<byte[]> fetch(int index) {
+        CompletableFuture<byte[]> chunk = window.get(index);
+        if (chunk != null) {
+            return chunk;
+        }
+        CompletableFuture<byte[]> fetched = new CompletableFuture<>();
+        window.put(index, fetched);
+        fetches++;
+        primary.readChunk(username, clipId, index, new DataCallback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] data) {
+                if (data == null && fallback != null) {
+                    readFallback(index, fetched, null);
+                } else {
+                    fetched.complete(data);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (fallback != null) {
+                    readFallback(index, fetched, e);
+                } else {
+                    fetched.completeExceptionally(e);
+                }
+            }
+        });
+        return fetched;
+    }
+
+    private void readFallback(int index, CompletableFuture<byte[]> fetched, Exception primaryError) {
+        fallback.readChunk(username, clipId, index, new DataCallback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] data) {
+                fetched.complete(data);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (primaryError != null) {
+                    e.addSuppressed(primaryError);
+                }
+                fetched.completeExceptionally(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.audiologin;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Copies recorded clips from the local spool to the server one chunk at a time, so an upload
+// holds a single chunk however long the clip is. It can start while the clip is still being
+// recorded: call upload() again as each chunk is stored and it carries on from there. Every
+// start and every retry first asks the server how many chunks it already has, so an upload cut
+// off by a failure or a killed process resumes where it stopped instead of starting over.
+// Failures are retried with exponential backoff. Clips go one after another, in the order given.
+// Once the server has the whole clip the local copy is deleted. Call from the main thread.
+public class ClipUploader {
+
+    public interface Listener {
+        void onUploaded(String username, String clipId, long length);
+
+        // The local copy is unusable, e.g. a chunk went missing; the clip is skipped.
+        void onFailed(String username, String clipId, Exception e);
+    }
+
+    private static class Job {
+        final String username;
+        final String clipId;
+
+        Job(String username, String clipId) {
+            this.username = username;
+            this.clipId = clipId;
+        }
+
+        boolean is(String username, String clipId) {
+            return this.username.equals(username) && this.clipId.equals(clipId);
+        }
+    }
+
+    private final AudioStore local;
+    private final AudioStore remote;
+    private final Clock clock;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Listener listener;
+    private final Map<String, Job> queued = new LinkedHashMap<>();
+    private final Runnable retry = this::retry;
+    private Job current;
+    // The next chunk to send, or -1 until the server has been asked.
+    private int next = -1;
+    private boolean busy;
+    private long backoffMs;
+    private int uploadedChunks;
+
+    public ClipUploader(AudioStore local, AudioStore remote, Clock clock, long initialBackoffMs, long maxBackoffMs,
+                        Listener listener) {
+        this.local = local;
+        this.remote = remote;
+        this.clock = clock;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.listener = listener;
+    }
+
+    public void upload(String username, String clipId) {
+        if (current != null && current.is(username, clipId)) {
+            // A new chunk for the clip being sent; picked up now unless a step or a retry is pending.
+            if (!busy && backoffMs == 0) {
+                step();
+            }
+            return;
+        }
+        String key = username + "/" + clipId;
+        if (!queued.containsKey(key)) {
+            queued.put(key, new Job(username, clipId));
+        }
+        if (current == null) {
+            startNext();
+        }
+    }
+
+    // Stops waiting on a clip that will not be finished, e.g. one whose recording failed before a
+    // chunk was stored, so the clips queued behind it go ahead. Copies already made are kept.
+    public void drop(String username, String clipId) {
+        queued.remove(username + "/" + clipId);
+        if (current != null && current.is(username, clipId)) {
+            clock.removeCallbacks(retry);
+            busy = false;
+            backoffMs = 0;
+            startNext();
+        }
+    }
+
+    // Skips any backoff wait, e.g. when connectivity returns.
+    public void retryNow() {
+        if (current != null && !busy) {
+            clock.removeCallbacks(retry);
+            backoffMs = 0;
+            step();
+        }
+    }
+
+    public boolean isIdle() {
+        return current == null;
+    }
+
+    public int getQueuedCount() {
+        return queued.size() + (current != null ? 1 : 0);
+    }
+
+    // Chunks sent to the server by this instance.
+    public int getUploadedChunks() {
+        return uploadedChunks;
+    }
+
+    private void startNext() {
+        Iterator<Job> jobs = queued.values().iterator();
+        if (!jobs.hasNext()) {
+            current = null;
+            return;
+        }
+        current = jobs.next();
+        jobs.remove();
+        next = -1;
+        step();
+    }
+
+    private void step() {
+        Job job = current;
+        busy = true;
+        if (next < 0) {
+            remote.loadStatus(job.username, job.clipId, new DataCallback<AudioStore.Status>() {
+                @Override
+                public void onSuccess(AudioStore.Status status) {
+                    if (job != current) {
+                        return;
+                    }
+                    if (status.isComplete()) {
+                        complete(job, status.getLength());
+                    } else {
+                        next = status.getStoredChunks();
+                        step();
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    fail(job);
+                }
+            });
+            return;
+        }
+        int index = next;
+        local.readChunk(job.username, job.clipId, index, new DataCallback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] data) {
+                if (job != current) {
+                    return;
+                }
+                if (data == null) {
+                    checkLocalEnd(job, index);
+                    return;
+                }
+                remote.writeChunk(job.username, job.clipId, index, data, data.length, new DataCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void value) {
+                        if (job != current) {
+                            return;
+                        }
+                        backoffMs = 0;
+                        uploadedChunks++;
+                        next = index + 1;
+                        step();
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        fail(job);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                fail(job);
+            }
+        });
+    }
+
+    // No local chunk at index: either recording is still going, or every chunk has been sent.
+    private void checkLocalEnd(Job job, int index) {
+        local.loadStatus(job.username, job.clipId, new DataCallback<AudioStore.Status>() {
+            @Override
+            public void onSuccess(AudioStore.Status status) {
+                if (job != current) {
+                    return;
+                }
+                if (status.getStoredChunks() > index) {
+                    // Stored between the read and now.
+                    step();
+                } else if (!status.isFinished()) {
+                    busy = false;
+                } else if (index < status.getTotalChunks()) {
+                    listener.onFailed(job.username, job.clipId,
+                            new IOException("Chunk " + index + " of clip " + job.clipId + " is missing"));
+                    busy = false;
+                    startNext();
+                } else {
+                    finishRemote(job, status);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                fail(job);
+            }
+        });
+    }
+
+    private void finishRemote(Job job, AudioStore.Status status) {
+        remote.finish(job.username, job.clipId, status.getTotalChunks(), status.getLength(), new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                if (job == current) {
+                    complete(job, status.getLength());
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                fail(job);
+            }
+        });
+    }
+
+    private void complete(Job job, long length) {
+        busy = false;
+        backoffMs = 0;
+        local.delete(job.username, job.clipId, new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // Left for the next recovery pass, which finds the server copy complete.
+            }
+        });
+        listener.onUploaded(job.username, job.clipId, length);
+        startNext();
+    }
+
+    private void fail(Job job) {
+        if (job != current) {
+            return;
+        }
+        busy = false;
+        // Whatever happened, the server is asked again before the next chunk.
+        next = -1;
+        backoffMs = backoffMs == 0 ? initialBackoffMs : Math.min(backoffMs * 2, maxBackoffMs);
+        clock.postDelayed(retry, backoffMs);
+    }
+
+    private void retry() {
+        if (current != null && !busy) {
+            step();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.audiologin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+
+// Cuts an encoded stream into chunkBytes pieces as it is produced and writes each to the store.
+// Only the chunk being filled and up to maxPending written-but-unconfirmed ones are held, so memory
+// stays flat however long the recording runs; write() blocks while the store is that far behind.
+// Call write(), finish() and abandon() from one thread; the listener hears from the store's
+// callback thread. Each clip ends with onFinished or onAbandoned, so whoever is waiting on the clip,
+// such as the uploader, always hears how it ended. A clip whose chunk failed to store is closed
+// after the last chunk that did, or deleted if none did.
+public class ClipWriter {
+
+    public interface Listener {
+        void onChunkStored(int index);
+
+        void onFinished(int totalChunks, long length);
+
+        void onError(Exception e);
+
+        // Nothing was kept, or the clip could not be closed and is left for the next recovery pass.
+        void onAbandoned();
+    }
+
+    private final AudioStore store;
+    private final String username;
+    private final String clipId;
+    private final int chunkBytes;
+    private final int maxPending;
+    private final Semaphore pending;
+    private final Listener listener;
+    private byte[] chunk;
+    private int filled;
+    private int chunks;
+    private long length;
+    private volatile Exception failure;
+    // The lowest chunk index that failed to store.
+    private int firstFailed = Integer.MAX_VALUE;
+    private boolean closed;
+
+    public ClipWriter(AudioStore store, String username, String clipId, int chunkBytes, int maxPending,
+                      Listener listener) {
+        this.store = store;
+        this.username = username;
+        this.clipId = clipId;
+        this.chunkBytes = chunkBytes;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+        this.listener = listener;
+        chunk = new byte[chunkBytes];
+    }
+
+    public void write(byte[] data, int offset, int count) throws IOException, InterruptedException {
+        while (count > 0) {
+            int n = Math.min(count, chunkBytes - filled);
+            System.arraycopy(data, offset, chunk, filled, n);
+            advance(n);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    // Consumes the buffer from position to limit.
+    public void write(ByteBuffer data) throws IOException, InterruptedException {
+        while (data.hasRemaining()) {
+            int n = Math.min(data.remaining(), chunkBytes - filled);
+            data.get(chunk, filled, n);
+            advance(n);
+        }
+    }
+
+    private void advance(int n) throws IOException, InterruptedException {
+        filled += n;
+        length += n;
+        if (filled == chunkBytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException, InterruptedException {
+        if (failure != null) {
+            throw new IOException("Storing clip " + clipId + " failed", failure);
+        }
+        pending.acquire();
+        int index = chunks++;
+        store.writeChunk(username, clipId, index, chunk, filled, new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                pending.release();
+                listener.onChunkStored(index);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                synchronized (ClipWriter.this) {
+                    firstFailed = Math.min(firstFailed, index);
+                }
+                failure = e;
+                pending.release();
+                listener.onError(e);
+            }
+        });
+        // The store may still be reading the old array.
+        chunk = new byte[chunkBytes];
+        filled = 0;
+    }
+
+    // Stores the last, short chunk, waits for every chunk to land, then marks the clip finished.
+    public void finish() throws IOException, InterruptedException {
+        if (closed) {
+            return;
+        }
+        if (filled > 0 && failure == null) {
+            flush();
+        }
+        awaitPending();
+        if (failure != null) {
+            closeAtStored();
+            return;
+        }
+        closed = true;
+        int totalChunks = chunks;
+        long totalLength = length;
+        store.finish(username, clipId, totalChunks, totalLength, new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                listener.onFinished(totalChunks, totalLength);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onError(e);
+                listener.onAbandoned();
+            }
+        });
+    }
+
+    // Gives up on the stream, e.g. when the encoder fails: the chunk being filled is dropped and
+    // the clip is closed after the last chunk stored so far.
+    public void abandon() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        filled = 0;
+        awaitPending();
+        closeAtStored();
+    }
+
+    private void awaitPending() throws InterruptedException {
+        pending.acquire(maxPending);
+        pending.release(maxPending);
+    }
+
+    // Every chunk but the last is full, so the kept chunks are chunkBytes each.
+    private void closeAtStored() {
+        closed = true;
+        int kept;
+        synchronized (this) {
+            kept = Math.min(chunks, firstFailed);
+        }
+        DataCallback<Void> abandoned = new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                listener.onAbandoned();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onError(e);
+                listener.onAbandoned();
+            }
+        };
+        if (kept == 0) {
+            store.delete(username, clipId, abandoned);
+            return;
+        }
+        long keptLength = (long) kept * chunkBytes;
+        store.finish(username, clipId, kept, keptLength, new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                listener.onFinished(kept, keptLength);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                abandoned.onFailure(e);
+            }
+        });
+    }
+
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    public long getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.audiologin;
+
+public interface Clock {
+    long now();
+
+    void postDelayed(Runnable task, long delayMs);
+
+    void removeCallbacks(Runnable task);
+}
@@ -0,0 +1,199 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Fetches the credential leaf speculatively while the username is typed, so pressing Enter
+// usually finds it already here. Lookups start once the text has been still for debounceMs;
+// a lookup for a name the user has typed past is dropped unless someone is waiting on it.
+// Found credentials are cached for ttlMs in a small LRU; missing users are never cached, so a
+// fresh registration is seen at once. Names that cannot be a database key are never looked up:
+// Firebase throws for them, and no account can have one. Call from the main thread.
+public class CredentialPrefetcher {
+
+    public interface Metrics {
+        // savedMs is the fetch time the caller did not have to wait for (0 on a miss).
+        void onLookup(boolean hit, long savedMs);
+    }
+
+    private static class CachedCredential {
+        final String credential;
+        final long fetchedAt;
+        final long fetchMs;
+
+        CachedCredential(String credential, long fetchedAt, long fetchMs) {
+            this.credential = credential;
+            this.fetchedAt = fetchedAt;
+            this.fetchMs = fetchMs;
+        }
+    }
+
+    private static class InFlight {
+        final long startedAt;
+        final List<DataCallback<String>> waiters = new ArrayList<>();
+
+        InFlight(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+
+    private final UserRepository repository;
+    private final Clock clock;
+    private final long debounceMs;
+    private final long ttlMs;
+    private final Metrics metrics;
+    private final LinkedHashMap<String, CachedCredential> cache;
+    private final Map<String, InFlight> inFlight = new LinkedHashMap<>();
+    private final Runnable debounced = this::prefetchLatest;
+    private String latest;
+    private int hits;
+    private int misses;
+    private long savedMs;
+
+    public CredentialPrefetcher(UserRepository repository, Clock clock, long debounceMs, long ttlMs,
+                                int maxEntries, Metrics metrics) {
+        this.repository = repository;
+        this.clock = clock;
+        this.debounceMs = debounceMs;
+        this.ttlMs = ttlMs;
+        this.metrics = metrics;
+        this.cache = new LinkedHashMap<String, CachedCredential>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCredential> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public void onUsernameChanged(String username) {
+        latest = username;
+        clock.removeCallbacks(debounced);
+        if (isValidKey(username)) {
+            clock.postDelayed(debounced, debounceMs);
+        }
+    }
+
+    // Firebase keys are non-empty and may not contain '.', '#', '$', '[', ']' or '/'.
+    static boolean isValidKey(String username) {
+        if (username.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            if (c == '.' || c == '#' || c == '$' || c == '[' || c == ']' || c == '/' || c < 0x20 || c == 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void prefetchLatest() {
+        if (latest != null && fresh(latest) == null && !inFlight.containsKey(latest)) {
+            fetch(latest, null);
+        }
+    }
+
+    public void get(String username, DataCallback<String> callback) {
+        latest = username;
+        clock.removeCallbacks(debounced);
+        if (!isValidKey(username)) {
+            callback.onSuccess(null);
+            return;
+        }
+        CachedCredential entry = fresh(username);
+        if (entry != null) {
+            record(true, entry.fetchMs);
+            callback.onSuccess(entry.credential);
+            return;
+        }
+        InFlight pending = inFlight.get(username);
+        if (pending == null) {
+            record(false, 0);
+            fetch(username, callback);
+        } else {
+            record(true, clock.now() - pending.startedAt);
+            pending.waiters.add(callback);
+        }
+    }
+
+    public void invalidate(String username) {
+        cache.remove(username);
+    }
+
+    public int getHitCount() {
+        return hits;
+    }
+
+    public int getMissCount() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        int lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public long getSavedMs() {
+        return savedMs;
+    }
+
+    private CachedCredential fresh(String username) {
+        CachedCredential entry = cache.get(username);
+        if (entry != null && clock.now() - entry.fetchedAt > ttlMs) {
+            cache.remove(username);
+            return null;
+        }
+        return entry;
+    }
+
+    // The first waiter is attached before the lookup starts, since a repository may answer at once.
+    private void fetch(String username, DataCallback<String> waiter) {
+        InFlight request = new InFlight(clock.now());
+        if (waiter != null) {
+            request.waiters.add(waiter);
+        }
+        inFlight.put(username, request);
+        repository.loadCredential(username, new DataCallback<String>() {
+            @Override
+            public void onSuccess(String credential) {
+                if (inFlight.get(username) != request) {
+                    return;
+                }
+                inFlight.remove(username);
+                long now = clock.now();
+                // Stale speculative lookups are dropped; anything a caller waited for is kept.
+                if (credential != null && (username.equals(latest) || !request.waiters.isEmpty())) {
+                    cache.put(username, new CachedCredential(credential, now, now - request.startedAt));
+                }
+                for (DataCallback<String> waiter : request.waiters) {
+                    waiter.onSuccess(credential);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (inFlight.get(username) != request) {
+                    return;
+                }
+                inFlight.remove(username);
+                for (DataCallback<String> waiter : request.waiters) {
+                    waiter.onFailure(e);
+                }
+            }
+        });
+    }
+
+    private void record(boolean hit, long saved) {
+        if (hit) {
+            hits++;
+            savedMs += saved;
+        } else {
+            misses++;
+        }
+        if (metrics != null) {
+            metrics.onLookup(hit, saved);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.audiologin;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+// The key is built once and each thread keeps its own Cipher pair, since Cipher is not thread-safe
+// and getInstance is the expensive part of a call. The String API keeps the stored Base64 format;
+// the byte[] and ByteBuffer forms skip the text round trip.
+public class CryptoHelper {
+    private static final String ALGORITHM = "AES";
+    private static final String KEY = "MySecretKey12345";
+    private static final SecretKeySpec SECRET_KEY = new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+
+    private static final ThreadLocal<Cipher> ENCRYPT = ThreadLocal.withInitial(() -> newCipher(Cipher.ENCRYPT_MODE));
+    private static final ThreadLocal<Cipher> DECRYPT = ThreadLocal.withInitial(() -> newCipher(Cipher.DECRYPT_MODE));
+
+    private static Cipher newCipher(int mode) {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(mode, SECRET_KEY);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Builds the calling thread's Cipher pair; throws IllegalStateException if the key or
+    // provider is unusable.
+    static void warmUp() {
+        ENCRYPT.get();
+        DECRYPT.get();
+    }
+
+    public static String encrypt(String data) throws Exception {
+        return Base64.getEncoder().encodeToString(encrypt(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Values written by older builds are line-wrapped, which the MIME decoder accepts.
+    public static String decrypt(String encryptedData) throws Exception {
+        return new String(decrypt(Base64.getMimeDecoder().decode(encryptedData)), StandardCharsets.UTF_8);
+    }
+
+    public static byte[] encrypt(byte[] data) throws GeneralSecurityException {
+        return ENCRYPT.get().doFinal(data);
+    }
+
+    public static byte[] decrypt(byte[] encryptedData) throws GeneralSecurityException {
+        return DECRYPT.get().doFinal(encryptedData);
+    }
+
+    // Decrypts the remaining bytes of input into output and returns the number of bytes written.
+    public static int decrypt(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+        return DECRYPT.get().doFinal(input, output);
+    }
+
+    public static int encrypt(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+        return ENCRYPT.get().doFinal(input, output);
+    }
+
+    // Room needed in the output buffer to encrypt length bytes.
+    public static int encryptedSize(int length) {
+        return ENCRYPT.get().getOutputSize(length);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.audiologin;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Runs CryptoHelper on a small worker pool so the main thread never waits on a cipher.
+// Results are delivered on the callback executor, normally the main thread.
+public class CryptoService {
+    private static final Logger LOG = Logger.getLogger(CryptoService.class.getName());
+
+    private final Executor workers;
+    private final Executor callbackExecutor;
+
+    // A fresh fixed pool starts a new thread for each task until it is full, so one warm-up task
+    // per thread builds every worker's ciphers.
+    public CryptoService(int threads, Executor callbackExecutor) {
+        this(newPool(threads), threads, callbackExecutor);
+    }
+
+    // With Runnable::run for both, work happens inline on the caller's thread, as the load test wants.
+    public CryptoService(Executor workers, Executor callbackExecutor) {
+        this(workers, 1, callbackExecutor);
+    }
+
+    private CryptoService(Executor workers, int warmUps, Executor callbackExecutor) {
+        this.workers = workers;
+        this.callbackExecutor = callbackExecutor;
+        // Builds both ciphers now rather than on the first login, and reports a broken key or
+        // provider here instead of there.
+        for (int i = 0; i < warmUps; i++) {
+            workers.execute(() -> {
+                try {
+                    CryptoHelper.warmUp();
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Cipher warm-up failed on " + Thread.currentThread().getName(), e);
+                }
+            });
+        }
+    }
+
+    private static ExecutorService newPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "crypto-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private interface Operation<T> {
+        T run() throws Exception;
+    }
+
+    public void encrypt(String data, DataCallback<String> callback) {
+        submit(() -> CryptoHelper.encrypt(data), callback);
+    }
+
+    public void decrypt(String encryptedData, DataCallback<String> callback) {
+        submit(() -> CryptoHelper.decrypt(encryptedData), callback);
+    }
+
+    public void deriveNoteEnvelope(String username, String secret, DataCallback<NoteEnvelope> callback) {
+        submit(() -> NoteEnvelope.derive(username, secret), callback);
+    }
+
+    private <T> void submit(Operation<T> operation, DataCallback<T> callback) {
+        workers.execute(() -> {
+            try {
+                T result = operation.run();
+                callbackExecutor.execute(() -> callback.onSuccess(result));
+            } catch (Exception e) {
+                callbackExecutor.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    public void shutdown() {
+        if (workers instanceof ExecutorService) {
+            ((ExecutorService) workers).shutdown();
+        }
+    }
+
+    public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+        return !(workers instanceof ExecutorService)
+                || ((ExecutorService) workers).awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.audiologin;
+
+public interface DataCallback<T> {
+    void onSuccess(T value);
+
+    void onFailure(Exception e);
+}
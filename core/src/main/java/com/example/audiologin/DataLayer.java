@@ -0,0 +1,14 @@
+package com.example.audiologin;
+
+// Where the app's data lives: FirebaseDataLayer on a device, InMemoryDataLayer on a plain JVM.
+// The offline repositories and the sync queue are built on top of whichever one is plugged in.
+public interface DataLayer {
+    UserRepository getUserRepository();
+
+    NotesRepository getNotesRepository();
+
+    SyncQueue.RemoteWriter getRemoteWriter();
+
+    // Null when nobody is signed in.
+    void setCurrentUser(String username);
+}
@@ -0,0 +1,183 @@
+package com.example.audiologin;
+
+// Turns recognizer sessions into one dictation. An engine session ends at the first pause in
+// speech, so each result is appended and the next session starts straight away, until the user
+// stops or a whole session passes in silence. Partials are shown appended to what is already
+// committed. The draft is checkpointed at every result and at most every checkpointMs while
+// partials stream, so a killed process loses only the last few words. Call from the main thread.
+public class DictationSession {
+
+    public interface Listener {
+        // Committed text plus the current partial; what the edit field should show.
+        void onTranscript(String text);
+
+        // Dictation is over; text is everything committed, possibly empty. The draft is kept.
+        void onFinished(String text);
+
+        // The recognizer failed; what was committed is still in the draft.
+        void onError(Exception e);
+    }
+
+    private final Recognizer recognizer;
+    private final DraftStore drafts;
+    private final String username;
+    private final Clock clock;
+    private final long checkpointMs;
+    private final Listener listener;
+    private final Runnable checkpoint = this::checkpoint;
+    private final StringBuilder committed = new StringBuilder();
+    private String partial = "";
+    private boolean active;
+    private boolean stopping;
+    private boolean checkpointPending;
+    private int generation;
+    private int sessions;
+
+    public DictationSession(Recognizer recognizer, DraftStore drafts, String username, Clock clock,
+                            long checkpointMs, Listener listener) {
+        this.recognizer = recognizer;
+        this.drafts = drafts;
+        this.username = username;
+        this.clock = clock;
+        this.checkpointMs = checkpointMs;
+        this.listener = listener;
+    }
+
+    // Starts dictating after initialText, e.g. a draft restored from a previous run.
+    public void start(String initialText) {
+        if (active) {
+            return;
+        }
+        committed.setLength(0);
+        if (initialText != null) {
+            committed.append(initialText.trim());
+        }
+        partial = "";
+        sessions = 0;
+        active = true;
+        stopping = false;
+        listen();
+    }
+
+    // Finishes once the words being spoken are recognized.
+    public void stop() {
+        if (!active || stopping) {
+            return;
+        }
+        stopping = true;
+        recognizer.stop();
+    }
+
+    // Stops listening without waiting for a result; what was heard so far stays in the draft.
+    public void cancel() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        generation++;
+        recognizer.cancel();
+        flushCheckpoint();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // Recognizer sessions started since the last start(); more than one means dictation was chained.
+    public int getSessionCount() {
+        return sessions;
+    }
+
+    public String getText() {
+        return join(committed.toString(), partial);
+    }
+
+    private void listen() {
+        int started = ++generation;
+        sessions++;
+        recognizer.start(new Recognizer.Listener() {
+            @Override
+            public void onPartial(String text) {
+                if (started != generation) {
+                    return;
+                }
+                partial = text.trim();
+                listener.onTranscript(getText());
+                if (!checkpointPending) {
+                    checkpointPending = true;
+                    clock.postDelayed(checkpoint, checkpointMs);
+                }
+            }
+
+            @Override
+            public void onResult(String text) {
+                if (started != generation) {
+                    return;
+                }
+                String words = text.trim();
+                partial = "";
+                if (!words.isEmpty()) {
+                    if (committed.length() > 0) {
+                        committed.append(' ');
+                    }
+                    committed.append(words);
+                }
+                listener.onTranscript(getText());
+                flushCheckpoint();
+                if (stopping) {
+                    finish();
+                } else {
+                    listen();
+                }
+            }
+
+            @Override
+            public void onNoSpeech() {
+                if (started != generation) {
+                    return;
+                }
+                partial = "";
+                flushCheckpoint();
+                finish();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (started != generation) {
+                    return;
+                }
+                partial = "";
+                active = false;
+                generation++;
+                flushCheckpoint();
+                listener.onError(e);
+            }
+        });
+    }
+
+    private void finish() {
+        active = false;
+        generation++;
+        listener.onFinished(committed.toString());
+    }
+
+    private void checkpoint() {
+        checkpointPending = false;
+        String text = getText();
+        if (!text.isEmpty()) {
+            drafts.save(username, text);
+        }
+    }
+
+    private void flushCheckpoint() {
+        clock.removeCallbacks(checkpoint);
+        checkpoint();
+    }
+
+    private static String join(String committed, String partial) {
+        if (partial.isEmpty()) {
+            return committed;
+        }
+        return committed.isEmpty() ? partial : committed + " " + partial;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.audiologin;
+
+// Double-tap detection from raw touch events, reporting when the first finger went down. It fires on
+// the second touch rather than waiting for it to lift, with shorter limits than GestureDetector
+// (which allows 300ms between taps and adds a confirmation step for single taps). Movement beyond
+// slopPx turns a touch into a swipe. Times are the event times; call from the main thread.
+public class DoubleTapRecognizer {
+
+    public interface Listener {
+        void onDoubleTap(long firstDownAt);
+    }
+
+    private enum State {IDLE, FIRST_DOWN, FIRST_UP, SECOND_DOWN}
+
+    private final long maxTapMs;
+    private final long maxGapMs;
+    private final float slopPx;
+    private final Listener listener;
+    private State state = State.IDLE;
+    private long firstDownAt;
+    private long firstUpAt;
+    private float firstX;
+    private float firstY;
+
+    public DoubleTapRecognizer(long maxTapMs, long maxGapMs, float slopPx, Listener listener) {
+        this.maxTapMs = maxTapMs;
+        this.maxGapMs = maxGapMs;
+        this.slopPx = slopPx;
+        this.listener = listener;
+    }
+
+    public void onDown(long at, float x, float y) {
+        if (state == State.FIRST_UP && at - firstUpAt <= maxGapMs && isNear(x, y)) {
+            state = State.SECOND_DOWN;
+            listener.onDoubleTap(firstDownAt);
+            return;
+        }
+        state = State.FIRST_DOWN;
+        firstDownAt = at;
+        firstX = x;
+        firstY = y;
+    }
+
+    public void onMove(long at, float x, float y) {
+        if (state == State.FIRST_DOWN && !isNear(x, y)) {
+            state = State.IDLE;
+        }
+    }
+
+    public void onUp(long at) {
+        if (state == State.FIRST_DOWN && at - firstDownAt <= maxTapMs) {
+            state = State.FIRST_UP;
+            firstUpAt = at;
+        } else {
+            state = State.IDLE;
+        }
+    }
+
+    public void onCancel() {
+        state = State.IDLE;
+    }
+
+    private boolean isNear(float x, float y) {
+        float dx = x - firstX;
+        float dy = y - firstY;
+        return dx * dx + dy * dy <= slopPx * slopPx;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.audiologin;
+
+// Dictation in progress, kept on the device until it is saved as a note. save and clear return at
+// once; load blocks on disk, so keep it off the main thread.
+public interface DraftStore {
+    // The last draft saved for the user, or null.
+    String load(String username);
+
+    void save(String username, String text);
+
+    void clear(String username);
+}
@@ -0,0 +1,205 @@
+package com.example.audiologin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Keeps clips on local disk as root/{username}/{clipId}/{index}.chunk, plus a "finished" file
+// holding the chunk count and length, and an empty "noted" file once the app has saved the note
+// naming the clip. Each file is written to a temporary name and renamed, so a
+// killed process leaves whole chunks or none. The app spools recordings here before they are
+// uploaded; tests use it in place of the server. Disk work runs on io, callbacks on main.
+public class FileAudioStore implements AudioStore {
+    private static final String CHUNK_SUFFIX = ".chunk";
+    private static final String FINISHED = "finished";
+    private static final String NOTED = "noted";
+
+    private final File root;
+    private final Executor io;
+    private final Executor main;
+
+    public FileAudioStore(File root, Executor io, Executor main) {
+        this.root = root;
+        this.io = io;
+        this.main = main;
+    }
+
+    private File clipDir(String username, String clipId) {
+        return new File(new File(root, username), clipId);
+    }
+
+    private static File chunkFile(File dir, int index) {
+        return new File(dir, index + CHUNK_SUFFIX);
+    }
+
+    @Override
+    public void writeChunk(String username, String clipId, int index, byte[] data, int length,
+                           DataCallback<Void> callback) {
+        io.execute(() -> {
+            try {
+                File dir = clipDir(username, clipId);
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                writeAtomically(chunkFile(dir, index), data, length);
+                main.execute(() -> callback.onSuccess(null));
+            } catch (IOException e) {
+                main.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    @Override
+    public void readChunk(String username, String clipId, int index, DataCallback<byte[]> callback) {
+        io.execute(() -> {
+            try {
+                byte[] data = read(chunkFile(clipDir(username, clipId), index));
+                main.execute(() -> callback.onSuccess(data));
+            } catch (IOException e) {
+                main.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    @Override
+    public void finish(String username, String clipId, int totalChunks, long length, DataCallback<Void> callback) {
+        io.execute(() -> {
+            try {
+                File dir = clipDir(username, clipId);
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                byte[] summary = (totalChunks + " " + length).getBytes(StandardCharsets.UTF_8);
+                writeAtomically(new File(dir, FINISHED), summary, summary.length);
+                main.execute(() -> callback.onSuccess(null));
+            } catch (IOException e) {
+                main.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    @Override
+    public void loadStatus(String username, String clipId, DataCallback<Status> callback) {
+        io.execute(() -> {
+            try {
+                Status status = status(username, clipId);
+                main.execute(() -> callback.onSuccess(status));
+            } catch (IOException e) {
+                main.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    @Override
+    public void delete(String username, String clipId, DataCallback<Void> callback) {
+        io.execute(() -> {
+            File dir = clipDir(username, clipId);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            if (dir.exists() && !dir.delete()) {
+                IOException e = new IOException("Cannot delete " + dir);
+                main.execute(() -> callback.onFailure(e));
+                return;
+            }
+            main.execute(() -> callback.onSuccess(null));
+        });
+    }
+
+    // Records that the note naming the clip is saved, so a recovery pass does not save it again.
+    public void markNoted(String username, String clipId, DataCallback<Void> callback) {
+        io.execute(() -> {
+            try {
+                File dir = clipDir(username, clipId);
+                if (!dir.isDirectory()) {
+                    throw new IOException("No clip " + clipId);
+                }
+                writeAtomically(new File(dir, NOTED), new byte[0], 0);
+                main.execute(() -> callback.onSuccess(null));
+            } catch (IOException e) {
+                main.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    // Blocking, for the io thread.
+    public boolean isNoted(String username, String clipId) {
+        return new File(clipDir(username, clipId), NOTED).exists();
+    }
+
+    // Blocking, for the io thread: the status without the hop through callbacks.
+    public Status status(String username, String clipId) throws IOException {
+        File dir = clipDir(username, clipId);
+        int stored = 0;
+        while (chunkFile(dir, stored).exists()) {
+            stored++;
+        }
+        byte[] summary = read(new File(dir, FINISHED));
+        if (summary == null) {
+            return new Status(stored, -1, -1);
+        }
+        String[] parts = new String(summary, StandardCharsets.UTF_8).split(" ");
+        try {
+            return new Status(stored, Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IOException("Unreadable summary for clip " + clipId, e);
+        }
+    }
+
+    // Blocking, for the io thread: every clip kept for the user, finished or not.
+    public List<String> listClips(String username) {
+        List<String> clips = new ArrayList<>();
+        File[] dirs = new File(root, username).listFiles(File::isDirectory);
+        if (dirs != null) {
+            for (File dir : dirs) {
+                clips.add(dir.getName());
+            }
+        }
+        return clips;
+    }
+
+    private static void writeAtomically(File file, byte[] data, int length) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(data, 0, length);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    throw new IOException("Truncated " + file);
+                }
+                read += n;
+            }
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.audiologin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// A JSON-like tree standing in for the realtime database in JVM tests and load runs.
+// Values are String, Boolean, Number or nested Map nodes. Reads are metered in the bytes
+// the same subtree would cost as JSON on the wire.
+public class InMemoryBackend {
+
+    public interface ChildListener {
+        void onChildSet(String key, Object value);
+
+        void onChildRemoved(String key);
+    }
+
+    private static class Registration {
+        final String path;
+        final String startKey;
+        final ChildListener listener;
+
+        Registration(String path, String startKey, ChildListener listener) {
+            this.path = path;
+            this.startKey = startKey;
+            this.listener = listener;
+        }
+    }
+
+    private final TreeMap<String, Object> root = new TreeMap<>();
+    private final List<Registration> registrations = new ArrayList<>();
+    private long bytesRead;
+    private long reads;
+    private long writes;
+    private boolean failWrites;
+
+    public synchronized Object get(String path) {
+        Object value = find(path);
+        reads++;
+        bytesRead += sizeOf(value);
+        return copy(value);
+    }
+
+    // Children of path ordered by key, limited to [startKey, endKey] (either may be null)
+    // and to the last limitToLast entries when positive. Only the returned children are metered.
+    public synchronized NavigableMap<String, Object> query(String path, String startKey, boolean startInclusive,
+                                                           String endKey, boolean endInclusive, int limitToLast) {
+        TreeMap<String, Object> result = new TreeMap<>();
+        Object node = find(path);
+        reads++;
+        if (node instanceof TreeMap) {
+            @SuppressWarnings("unchecked")
+            NavigableMap<String, Object> children = (TreeMap<String, Object>) node;
+            if (startKey != null) {
+                children = children.tailMap(startKey, startInclusive);
+            }
+            if (endKey != null) {
+                children = children.headMap(endKey, endInclusive);
+            }
+            for (Map.Entry<String, Object> entry : children.descendingMap().entrySet()) {
+                if (limitToLast > 0 && result.size() >= limitToLast) {
+                    break;
+                }
+                result.put(entry.getKey(), copy(entry.getValue()));
+            }
+        }
+        bytesRead += sizeOf(result);
+        return result;
+    }
+
+    // Replays existing children at or after startKey, then reports direct child changes under path.
+    public synchronized Runnable addChildListener(String path, String startKey, ChildListener listener) {
+        Registration registration = new Registration(trim(path), startKey, listener);
+        registrations.add(registration);
+        Object node = find(path);
+        if (node instanceof TreeMap) {
+            @SuppressWarnings("unchecked")
+            NavigableMap<String, Object> children = (TreeMap<String, Object>) node;
+            if (startKey != null) {
+                children = children.tailMap(startKey, true);
+            }
+            for (Map.Entry<String, Object> entry : children.entrySet()) {
+                bytesRead += sizeOf(entry.getValue());
+                listener.onChildSet(entry.getKey(), copy(entry.getValue()));
+            }
+        }
+        return () -> removeRegistration(registration);
+    }
+
+    private synchronized void removeRegistration(Registration registration) {
+        registrations.remove(registration);
+    }
+
+    public synchronized int getListenerCount() {
+        return registrations.size();
+    }
+
+    // While set, writes throw as if the network were down.
+    public synchronized void setFailWrites(boolean failWrites) {
+        this.failWrites = failWrites;
+    }
+
+    public synchronized void set(String path, Object value) {
+        checkWritable();
+        writes++;
+        put(path, value);
+    }
+
+    // Applies every path in one step, like a multi-path updateChildren.
+    public synchronized void update(Map<String, Object> values) {
+        checkWritable();
+        writes++;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    public synchronized long getReads() {
+        return reads;
+    }
+
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    private void checkWritable() {
+        if (failWrites) {
+            throw new IllegalStateException("Backend unavailable");
+        }
+    }
+
+    private Object find(String path) {
+        Object node = root;
+        for (String segment : segments(path)) {
+            if (!(node instanceof Map)) {
+                return null;
+            }
+            node = ((Map<?, ?>) node).get(segment);
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(String path, Object value) {
+        String[] segments = segments(path);
+        TreeMap<String, Object> node = root;
+        for (int i = 0; i < segments.length - 1; i++) {
+            Object child = node.get(segments[i]);
+            if (!(child instanceof TreeMap)) {
+                if (value == null) {
+                    return;
+                }
+                child = new TreeMap<String, Object>();
+                node.put(segments[i], child);
+            }
+            node = (TreeMap<String, Object>) child;
+        }
+        String last = segments[segments.length - 1];
+        if (value == null) {
+            if (node.remove(last) == null) {
+                return;
+            }
+        } else {
+            node.put(last, copy(value));
+        }
+        notifyListeners(path, last, value);
+    }
+
+    private void notifyListeners(String path, String key, Object value) {
+        String trimmed = trim(path);
+        int slash = trimmed.lastIndexOf('/');
+        String parent = slash < 0 ? "" : trimmed.substring(0, slash);
+        for (Registration registration : new ArrayList<>(registrations)) {
+            if (!registration.path.equals(parent)
+                    || (registration.startKey != null && key.compareTo(registration.startKey) < 0)) {
+                continue;
+            }
+            if (value == null) {
+                registration.listener.onChildRemoved(key);
+            } else {
+                bytesRead += sizeOf(value);
+                registration.listener.onChildSet(key, copy(value));
+            }
+        }
+    }
+
+    private static String trim(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    private static String[] segments(String path) {
+        String trimmed = trim(path);
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+    }
+
+    private static Object copy(Object value) {
+        if (!(value instanceof Map)) {
+            return value;
+        }
+        TreeMap<String, Object> copy = new TreeMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            copy.put(String.valueOf(entry.getKey()), copy(entry.getValue()));
+        }
+        return copy;
+    }
+
+    static long sizeOf(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8).length + 2;
+        }
+        if (value instanceof Map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 4 + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        return String.valueOf(value).length();
+    }
+}
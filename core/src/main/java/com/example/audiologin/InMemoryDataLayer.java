@@ -0,0 +1,44 @@
+package com.example.audiologin;
+
+public class InMemoryDataLayer implements DataLayer {
+    private final InMemoryBackend backend;
+    private final InMemoryUserRepository userRepository;
+    private final InMemoryNotesRepository notesRepository;
+    private final InMemoryRemoteWriter remoteWriter;
+    private String currentUser;
+
+    public InMemoryDataLayer(InMemoryBackend backend) {
+        this.backend = backend;
+        userRepository = new InMemoryUserRepository(backend);
+        notesRepository = new InMemoryNotesRepository(backend);
+        remoteWriter = new InMemoryRemoteWriter(backend);
+    }
+
+    public InMemoryBackend getBackend() {
+        return backend;
+    }
+
+    @Override
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    @Override
+    public NotesRepository getNotesRepository() {
+        return notesRepository;
+    }
+
+    @Override
+    public SyncQueue.RemoteWriter getRemoteWriter() {
+        return remoteWriter;
+    }
+
+    @Override
+    public void setCurrentUser(String username) {
+        currentUser = username;
+    }
+
+    public String getCurrentUser() {
+        return currentUser;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.audiologin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Drafts kept in memory, for JVM tests.
+public class InMemoryDraftStore implements DraftStore {
+    private final Map<String, String> drafts = new HashMap<>();
+    private int saves;
+
+    @Override
+    public synchronized String load(String username) {
+        return drafts.get(username);
+    }
+
+    @Override
+    public synchronized void save(String username, String text) {
+        drafts.put(username, text);
+        saves++;
+    }
+
+    @Override
+    public synchronized void clear(String username) {
+        drafts.remove(username);
+    }
+
+    public synchronized int getSaveCount() {
+        return saves;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class InMemoryNotesRepository implements NotesRepository {
+    private final InMemoryBackend backend;
+
+    public InMemoryNotesRepository(InMemoryBackend backend) {
+        this.backend = backend;
+    }
+
+    private static String notesPath(String username) {
+        return "users/" + username + "/notes";
+    }
+
+    @Override
+    public void loadPage(String username, String beforeKey, int limit, DataCallback<List<Note>> callback) {
+        callback.onSuccess(toNotes(backend.query(notesPath(username), null, false, beforeKey, false, limit)));
+    }
+
+    @Override
+    public void loadRange(String username, String startKey, String endKey, DataCallback<List<Note>> callback) {
+        callback.onSuccess(toNotes(backend.query(notesPath(username), startKey, true, endKey, true, 0)));
+    }
+
+    @Override
+    public void saveNote(String username, String text, DataCallback<Note> callback) {
+        Note note = new Note(PushIds.generate(System.currentTimeMillis()), text);
+        try {
+            backend.set(notesPath(username) + "/" + note.getKey(), text);
+        } catch (IllegalStateException e) {
+            callback.onFailure(e);
+            return;
+        }
+        callback.onSuccess(note);
+    }
+
+    @Override
+    public Subscription observe(String username, String startKey, NotesListener listener) {
+        Runnable remove = backend.addChildListener(notesPath(username), startKey, new InMemoryBackend.ChildListener() {
+            @Override
+            public void onChildSet(String key, Object value) {
+                if (value instanceof String) {
+                    listener.onNoteChanged(new Note(key, (String) value));
+                }
+            }
+
+            @Override
+            public void onChildRemoved(String key) {
+                listener.onNoteRemoved(key);
+            }
+        });
+        return remove::run;
+    }
+
+    private static List<Note> toNotes(Map<String, Object> children) {
+        List<Note> notes = new ArrayList<>(children.size());
+        for (Map.Entry<String, Object> entry : children.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                notes.add(new Note(entry.getKey(), (String) entry.getValue()));
+            }
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class InMemoryNotesStore implements LocalNotesStore {
+    private final Map<String, TreeMap<String, String>> notesByUser = new HashMap<>();
+
+    @Override
+    public synchronized List<Note> loadPage(String username, String beforeKey, int limit) {
+        NavigableMap<String, String> notes = notes(username);
+        if (beforeKey != null) {
+            notes = notes.headMap(beforeKey, false);
+        }
+        List<Note> page = new ArrayList<>();
+        for (Map.Entry<String, String> entry : notes.descendingMap().entrySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(0, new Note(entry.getKey(), entry.getValue()));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<Note> loadRange(String username, String startKey, String endKey) {
+        List<Note> range = new ArrayList<>();
+        for (Map.Entry<String, String> entry : notes(username).subMap(startKey, true, endKey, true).entrySet()) {
+            range.add(new Note(entry.getKey(), entry.getValue()));
+        }
+        return range;
+    }
+
+    @Override
+    public synchronized void putAll(String username, List<Note> notes) {
+        TreeMap<String, String> stored = notes(username);
+        for (Note note : notes) {
+            stored.put(note.getKey(), note.getText());
+        }
+    }
+
+    @Override
+    public synchronized void remove(String username, String key) {
+        notes(username).remove(key);
+    }
+
+    private TreeMap<String, String> notes(String username) {
+        return notesByUser.computeIfAbsent(username, u -> new TreeMap<>());
+    }
+}
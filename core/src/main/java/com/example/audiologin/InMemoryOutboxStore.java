@@ -0,0 +1,36 @@
+package com.example.audiologin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Outbox kept in memory. Sharing one instance between two SyncQueues simulates a process restart.
+public class InMemoryOutboxStore implements SyncQueue.Store {
+    private final LinkedHashMap<String, Object> pending = new LinkedHashMap<>();
+
+    @Override
+    public synchronized Map<String, Object> loadPending() {
+        return new LinkedHashMap<>(pending);
+    }
+
+    @Override
+    public synchronized void put(Map<String, Object> values) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            pending.remove(entry.getKey());
+            pending.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void removeIfUnchanged(Map<String, Object> written) {
+        for (Map.Entry<String, Object> entry : written.entrySet()) {
+            if (Objects.equals(pending.get(entry.getKey()), entry.getValue())) {
+                pending.remove(entry.getKey());
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+}
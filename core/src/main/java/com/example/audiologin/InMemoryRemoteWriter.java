@@ -0,0 +1,22 @@
+package com.example.audiologin;
+
+import java.util.Map;
+
+public class InMemoryRemoteWriter implements SyncQueue.RemoteWriter {
+    private final InMemoryBackend backend;
+
+    public InMemoryRemoteWriter(InMemoryBackend backend) {
+        this.backend = backend;
+    }
+
+    @Override
+    public void write(Map<String, Object> updates, DataCallback<Void> callback) {
+        try {
+            backend.update(updates);
+        } catch (IllegalStateException e) {
+            callback.onFailure(e);
+            return;
+        }
+        callback.onSuccess(null);
+    }
+}
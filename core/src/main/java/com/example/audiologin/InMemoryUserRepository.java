@@ -0,0 +1,36 @@
+package com.example.audiologin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class InMemoryUserRepository implements UserRepository {
+    private final InMemoryBackend backend;
+
+    public InMemoryUserRepository(InMemoryBackend backend) {
+        this.backend = backend;
+    }
+
+    @Override
+    public void userExists(String username, DataCallback<Boolean> callback) {
+        if (backend.get("usernames/" + username) != null) {
+            callback.onSuccess(true);
+        } else {
+            callback.onSuccess(backend.get("users/" + username + "/AudioLogin") != null);
+        }
+    }
+
+    @Override
+    public void loadCredential(String username, DataCallback<String> callback) {
+        Object credential = backend.get("users/" + username + "/AudioLogin");
+        callback.onSuccess(credential instanceof String ? (String) credential : null);
+    }
+
+    @Override
+    public void register(String username, String encryptedAudioPassword, DataCallback<Void> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("users/" + username + "/AudioLogin", encryptedAudioPassword);
+        updates.put("usernames/" + username, true);
+        backend.update(updates);
+        callback.onSuccess(null);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.audiologin;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Keeps a NotesIndex in step with the local store. A user's index is built from the store the
+// first time it is asked for; after that every note written or removed through here, whether
+// saved on the device or arriving from a sync, updates it as well. The store only holds pages the
+// user has seen, so a user counts as complete once every server note has been copied in, e.g. by
+// OfflineNotesRepository.backfill(). Like the store it wraps, call from the disk executor; the
+// index it hands out can be searched from any thread.
+public class IndexedNotesStore implements LocalNotesStore {
+    // Push ids start with '-' and are plain ASCII, so this range covers every key.
+    private static final String FIRST_KEY = "";
+    private static final String LAST_KEY = "\uffff";
+
+    private final LocalNotesStore store;
+    private final Map<String, NotesIndex> indexes = new HashMap<>();
+    private final Set<String> complete = new HashSet<>();
+
+    public IndexedNotesStore(LocalNotesStore store) {
+        this.store = store;
+    }
+
+    // Blocks on disk the first time for each user.
+    public synchronized NotesIndex indexFor(String username) {
+        NotesIndex index = indexes.get(username);
+        if (index == null) {
+            index = new NotesIndex();
+            index.putAll(store.loadRange(username, FIRST_KEY, LAST_KEY));
+            indexes.put(username, index);
+        }
+        return index;
+    }
+
+    // Frees a signed-out user's index; it is rebuilt from the store if asked for again.
+    public synchronized void forget(String username) {
+        indexes.remove(username);
+        complete.remove(username);
+    }
+
+    public synchronized void markComplete(String username) {
+        complete.add(username);
+    }
+
+    // False until every server note has been copied in, so a search may miss older notes.
+    public synchronized boolean isComplete(String username) {
+        return complete.contains(username);
+    }
+
+    @Override
+    public List<Note> loadPage(String username, String beforeKey, int limit) {
+        return store.loadPage(username, beforeKey, limit);
+    }
+
+    @Override
+    public List<Note> loadRange(String username, String startKey, String endKey) {
+        return store.loadRange(username, startKey, endKey);
+    }
+
+    @Override
+    public synchronized void putAll(String username, List<Note> notes) {
+        store.putAll(username, notes);
+        NotesIndex index = indexes.get(username);
+        if (index != null) {
+            index.putAll(notes);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String username, String key) {
+        store.remove(username, key);
+        NotesIndex index = indexes.get(username);
+        if (index != null) {
+            index.remove(key);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.audiologin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// Named spans over the app's flows, each feeding a LatencyHistogram per Stage and a trace section.
+// A span is begin() returning a start token, then end() with the same stage and token; nothing is
+// allocated in between, so spans are cheap enough to leave on in release builds. Spans may cross
+// threads and callbacks. Histograms accumulate across runs through save()/load().
+public class LatencyRecorder {
+    private static final int FILE_MAGIC = 0x414c4831; // "ALH1"
+
+    public interface Tracer {
+        Tracer NONE = new Tracer() {
+            @Override
+            public void beginAsync(String name, int cookie) {
+            }
+
+            @Override
+            public void endAsync(String name, int cookie) {
+            }
+        };
+
+        void beginAsync(String name, int cookie);
+
+        void endAsync(String name, int cookie);
+    }
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final Tracer tracer;
+    private final LongSupplier nanoTime;
+
+    public LatencyRecorder(Tracer tracer) {
+        this(tracer, System::nanoTime);
+    }
+
+    public LatencyRecorder(Tracer tracer, LongSupplier nanoTime) {
+        this.tracer = tracer;
+        this.nanoTime = nanoTime;
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public long begin(Stage stage) {
+        long start = nanoTime.getAsLong();
+        tracer.beginAsync(stage.traceName, cookie(start));
+        return start;
+    }
+
+    public void end(Stage stage, long start) {
+        long elapsed = nanoTime.getAsLong() - start;
+        tracer.endAsync(stage.traceName, cookie(start));
+        record(stage, elapsed);
+    }
+
+    // For durations measured elsewhere, e.g. against SystemClock.
+    public void record(Stage stage, long elapsedNanos) {
+        histograms.get(stage).record(elapsedNanos / 1000);
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    public void add(LatencyRecorder other) {
+        for (Stage stage : Stage.values()) {
+            histograms.get(stage).add(other.histograms.get(stage));
+        }
+    }
+
+    public void save(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(histograms.size());
+        for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+            out.writeUTF(entry.getKey().name());
+            entry.getValue().writeTo(out);
+        }
+        out.flush();
+    }
+
+    // Adds the saved counts to whatever this run has recorded so far. Unknown stages are skipped.
+    public void load(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != FILE_MAGIC) {
+            throw new IOException("Not a latency histogram file");
+        }
+        int stages = in.readInt();
+        for (int i = 0; i < stages; i++) {
+            String name = in.readUTF();
+            LatencyHistogram saved = LatencyHistogram.readFrom(in);
+            for (Stage stage : Stage.values()) {
+                if (stage.name().equals(name)) {
+                    histograms.get(stage).add(saved);
+                }
+            }
+        }
+    }
+
+    // CSV in milliseconds, one row per stage that has samples.
+    public void exportCsv(Writer out) throws IOException {
+        out.write("stage,count,min_ms,p50_ms,p90_ms,p99_ms,max_ms,mean_ms\n");
+        for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            out.write(String.format(Locale.US, "%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f\n",
+                    entry.getKey().traceName, histogram.getCount(),
+                    histogram.getMin() / 1000.0,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(90) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMax() / 1000.0,
+                    histogram.getMean() / 1000.0));
+        }
+        out.flush();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private static int cookie(long start) {
+        return (int) (start ^ (start >>> 32));
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Puts off creating the real DataLayer, and with it Firebase, until the first read or write.
+// The factory runs once on initExecutor. Calls made before it finishes are queued, then replayed in
+// order on callbackExecutor; later calls go straight through. If the factory fails, the queued
+// calls and every later call get its error. Call from the thread behind callbackExecutor.
+public class LazyDataLayer implements DataLayer {
+
+    public interface Factory {
+        DataLayer create() throws Exception;
+    }
+
+    private interface Call {
+        void run(DataLayer layer);
+
+        void fail(Exception e);
+    }
+
+    private final Factory factory;
+    private final Executor initExecutor;
+    private final Executor callbackExecutor;
+    private final UserRepository userRepository = new LazyUserRepository();
+    private final NotesRepository notesRepository = new LazyNotesRepository();
+    private final SyncQueue.RemoteWriter remoteWriter = this::write;
+    private final List<Call> waiting = new ArrayList<>();
+    private boolean creating;
+    private DataLayer layer;
+    private Exception failure;
+
+    public LazyDataLayer(Factory factory, Executor initExecutor, Executor callbackExecutor) {
+        this.factory = factory;
+        this.initExecutor = initExecutor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public synchronized boolean isCreated() {
+        return layer != null;
+    }
+
+    private void call(Call call) {
+        DataLayer ready;
+        Exception failed;
+        synchronized (this) {
+            ready = layer;
+            failed = failure;
+            if (ready == null && failed == null) {
+                waiting.add(call);
+                if (!creating) {
+                    creating = true;
+                    initExecutor.execute(this::create);
+                }
+                return;
+            }
+        }
+        if (ready != null) {
+            call.run(ready);
+        } else {
+            call.fail(failed);
+        }
+    }
+
+    private void create() {
+        DataLayer created = null;
+        Exception error = null;
+        try {
+            created = factory.create();
+        } catch (Exception e) {
+            error = e;
+        }
+        DataLayer result = created;
+        Exception failed = error;
+        // Publishing on the callback thread keeps later calls behind the queued ones.
+        callbackExecutor.execute(() -> {
+            List<Call> queued;
+            synchronized (this) {
+                layer = result;
+                failure = failed;
+                queued = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            for (Call call : queued) {
+                if (result != null) {
+                    call.run(result);
+                } else {
+                    call.fail(failed);
+                }
+            }
+        });
+    }
+
+    @Override
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    @Override
+    public NotesRepository getNotesRepository() {
+        return notesRepository;
+    }
+
+    @Override
+    public SyncQueue.RemoteWriter getRemoteWriter() {
+        return remoteWriter;
+    }
+
+    @Override
+    public void setCurrentUser(String username) {
+        // Signing out before anything was loaded has nothing to release.
+        synchronized (this) {
+            if (username == null && !creating) {
+                return;
+            }
+        }
+        call(new Call() {
+            @Override
+            public void run(DataLayer layer) {
+                layer.setCurrentUser(username);
+            }
+
+            @Override
+            public void fail(Exception e) {
+            }
+        });
+    }
+
+    private void write(Map<String, Object> updates, DataCallback<Void> callback) {
+        call(new ForwardingCall(callback) {
+            @Override
+            public void run(DataLayer layer) {
+                layer.getRemoteWriter().write(updates, callback);
+            }
+        });
+    }
+
+    private abstract static class ForwardingCall implements Call {
+        private final DataCallback<?> callback;
+
+        ForwardingCall(DataCallback<?> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void fail(Exception e) {
+            callback.onFailure(e);
+        }
+    }
+
+    private class LazyUserRepository implements UserRepository {
+        @Override
+        public void userExists(String username, DataCallback<Boolean> callback) {
+            call(new ForwardingCall(callback) {
+                @Override
+                public void run(DataLayer layer) {
+                    layer.getUserRepository().userExists(username, callback);
+                }
+            });
+        }
+
+        @Override
+        public void loadCredential(String username, DataCallback<String> callback) {
+            call(new ForwardingCall(callback) {
+                @Override
+                public void run(DataLayer layer) {
+                    layer.getUserRepository().loadCredential(username, callback);
+                }
+            });
+        }
+
+        @Override
+        public void register(String username, String encryptedAudioPassword, DataCallback<Void> callback) {
+            call(new ForwardingCall(callback) {
+                @Override
+                public void run(DataLayer layer) {
+                    layer.getUserRepository().register(username, encryptedAudioPassword, callback);
+                }
+            });
+        }
+    }
+
+    private class LazyNotesRepository implements NotesRepository {
+        @Override
+        public void loadPage(String username, String beforeKey, int limit, DataCallback<List<Note>> callback) {
+            call(new ForwardingCall(callback) {
+                @Override
+                public void run(DataLayer layer) {
+                    layer.getNotesRepository().loadPage(username, beforeKey, limit, callback);
+                }
+            });
+        }
+
+        @Override
+        public void loadRange(String username, String startKey, String endKey, DataCallback<List<Note>> callback) {
+            call(new ForwardingCall(callback) {
+                @Override
+                public void run(DataLayer layer) {
+                    layer.getNotesRepository().loadRange(username, startKey, endKey, callback);
+                }
+            });
+        }
+
+        @Override
+        public void saveNote(String username, String text, DataCallback<Note> callback) {
+            call(new ForwardingCall(callback) {
+                @Override
+                public void run(DataLayer layer) {
+                    layer.getNotesRepository().saveNote(username, text, callback);
+                }
+            });
+        }
+
+        @Override
+        public Subscription observe(String username, String startKey, NotesListener listener) {
+            PendingSubscription subscription = new PendingSubscription();
+            call(new Call() {
+                @Override
+                public void run(DataLayer layer) {
+                    if (subscription.isCancelled()) {
+                        return;
+                    }
+                    subscription.attach(layer.getNotesRepository().observe(username, startKey, listener));
+                }
+
+                @Override
+                public void fail(Exception e) {
+                    if (!subscription.isCancelled()) {
+                        listener.onError(e);
+                    }
+                }
+            });
+            return subscription;
+        }
+    }
+
+    // Stands in for the real subscription until the layer exists; cancelling first means it never starts.
+    private static class PendingSubscription implements NotesRepository.Subscription {
+        private NotesRepository.Subscription real;
+        private boolean cancelled;
+        private boolean paused;
+
+        synchronized void attach(NotesRepository.Subscription subscription) {
+            if (cancelled) {
+                subscription.cancel();
+                return;
+            }
+            real = subscription;
+            if (paused) {
+                real.pause();
+            }
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            if (real != null) {
+                real.cancel();
+                real = null;
+            }
+        }
+
+        @Override
+        public synchronized void pause() {
+            paused = true;
+            if (real != null) {
+                real.pause();
+            }
+        }
+
+        @Override
+        public synchronized void resume() {
+            paused = false;
+            if (real != null) {
+                real.resume();
+            }
+        }
+    }
+}
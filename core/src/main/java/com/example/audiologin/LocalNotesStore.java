@@ -0,0 +1,17 @@
+package com.example.audiologin;
+
+import java.util.List;
+
+// On-device copy of each user's notes. Calls block on disk, so keep them off the main thread.
+public interface LocalNotesStore {
+
+    // Up to limit of the newest notes with keys before beforeKey (the newest overall when null), in key order.
+    List<Note> loadPage(String username, String beforeKey, int limit);
+
+    // Notes with keys between startKey and endKey inclusive, in key order.
+    List<Note> loadRange(String username, String startKey, String endKey);
+
+    void putAll(String username, List<Note> notes);
+
+    void remove(String username, String key);
+}
@@ -0,0 +1,175 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The login steps without the UI: look up and decrypt the stored audio password, collect two
+// animal selections, check them, then unlock the user's note key and start the notes prefetch.
+// The screen (or the load test) reacts through the Listener and calls finish() once it hands
+// over to the notes. Not thread-safe; callbacks arrive on whatever executors the services use.
+public class LoginFlow {
+    public static final int SELECTIONS = 2;
+
+    public interface Listener {
+        void onChallenge(String username);
+
+        void onNoCredential(String username);
+
+        void onLookupFailed(Exception e);
+
+        void onDecryptFailed(Exception e);
+
+        void onRejected();
+
+        // The selection matched; the note key is being derived.
+        void onVerified();
+
+        // The note key is unlocked and the newest notes are being fetched.
+        void onNotesUnlocked();
+
+        // The notes stay locked; the login has to start again.
+        void onKeyDeriveFailed(Exception e);
+    }
+
+    private final CredentialPrefetcher credentials;
+    private final CryptoService crypto;
+    private final NoteKeyring keyring;
+    private final NotesPrefetch notesPrefetch;
+    private final LatencyRecorder latency;
+    private final Listener listener;
+    private final List<String> selected = new ArrayList<>();
+    private String username;
+    private List<String> storedAnimals;
+    private int attempt;
+    private long loginSpan;
+    private long selectionSpan;
+    private long verifySpan;
+
+    public LoginFlow(CredentialPrefetcher credentials, CryptoService crypto, NoteKeyring keyring,
+                     NotesPrefetch notesPrefetch, LatencyRecorder latency, Listener listener) {
+        this.credentials = credentials;
+        this.crypto = crypto;
+        this.keyring = keyring;
+        this.notesPrefetch = notesPrefetch;
+        this.latency = latency;
+        this.listener = listener;
+    }
+
+    public void start(String username) {
+        this.username = username;
+        storedAnimals = null;
+        selected.clear();
+        int current = ++attempt;
+        loginSpan = latency.begin(Stage.LOGIN_TOTAL);
+        long fetchSpan = latency.begin(Stage.LOGIN_CREDENTIAL_FETCH);
+        credentials.get(username, new DataCallback<String>() {
+            @Override
+            public void onSuccess(String encryptedPassword) {
+                latency.end(Stage.LOGIN_CREDENTIAL_FETCH, fetchSpan);
+                if (current != attempt) {
+                    return;
+                }
+                if (encryptedPassword == null) {
+                    listener.onNoCredential(username);
+                    return;
+                }
+                decrypt(current, encryptedPassword);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latency.end(Stage.LOGIN_CREDENTIAL_FETCH, fetchSpan);
+                if (current == attempt) {
+                    listener.onLookupFailed(e);
+                }
+            }
+        });
+    }
+
+    private void decrypt(int current, String encryptedPassword) {
+        long decryptSpan = latency.begin(Stage.LOGIN_DECRYPT);
+        crypto.decrypt(encryptedPassword, new DataCallback<String>() {
+            @Override
+            public void onSuccess(String decryptedPassword) {
+                latency.end(Stage.LOGIN_DECRYPT, decryptSpan);
+                if (current == attempt) {
+                    storedAnimals = Arrays.asList(decryptedPassword.split(","));
+                    listener.onChallenge(username);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latency.end(Stage.LOGIN_DECRYPT, decryptSpan);
+                if (current == attempt) {
+                    listener.onDecryptFailed(e);
+                }
+            }
+        });
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getSelectedCount() {
+        return selected.size();
+    }
+
+    // Called as the animal sounds start playing.
+    public void beginSelection() {
+        selected.clear();
+        selectionSpan = latency.begin(Stage.LOGIN_SOUND_SELECTION);
+    }
+
+    // Returns how many animals are selected; the second one triggers verification.
+    public int select(String animal) {
+        if (storedAnimals == null || selected.size() >= SELECTIONS) {
+            return selected.size();
+        }
+        selected.add(animal.toLowerCase().trim());
+        if (selected.size() == SELECTIONS) {
+            latency.end(Stage.LOGIN_SOUND_SELECTION, selectionSpan);
+            verify();
+        }
+        return selected.size();
+    }
+
+    private void verify() {
+        if (!selected.equals(storedAnimals)) {
+            listener.onRejected();
+            return;
+        }
+        int current = attempt;
+        verifySpan = latency.begin(Stage.LOGIN_VERIFY);
+        listener.onVerified();
+        // The note key and then the newest page of notes are fetched while the welcome prompt plays.
+        long deriveSpan = latency.begin(Stage.LOGIN_KEY_DERIVE);
+        crypto.deriveNoteEnvelope(username, String.join(",", storedAnimals), new DataCallback<NoteEnvelope>() {
+            @Override
+            public void onSuccess(NoteEnvelope envelope) {
+                latency.end(Stage.LOGIN_KEY_DERIVE, deriveSpan);
+                if (current == attempt) {
+                    keyring.unlock(username, envelope);
+                    notesPrefetch.start(username);
+                    listener.onNotesUnlocked();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latency.end(Stage.LOGIN_KEY_DERIVE, deriveSpan);
+                if (current == attempt) {
+                    listener.onKeyDeriveFailed(e);
+                }
+            }
+        });
+    }
+
+    // The notes screen is about to open.
+    public void finish() {
+        latency.end(Stage.LOGIN_VERIFY, verifySpan);
+        latency.end(Stage.LOGIN_TOTAL, loginSpan);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.audiologin;
+
+public class Note {
+    private final String key;
+    private final String text;
+
+    public Note(String key, String text) {
+        this.key = key;
+        this.text = text;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Note)) {
+            return false;
+        }
+        Note other = (Note) o;
+        return key.equals(other.key) && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * key.hashCode() + text.hashCode();
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.audiologin;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// Stored form of a note: "e1:" + Base64(flags | 12-byte IV | AES-GCM ciphertext and tag) of the
+// UTF-8 text, deflated first when that makes it smaller. Dictations are short, so deflate starts
+// from a preset dictionary of everyday note vocabulary; changing it needs a new flag. The
+// username is bound in as associated data, so a note copied under another user fails to open.
+// Values without the prefix are notes written before envelopes and are returned as they are.
+public class NoteEnvelope {
+    public static final String PREFIX = "e1:";
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int FLAG_DEFLATED = 1;
+    static final byte[] DICTIONARY = ("the and to of a in for on at with from about before after tomorrow today "
+            + "tonight morning afternoon evening monday tuesday wednesday thursday friday saturday sunday week weekend "
+            + "next last this that is it be I my me we remember to don't forget to I need to note to self call email "
+            + "text message ask tell let know check book pay buy pick up take get bring return send write down the "
+            + "reference number appointment doctor dentist pharmacy prescription refill medication medicine tablets "
+            + "pills with food water bill electricity gas rent landlord bank card money shopping list milk bread eggs "
+            + "butter cheese coffee tea sugar fruit vegetables groceries batteries charger phone hearing aid glasses "
+            + "bus train taxi times station number meeting birthday present mum dad sister brother friend neighbour "
+            + "family because if it is not raining then later soon before five o'clock half past quarter")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final int KEY_ITERATIONS = 20000;
+    private static final int KEY_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final SecretKey key;
+    private final byte[] associatedData;
+
+    public NoteEnvelope(String username, SecretKey key) {
+        this.key = key;
+        this.associatedData = username.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Slow on purpose (PBKDF2); derive once per session, off the main thread.
+    public static NoteEnvelope derive(String username, String secret) throws GeneralSecurityException {
+        byte[] salt = ("audiologin-notes:" + username).getBytes(StandardCharsets.UTF_8);
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt, KEY_ITERATIONS, KEY_BITS);
+        try {
+            byte[] keyBytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new NoteEnvelope(username, new SecretKeySpec(keyBytes, "AES"));
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public static boolean isSealed(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    public String seal(String text) throws GeneralSecurityException {
+        byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(plain);
+        boolean useDeflated = deflated.length < plain.length;
+        byte[] body = useDeflated ? deflated : plain;
+
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(associatedData);
+        byte[] payload = new byte[1 + IV_LENGTH + cipher.getOutputSize(body.length)];
+        payload[0] = (byte) (useDeflated ? FLAG_DEFLATED : 0);
+        System.arraycopy(iv, 0, payload, 1, IV_LENGTH);
+        cipher.doFinal(body, 0, body.length, payload, 1 + IV_LENGTH);
+        return PREFIX + Base64.getEncoder().withoutPadding().encodeToString(payload);
+    }
+
+    public String open(String stored) throws GeneralSecurityException {
+        if (!isSealed(stored)) {
+            return stored;
+        }
+        return open(stored, CIPHER.get(), new Buffers());
+    }
+
+    // Opens a page of notes in one pass, sharing one cipher, inflater and scratch buffers.
+    // A note that fails to open is dropped rather than failing the whole page.
+    public List<Note> openAll(List<Note> stored) {
+        List<Note> notes = new ArrayList<>(stored.size());
+        Cipher cipher = CIPHER.get();
+        Buffers buffers = new Buffers();
+        for (Note note : stored) {
+            if (!isSealed(note.getText())) {
+                notes.add(note);
+                continue;
+            }
+            try {
+                notes.add(new Note(note.getKey(), open(note.getText(), cipher, buffers)));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                // Corrupt, or sealed with another key.
+            }
+        }
+        return notes;
+    }
+
+    private static class Buffers {
+        byte[] plain = new byte[1024];
+        byte[] inflated = new byte[4096];
+
+        byte[] plain(int size) {
+            if (plain.length < size) {
+                plain = new byte[Math.max(size, plain.length * 2)];
+            }
+            return plain;
+        }
+    }
+
+    private String open(String stored, Cipher cipher, Buffers buffers) throws GeneralSecurityException {
+        byte[] payload = Base64.getDecoder().decode(stored.substring(PREFIX.length()));
+        if (payload.length < 1 + IV_LENGTH + TAG_BITS / 8) {
+            throw new GeneralSecurityException("Truncated note envelope");
+        }
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, payload, 1, IV_LENGTH));
+        cipher.updateAAD(associatedData);
+        int offset = 1 + IV_LENGTH;
+        byte[] plain = buffers.plain(cipher.getOutputSize(payload.length - offset));
+        int length = cipher.doFinal(payload, offset, payload.length - offset, plain, 0);
+        if ((payload[0] & FLAG_DEFLATED) == 0) {
+            return new String(plain, 0, length, StandardCharsets.UTF_8);
+        }
+        return inflate(plain, length, buffers);
+    }
+
+    private static byte[] deflate(byte[] plain) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(plain);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plain.length);
+        byte[] chunk = new byte[512];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static String inflate(byte[] deflated, int length, Buffers buffers) throws GeneralSecurityException {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(deflated, 0, length);
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                if (size == buffers.inflated.length) {
+                    buffers.inflated = Arrays.copyOf(buffers.inflated, size * 2);
+                }
+                int n = inflater.inflate(buffers.inflated, size, buffers.inflated.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new GeneralSecurityException("Truncated deflate stream");
+                }
+                size += n;
+            }
+        } catch (DataFormatException e) {
+            throw new GeneralSecurityException(e);
+        }
+        return new String(buffers.inflated, 0, size, StandardCharsets.UTF_8);
+    }
+}
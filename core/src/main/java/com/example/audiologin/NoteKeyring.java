@@ -0,0 +1,47 @@
+package com.example.audiologin;
+
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Session-scoped note keys, unlocked at login. Every user has a key, so while theirs is locked
+// (before login finishes, after lock(), or after the process restarted) nothing is sealed or
+// opened for them: both throw rather than let plain text out or hide sealed notes.
+public class NoteKeyring {
+    private final ConcurrentHashMap<String, NoteEnvelope> envelopes = new ConcurrentHashMap<>();
+
+    public void unlock(String username, NoteEnvelope envelope) {
+        envelopes.put(username, envelope);
+    }
+
+    public void lock() {
+        envelopes.clear();
+    }
+
+    public boolean isUnlocked(String username) {
+        return envelopes.containsKey(username);
+    }
+
+    public String seal(String username, String text) throws GeneralSecurityException {
+        return envelope(username).seal(text);
+    }
+
+    public List<Note> openAll(String username, List<Note> stored) throws GeneralSecurityException {
+        return envelope(username).openAll(stored);
+    }
+
+    // Null when the note is corrupt or sealed with another key.
+    public Note open(String username, Note stored) throws GeneralSecurityException {
+        List<Note> opened = openAll(username, Collections.singletonList(stored));
+        return opened.isEmpty() ? null : opened.get(0);
+    }
+
+    private NoteEnvelope envelope(String username) throws GeneralSecurityException {
+        NoteEnvelope envelope = envelopes.get(username);
+        if (envelope == null) {
+            throw new GeneralSecurityException("Note key for " + username + " is locked");
+        }
+        return envelope;
+    }
+}
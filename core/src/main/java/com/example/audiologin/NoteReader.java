@@ -0,0 +1,191 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Reads a note aloud a sentence at a time. Only the chunk being spoken and up to lookahead - 1
+// after it are handed to the speaker, so the first audio waits on one short chunk however long the
+// note is, and pausing or skipping throws away little queued speech. A sentence longer than
+// maxChunkChars (the engine's input limit, or less) is split at the last space that fits.
+// The position is the chunk being heard; resume() starts that chunk again. Call from the main thread.
+public class NoteReader {
+
+    public interface Speaker {
+        void speak(String text, Runnable onStart, Runnable onDone);
+
+        // Drops everything handed over; their onDone may still run and is ignored.
+        void stop();
+    }
+
+    public interface Listener {
+        void onChunkStarted(int index, int count);
+
+        void onFinished();
+    }
+
+    private final Speaker speaker;
+    private final int lookahead;
+    private final int maxChunkChars;
+    private final Listener listener;
+    private List<String> chunks = Collections.emptyList();
+    private int position;
+    private int nextToSpeak;
+    private int handedOver;
+    private boolean playing;
+    private int generation;
+
+    public NoteReader(Speaker speaker, int lookahead, int maxChunkChars, Listener listener) {
+        this.speaker = speaker;
+        this.lookahead = Math.max(1, lookahead);
+        this.maxChunkChars = maxChunkChars;
+        this.listener = listener;
+    }
+
+    public static List<String> split(String text, int maxChunkChars) {
+        List<String> chunks = new ArrayList<>();
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            if (start == length) {
+                break;
+            }
+            int end = sentenceEnd(text, start);
+            if (end - start > maxChunkChars) {
+                int limit = start + maxChunkChars;
+                int space = text.lastIndexOf(' ', limit);
+                end = space > start ? space : limit;
+            }
+            String chunk = text.substring(start, end).trim();
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+            start = end;
+        }
+        return chunks;
+    }
+
+    // Just past the terminator and any closing quotes or brackets, or the end of the text.
+    private static int sentenceEnd(String text, int start) {
+        int length = text.length();
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.' || c == '!' || c == '?' || c == '\n') {
+                int end = i + 1;
+                while (end < length && ".!?\"')]".indexOf(text.charAt(end)) >= 0) {
+                    end++;
+                }
+                if (end == length || Character.isWhitespace(text.charAt(end))) {
+                    return end;
+                }
+            }
+        }
+        return length;
+    }
+
+    public void read(String text) {
+        stopSpeaking();
+        chunks = split(text, maxChunkChars);
+        position = 0;
+        nextToSpeak = 0;
+        playing = true;
+        handOver();
+    }
+
+    public void pause() {
+        if (!playing) {
+            return;
+        }
+        playing = false;
+        stopSpeaking();
+    }
+
+    public void resume() {
+        if (playing || position >= chunks.size()) {
+            return;
+        }
+        playing = true;
+        nextToSpeak = position;
+        handOver();
+    }
+
+    // Moves by whole chunks from the one being heard: 1 is the next sentence, -1 the previous one.
+    public void skip(int chunksToMove) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        stopSpeaking();
+        position = Math.max(0, Math.min(chunks.size(), position + chunksToMove));
+        nextToSpeak = position;
+        if (position == chunks.size()) {
+            finish();
+        } else if (playing) {
+            handOver();
+        }
+    }
+
+    public void stop() {
+        playing = false;
+        stopSpeaking();
+        chunks = Collections.emptyList();
+        position = 0;
+        nextToSpeak = 0;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    private void stopSpeaking() {
+        generation++;
+        if (handedOver > 0) {
+            handedOver = 0;
+            speaker.stop();
+        }
+    }
+
+    private void handOver() {
+        int startedGeneration = generation;
+        while (playing && handedOver < lookahead && nextToSpeak < chunks.size()) {
+            int index = nextToSpeak++;
+            handedOver++;
+            speaker.speak(chunks.get(index), () -> {
+                if (startedGeneration == generation) {
+                    position = index;
+                    if (listener != null) {
+                        listener.onChunkStarted(index, chunks.size());
+                    }
+                }
+            }, () -> {
+                if (startedGeneration != generation) {
+                    return;
+                }
+                handedOver--;
+                position = index + 1;
+                if (position == chunks.size()) {
+                    finish();
+                } else {
+                    handOver();
+                }
+            });
+        }
+    }
+
+    private void finish() {
+        playing = false;
+        if (listener != null) {
+            listener.onFinished();
+        }
+    }
+}
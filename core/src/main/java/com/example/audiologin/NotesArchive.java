@@ -0,0 +1,344 @@
+package com.example.audiologin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Streams a user's notes, exactly as stored under users/{username}/notes, to and from a text
+// archive: a header line, then one "key<TAB>value" line per note with backslash, tab and line
+// breaks escaped. Export holds one page at a time, newest page first; import holds at most
+// maxInFlight batches of batchSize notes, each written as one multi-path update. Values stay
+// sealed, so an archive restores only into the account it came from: before the first batch is
+// sent, the first note must open with the target user's key. Notes still in the sync outbox
+// are exported too, after the server's, in place of the server's copy of the same note. Both run
+// on io, close the stream they are given, and report on main; the repository, writer and outbox
+// are only called on main. An import fails once no batch has been acknowledged for
+// writeTimeoutMs, e.g. while offline.
+public class NotesArchive {
+    static final String HEADER = "audiologin-notes 1";
+
+    private final NotesRepository notes;
+    private final SyncQueue.RemoteWriter writer;
+    private final SyncQueue outbox;
+    private final NoteKeyring keyring;
+    private final Executor io;
+    private final Executor main;
+    private final int pageSize;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final long writeTimeoutMs;
+
+    // outbox may be null where writes do not go through one; keyring may be null where notes are
+    // not really sealed, as in the load test, and then imports are not checked.
+    public NotesArchive(NotesRepository notes, SyncQueue.RemoteWriter writer, SyncQueue outbox, NoteKeyring keyring,
+                        Executor io, Executor main, int pageSize, int batchSize, int maxInFlight,
+                        long writeTimeoutMs) {
+        this.notes = notes;
+        this.writer = writer;
+        this.outbox = outbox;
+        this.keyring = keyring;
+        this.io = io;
+        this.main = main;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.writeTimeoutMs = writeTimeoutMs;
+    }
+
+    private static String notesPath(String username) {
+        return "users/" + username + "/notes/";
+    }
+
+    // Reports the number of notes written.
+    public void export(String username, Writer out, DataCallback<Integer> callback) {
+        main.execute(() -> {
+            if (outbox == null) {
+                startExport(username, Collections.emptyMap(), out, callback);
+            } else {
+                outbox.whenLoaded(() -> startExport(username, pendingNotes(username), out, callback));
+            }
+        });
+    }
+
+    // Sealed notes waiting in the outbox, by key; called on main.
+    private Map<String, String> pendingNotes(String username) {
+        String prefix = notesPath(username);
+        Map<String, String> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : outbox.getPendingUnder(prefix).entrySet()) {
+            String key = entry.getKey().substring(prefix.length());
+            if (key.indexOf('/') < 0 && entry.getValue() instanceof String) {
+                pending.put(key, (String) entry.getValue());
+            }
+        }
+        return pending;
+    }
+
+    private void startExport(String username, Map<String, String> pending, Writer out,
+                             DataCallback<Integer> callback) {
+        io.execute(() -> {
+            try {
+                out.write(HEADER);
+                out.write('\n');
+            } catch (IOException e) {
+                fail(out, e, callback);
+                return;
+            }
+            exportPage(username, null, 0, pending, out, callback);
+        });
+    }
+
+    private void exportPage(String username, String beforeKey, int written, Map<String, String> pending, Writer out,
+                            DataCallback<Integer> callback) {
+        main.execute(() -> notes.loadPage(username, beforeKey, pageSize, new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> page) {
+                io.execute(() -> {
+                    int total = written;
+                    try {
+                        for (Note note : page) {
+                            if (!pending.containsKey(note.getKey())) {
+                                writeLine(out, note.getKey(), note.getText());
+                                total++;
+                            }
+                        }
+                        if (page.size() < pageSize) {
+                            for (Map.Entry<String, String> entry : pending.entrySet()) {
+                                writeLine(out, entry.getKey(), entry.getValue());
+                                total++;
+                            }
+                        }
+                    } catch (IOException e) {
+                        fail(out, e, callback);
+                        return;
+                    }
+                    if (page.size() < pageSize) {
+                        finish(out, total, callback);
+                    } else {
+                        exportPage(username, page.get(0).getKey(), total, pending, out, callback);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                io.execute(() -> fail(out, e, callback));
+            }
+        }));
+    }
+
+    private static void writeLine(Writer out, String key, String value) throws IOException {
+        out.write(escape(key));
+        out.write('\t');
+        out.write(escape(value));
+        out.write('\n');
+    }
+
+    // Reports the number of notes written; on failure, some batches may already have landed, and
+    // after a timeout some may still land later.
+    public void importInto(String username, Reader in, DataCallback<Integer> callback) {
+        io.execute(() -> {
+            Importer importer = new Importer(username);
+            try (BufferedReader lines = new BufferedReader(in)) {
+                importer.run(lines);
+            } catch (Exception e) {
+                importer.fail(e);
+            }
+            try {
+                importer.awaitAll();
+            } catch (Exception e) {
+                importer.fail(e);
+            }
+            Exception failure = importer.failure;
+            int imported = importer.imported.get();
+            main.execute(() -> {
+                if (failure != null) {
+                    callback.onFailure(failure);
+                } else {
+                    callback.onSuccess(imported);
+                }
+            });
+        });
+    }
+
+    private class Importer {
+        final String username;
+        final String path;
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicInteger imported = new AtomicInteger();
+        volatile Exception failure;
+        volatile boolean timedOut;
+
+        Importer(String username) {
+            this.username = username;
+            this.path = notesPath(username);
+        }
+
+        void run(BufferedReader lines) throws IOException, InterruptedException, GeneralSecurityException {
+            String header = lines.readLine();
+            if (!HEADER.equals(header)) {
+                throw new IOException("Not a notes archive");
+            }
+            Map<String, Object> batch = new LinkedHashMap<>();
+            int lineNumber = 1;
+            String line;
+            while (failure == null && (line = lines.readLine()) != null) {
+                lineNumber++;
+                int tab = line.indexOf('\t');
+                if (tab <= 0 || line.indexOf('\t', tab + 1) >= 0) {
+                    throw new IOException("Line " + lineNumber + " is not a note");
+                }
+                String key = unescape(line.substring(0, tab));
+                if (key.indexOf('/') >= 0) {
+                    throw new IOException("Line " + lineNumber + " has an invalid key");
+                }
+                String value = unescape(line.substring(tab + 1));
+                if (lineNumber == 2) {
+                    checkOpens(key, value);
+                }
+                batch.put(path + key, value);
+                if (batch.size() == batchSize) {
+                    send(batch);
+                    batch = new LinkedHashMap<>();
+                }
+            }
+            if (failure == null && !batch.isEmpty()) {
+                send(batch);
+            }
+        }
+
+        // Another account's archive, or a damaged one, would land notes that never open.
+        private void checkOpens(String key, String value) throws GeneralSecurityException {
+            if (keyring == null) {
+                return;
+            }
+            if (!NoteEnvelope.isSealed(value) || keyring.open(username, new Note(key, value)) == null) {
+                throw new GeneralSecurityException("This archive is not " + username + "'s or is damaged");
+            }
+        }
+
+        private void send(Map<String, Object> batch) throws IOException, InterruptedException {
+            acquire();
+            int size = batch.size();
+            main.execute(() -> writer.write(batch, new DataCallback<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                    imported.addAndGet(size);
+                    inFlight.release();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    fail(e);
+                    inFlight.release();
+                }
+            }));
+        }
+
+        // A write that is never acknowledged, as while offline, would otherwise hold its slot for good.
+        private void acquire() throws IOException, InterruptedException {
+            if (!inFlight.tryAcquire(writeTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+                throw new IOException("No write acknowledged for " + writeTimeoutMs + "ms");
+            }
+        }
+
+        synchronized void fail(Exception e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        void awaitAll() throws IOException, InterruptedException {
+            if (timedOut) {
+                return;
+            }
+            for (int i = 0; i < maxInFlight; i++) {
+                acquire();
+            }
+            inFlight.release(maxInFlight);
+        }
+    }
+
+    private void finish(Writer out, int written, DataCallback<Integer> callback) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            main.execute(() -> callback.onFailure(e));
+            return;
+        }
+        main.execute(() -> callback.onSuccess(written));
+    }
+
+    private void fail(Writer out, Exception e, DataCallback<Integer> callback) {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // Already failing.
+        }
+        main.execute(() -> callback.onFailure(e));
+    }
+
+    static String escape(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = c == '\\' ? "\\\\" : c == '\t' ? "\\t" : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(text.length() + 8).append(text, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? text : escaped.toString();
+    }
+
+    static String unescape(String text) throws IOException {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder plain = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\') {
+                plain.append(c);
+                continue;
+            }
+            if (++i == text.length()) {
+                throw new IOException("Dangling escape");
+            }
+            char escaped = text.charAt(i);
+            switch (escaped) {
+                case '\\':
+                    plain.append('\\');
+                    break;
+                case 't':
+                    plain.append('\t');
+                    break;
+                case 'n':
+                    plain.append('\n');
+                    break;
+                case 'r':
+                    plain.append('\r');
+                    break;
+                default:
+                    throw new IOException("Unknown escape \\" + escaped);
+            }
+        }
+        return plain.toString();
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// In-memory inverted index over one user's notes. Each term maps to an int array of document
+// numbers in ascending order; a changed or removed note only marks its old number dead, and the
+// postings are rebuilt once the dead outnumber the live. A search matches notes containing every
+// query word, either exactly or as the start of a longer word, and ranks exact matches above
+// prefix ones, then newer notes first. Search cost grows with the matches, not the note count,
+// and nothing is allocated per matching note. Thread-safe.
+public class NotesIndex {
+    private static final int EXACT = 2;
+    private static final int PREFIX = 1;
+    private static final int MIN_COMPACT = 64;
+    // Word positions share a long with the posting count when sorting, so they must fit a byte.
+    private static final int MAX_QUERY_WORDS = 32;
+
+    private static class Postings {
+        int[] docs = new int[2];
+        int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Integer> docsByKey = new HashMap<>();
+    private final BitSet dead = new BitSet();
+    private Note[] notes = new Note[16];
+    private int docCount;
+    private int deadCount;
+    // True while notes were added in key order, so a higher document number is a newer note.
+    // Re-adding the newest key is fine: its earlier document is dead by then.
+    private boolean docsInKeyOrder = true;
+    private String lastKey;
+    // Per-document scratch for search, kept zeroed between searches.
+    private int[] best = new int[16];
+    private int[] matched = new int[16];
+    private int[] score = new int[16];
+    private int[] touched = new int[16];
+    private int[] candidates = new int[16];
+
+    // Lower-cased runs of letters and digits, each once, in order of first appearance.
+    public static List<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean inWord = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    public synchronized void putAll(List<Note> notes) {
+        for (Note note : notes) {
+            put(note);
+        }
+    }
+
+    public synchronized void put(Note note) {
+        Integer existing = docsByKey.get(note.getKey());
+        if (existing != null) {
+            if (notes[existing].getText().equals(note.getText())) {
+                return;
+            }
+            kill(existing);
+        }
+        add(note);
+        compactIfSparse();
+    }
+
+    public synchronized void remove(String key) {
+        Integer existing = docsByKey.remove(key);
+        if (existing != null) {
+            kill(existing);
+            compactIfSparse();
+        }
+    }
+
+    public synchronized int size() {
+        return docsByKey.size();
+    }
+
+    public synchronized int getTermCount() {
+        return terms.size();
+    }
+
+    // Entries across all postings, dead ones included; each is one int.
+    public synchronized long getPostingCount() {
+        long postings = 0;
+        for (Postings list : terms.values()) {
+            postings += list.size;
+        }
+        return postings;
+    }
+
+    // Up to limit notes containing every word of query, best match first.
+    public synchronized List<Note> search(String query, int limit) {
+        List<String> words = terms(query);
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (words.size() > MAX_QUERY_WORDS) {
+            words = words.subList(0, MAX_QUERY_WORDS);
+        }
+        // Rarest word first: its matches are the only candidates, and the rest just filter them.
+        List<SortedMap<String, Postings>> matches = new ArrayList<>(words.size());
+        long[] order = new long[words.size()];
+        for (int word = 0; word < words.size(); word++) {
+            String prefix = words.get(word);
+            SortedMap<String, Postings> matching = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            long postings = 0;
+            for (Postings list : matching.values()) {
+                postings += list.size;
+            }
+            matches.add(matching);
+            order[word] = postings << 8 | word;
+        }
+        Arrays.sort(order);
+
+        int candidateCount = 0;
+        for (int step = 0; step < order.length; step++) {
+            int word = (int) (order[step] & 0xff);
+            int prefixLength = words.get(word).length();
+            int touchedCount = 0;
+            for (Map.Entry<String, Postings> entry : matches.get(word).entrySet()) {
+                int weight = entry.getKey().length() == prefixLength ? EXACT : PREFIX;
+                Postings postings = entry.getValue();
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    // Only notes that matched every earlier word stay in the running.
+                    if (matched[doc] != step || dead.get(doc)) {
+                        continue;
+                    }
+                    if (best[doc] == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                    best[doc] = Math.max(best[doc], weight);
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                matched[doc] = step + 1;
+                score[doc] += best[doc];
+                best[doc] = 0;
+                if (step == 0) {
+                    candidates[candidateCount++] = doc;
+                }
+            }
+        }
+
+        // Insertion into a top-limit array. Notes mostly arrive in key order, so walking from the
+        // newest fills it early and most later candidates lose their first comparison.
+        int[] top = new int[Math.min(limit, candidateCount)];
+        int found = 0;
+        for (int i = candidateCount - 1; i >= 0; i--) {
+            int doc = candidates[i];
+            if (matched[doc] != order.length
+                    || (found == top.length && !ranksBefore(doc, top[found - 1]))) {
+                continue;
+            }
+            int at = Math.min(found, top.length - 1);
+            while (at > 0 && ranksBefore(doc, top[at - 1])) {
+                top[at] = top[at - 1];
+                at--;
+            }
+            top[at] = doc;
+            found = Math.min(found + 1, top.length);
+        }
+        List<Note> results = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            results.add(notes[top[i]]);
+        }
+        for (int i = 0; i < candidateCount; i++) {
+            matched[candidates[i]] = 0;
+            score[candidates[i]] = 0;
+        }
+        return results;
+    }
+
+    private boolean ranksBefore(int doc, int other) {
+        if (score[doc] != score[other]) {
+            return score[doc] > score[other];
+        }
+        if (docsInKeyOrder) {
+            return doc > other;
+        }
+        return notes[doc].getKey().compareTo(notes[other].getKey()) > 0;
+    }
+
+    private void add(Note note) {
+        int doc = docCount++;
+        if (doc == notes.length) {
+            int capacity = doc * 2;
+            notes = Arrays.copyOf(notes, capacity);
+            best = Arrays.copyOf(best, capacity);
+            matched = Arrays.copyOf(matched, capacity);
+            score = Arrays.copyOf(score, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+            candidates = Arrays.copyOf(candidates, capacity);
+        }
+        notes[doc] = note;
+        docsByKey.put(note.getKey(), doc);
+        if (lastKey != null && note.getKey().compareTo(lastKey) < 0) {
+            docsInKeyOrder = false;
+        } else {
+            lastKey = note.getKey();
+        }
+        for (String term : terms(note.getText())) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+            }
+            postings.add(doc);
+        }
+    }
+
+    private void kill(int doc) {
+        dead.set(doc);
+        notes[doc] = null;
+        deadCount++;
+    }
+
+    private void compactIfSparse() {
+        if (deadCount < MIN_COMPACT || deadCount < docCount - deadCount) {
+            return;
+        }
+        List<Note> live = new ArrayList<>(docCount - deadCount);
+        for (int doc = 0; doc < docCount; doc++) {
+            if (!dead.get(doc)) {
+                live.add(notes[doc]);
+            }
+        }
+        // Re-adding in key order restores cheap tie-breaks after out-of-order syncs or edits.
+        Collections.sort(live, (a, b) -> a.getKey().compareTo(b.getKey()));
+        terms.clear();
+        docsByKey.clear();
+        docsInKeyOrder = true;
+        lastKey = null;
+        dead.clear();
+        Arrays.fill(notes, null);
+        docCount = 0;
+        deadCount = 0;
+        for (Note note : live) {
+            add(note);
+        }
+    }
+}
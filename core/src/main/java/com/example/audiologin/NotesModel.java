@@ -0,0 +1,36 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+// Notes keyed by their push id. Push ids sort chronologically, so key order is creation order.
+public class NotesModel {
+    private final TreeMap<String, Note> notes = new TreeMap<>();
+
+    // Returns false when the note was already present with the same text.
+    public synchronized boolean put(Note note) {
+        Note previous = notes.put(note.getKey(), note);
+        return !note.equals(previous);
+    }
+
+    public synchronized boolean remove(String key) {
+        return notes.remove(key) != null;
+    }
+
+    public synchronized Note get(String key) {
+        return notes.get(key);
+    }
+
+    public synchronized int size() {
+        return notes.size();
+    }
+
+    public synchronized void clear() {
+        notes.clear();
+    }
+
+    public synchronized List<Note> snapshot() {
+        return new ArrayList<>(notes.values());
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Newest-first window over a user's notes. The newest page is loaded first and kept live;
+// older pages are fetched by push-key cursor as the list scrolls and dropped again once they
+// are more than keepPages pages away from what is on screen, so memory stays bounded.
+public class NotesPager {
+
+    public interface Listener {
+        void onNotesChanged();
+
+        void onError(Exception e);
+    }
+
+    private static class Page {
+        final String oldestKey;
+        final String newestKey;
+        List<Note> notes;
+
+        Page(List<Note> ascending) {
+            oldestKey = ascending.get(0).getKey();
+            newestKey = ascending.get(ascending.size() - 1).getKey();
+            setNotes(ascending);
+        }
+
+        void setNotes(List<Note> ascending) {
+            notes = new ArrayList<>(ascending);
+            Collections.reverse(notes);
+        }
+
+        boolean isLoaded() {
+            return notes != null;
+        }
+    }
+
+    private final NotesRepository repository;
+    private final String username;
+    private final int pageSize;
+    private final int keepPages;
+    private final Listener listener;
+    private final NotesModel head = new NotesModel();
+    private final List<Page> pages = new ArrayList<>();
+    private NotesRepository.Subscription subscription;
+    private String headStartKey;
+    private boolean started;
+    private boolean headLoaded;
+    private boolean loading;
+    private boolean reachedEnd;
+    private int firstVisible;
+    private int lastVisible;
+
+    public NotesPager(NotesRepository repository, String username, int pageSize, int keepPages, Listener listener) {
+        this.repository = repository;
+        this.username = username;
+        this.pageSize = pageSize;
+        this.keepPages = Math.max(1, keepPages);
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        loading = true;
+        repository.loadPage(username, null, pageSize, new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> notes) {
+                loading = false;
+                startWith(notes);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                loading = false;
+                started = false;
+                listener.onError(e);
+            }
+        });
+    }
+
+    // Starts from a newest page that was already fetched, e.g. by NotesPrefetch, instead of querying it.
+    public void start(List<Note> newestPage) {
+        if (started) {
+            return;
+        }
+        started = true;
+        startWith(newestPage);
+    }
+
+    private void startWith(List<Note> newestPage) {
+        headLoaded = true;
+        for (Note note : newestPage) {
+            head.put(note);
+        }
+        reachedEnd = newestPage.size() < pageSize;
+        headStartKey = newestPage.isEmpty() ? null : newestPage.get(0).getKey();
+        subscription = repository.observe(username, headStartKey, new NotesRepository.NotesListener() {
+            @Override
+            public void onNoteChanged(Note note) {
+                if (head.put(note)) {
+                    listener.onNotesChanged();
+                }
+            }
+
+            @Override
+            public void onNoteRemoved(String key) {
+                if (head.remove(key)) {
+                    listener.onNotesChanged();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                listener.onError(e);
+            }
+        });
+        listener.onNotesChanged();
+        onVisibleRange(firstVisible, lastVisible);
+    }
+
+    // While the screen is stopped: live changes are held back and arrive, coalesced, on resume().
+    public void pause() {
+        if (subscription != null) {
+            subscription.pause();
+        }
+    }
+
+    public void resume() {
+        if (subscription != null) {
+            subscription.resume();
+        }
+    }
+
+    public void stop() {
+        if (subscription != null) {
+            subscription.cancel();
+            subscription = null;
+        }
+    }
+
+    public List<Note> getNotes() {
+        List<Note> notes = head.snapshot();
+        Collections.reverse(notes);
+        for (Page page : pages) {
+            if (page.isLoaded()) {
+                notes.addAll(page.notes);
+            }
+        }
+        return notes;
+    }
+
+    public int getLoadedCount() {
+        int count = head.size();
+        for (Page page : pages) {
+            if (page.isLoaded()) {
+                count += page.notes.size();
+            }
+        }
+        return count;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public boolean hasReachedEnd() {
+        return reachedEnd;
+    }
+
+    // Positions are indexes into getNotes().
+    public void onVisibleRange(int first, int last) {
+        firstVisible = first;
+        lastVisible = last;
+        if (loading || !headLoaded) {
+            return;
+        }
+
+        int headSize = head.size();
+        int visibleLo = Integer.MAX_VALUE;
+        int visibleHi = -1;
+        int position = headSize;
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (!page.isLoaded()) {
+                continue;
+            }
+            int end = position + page.notes.size();
+            if (first < end && last >= position) {
+                visibleLo = Math.min(visibleLo, i);
+                visibleHi = Math.max(visibleHi, i);
+            }
+            position = end;
+        }
+        if (visibleHi < 0) {
+            // Only the live page is on screen.
+            visibleLo = -1;
+            visibleHi = -1;
+        }
+
+        boolean evicted = false;
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (page.isLoaded() && (i < visibleLo - keepPages || i > visibleHi + keepPages)) {
+                if (i < visibleLo) {
+                    // Rows above the screen disappear, so the remembered positions move up.
+                    first -= page.notes.size();
+                    last -= page.notes.size();
+                }
+                page.notes = null;
+                evicted = true;
+            }
+        }
+        firstVisible = first;
+        lastVisible = last;
+        if (evicted) {
+            listener.onNotesChanged();
+        }
+
+        int loadedLo = -1;
+        int loadedHi = -1;
+        int loadedEnd = headSize;
+        for (int i = 0; i < pages.size(); i++) {
+            if (pages.get(i).isLoaded()) {
+                if (loadedLo < 0) {
+                    loadedLo = i;
+                }
+                loadedHi = i;
+                loadedEnd += pages.get(i).notes.size();
+            }
+        }
+
+        int prefetch = Math.max(1, pageSize / 2);
+        if (loadedLo > 0 && first <= headSize + prefetch && loadedLo - 1 >= visibleLo - keepPages) {
+            reload(pages.get(loadedLo - 1), true);
+        } else if (last >= loadedEnd - prefetch) {
+            int next = loadedHi + 1;
+            if (next > visibleHi + keepPages) {
+                return;
+            }
+            if (next < pages.size()) {
+                reload(pages.get(next), false);
+            } else if (!reachedEnd) {
+                loadOlder();
+            }
+        }
+    }
+
+    private void loadOlder() {
+        String cursor = pages.isEmpty() ? headStartKey : pages.get(pages.size() - 1).oldestKey;
+        if (cursor == null) {
+            reachedEnd = true;
+            return;
+        }
+        loading = true;
+        repository.loadPage(username, cursor, pageSize, new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> notes) {
+                loading = false;
+                if (notes.size() < pageSize) {
+                    reachedEnd = true;
+                }
+                if (!notes.isEmpty()) {
+                    pages.add(new Page(notes));
+                    listener.onNotesChanged();
+                }
+                onVisibleRange(firstVisible, lastVisible);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                loading = false;
+                listener.onError(e);
+            }
+        });
+    }
+
+    private void reload(Page page, boolean aboveScreen) {
+        loading = true;
+        repository.loadRange(username, page.oldestKey, page.newestKey, new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> notes) {
+                loading = false;
+                page.setNotes(notes);
+                if (aboveScreen) {
+                    firstVisible += notes.size();
+                    lastVisible += notes.size();
+                }
+                listener.onNotesChanged();
+                onVisibleRange(firstVisible, lastVisible);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                loading = false;
+                listener.onError(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Session-scoped newest page of notes, fetched while the login flow is still talking so the
+// notes screen can show and read it without querying again. Single use: take() hands the page
+// over once. Call from the main thread.
+public class NotesPrefetch {
+    private final NotesRepository repository;
+    private final int pageSize;
+    private String username;
+    private List<Note> page;
+    private Exception error;
+    private final List<DataCallback<List<Note>>> waiting = new ArrayList<>();
+    private int generation;
+
+    public NotesPrefetch(NotesRepository repository, int pageSize) {
+        this.repository = repository;
+        this.pageSize = pageSize;
+    }
+
+    public void start(String username) {
+        if (username.equals(this.username)) {
+            return;
+        }
+        clear();
+        this.username = username;
+        int startedGeneration = generation;
+        repository.loadPage(username, null, pageSize, new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> notes) {
+                if (startedGeneration == generation) {
+                    page = notes;
+                    deliver();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (startedGeneration == generation) {
+                    error = e;
+                    deliver();
+                }
+            }
+        });
+    }
+
+    // False when nothing was prefetched for username; the caller should load the page itself.
+    // Otherwise the callback gets the page, now or once the fetch completes.
+    public boolean take(String username, DataCallback<List<Note>> callback) {
+        if (!username.equals(this.username)) {
+            return false;
+        }
+        waiting.add(callback);
+        deliver();
+        return true;
+    }
+
+    public void clear() {
+        generation++;
+        username = null;
+        page = null;
+        error = null;
+        waiting.clear();
+    }
+
+    private void deliver() {
+        if (waiting.isEmpty() || (page == null && error == null)) {
+            return;
+        }
+        List<DataCallback<List<Note>>> callbacks = new ArrayList<>(waiting);
+        List<Note> notes = page;
+        Exception failure = error;
+        clear();
+        for (DataCallback<List<Note>> callback : callbacks) {
+            if (notes != null) {
+                callback.onSuccess(notes);
+            } else {
+                callback.onFailure(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.audiologin;
+
+import java.util.List;
+
+public interface NotesRepository {
+
+    interface NotesListener {
+        void onNoteChanged(Note note);
+
+        void onNoteRemoved(String key);
+
+        void onError(Exception e);
+    }
+
+    interface Subscription {
+        void cancel();
+
+        // Holds back changes until resume(), which delivers what was missed. Subscriptions that
+        // cannot pause, such as a bare database listener, keep delivering.
+        default void pause() {
+        }
+
+        default void resume() {
+        }
+    }
+
+    // Up to limit of the newest notes with keys before beforeKey (the newest overall when null), in key order.
+    void loadPage(String username, String beforeKey, int limit, DataCallback<List<Note>> callback);
+
+    // Notes with keys between startKey and endKey inclusive, in key order.
+    void loadRange(String username, String startKey, String endKey, DataCallback<List<Note>> callback);
+
+    // Stores text under a new push key and reports the saved note.
+    void saveNote(String username, String text, DataCallback<Note> callback);
+
+    // Existing and future notes with keys at or after startKey (all notes when null).
+    Subscription observe(String username, String startKey, NotesListener listener);
+}
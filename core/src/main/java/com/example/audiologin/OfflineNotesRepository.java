@@ -0,0 +1,324 @@
+package com.example.audiologin;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+// Local-first notes. Saves land in the local store and the sync outbox and are reported at once;
+// reads come from the remote repository, are cached locally, and fall back to the cache when the
+// remote is unreachable. Notes still waiting in the outbox are merged into every read.
+// Text is sealed with the user's note key on the way out and opened on the way in, so the local
+// store holds plain text and the server only envelopes. While the key is locked saves and server
+// reads fail rather than write plain text or return a partial list. Call from the main thread;
+// disk work, sealing and opening run on the io executor.
+public class OfflineNotesRepository implements NotesRepository {
+
+    private static class LocalObserver {
+        final String username;
+        final String startKey;
+        final NotesListener listener;
+
+        LocalObserver(String username, String startKey, NotesListener listener) {
+            this.username = username;
+            this.startKey = startKey;
+            this.listener = listener;
+        }
+    }
+
+    private interface LocalQuery {
+        List<Note> load();
+    }
+
+    // A change heard from the server, still sealed; stored is null for a removal.
+    private static class RemoteChange {
+        final String key;
+        final Note stored;
+
+        RemoteChange(String key, Note stored) {
+            this.key = key;
+            this.stored = stored;
+        }
+    }
+
+    // Queues the server's changes and opens them on io, so the page replayed when the listener
+    // attaches is opened in one openAll() call rather than a note at a time on the main thread.
+    // Changes reach the listener on main in the order the server sent them.
+    private class RemoteDecoder implements NotesListener {
+        private final String username;
+        private final NotesListener listener;
+        private final List<RemoteChange> queued = new ArrayList<>();
+        private boolean scheduled;
+        private volatile boolean cancelled;
+
+        RemoteDecoder(String username, NotesListener listener) {
+            this.username = username;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onNoteChanged(Note stored) {
+            queue(new RemoteChange(stored.getKey(), stored));
+        }
+
+        @Override
+        public void onNoteRemoved(String key) {
+            queue(new RemoteChange(key, null));
+        }
+
+        @Override
+        public void onError(Exception e) {
+            listener.onError(e);
+        }
+
+        private void queue(RemoteChange change) {
+            synchronized (queued) {
+                queued.add(change);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            io.execute(this::decode);
+        }
+
+        private void decode() {
+            List<RemoteChange> batch;
+            synchronized (queued) {
+                batch = new ArrayList<>(queued);
+                queued.clear();
+                scheduled = false;
+            }
+            List<RemoteChange> opened = new ArrayList<>(batch.size());
+            GeneralSecurityException failure = null;
+            int i = 0;
+            while (i < batch.size()) {
+                RemoteChange change = batch.get(i++);
+                if (change.stored == null) {
+                    local.remove(username, change.key);
+                    opened.add(change);
+                    continue;
+                }
+                List<Note> run = new ArrayList<>();
+                run.add(change.stored);
+                while (i < batch.size() && batch.get(i).stored != null) {
+                    run.add(batch.get(i++).stored);
+                }
+                List<Note> notes;
+                try {
+                    notes = keyring.openAll(username, run);
+                } catch (GeneralSecurityException e) {
+                    failure = e;
+                    continue;
+                }
+                local.putAll(username, notes);
+                for (Note note : notes) {
+                    opened.add(new RemoteChange(note.getKey(), note));
+                }
+            }
+            GeneralSecurityException error = failure;
+            main.execute(() -> {
+                if (cancelled) {
+                    return;
+                }
+                for (RemoteChange change : opened) {
+                    if (change.stored == null) {
+                        listener.onNoteRemoved(change.key);
+                    } else {
+                        listener.onNoteChanged(change.stored);
+                    }
+                }
+                if (error != null) {
+                    listener.onError(error);
+                }
+            });
+        }
+    }
+
+    private final NotesRepository remote;
+    private final LocalNotesStore local;
+    private final SyncQueue syncQueue;
+    private final NoteKeyring keyring;
+    private final Executor io;
+    private final Executor main;
+    private final List<LocalObserver> observers = new CopyOnWriteArrayList<>();
+
+    public OfflineNotesRepository(NotesRepository remote, LocalNotesStore local, SyncQueue syncQueue,
+                                  NoteKeyring keyring, Executor io, Executor main) {
+        this.remote = remote;
+        this.local = local;
+        this.syncQueue = syncQueue;
+        this.keyring = keyring;
+        this.io = io;
+        this.main = main;
+    }
+
+    private static String notePath(String username, String key) {
+        return "users/" + username + "/notes/" + key;
+    }
+
+    // Newest cached page only, without touching the network, for rendering before the first fetch.
+    public void loadLocalPage(String username, int limit, DataCallback<List<Note>> callback) {
+        io.execute(() -> {
+            List<Note> notes = local.loadPage(username, null, limit);
+            main.execute(() -> callback.onSuccess(notes));
+        });
+    }
+
+    @Override
+    public void loadPage(String username, String beforeKey, int limit, DataCallback<List<Note>> callback) {
+        remote.loadPage(username, beforeKey, limit,
+                cached(username, () -> local.loadPage(username, beforeKey, limit), limit, callback));
+    }
+
+    @Override
+    public void loadRange(String username, String startKey, String endKey, DataCallback<List<Note>> callback) {
+        remote.loadRange(username, startKey, endKey,
+                cached(username, () -> local.loadRange(username, startKey, endKey), 0, callback));
+    }
+
+    private DataCallback<List<Note>> cached(String username, LocalQuery query, int limit,
+                                            DataCallback<List<Note>> callback) {
+        return new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> sealed) {
+                io.execute(() -> {
+                    List<Note> notes;
+                    try {
+                        notes = keyring.openAll(username, sealed);
+                    } catch (GeneralSecurityException e) {
+                        main.execute(() -> callback.onFailure(e));
+                        return;
+                    }
+                    local.putAll(username, notes);
+                    List<Note> stored = query.load();
+                    main.execute(() -> callback.onSuccess(withPending(username, notes, stored, limit)));
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                io.execute(() -> {
+                    List<Note> stored = query.load();
+                    main.execute(() -> {
+                        if (stored.isEmpty()) {
+                            callback.onFailure(e);
+                        } else {
+                            callback.onSuccess(stored);
+                        }
+                    });
+                });
+            }
+        };
+    }
+
+    // Copies every note on the server into the local store, a page at a time from the newest, so
+    // the local copy and its search index cover notes the user never scrolled to. Reports how many
+    // notes were copied, or the first page that could not be read.
+    public void backfill(String username, int pageSize, DataCallback<Integer> callback) {
+        backfillPage(username, null, pageSize, 0, callback);
+    }
+
+    private void backfillPage(String username, String beforeKey, int pageSize, int copied,
+                              DataCallback<Integer> callback) {
+        remote.loadPage(username, beforeKey, pageSize, new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> sealed) {
+                io.execute(() -> {
+                    List<Note> notes;
+                    try {
+                        notes = keyring.openAll(username, sealed);
+                    } catch (GeneralSecurityException e) {
+                        main.execute(() -> callback.onFailure(e));
+                        return;
+                    }
+                    local.putAll(username, notes);
+                    int total = copied + notes.size();
+                    main.execute(() -> {
+                        if (sealed.size() < pageSize) {
+                            callback.onSuccess(total);
+                        } else {
+                            backfillPage(username, sealed.get(0).getKey(), pageSize, total, callback);
+                        }
+                    });
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    // The server has not seen notes still in the outbox, so take those from the local copy.
+    private List<Note> withPending(String username, List<Note> remoteNotes, List<Note> stored, int limit) {
+        TreeMap<String, Note> merged = new TreeMap<>();
+        for (Note note : remoteNotes) {
+            merged.put(note.getKey(), note);
+        }
+        for (Note note : stored) {
+            if (syncQueue.isPending(notePath(username, note.getKey()))) {
+                merged.put(note.getKey(), note);
+            }
+        }
+        while (limit > 0 && merged.size() > limit) {
+            merged.pollFirstEntry();
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    @Override
+    public void saveNote(String username, String text, DataCallback<Note> callback) {
+        Note note = new Note(PushIds.generate(System.currentTimeMillis()), text);
+        io.execute(() -> {
+            String sealed;
+            try {
+                sealed = keyring.seal(username, text);
+            } catch (GeneralSecurityException e) {
+                main.execute(() -> callback.onFailure(e));
+                return;
+            }
+            local.putAll(username, Collections.singletonList(note));
+            main.execute(() -> {
+                syncQueue.enqueue(notePath(username, note.getKey()), sealed);
+                for (LocalObserver observer : observers) {
+                    if (observer.username.equals(username)
+                            && (observer.startKey == null || note.getKey().compareTo(observer.startKey) >= 0)) {
+                        observer.listener.onNoteChanged(note);
+                    }
+                }
+                callback.onSuccess(note);
+            });
+        });
+    }
+
+    @Override
+    public Subscription observe(String username, String startKey, NotesListener listener) {
+        LocalObserver observer = new LocalObserver(username, startKey, listener);
+        observers.add(observer);
+        RemoteDecoder decoder = new RemoteDecoder(username, listener);
+        Subscription remoteSubscription = remote.observe(username, startKey, decoder);
+        return new Subscription() {
+            @Override
+            public void cancel() {
+                observers.remove(observer);
+                decoder.cancelled = true;
+                remoteSubscription.cancel();
+            }
+
+            @Override
+            public void pause() {
+                remoteSubscription.pause();
+            }
+
+            @Override
+            public void resume() {
+                remoteSubscription.resume();
+            }
+        };
+    }
+}
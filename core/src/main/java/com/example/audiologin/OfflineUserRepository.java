@@ -0,0 +1,49 @@
+package com.example.audiologin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Registration goes through the sync outbox, so it survives a dropped connection or a restart.
+// Call from the main thread.
+public class OfflineUserRepository implements UserRepository {
+    private final UserRepository remote;
+    private final SyncQueue syncQueue;
+
+    public OfflineUserRepository(UserRepository remote, SyncQueue syncQueue) {
+        this.remote = remote;
+        this.syncQueue = syncQueue;
+    }
+
+    @Override
+    public void userExists(String username, DataCallback<Boolean> callback) {
+        // A registration still in the outbox of the previous run counts too.
+        syncQueue.whenLoaded(() -> {
+            if (syncQueue.isPending("usernames/" + username)) {
+                callback.onSuccess(true);
+            } else {
+                remote.userExists(username, callback);
+            }
+        });
+    }
+
+    @Override
+    public void loadCredential(String username, DataCallback<String> callback) {
+        syncQueue.whenLoaded(() -> {
+            Object pending = syncQueue.getPending("users/" + username + "/AudioLogin");
+            if (pending instanceof String) {
+                callback.onSuccess((String) pending);
+            } else {
+                remote.loadCredential(username, callback);
+            }
+        });
+    }
+
+    @Override
+    public void register(String username, String encryptedAudioPassword, DataCallback<Void> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("users/" + username + "/AudioLogin", encryptedAudioPassword);
+        updates.put("usernames/" + username, true);
+        syncQueue.enqueue(updates);
+        callback.onSuccess(null);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.audiologin;
+
+import java.util.ArrayDeque;
+
+// Runs prompts, clips and pauses one after another. A step advances when it reports
+// completion (utterance done, clip ended), never on a fixed timer, and the next step
+// starts no sooner than minGapMs after the previous one finished.
+public class PromptScheduler {
+
+    public interface Step {
+        void start(Runnable done);
+    }
+
+    private final Clock clock;
+    private final long minGapMs;
+    private final ArrayDeque<Step> steps = new ArrayDeque<>();
+    private final Runnable startNext = this::startNext;
+    private boolean busy;
+    private int generation;
+    private long lastFinishedAt;
+    private boolean hasFinished;
+
+    public PromptScheduler(Clock clock, long minGapMs) {
+        this.clock = clock;
+        this.minGapMs = minGapMs;
+    }
+
+    public PromptScheduler then(Step step) {
+        steps.add(step);
+        if (!busy) {
+            advance();
+        }
+        return this;
+    }
+
+    public PromptScheduler pause(long delayMs) {
+        return then(done -> clock.postDelayed(done, delayMs));
+    }
+
+    public boolean isIdle() {
+        return !busy && steps.isEmpty();
+    }
+
+    public void cancel() {
+        generation++;
+        steps.clear();
+        clock.removeCallbacks(startNext);
+        busy = false;
+    }
+
+    private void advance() {
+        if (steps.isEmpty()) {
+            busy = false;
+            return;
+        }
+        busy = true;
+        long wait = hasFinished ? lastFinishedAt + minGapMs - clock.now() : 0;
+        if (wait > 0) {
+            clock.postDelayed(startNext, wait);
+        } else {
+            startNext();
+        }
+    }
+
+    private void startNext() {
+        Step step = steps.poll();
+        if (step == null) {
+            busy = false;
+            return;
+        }
+        int startedGeneration = generation;
+        boolean[] finished = new boolean[1];
+        step.start(() -> {
+            if (finished[0] || startedGeneration != generation) {
+                return;
+            }
+            finished[0] = true;
+            hasFinished = true;
+            lastFinishedAt = clock.now();
+            advance();
+        });
+    }
+}
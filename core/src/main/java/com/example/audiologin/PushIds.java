@@ -0,0 +1,43 @@
+package com.example.audiologin;
+
+import java.security.SecureRandom;
+
+// Client-side keys in the realtime database push() format: 8 timestamp characters followed by
+// 12 random ones, so keys sort by creation time and can be minted while offline.
+public class PushIds {
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static long lastPushTime;
+    private static final int[] lastRandChars = new int[12];
+
+    public static synchronized String generate(long now) {
+        boolean duplicateTime = now == lastPushTime;
+        lastPushTime = now;
+
+        char[] timeStampChars = new char[8];
+        for (int i = 7; i >= 0; i--) {
+            timeStampChars[i] = PUSH_CHARS.charAt((int) (now % 64));
+            now = now / 64;
+        }
+        StringBuilder id = new StringBuilder(20).append(timeStampChars);
+
+        if (!duplicateTime) {
+            for (int i = 0; i < 12; i++) {
+                lastRandChars[i] = RANDOM.nextInt(64);
+            }
+        } else {
+            // Same millisecond: increment the random part so keys stay strictly ordered.
+            int i;
+            for (i = 11; i >= 0 && lastRandChars[i] == 63; i--) {
+                lastRandChars[i] = 0;
+            }
+            if (i >= 0) {
+                lastRandChars[i]++;
+            }
+        }
+        for (int i = 0; i < 12; i++) {
+            id.append(PUSH_CHARS.charAt(lastRandChars[i]));
+        }
+        return id.toString();
+    }
+}
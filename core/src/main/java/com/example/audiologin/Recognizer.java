@@ -0,0 +1,27 @@
+package com.example.audiologin;
+
+// One in-process speech recognition session at a time. Partial results stream in while the user
+// speaks; a session ends with exactly one of onResult, onNoSpeech or onError, unless cancelled.
+// Call from the main thread; the listener is called back on it.
+public interface Recognizer {
+
+    interface Listener {
+        // The best guess so far for this session; replaces the previous partial.
+        void onPartial(String text);
+
+        void onResult(String text);
+
+        // The session heard nothing it could recognize before the engine's silence timeout.
+        void onNoSpeech();
+
+        void onError(Exception e);
+    }
+
+    void start(Listener listener);
+
+    // Stops listening and delivers the result for what was heard so far.
+    void stop();
+
+    // Stops listening; the listener is not called again for this session.
+    void cancel();
+}
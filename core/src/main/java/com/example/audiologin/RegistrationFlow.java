@@ -0,0 +1,120 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The registration steps without the UI: check the username is free, collect two animal
+// selections, encrypt them and register. Registration is queued offline-first, so the flow is
+// complete once the write has been handed to the repository; a later failure is reported apart.
+public class RegistrationFlow {
+    public static final int SELECTIONS = 2;
+
+    public interface Listener {
+        void onUsernameAvailable(String username);
+
+        void onUsernameTaken(String username);
+
+        void onCheckFailed(Exception e);
+
+        void onEncryptFailed(Exception e);
+
+        void onRegistered(String username);
+
+        void onSaveFailed(Exception e);
+    }
+
+    private final UserRepository users;
+    private final CryptoService crypto;
+    private final LatencyRecorder latency;
+    private final Listener listener;
+    private final List<String> selected = new ArrayList<>();
+    private String username;
+
+    public RegistrationFlow(UserRepository users, CryptoService crypto, LatencyRecorder latency, Listener listener) {
+        this.users = users;
+        this.crypto = crypto;
+        this.latency = latency;
+        this.listener = listener;
+    }
+
+    public void checkUsername(String username) {
+        this.username = null;
+        selected.clear();
+        long checkSpan = latency.begin(Stage.REGISTRATION_USERNAME_CHECK);
+        users.userExists(username, new DataCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean exists) {
+                latency.end(Stage.REGISTRATION_USERNAME_CHECK, checkSpan);
+                if (exists) {
+                    listener.onUsernameTaken(username);
+                } else {
+                    RegistrationFlow.this.username = username;
+                    listener.onUsernameAvailable(username);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latency.end(Stage.REGISTRATION_USERNAME_CHECK, checkSpan);
+                listener.onCheckFailed(e);
+            }
+        });
+    }
+
+    public int getSelectedCount() {
+        return selected.size();
+    }
+
+    public List<String> getSelected() {
+        return selected;
+    }
+
+    // Returns how many animals are selected; the second one completes the registration.
+    public int select(String animal) {
+        if (username == null || selected.size() >= SELECTIONS) {
+            return selected.size();
+        }
+        selected.add(animal);
+        if (selected.size() == SELECTIONS) {
+            register();
+        }
+        return selected.size();
+    }
+
+    private void register() {
+        String registering = username;
+        List<String> lowercaseAnimals = new ArrayList<>();
+        for (String animal : selected) {
+            lowercaseAnimals.add(animal.toLowerCase().trim());
+        }
+        String audioPassword = String.join(",", lowercaseAnimals);
+
+        long encryptSpan = latency.begin(Stage.REGISTRATION_ENCRYPT);
+        crypto.encrypt(audioPassword, new DataCallback<String>() {
+            @Override
+            public void onSuccess(String encryptedAudioPassword) {
+                latency.end(Stage.REGISTRATION_ENCRYPT, encryptSpan);
+                long writeSpan = latency.begin(Stage.REGISTRATION_WRITE);
+                users.register(registering, encryptedAudioPassword, new DataCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void value) {
+                        latency.end(Stage.REGISTRATION_WRITE, writeSpan);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        latency.end(Stage.REGISTRATION_WRITE, writeSpan);
+                        listener.onSaveFailed(e);
+                    }
+                });
+                listener.onRegistered(registering);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latency.end(Stage.REGISTRATION_ENCRYPT, encryptSpan);
+                listener.onEncryptFailed(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.audiologin;
+
+import java.util.ArrayDeque;
+
+// What the user was hearing when they touched the screen. Each offered item (a clip, or a clip and
+// its spoken name) is recorded with the times it started and ended, on the same clock as the touch
+// events (uptime millis on a device). An item stays on offer until the next one starts, or until
+// windowMs after it ended if none followed. A tap picks the item on offer reactionMs before its
+// first touch, since that is what the user decided on; failing that, the one on offer at the touch.
+// Call from the main thread.
+public class SelectionTimeline {
+    private static final int HISTORY = 4;
+
+    private static class Played {
+        final String item;
+        final long startedAt;
+        long endedAt = -1;
+
+        Played(String item, long startedAt) {
+            this.item = item;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private final long windowMs;
+    private final long reactionMs;
+    private final ArrayDeque<Played> played = new ArrayDeque<>();
+
+    public SelectionTimeline(long windowMs, long reactionMs) {
+        this.windowMs = windowMs;
+        this.reactionMs = reactionMs;
+    }
+
+    public void onStarted(String item, long at) {
+        onEnded(at);
+        if (played.size() == HISTORY) {
+            played.removeLast();
+        }
+        played.addFirst(new Played(item, at));
+    }
+
+    // Ends the item playing now, if any.
+    public void onEnded(long at) {
+        Played current = played.peekFirst();
+        if (current != null && current.endedAt < 0) {
+            current.endedAt = at;
+        }
+    }
+
+    // The item the touch at touchedAt picks, or null when nothing was being offered.
+    public String resolve(long touchedAt) {
+        String decided = onOfferAt(touchedAt - reactionMs);
+        return decided != null ? decided : onOfferAt(touchedAt);
+    }
+
+    private String onOfferAt(long at) {
+        Played next = null;
+        for (Played item : played) {
+            if (item.startedAt <= at) {
+                if (next == null && item.endedAt >= 0 && at > item.endedAt + windowMs) {
+                    return null;
+                }
+                return item.item;
+            }
+            next = item;
+        }
+        return null;
+    }
+
+    public void clear() {
+        played.clear();
+    }
+}
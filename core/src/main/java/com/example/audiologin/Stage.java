@@ -0,0 +1,28 @@
+package com.example.audiologin;
+
+// The timed steps of the login, registration and notes flows. The trace name shows up in
+// Perfetto/systrace; the enum name keys the persisted histograms, so renaming one starts it afresh.
+public enum Stage {
+    APP_START_TO_FIRST_PROMPT("startup.firstPrompt"),
+    TTS_INIT("tts.init"),
+    LOGIN_CREDENTIAL_FETCH("login.credentialFetch"),
+    LOGIN_DECRYPT("login.decrypt"),
+    LOGIN_SOUND_SELECTION("login.soundSelection"),
+    LOGIN_KEY_DERIVE("login.deriveNoteKey"),
+    LOGIN_VERIFY("login.verify"),
+    LOGIN_TOTAL("login.total"),
+    REGISTRATION_USERNAME_CHECK("registration.usernameCheck"),
+    REGISTRATION_ENCRYPT("registration.encrypt"),
+    REGISTRATION_WRITE("registration.write"),
+    NOTE_SAVE("notes.save"),
+    NOTES_LOCAL_PAGE("notes.localPage"),
+    NOTES_FIRST_PAGE("notes.firstPage"),
+    NOTES_FIRST_NOTE_SPOKEN("notes.firstNoteSpoken"),
+    NOTES_SEARCH("notes.search");
+
+    public final String traceName;
+
+    Stage(String traceName) {
+        this.traceName = traceName;
+    }
+}
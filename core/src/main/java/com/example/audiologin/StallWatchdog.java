@@ -0,0 +1,190 @@
+package com.example.audiologin;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// Samples the main thread from a watchdog thread. A heartbeat is posted to mainExecutor every
+// intervalMs; once one has waited thresholdMs, the stall is recorded with the main thread's stack
+// at that moment and the flow stage the screens last set, and the listener hears about it on the
+// watchdog thread, so a frozen app still reports it. The incident is updated with its full length
+// when the heartbeat finally runs. The newest capacity incidents are kept.
+public class StallWatchdog {
+
+    public interface Listener {
+        void onStall(Incident incident);
+    }
+
+    public static final class Incident {
+        private final long startedAtMillis;
+        private final long durationMs;
+        private final String stage;
+        private final StackTraceElement[] stack;
+        private final boolean finished;
+
+        Incident(long startedAtMillis, long durationMs, String stage, StackTraceElement[] stack, boolean finished) {
+            this.startedAtMillis = startedAtMillis;
+            this.durationMs = durationMs;
+            this.stage = stage;
+            this.stack = stack;
+            this.finished = finished;
+        }
+
+        public long getStartedAtMillis() {
+            return startedAtMillis;
+        }
+
+        // How long the main thread was blocked, or had been when it was last seen blocked.
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public StackTraceElement[] getStack() {
+            return stack.clone();
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+    }
+
+    private final Executor mainExecutor;
+    private final Thread mainThread;
+    private final long intervalMs;
+    private final long thresholdMs;
+    private final int capacity;
+    private final Listener listener;
+    private final List<Incident> incidents = new ArrayList<>();
+    private final Runnable heartbeat = this::answer;
+    private volatile String stage = "none";
+    private volatile long answeredAt;
+    private volatile long answered;
+    private volatile boolean running;
+    private Thread thread;
+
+    public StallWatchdog(Executor mainExecutor, Thread mainThread, long intervalMs, long thresholdMs,
+                         int capacity, Listener listener) {
+        this.mainExecutor = mainExecutor;
+        this.mainThread = mainThread;
+        this.intervalMs = intervalMs;
+        this.thresholdMs = thresholdMs;
+        this.capacity = capacity;
+        this.listener = listener;
+    }
+
+    // The flow now on screen, e.g. "login"; stalls are attributed to it.
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    // May be called again after stop(), e.g. each time the app comes back to the foreground.
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::watch, "stall-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public synchronized List<Incident> getIncidents() {
+        return new ArrayList<>(incidents);
+    }
+
+    // The longest stall recorded while stage was on screen, 0 if none; for asserting flow budgets.
+    public synchronized long getLongestStallMs(String stage) {
+        long longest = 0;
+        for (Incident incident : incidents) {
+            if (incident.stage.equals(stage)) {
+                longest = Math.max(longest, incident.durationMs);
+            }
+        }
+        return longest;
+    }
+
+    public synchronized void clear() {
+        incidents.clear();
+    }
+
+    // Plain text, newest last: one line per incident followed by its main-thread stack.
+    public void export(Writer out) throws IOException {
+        for (Incident incident : getIncidents()) {
+            out.write(String.format(Locale.US, "%d %s %dms%s\n", incident.startedAtMillis, incident.stage,
+                    incident.durationMs, incident.finished ? "" : " (still blocked)"));
+            for (StackTraceElement frame : incident.stack) {
+                out.write("    at " + frame + "\n");
+            }
+        }
+    }
+
+    // Runs on the main thread, its only writer.
+    private void answer() {
+        answeredAt = System.nanoTime();
+        answered++;
+    }
+
+    private void watch() {
+        // Heartbeats from an earlier start() have already been counted as answered.
+        long sent = answered;
+        try {
+            while (running) {
+                long postedAt = System.nanoTime();
+                long startedAtMillis = System.currentTimeMillis();
+                sent++;
+                mainExecutor.execute(heartbeat);
+                Thread.sleep(intervalMs);
+                Incident open = null;
+                while (running && answered < sent) {
+                    long blockedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - postedAt);
+                    if (open == null && blockedMs >= thresholdMs) {
+                        open = new Incident(startedAtMillis, blockedMs, stage, mainThread.getStackTrace(), false);
+                        record(open, null);
+                        if (listener != null) {
+                            listener.onStall(open);
+                        }
+                    }
+                    Thread.sleep(intervalMs);
+                }
+                if (open != null && answered >= sent) {
+                    long blockedMs = TimeUnit.NANOSECONDS.toMillis(answeredAt - postedAt);
+                    record(new Incident(startedAtMillis, blockedMs, open.stage, open.stack, true), open);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped.
+        }
+    }
+
+    private synchronized void record(Incident incident, Incident replacing) {
+        int index = replacing == null ? -1 : incidents.indexOf(replacing);
+        if (index >= 0) {
+            incidents.set(index, incident);
+            return;
+        }
+        incidents.add(incident);
+        if (incidents.size() > capacity) {
+            incidents.remove(0);
+        }
+    }
+}
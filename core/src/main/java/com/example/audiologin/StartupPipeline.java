@@ -0,0 +1,163 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+// The app's start-up work as named steps. Nothing runs until start(); then each step runs on the
+// executor once every step it depends on has finished. A step whose dependency failed is skipped
+// and fails with the same error. Dependencies must be added first, so there can be no cycles.
+public class StartupPipeline {
+
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    public interface Listener {
+        void onStepFinished(String name, long elapsedNanos);
+
+        void onStepFailed(String name, Exception e);
+    }
+
+    private static class Entry {
+        final String name;
+        final Step step;
+        final List<Entry> dependencies;
+        final int cookie;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        boolean scheduled;
+
+        Entry(String name, Step step, List<Entry> dependencies, int cookie) {
+            this.name = name;
+            this.step = step;
+            this.dependencies = dependencies;
+            this.cookie = cookie;
+        }
+    }
+
+    private final Executor executor;
+    private final LatencyRecorder.Tracer tracer;
+    private final Listener listener;
+    private final Map<String, Entry> steps = new LinkedHashMap<>();
+    private boolean started;
+
+    public StartupPipeline(Executor executor, LatencyRecorder.Tracer tracer, Listener listener) {
+        this.executor = executor;
+        this.tracer = tracer;
+        this.listener = listener;
+    }
+
+    public synchronized void add(String name, Step step, String... dependsOn) {
+        if (started) {
+            throw new IllegalStateException("Add " + name + " before start()");
+        }
+        if (steps.containsKey(name)) {
+            throw new IllegalArgumentException("Step " + name + " added twice");
+        }
+        List<Entry> dependencies = new ArrayList<>();
+        for (String dependency : dependsOn) {
+            Entry entry = steps.get(dependency);
+            if (entry == null) {
+                throw new IllegalArgumentException(name + " depends on " + dependency + ", which was not added before it");
+            }
+            dependencies.add(entry);
+        }
+        steps.put(name, new Entry(name, step, dependencies, steps.size()));
+    }
+
+    public void start() {
+        synchronized (this) {
+            started = true;
+        }
+        scheduleReady();
+    }
+
+    // Completes when the step has run, exceptionally if it or a dependency failed.
+    public synchronized CompletableFuture<Void> whenDone(String name) {
+        Entry entry = steps.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown step " + name);
+        }
+        return entry.done;
+    }
+
+    // Hands out every step whose dependencies have all finished, in the order the steps were added.
+    private void scheduleReady() {
+        List<Entry> ready = new ArrayList<>();
+        Entry skipped = null;
+        Throwable cause = null;
+        synchronized (this) {
+            for (Entry entry : steps.values()) {
+                if (entry.scheduled) {
+                    continue;
+                }
+                boolean waiting = false;
+                for (Entry dependency : entry.dependencies) {
+                    if (dependency.done.isCompletedExceptionally()) {
+                        cause = failureOf(dependency);
+                        break;
+                    } else if (!dependency.done.isDone()) {
+                        waiting = true;
+                    }
+                }
+                if (cause != null) {
+                    entry.scheduled = true;
+                    skipped = entry;
+                    break;
+                } else if (!waiting) {
+                    entry.scheduled = true;
+                    ready.add(entry);
+                }
+            }
+        }
+        for (Entry entry : ready) {
+            executor.execute(() -> run(entry));
+        }
+        if (skipped != null) {
+            finish(skipped, cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+        }
+    }
+
+    private void run(Entry entry) {
+        String traceName = "startup." + entry.name;
+        tracer.beginAsync(traceName, entry.cookie);
+        long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            entry.step.run();
+        } catch (Exception e) {
+            failure = e;
+        }
+        long elapsed = System.nanoTime() - start;
+        tracer.endAsync(traceName, entry.cookie);
+        if (failure == null && listener != null) {
+            listener.onStepFinished(entry.name, elapsed);
+        }
+        finish(entry, failure);
+    }
+
+    private void finish(Entry entry, Exception failure) {
+        if (failure == null) {
+            entry.done.complete(null);
+        } else {
+            if (listener != null) {
+                listener.onStepFailed(entry.name, failure);
+            }
+            entry.done.completeExceptionally(failure);
+        }
+        scheduleReady();
+    }
+
+    private static Throwable failureOf(Entry entry) {
+        try {
+            entry.done.getNow(null);
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+}
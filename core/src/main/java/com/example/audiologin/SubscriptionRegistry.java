@@ -0,0 +1,286 @@
+package com.example.audiologin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Shares one upstream listener per notes query among everyone observing it. A new observer gets
+// the notes already seen, replayed from memory, instead of a second download. A paused observer
+// gets nothing until it resumes, then only what changed meanwhile, one entry per note. Once no
+// observer is left unpaused, the upstream listener stays attached for graceMs, so a quick
+// stop/start or re-entering the screen costs nothing, and is then detached. Re-attaching compares
+// the replayed notes with the ones remembered and passes on only the differences. Reads and
+// writes go straight through. Call from the main thread.
+public class SubscriptionRegistry implements NotesRepository {
+
+    private final NotesRepository upstream;
+    private final Clock clock;
+    private final long graceMs;
+    private final Map<String, Shared> shared = new HashMap<>();
+    private int listenerCount;
+    private long bytesReceived;
+
+    public SubscriptionRegistry(NotesRepository upstream, Clock clock, long graceMs) {
+        this.upstream = upstream;
+        this.clock = clock;
+        this.graceMs = graceMs;
+    }
+
+    private static String queryPath(String username, String startKey) {
+        String path = "users/" + username + "/notes";
+        return startKey == null ? path : path + "?startAt=" + startKey;
+    }
+
+    // Upstream listeners currently attached.
+    public int getListenerCount() {
+        return listenerCount;
+    }
+
+    public int getObserverCount() {
+        int observers = 0;
+        for (Shared query : shared.values()) {
+            observers += query.observers.size();
+        }
+        return observers;
+    }
+
+    // Keys plus note values delivered by upstream listeners, as UTF-8.
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    @Override
+    public void loadPage(String username, String beforeKey, int limit, DataCallback<List<Note>> callback) {
+        upstream.loadPage(username, beforeKey, limit, callback);
+    }
+
+    @Override
+    public void loadRange(String username, String startKey, String endKey, DataCallback<List<Note>> callback) {
+        upstream.loadRange(username, startKey, endKey, callback);
+    }
+
+    @Override
+    public void saveNote(String username, String text, DataCallback<Note> callback) {
+        upstream.saveNote(username, text, callback);
+    }
+
+    @Override
+    public Subscription observe(String username, String startKey, NotesListener listener) {
+        String path = queryPath(username, startKey);
+        Shared query = shared.get(path);
+        if (query == null) {
+            query = new Shared(path, username, startKey);
+            shared.put(path, query);
+        }
+        Observer observer = new Observer(query, listener);
+        query.observers.add(observer);
+        for (Note note : query.notes.snapshot()) {
+            listener.onNoteChanged(note);
+        }
+        query.onActiveChanged();
+        return observer;
+    }
+
+    private class Shared implements NotesListener {
+        final String path;
+        final String username;
+        final String startKey;
+        final NotesModel notes = new NotesModel();
+        final List<Observer> observers = new ArrayList<>();
+        final Runnable detach = this::detach;
+        Subscription subscription;
+
+        Shared(String path, String username, String startKey) {
+            this.path = path;
+            this.username = username;
+            this.startKey = startKey;
+        }
+
+        void onActiveChanged() {
+            boolean active = false;
+            for (Observer observer : observers) {
+                active |= !observer.paused;
+            }
+            if (active) {
+                clock.removeCallbacks(detach);
+                if (subscription == null) {
+                    attach();
+                }
+            } else {
+                clock.removeCallbacks(detach);
+                clock.postDelayed(detach, graceMs);
+            }
+        }
+
+        private void attach() {
+            boolean reattaching = notes.size() > 0;
+            listenerCount++;
+            subscription = upstream.observe(username, startKey, this);
+            if (reattaching) {
+                reconcileRemovals();
+            }
+        }
+
+        // A re-attached listener only reports notes that exist, so ask which remembered ones are gone.
+        private void reconcileRemovals() {
+            List<Note> remembered = notes.snapshot();
+            if (remembered.isEmpty()) {
+                return;
+            }
+            String first = remembered.get(0).getKey();
+            String last = remembered.get(remembered.size() - 1).getKey();
+            Subscription attachedFor = subscription;
+            upstream.loadRange(username, first, last, new DataCallback<List<Note>>() {
+                @Override
+                public void onSuccess(List<Note> present) {
+                    if (subscription != attachedFor) {
+                        return;
+                    }
+                    Set<String> keys = new HashSet<>();
+                    for (Note note : present) {
+                        keys.add(note.getKey());
+                    }
+                    for (Note note : remembered) {
+                        if (!keys.contains(note.getKey())) {
+                            onNoteRemoved(note.getKey());
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    // Removals are picked up again on the next re-attach.
+                }
+            });
+        }
+
+        private void detach() {
+            if (subscription != null) {
+                subscription.cancel();
+                subscription = null;
+                listenerCount--;
+            }
+            if (observers.isEmpty()) {
+                shared.remove(path);
+            }
+        }
+
+        @Override
+        public void onNoteChanged(Note note) {
+            bytesReceived += note.getKey().getBytes(StandardCharsets.UTF_8).length
+                    + note.getText().getBytes(StandardCharsets.UTF_8).length;
+            if (!notes.put(note)) {
+                return;
+            }
+            for (Observer observer : new ArrayList<>(observers)) {
+                observer.onNoteChanged(note);
+            }
+        }
+
+        @Override
+        public void onNoteRemoved(String key) {
+            if (!notes.remove(key)) {
+                return;
+            }
+            for (Observer observer : new ArrayList<>(observers)) {
+                observer.onNoteRemoved(key);
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            for (Observer observer : new ArrayList<>(observers)) {
+                observer.onError(e);
+            }
+        }
+    }
+
+    private static class Observer implements Subscription {
+        final Shared query;
+        final NotesListener listener;
+        // Changes held back while paused: the latest note per key, null for a removal.
+        final LinkedHashMap<String, Note> missed = new LinkedHashMap<>();
+        Exception missedError;
+        boolean paused;
+        boolean cancelled;
+
+        Observer(Shared query, NotesListener listener) {
+            this.query = query;
+            this.listener = listener;
+        }
+
+        void onNoteChanged(Note note) {
+            if (paused) {
+                missed.remove(note.getKey());
+                missed.put(note.getKey(), note);
+            } else {
+                listener.onNoteChanged(note);
+            }
+        }
+
+        void onNoteRemoved(String key) {
+            if (paused) {
+                missed.remove(key);
+                missed.put(key, null);
+            } else {
+                listener.onNoteRemoved(key);
+            }
+        }
+
+        void onError(Exception e) {
+            if (paused) {
+                missedError = e;
+            } else {
+                listener.onError(e);
+            }
+        }
+
+        @Override
+        public void pause() {
+            if (cancelled || paused) {
+                return;
+            }
+            paused = true;
+            query.onActiveChanged();
+        }
+
+        @Override
+        public void resume() {
+            if (cancelled || !paused) {
+                return;
+            }
+            paused = false;
+            List<Map.Entry<String, Note>> changes = new ArrayList<>(missed.entrySet());
+            missed.clear();
+            for (Map.Entry<String, Note> change : changes) {
+                if (change.getValue() != null) {
+                    listener.onNoteChanged(change.getValue());
+                } else {
+                    listener.onNoteRemoved(change.getKey());
+                }
+            }
+            if (missedError != null) {
+                Exception error = missedError;
+                missedError = null;
+                listener.onError(error);
+            }
+            query.onActiveChanged();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            missed.clear();
+            query.observers.remove(this);
+            query.onActiveChanged();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Durable write-behind outbox. Writes are keyed by database path, so a later write to the same
+// path replaces the pending one. Pending paths go out in batched multi-path updates, and a failed
+// batch is retried with exponential backoff. The previous run's outbox is read on the io executor;
+// writes enqueued before it arrives are kept and sent after it. Must be used from the thread the
+// main executor runs on.
+public class SyncQueue {
+
+    public interface Store {
+        Map<String, Object> loadPending();
+
+        void put(Map<String, Object> values);
+
+        // Drops the written paths unless they were overwritten while the batch was in flight.
+        void removeIfUnchanged(Map<String, Object> written);
+    }
+
+    public interface RemoteWriter {
+        void write(Map<String, Object> updates, DataCallback<Void> callback);
+    }
+
+    private final Store store;
+    private final RemoteWriter writer;
+    private final Clock clock;
+    private final long flushDelayMs;
+    private final int maxBatchSize;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final LinkedHashMap<String, Object> pending = new LinkedHashMap<>();
+    private final Runnable flushTask = this::flush;
+    private final List<Runnable> onLoaded = new ArrayList<>();
+    private boolean loaded;
+    private boolean inFlight;
+    private boolean flushScheduled;
+    private long backoffMs;
+    private int batchesSent;
+    private int failures;
+
+    // Reads the stored outbox before returning, as the load test and the tests want.
+    public SyncQueue(Store store, RemoteWriter writer, Clock clock, long flushDelayMs, int maxBatchSize,
+                     long initialBackoffMs, long maxBackoffMs) {
+        this(store, writer, clock, Runnable::run, Runnable::run, flushDelayMs, maxBatchSize, initialBackoffMs,
+                maxBackoffMs);
+    }
+
+    public SyncQueue(Store store, RemoteWriter writer, Clock clock, Executor io, Executor main, long flushDelayMs,
+                     int maxBatchSize, long initialBackoffMs, long maxBackoffMs) {
+        this.store = store;
+        this.writer = writer;
+        this.clock = clock;
+        this.flushDelayMs = flushDelayMs;
+        this.maxBatchSize = maxBatchSize;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        io.execute(() -> {
+            Map<String, Object> stored = store.loadPending();
+            main.execute(() -> load(stored));
+        });
+    }
+
+    // Stored writes go ahead of anything enqueued meanwhile, which also wins for a path in both.
+    private void load(Map<String, Object> stored) {
+        LinkedHashMap<String, Object> enqueued = new LinkedHashMap<>(pending);
+        pending.clear();
+        pending.putAll(stored);
+        for (Map.Entry<String, Object> entry : enqueued.entrySet()) {
+            pending.remove(entry.getKey());
+            pending.put(entry.getKey(), entry.getValue());
+        }
+        loaded = true;
+        if (!pending.isEmpty()) {
+            scheduleFlush(0);
+        }
+        for (Runnable action : onLoaded) {
+            action.run();
+        }
+        onLoaded.clear();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Runs action now if the stored outbox has been read, otherwise as soon as it has.
+    public void whenLoaded(Runnable action) {
+        if (loaded) {
+            action.run();
+        } else {
+            onLoaded.add(action);
+        }
+    }
+
+    public void enqueue(String path, Object value) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put(path, value);
+        enqueue(values);
+    }
+
+    public void enqueue(Map<String, Object> values) {
+        store.put(values);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            // Re-inserting moves an overwritten path behind older pending writes.
+            pending.remove(entry.getKey());
+            pending.put(entry.getKey(), entry.getValue());
+        }
+        if (backoffMs == 0) {
+            scheduleFlush(flushDelayMs);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public int getBatchesSent() {
+        return batchesSent;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    // True for every path until the stored outbox has been read, since any of them may be in it.
+    public boolean isPending(String path) {
+        return !loaded || pending.containsKey(path);
+    }
+
+    // The value waiting to be written at path, or null. Until isLoaded() only enqueued values are known.
+    public Object getPending(String path) {
+        return pending.get(path);
+    }
+
+    // A copy of the pending writes whose paths start with prefix, oldest first.
+    public Map<String, Object> getPendingUnder(String prefix) {
+        Map<String, Object> under = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : pending.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                under.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return under;
+    }
+
+    // Skips any backoff wait, e.g. when connectivity returns.
+    public void retryNow() {
+        backoffMs = 0;
+        scheduleFlush(0);
+    }
+
+    private void scheduleFlush(long delayMs) {
+        clock.removeCallbacks(flushTask);
+        flushScheduled = true;
+        clock.postDelayed(flushTask, delayMs);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        // load() flushes once the stored writes are in order.
+        if (!loaded || inFlight || pending.isEmpty()) {
+            return;
+        }
+        Map<String, Object> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, Object>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < maxBatchSize) {
+            Map.Entry<String, Object> entry = iterator.next();
+            batch.put(entry.getKey(), entry.getValue());
+        }
+        inFlight = true;
+        batchesSent++;
+        writer.write(batch, new DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                inFlight = false;
+                backoffMs = 0;
+                store.removeIfUnchanged(batch);
+                for (Map.Entry<String, Object> entry : batch.entrySet()) {
+                    if (pending.get(entry.getKey()) == entry.getValue()) {
+                        pending.remove(entry.getKey());
+                    }
+                }
+                if (!pending.isEmpty() && !flushScheduled) {
+                    scheduleFlush(0);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                inFlight = false;
+                failures++;
+                backoffMs = backoffMs == 0 ? initialBackoffMs : Math.min(backoffMs * 2, maxBackoffMs);
+                scheduleFlush(backoffMs);
+            }
+        });
+    }
+}
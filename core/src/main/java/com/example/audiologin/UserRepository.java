@@ -0,0 +1,12 @@
+package com.example.audiologin;
+
+public interface UserRepository {
+    // Answers from the usernames/{username} index leaf, never from the user's subtree.
+    void userExists(String username, DataCallback<Boolean> callback);
+
+    // The encrypted audio password, or null when the user has none.
+    void loadCredential(String username, DataCallback<String> callback);
+
+    // Writes the credential and the username index entry in one atomic update.
+    void register(String username, String encryptedAudioPassword, DataCallback<Void> callback);
+}
@@ -0,0 +1,29 @@
+package com.example.audiologin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AudioNoteTest {
+
+    @Test
+    public void textNamesTheClip() {
+        String text = AudioNote.text("-Nabc", 41600);
+
+        assertEquals("Audio note, 42 seconds. [audio:-Nabc]", text);
+        assertEquals("-Nabc", AudioNote.clipIdOf(text));
+        assertEquals("Audio note, 1 second. [audio:-Nabc]", AudioNote.text("-Nabc", 300));
+    }
+
+    @Test
+    public void ordinaryNotesHaveNoClip() {
+        assertNull(AudioNote.clipIdOf("Buy milk"));
+        assertNull(AudioNote.clipIdOf("see [audio:] later"));
+        assertNull(AudioNote.clipIdOf("[audio:../other/clip]"));
+    }
+
+    @Test
+    public void durationFollowsTheBitRate() {
+        assertEquals(8000, AudioNote.durationMs(32000, 32000));
+    }
+}
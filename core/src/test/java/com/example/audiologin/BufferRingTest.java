@@ -0,0 +1,79 @@
+package com.example.audiologin;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BufferRingTest {
+
+    @Test
+    public void passesFilledBuffersInOrder() throws Exception {
+        BufferRing ring = new BufferRing(3, 16);
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer buffer = ring.takeFree();
+            assertTrue(buffer.isDirect());
+            buffer.put((byte) i).flip();
+            ring.publish(buffer);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer buffer = ring.takeFilled(0);
+            assertEquals(i, buffer.get());
+            ring.release(buffer);
+        }
+        assertNull(ring.takeFilled(0));
+        assertFalse(ring.isDrained());
+    }
+
+    @Test
+    public void reusesTheSameBuffers() throws Exception {
+        BufferRing ring = new BufferRing(2, 16);
+        ByteBuffer first = ring.takeFree();
+        ring.publish(first);
+        ring.release(ring.takeFilled(0));
+        ByteBuffer second = ring.takeFree();
+        ByteBuffer third = ring.takeFree();
+
+        assertTrue(third == first || second == first);
+        assertEquals(0, third.position());
+        assertEquals(16, third.limit());
+    }
+
+    @Test
+    public void producerWaitsForTheConsumerWhenFull() throws Exception {
+        BufferRing ring = new BufferRing(2, 16);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 5; i++) {
+                    ByteBuffer buffer = ring.takeFree();
+                    buffer.put((byte) i).flip();
+                    ring.publish(buffer);
+                }
+                ring.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        int received = 0;
+        while (true) {
+            // Slower than the producer, so it runs out of buffers.
+            TimeUnit.MILLISECONDS.sleep(20);
+            ByteBuffer buffer = ring.takeFilled(1000);
+            if (buffer == null) {
+                break;
+            }
+            assertEquals(received++, buffer.get());
+            ring.release(buffer);
+        }
+        producer.join(1000);
+
+        assertEquals(5, received);
+        assertTrue(ring.isDrained());
+        assertTrue(ring.getProducerWaits() > 0);
+    }
+}
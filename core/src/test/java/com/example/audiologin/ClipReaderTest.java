@@ -0,0 +1,148 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ClipReaderTest {
+    private static final int CHUNK = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileAudioStore files;
+    private RecordingAudioStore store;
+    private byte[] clip;
+
+    @Before
+    public void setUp() throws Exception {
+        files = new FileAudioStore(folder.newFolder(), Runnable::run, Runnable::run);
+        store = new RecordingAudioStore(files);
+        clip = new byte[1050];
+        for (int i = 0; i < clip.length; i++) {
+            clip[i] = (byte) (i * 31);
+        }
+        ClipWriter writer = new ClipWriter(files, "alice", "clip1", CHUNK, 2, new ClipWriter.Listener() {
+            @Override
+            public void onChunkStored(int index) {
+            }
+
+            @Override
+            public void onFinished(int totalChunks, long length) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                fail(e.toString());
+            }
+
+            @Override
+            public void onAbandoned() {
+                fail("Clip abandoned");
+            }
+        });
+        writer.write(clip, 0, clip.length);
+        writer.finish();
+    }
+
+    private byte[] readAll(ClipReader reader, int readSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[readSize];
+        long position = 0;
+        int n;
+        while ((n = reader.readAt(position, buffer, 0, buffer.length)) >= 0) {
+            out.write(buffer, 0, n);
+            position += n;
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void firstReadFetchesOnlyTheWindow() throws Exception {
+        ClipReader reader = new ClipReader(store, null, "alice", "clip1", CHUNK, 2, 1000);
+        byte[] buffer = new byte[16];
+
+        assertEquals(16, reader.readAt(0, buffer, 0, buffer.length));
+
+        assertEquals("[0, 1, 2]", store.reads.toString());
+        assertEquals(clip[15], buffer[15]);
+    }
+
+    @Test
+    public void streamsTheWholeClipInAFixedWindow() throws Exception {
+        ClipReader reader = new ClipReader(store, null, "alice", "clip1", CHUNK, 2, 1000);
+
+        assertArrayEquals(clip, readAll(reader, 64));
+
+        // Each of the 11 chunks once; the lookahead runs two past the end.
+        assertEquals(13, reader.getFetches());
+        assertTrue(reader.getWindowSize() <= 4);
+    }
+
+    @Test
+    public void readsStopAtTheEndOfAChunk() throws Exception {
+        ClipReader reader = new ClipReader(store, null, "alice", "clip1", CHUNK, 1, 1000);
+        byte[] buffer = new byte[64];
+
+        assertEquals(10, reader.readAt(90, buffer, 0, 64));
+        assertEquals(clip[99], buffer[9]);
+        assertEquals(50, reader.readAt(1000, buffer, 0, 64));
+        assertEquals(-1, reader.readAt(1050, buffer, 0, 64));
+        assertEquals(-1, reader.readAt(5000, buffer, 0, 64));
+    }
+
+    @Test
+    public void seekingBackRefetchesDroppedChunks() throws Exception {
+        ClipReader reader = new ClipReader(store, null, "alice", "clip1", CHUNK, 1, 1000);
+        byte[] buffer = new byte[1];
+
+        reader.readAt(0, buffer, 0, 1);
+        reader.readAt(500, buffer, 0, 1);
+        reader.readAt(0, buffer, 0, 1);
+
+        assertEquals("[0, 1, 5, 6, 0, 1]", store.reads.toString());
+        assertEquals(clip[0], buffer[0]);
+    }
+
+    @Test
+    public void missingChunksComeFromTheFallback() throws Exception {
+        FileAudioStore empty = new FileAudioStore(folder.newFolder(), Runnable::run, Runnable::run);
+        ClipReader reader = new ClipReader(empty, store, "alice", "clip1", CHUNK, 1, 1000);
+
+        assertArrayEquals(clip, readAll(reader, 100));
+    }
+
+    @Test
+    public void failedChunkIsReportedAndRetried() throws Exception {
+        AudioStore broken = new RecordingAudioStore(files) {
+            private boolean failed;
+
+            @Override
+            public synchronized void readChunk(String username, String clipId, int index,
+                                               DataCallback<byte[]> callback) {
+                if (index == 0 && !failed) {
+                    failed = true;
+                    callback.onFailure(new IOException("Offline"));
+                    return;
+                }
+                super.readChunk(username, clipId, index, callback);
+            }
+        };
+        ClipReader reader = new ClipReader(broken, null, "alice", "clip1", CHUNK, 1, 1000);
+        byte[] buffer = new byte[4];
+
+        try {
+            reader.readAt(0, buffer, 0, 4);
+            fail("Expected the failed chunk to be reported");
+        } catch (IOException expected) {
+            // The player gives up or asks again.
+        }
+        assertEquals(4, reader.readAt(0, buffer, 0, 4));
+    }
+}
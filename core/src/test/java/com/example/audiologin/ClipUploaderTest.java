@@ -0,0 +1,244 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ClipUploaderTest {
+    private static final int CHUNK = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileAudioStore localFiles;
+    private FileAudioStore remoteFiles;
+    private RecordingAudioStore local;
+    private RecordingAudioStore remote;
+    private FakeClock clock;
+    private final List<String> uploaded = new ArrayList<>();
+    private final List<String> failed = new ArrayList<>();
+    private ClipUploader uploader;
+
+    @Before
+    public void setUp() throws Exception {
+        localFiles = new FileAudioStore(folder.newFolder("local"), Runnable::run, Runnable::run);
+        remoteFiles = new FileAudioStore(folder.newFolder("remote"), Runnable::run, Runnable::run);
+        local = new RecordingAudioStore(localFiles);
+        remote = new RecordingAudioStore(remoteFiles);
+        clock = new FakeClock();
+        uploader = uploader();
+    }
+
+    private ClipUploader uploader() {
+        return new ClipUploader(local, remote, clock, 1000, 8000, new ClipUploader.Listener() {
+            @Override
+            public void onUploaded(String username, String clipId, long length) {
+                uploaded.add(clipId + ":" + length);
+            }
+
+            @Override
+            public void onFailed(String username, String clipId, Exception e) {
+                failed.add(clipId);
+            }
+        });
+    }
+
+    private ClipWriter record(String clipId, int bytes) throws Exception {
+        ClipWriter writer = new ClipWriter(localFiles, "alice", clipId, CHUNK, 2, new ClipWriter.Listener() {
+            @Override
+            public void onChunkStored(int index) {
+            }
+
+            @Override
+            public void onFinished(int totalChunks, long length) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                fail(e.toString());
+            }
+
+            @Override
+            public void onAbandoned() {
+                fail("Clip abandoned");
+            }
+        });
+        byte[] data = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            data[i] = (byte) i;
+        }
+        writer.write(data, 0, bytes);
+        return writer;
+    }
+
+    // Wired to the uploader the way the recorder does it.
+    private ClipWriter spool(AudioStore store, String clipId) {
+        return new ClipWriter(store, "alice", clipId, CHUNK, 2, new ClipWriter.Listener() {
+            @Override
+            public void onChunkStored(int index) {
+                uploader.upload("alice", clipId);
+            }
+
+            @Override
+            public void onFinished(int totalChunks, long length) {
+                uploader.upload("alice", clipId);
+            }
+
+            @Override
+            public void onError(Exception e) {
+            }
+
+            @Override
+            public void onAbandoned() {
+                uploader.drop("alice", clipId);
+            }
+        });
+    }
+
+    @Test
+    public void uploadsAFinishedClipAndDeletesTheLocalCopy() throws Exception {
+        record("clip1", 10).finish();
+
+        uploader.upload("alice", "clip1");
+
+        assertEquals("[clip1:10]", uploaded.toString());
+        assertEquals("[0, 1, 2]", remote.writes.toString());
+        assertTrue(remoteFiles.status("alice", "clip1").isComplete());
+        assertTrue(localFiles.listClips("alice").isEmpty());
+        assertTrue(uploader.isIdle());
+    }
+
+    @Test
+    public void followsARecordingStillInProgress() throws Exception {
+        ClipWriter writer = record("clip1", 8);
+        uploader.upload("alice", "clip1");
+
+        // Both chunks so far are sent; it then waits for more.
+        assertEquals("[0, 1]", remote.writes.toString());
+        assertFalse(uploader.isIdle());
+        assertTrue(uploaded.isEmpty());
+
+        writer.write(new byte[6], 0, 6);
+        uploader.upload("alice", "clip1");
+        writer.finish();
+        uploader.upload("alice", "clip1");
+
+        assertEquals("[0, 1, 2, 3]", remote.writes.toString());
+        assertEquals("[clip1:14]", uploaded.toString());
+    }
+
+    @Test
+    public void retriesWithBackoffFromWhereTheServerLeftOff() throws Exception {
+        record("clip1", 12).finish();
+        remote.failChunk = 1;
+        remote.failWrites = 2;
+
+        uploader.upload("alice", "clip1");
+        assertEquals("[0]", remote.writes.toString());
+        clock.advance(999);
+        assertEquals("[0]", remote.writes.toString());
+        clock.advance(1);
+        // Doubled after the second failure.
+        clock.advance(1999);
+        assertTrue(uploaded.isEmpty());
+        clock.advance(1);
+
+        // Chunk 0 is not sent again.
+        assertEquals("[0, 1, 2]", remote.writes.toString());
+        assertEquals("[clip1:12]", uploaded.toString());
+    }
+
+    @Test
+    public void resumesAnUploadStartedByAnEarlierRun() throws Exception {
+        record("clip1", 16).finish();
+        for (int i = 0; i < 2; i++) {
+            remoteFiles.writeChunk("alice", "clip1", i, new byte[CHUNK], CHUNK, new UserRepositoryTest.Recorder<>());
+        }
+
+        uploader.upload("alice", "clip1");
+
+        assertEquals("[2, 3]", remote.writes.toString());
+        assertEquals(2, uploader.getUploadedChunks());
+        assertEquals("[clip1:16]", uploaded.toString());
+    }
+
+    @Test
+    public void skipsAClipWithAMissingChunkAndMovesOn() throws Exception {
+        record("clip1", 12).finish();
+        record("clip2", 4).finish();
+        localFiles.delete("alice", "clip1", new UserRepositoryTest.Recorder<>());
+        localFiles.finish("alice", "clip1", 3, 12, new UserRepositoryTest.Recorder<>());
+
+        uploader.upload("alice", "clip1");
+        uploader.upload("alice", "clip2");
+
+        assertEquals("[clip1]", failed.toString());
+        assertEquals("[clip2:4]", uploaded.toString());
+    }
+
+    @Test
+    public void queuesClipsOneAfterAnother() throws Exception {
+        ClipWriter first = record("clip1", 4);
+        record("clip2", 4).finish();
+
+        uploader.upload("alice", "clip1");
+        uploader.upload("alice", "clip2");
+        assertEquals(2, uploader.getQueuedCount());
+        assertTrue(uploaded.isEmpty());
+
+        first.finish();
+        uploader.upload("alice", "clip1");
+
+        assertEquals("[clip1:4, clip2:4]", uploaded.toString());
+    }
+
+    @Test
+    public void failedRecordingIsSentUpToItsLastStoredChunk() throws Exception {
+        local.failChunk = 1;
+        local.failWrites = 1;
+        ClipWriter writer = spool(local, "clip1");
+        writer.write(new byte[CHUNK], 0, CHUNK);
+        record("clip2", 4).finish();
+        uploader.upload("alice", "clip2");
+
+        try {
+            writer.write(new byte[CHUNK * 2], 0, CHUNK * 2);
+            fail("Expected the failed chunk to be reported");
+        } catch (IOException expected) {
+            writer.abandon();
+        }
+
+        assertEquals("[clip1:4, clip2:4]", uploaded.toString());
+        assertTrue(failed.isEmpty());
+        assertTrue(uploader.isIdle());
+    }
+
+    @Test
+    public void clipThatCannotBeClosedIsDroppedFromTheQueue() throws Exception {
+        AudioStore unclosable = new RecordingAudioStore(localFiles) {
+            @Override
+            public void finish(String username, String clipId, int totalChunks, long length,
+                               DataCallback<Void> callback) {
+                callback.onFailure(new IOException("Disk full"));
+            }
+        };
+        ClipWriter writer = spool(unclosable, "clip1");
+        writer.write(new byte[CHUNK + 2], 0, CHUNK + 2);
+        record("clip2", 4).finish();
+        uploader.upload("alice", "clip2");
+
+        writer.finish();
+
+        assertEquals("[clip2:4]", uploaded.toString());
+        assertTrue(uploader.isIdle());
+        // Kept for the next recovery pass.
+        assertEquals(2, localFiles.status("alice", "clip1").getStoredChunks());
+    }
+}
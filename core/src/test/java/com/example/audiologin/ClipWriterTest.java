@@ -0,0 +1,181 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ClipWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileAudioStore store;
+    private final List<Integer> stored = new ArrayList<>();
+    private long finishedLength = -1;
+    private Exception error;
+    private boolean abandoned;
+
+    private final ClipWriter.Listener listener = new ClipWriter.Listener() {
+        @Override
+        public void onChunkStored(int index) {
+            stored.add(index);
+        }
+
+        @Override
+        public void onFinished(int totalChunks, long length) {
+            finishedLength = length;
+        }
+
+        @Override
+        public void onError(Exception e) {
+            error = e;
+        }
+
+        @Override
+        public void onAbandoned() {
+            abandoned = true;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        store = new FileAudioStore(folder.newFolder(), Runnable::run, Runnable::run);
+    }
+
+    private byte[] read(int index) {
+        UserRepositoryTest.Recorder<byte[]> chunk = new UserRepositoryTest.Recorder<>();
+        store.readChunk("alice", "clip1", index, chunk);
+        return chunk.value;
+    }
+
+    @Test
+    public void cutsTheStreamIntoFixedChunks() throws Exception {
+        ClipWriter writer = new ClipWriter(store, "alice", "clip1", 4, 2, listener);
+        byte[] data = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+        writer.write(data, 0, 3);
+        assertTrue(stored.isEmpty());
+        writer.write(data, 3, 7);
+        assertEquals("[0, 1]", stored.toString());
+        writer.finish();
+
+        assertEquals("[0, 1, 2]", stored.toString());
+        assertArrayEquals(new byte[]{4, 5, 6, 7}, read(1));
+        assertArrayEquals(new byte[]{8, 9}, read(2));
+        assertEquals(10, finishedLength);
+        assertTrue(store.status("alice", "clip1").isComplete());
+        assertNull(error);
+    }
+
+    @Test
+    public void writesFromDirectBuffers() throws Exception {
+        ClipWriter writer = new ClipWriter(store, "alice", "clip1", 4, 2, listener);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(6);
+        buffer.put(new byte[]{1, 2, 3, 4, 5, 6}).flip();
+
+        writer.write(buffer);
+        writer.finish();
+
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, read(0));
+        assertArrayEquals(new byte[]{5, 6}, read(1));
+        assertEquals(2, writer.getChunkCount());
+    }
+
+    @Test
+    public void exactMultipleHasNoEmptyLastChunk() throws Exception {
+        ClipWriter writer = new ClipWriter(store, "alice", "clip1", 4, 2, listener);
+        writer.write(new byte[8], 0, 8);
+        writer.finish();
+
+        assertEquals(2, store.status("alice", "clip1").getTotalChunks());
+        assertNull(read(2));
+    }
+
+    @Test
+    public void blocksWhileTooManyChunksAreUnconfirmed() throws Exception {
+        List<DataCallback<Void>> held = new ArrayList<>();
+        AudioStore slow = new RecordingAudioStore(store) {
+            @Override
+            public synchronized void writeChunk(String username, String clipId, int index, byte[] data, int length,
+                                                DataCallback<Void> callback) {
+                held.add(callback);
+            }
+        };
+        ClipWriter writer = new ClipWriter(slow, "alice", "clip1", 4, 2, listener);
+        Thread encoder = new Thread(() -> {
+            try {
+                writer.write(new byte[12], 0, 12);
+            } catch (Exception e) {
+                error = e;
+            }
+        });
+        encoder.start();
+        encoder.join(200);
+
+        assertTrue(encoder.isAlive());
+        synchronized (slow) {
+            assertEquals(2, held.size());
+            held.get(0).onSuccess(null);
+        }
+        encoder.join(TimeUnit.SECONDS.toMillis(1));
+        assertFalse(encoder.isAlive());
+        assertEquals(3, held.size());
+    }
+
+    @Test
+    public void failedChunkStopsLaterWrites() throws Exception {
+        RecordingAudioStore failing = new RecordingAudioStore(store);
+        failing.failWrites = 1;
+        ClipWriter writer = new ClipWriter(failing, "alice", "clip1", 4, 2, listener);
+
+        writer.write(new byte[4], 0, 4);
+        assertNotNull(error);
+        try {
+            writer.write(new byte[4], 0, 4);
+            fail("Expected the failed chunk to be reported");
+        } catch (IOException expected) {
+            assertSame(error, expected.getCause());
+        }
+    }
+
+    @Test
+    public void failedChunkClosesTheClipAtTheChunksBeforeIt() throws Exception {
+        RecordingAudioStore failing = new RecordingAudioStore(store);
+        failing.failChunk = 1;
+        failing.failWrites = 1;
+        ClipWriter writer = new ClipWriter(failing, "alice", "clip1", 4, 2, listener);
+
+        writer.write(new byte[6], 0, 6);
+        writer.write(new byte[2], 0, 2);
+        writer.finish();
+
+        assertEquals(4, finishedLength);
+        AudioStore.Status status = store.status("alice", "clip1");
+        assertTrue(status.isComplete());
+        assertEquals(1, status.getTotalChunks());
+        assertFalse(abandoned);
+    }
+
+    @Test
+    public void abandonedClipWithNothingStoredIsDeleted() throws Exception {
+        RecordingAudioStore failing = new RecordingAudioStore(store);
+        failing.failWrites = 1;
+        ClipWriter writer = new ClipWriter(failing, "alice", "clip1", 4, 2, listener);
+
+        writer.write(new byte[6], 0, 6);
+        writer.abandon();
+
+        assertTrue(abandoned);
+        assertEquals(-1, finishedLength);
+        assertTrue(store.listClips("alice").isEmpty());
+    }
+}
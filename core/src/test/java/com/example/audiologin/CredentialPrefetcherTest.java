@@ -0,0 +1,212 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CredentialPrefetcherTest {
+    private static final long DEBOUNCE_MS = 300;
+    private static final long TTL_MS = 60000;
+    private static final int MAX_ENTRIES = 2;
+
+    private InMemoryBackend backend;
+    private FakeClock clock;
+    private DeferredUserRepository repository;
+    private CredentialPrefetcher prefetcher;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        backend.set("users/alice/AudioLogin", "alice-secret");
+        backend.set("users/alicia/AudioLogin", "alicia-secret");
+        backend.set("users/bob/AudioLogin", "bob-secret");
+        clock = new FakeClock();
+        repository = new DeferredUserRepository(new InMemoryUserRepository(backend));
+        prefetcher = new CredentialPrefetcher(repository, clock, DEBOUNCE_MS, TTL_MS, MAX_ENTRIES, null);
+    }
+
+    private void type(String text) {
+        for (int i = 1; i <= text.length(); i++) {
+            clock.advance(100);
+            prefetcher.onUsernameChanged(text.substring(0, i));
+        }
+    }
+
+    @Test
+    public void lookupStartsOnlyOnceTypingPauses() {
+        type("alice");
+        assertEquals(0, repository.lookups.size());
+
+        clock.advance(DEBOUNCE_MS);
+        assertEquals(1, repository.lookups.size());
+        assertEquals("alice", repository.lookups.get(0));
+    }
+
+    @Test
+    public void namesThatAreNotKeysAreNeverLookedUp() {
+        type("al.ice");
+        clock.advance(DEBOUNCE_MS);
+        type("bob#");
+        clock.advance(DEBOUNCE_MS);
+        assertEquals(0, repository.lookups.size());
+
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        prefetcher.get("a[1]", credential);
+
+        assertNull(credential.value);
+        assertNull(credential.error);
+        assertEquals(0, repository.lookups.size());
+    }
+
+    @Test
+    public void prefetchedCredentialIsAHit() {
+        type("alice");
+        clock.advance(DEBOUNCE_MS);
+        clock.advance(250);
+        repository.completeAll();
+
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        prefetcher.get("alice", credential);
+
+        assertEquals("alice-secret", credential.value);
+        assertEquals(1, repository.lookups.size());
+        assertEquals(1, prefetcher.getHitCount());
+        assertEquals(250, prefetcher.getSavedMs());
+    }
+
+    @Test
+    public void getWhileThePrefetchIsInFlightJoinsIt() {
+        type("alice");
+        clock.advance(DEBOUNCE_MS);
+        clock.advance(80);
+
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        prefetcher.get("alice", credential);
+        assertNull(credential.value);
+
+        repository.completeAll();
+        assertEquals("alice-secret", credential.value);
+        assertEquals(1, repository.lookups.size());
+        assertEquals(80, prefetcher.getSavedMs());
+    }
+
+    @Test
+    public void lookupForANameTypedPastIsNotCached() {
+        type("alice");
+        clock.advance(DEBOUNCE_MS);
+        type("alices");
+        repository.completeAll();
+
+        prefetcher.get("alice", new UserRepositoryTest.Recorder<>());
+        assertEquals(0, prefetcher.getHitCount());
+        assertEquals(1, prefetcher.getMissCount());
+    }
+
+    @Test
+    public void missingUserIsNeverCached() {
+        prefetcher.get("carol", new UserRepositoryTest.Recorder<>());
+        repository.completeAll();
+        backend.set("users/carol/AudioLogin", "carol-secret");
+
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        prefetcher.get("carol", credential);
+        repository.completeAll();
+
+        assertEquals("carol-secret", credential.value);
+        assertEquals(2, prefetcher.getMissCount());
+    }
+
+    @Test
+    public void cachedCredentialExpires() {
+        prefetcher.get("alice", new UserRepositoryTest.Recorder<>());
+        repository.completeAll();
+        clock.advance(TTL_MS + 1);
+
+        prefetcher.get("alice", new UserRepositoryTest.Recorder<>());
+        assertEquals(2, repository.lookups.size());
+        assertEquals(0, prefetcher.getHitCount());
+    }
+
+    @Test
+    public void cacheKeepsOnlyTheMostRecentlyUsedNames() {
+        for (String name : new String[]{"alice", "bob", "alicia"}) {
+            prefetcher.get(name, new UserRepositoryTest.Recorder<>());
+            repository.completeAll();
+        }
+
+        prefetcher.get("alice", new UserRepositoryTest.Recorder<>());
+        assertEquals(4, repository.lookups.size());
+        prefetcher.get("alicia", new UserRepositoryTest.Recorder<>());
+        assertEquals(1, prefetcher.getHitCount());
+    }
+
+    @Test
+    public void failureReachesTheCallerAndIsNotCached() {
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        prefetcher.get("alice", credential);
+        repository.failAll(new IllegalStateException("offline"));
+        assertNotNull(credential.error);
+
+        prefetcher.get("alice", new UserRepositoryTest.Recorder<>());
+        assertEquals(2, repository.lookups.size());
+    }
+
+    @Test
+    public void repositoryAnsweringAtOnceStillReachesTheCaller() {
+        prefetcher = new CredentialPrefetcher(new InMemoryUserRepository(backend), clock, DEBOUNCE_MS, TTL_MS,
+                MAX_ENTRIES, null);
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        prefetcher.get("alice", credential);
+
+        assertEquals("alice-secret", credential.value);
+    }
+
+    // Records each lookup and holds its result back until completeAll() or failAll().
+    private static class DeferredUserRepository implements UserRepository {
+        private final UserRepository delegate;
+        final List<String> lookups = new ArrayList<>();
+        private final List<String> pendingNames = new ArrayList<>();
+        private final List<DataCallback<String>> pendingCallbacks = new ArrayList<>();
+
+        DeferredUserRepository(UserRepository delegate) {
+            this.delegate = delegate;
+        }
+
+        void completeAll() {
+            for (int i = 0; i < pendingNames.size(); i++) {
+                delegate.loadCredential(pendingNames.get(i), pendingCallbacks.get(i));
+            }
+            pendingNames.clear();
+            pendingCallbacks.clear();
+        }
+
+        void failAll(Exception e) {
+            for (DataCallback<String> callback : pendingCallbacks) {
+                callback.onFailure(e);
+            }
+            pendingNames.clear();
+            pendingCallbacks.clear();
+        }
+
+        @Override
+        public void userExists(String username, DataCallback<Boolean> callback) {
+            delegate.userExists(username, callback);
+        }
+
+        @Override
+        public void loadCredential(String username, DataCallback<String> callback) {
+            lookups.add(username);
+            pendingNames.add(username);
+            pendingCallbacks.add(callback);
+        }
+
+        @Override
+        public void register(String username, String encryptedAudioPassword, DataCallback<Void> callback) {
+            delegate.register(username, encryptedAudioPassword, callback);
+        }
+    }
+}
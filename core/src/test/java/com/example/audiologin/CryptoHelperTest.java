@@ -0,0 +1,92 @@
+package com.example.audiologin;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+public class CryptoHelperTest {
+
+    @Test
+    public void stringRoundTrip() throws Exception {
+        String encrypted = CryptoHelper.encrypt("cat,sheep");
+
+        assertNotEquals("cat,sheep", encrypted);
+        assertEquals("cat,sheep", CryptoHelper.decrypt(encrypted));
+    }
+
+    @Test
+    public void decryptsValuesStoredByOlderBuilds() throws Exception {
+        // Older builds built a fresh cipher per call and stored line-wrapped Base64 with a trailing newline.
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec("MySecretKey12345".getBytes(), "AES"));
+        String password = "crow,cow,cat,sheep,crow,cow,cat,sheep,crow,cow,cat,sheep,crow,cow,cat";
+        String stored = Base64.getMimeEncoder().encodeToString(cipher.doFinal(password.getBytes())) + "\n";
+        assertTrue(stored.contains("\r\n"));
+
+        assertEquals(password, CryptoHelper.decrypt(stored));
+    }
+
+    @Test
+    public void byteBufferRoundTrip() throws Exception {
+        byte[] plain = "Remember the pharmacy".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encrypted = ByteBuffer.allocate(CryptoHelper.encryptedSize(plain.length));
+        CryptoHelper.encrypt(ByteBuffer.wrap(plain), encrypted);
+        encrypted.flip();
+
+        ByteBuffer decrypted = ByteBuffer.allocate(encrypted.remaining());
+        int length = CryptoHelper.decrypt(encrypted, decrypted);
+
+        assertEquals(plain.length, length);
+        assertArrayEquals(plain, Arrays.copyOf(decrypted.array(), length));
+        assertArrayEquals(CryptoHelper.encrypt(plain), encrypted.array());
+    }
+
+    @Test
+    public void threadsDoNotShareCipherState() throws Exception {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        String text = "thread " + id + " note " + i;
+                        assertEquals(text, CryptoHelper.decrypt(CryptoHelper.encrypt(text)));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void serviceReportsResultsAndFailures() throws Exception {
+        CryptoService service = new CryptoService(1, Runnable::run);
+        UserRepositoryTest.Recorder<String> encrypted = new UserRepositoryTest.Recorder<>();
+        UserRepositoryTest.Recorder<String> broken = new UserRepositoryTest.Recorder<>();
+        service.encrypt("cow,crow", encrypted);
+        service.decrypt("not a ciphertext", broken);
+        service.shutdown();
+        assertTrue(service.awaitTermination(5000));
+
+        assertEquals("cow,crow", CryptoHelper.decrypt(encrypted.value));
+        assertNotNull(broken.error);
+    }
+}
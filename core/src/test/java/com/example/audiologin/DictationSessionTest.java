@@ -0,0 +1,214 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DictationSessionTest {
+    private static final long CHECKPOINT_MS = 1000;
+
+    // Replays scripted transcripts: each session's words arrive as growing partials, then the result.
+    private static class ScriptedRecognizer implements Recognizer {
+        final List<String> transcripts = new ArrayList<>();
+        Listener listener;
+        int starts;
+        int stops;
+        int cancels;
+
+        ScriptedRecognizer(String... transcripts) {
+            this.transcripts.addAll(Arrays.asList(transcripts));
+        }
+
+        @Override
+        public void start(Listener listener) {
+            this.listener = listener;
+            starts++;
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+        }
+
+        @Override
+        public void cancel() {
+            cancels++;
+            listener = null;
+        }
+
+        // Streams the next transcript a word at a time, msPerWord apart, without ending the session.
+        void speak(FakeClock clock, long msPerWord) {
+            String[] words = transcripts.get(0).split(" ");
+            StringBuilder heard = new StringBuilder();
+            for (String word : words) {
+                clock.advance(msPerWord);
+                heard.append(heard.length() == 0 ? "" : " ").append(word);
+                listener.onPartial(heard.toString());
+            }
+        }
+
+        void endSession() {
+            listener.onResult(transcripts.remove(0));
+        }
+
+        void silence() {
+            listener.onNoSpeech();
+        }
+    }
+
+    private FakeClock clock;
+    private InMemoryDraftStore drafts;
+    private List<String> shown;
+    private List<String> finished;
+    private List<Exception> errors;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        drafts = new InMemoryDraftStore();
+        shown = new ArrayList<>();
+        finished = new ArrayList<>();
+        errors = new ArrayList<>();
+    }
+
+    private DictationSession session(Recognizer recognizer) {
+        return new DictationSession(recognizer, drafts, "alice", clock, CHECKPOINT_MS, new DictationSession.Listener() {
+            @Override
+            public void onTranscript(String text) {
+                shown.add(text);
+            }
+
+            @Override
+            public void onFinished(String text) {
+                finished.add(text);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                errors.add(e);
+            }
+        });
+    }
+
+    @Test
+    public void partialsStreamIntoTheTranscript() {
+        ScriptedRecognizer recognizer = new ScriptedRecognizer("buy milk and eggs");
+        DictationSession dictation = session(recognizer);
+        dictation.start(null);
+
+        recognizer.speak(clock, 100);
+
+        assertEquals(Arrays.asList("buy", "buy milk", "buy milk and", "buy milk and eggs"), shown);
+    }
+
+    @Test
+    public void chainsSessionsUntilSilence() {
+        ScriptedRecognizer recognizer = new ScriptedRecognizer("call the pharmacy", "ask about the refill");
+        DictationSession dictation = session(recognizer);
+        dictation.start(null);
+
+        recognizer.speak(clock, 100);
+        recognizer.endSession();
+        recognizer.speak(clock, 100);
+
+        assertEquals("call the pharmacy ask about", shown.get(shown.size() - 3));
+        recognizer.endSession();
+        recognizer.silence();
+
+        assertEquals(3, recognizer.starts);
+        assertEquals(3, dictation.getSessionCount());
+        assertEquals(Arrays.asList("call the pharmacy ask about the refill"), finished);
+        assertFalse(dictation.isActive());
+    }
+
+    @Test
+    public void stopFinishesWithTheWordsBeingSpoken() {
+        ScriptedRecognizer recognizer = new ScriptedRecognizer("walk the dog");
+        DictationSession dictation = session(recognizer);
+        dictation.start(null);
+
+        recognizer.speak(clock, 100);
+        dictation.stop();
+        recognizer.endSession();
+
+        assertEquals(1, recognizer.stops);
+        assertEquals(1, recognizer.starts);
+        assertEquals(Arrays.asList("walk the dog"), finished);
+    }
+
+    @Test
+    public void checkpointsPartialsAtMostOncePerInterval() {
+        ScriptedRecognizer recognizer = new ScriptedRecognizer(
+                "one two three four five six seven eight nine ten eleven twelve thirteen fourteen fifteen");
+        DictationSession dictation = session(recognizer);
+        dictation.start(null);
+
+        // Fifteen partials over three seconds.
+        recognizer.speak(clock, 200);
+
+        assertEquals(2, drafts.getSaveCount());
+        assertEquals("one two three four five six seven eight nine ten", drafts.load("alice"));
+        recognizer.endSession();
+        assertEquals(3, drafts.getSaveCount());
+        assertEquals("one two three four five six seven eight nine ten eleven twelve thirteen fourteen fifteen",
+                drafts.load("alice"));
+    }
+
+    @Test
+    public void resumesAfterARestoredDraft() {
+        drafts.save("alice", "remember to");
+        ScriptedRecognizer recognizer = new ScriptedRecognizer("water the plants");
+        DictationSession dictation = session(recognizer);
+        dictation.start(drafts.load("alice"));
+
+        recognizer.speak(clock, 100);
+        recognizer.endSession();
+        recognizer.silence();
+
+        assertEquals("remember to water", shown.get(0));
+        assertEquals(Arrays.asList("remember to water the plants"), finished);
+        assertEquals("remember to water the plants", drafts.load("alice"));
+    }
+
+    @Test
+    public void errorKeepsCommittedTextInTheDraft() {
+        ScriptedRecognizer recognizer = new ScriptedRecognizer("pay the rent", "and the");
+        DictationSession dictation = session(recognizer);
+        dictation.start(null);
+
+        recognizer.speak(clock, 100);
+        recognizer.endSession();
+        recognizer.speak(clock, 100);
+        Exception failure = new Exception("network");
+        recognizer.listener.onError(failure);
+
+        assertEquals(Arrays.asList(failure), errors);
+        assertTrue(finished.isEmpty());
+        assertFalse(dictation.isActive());
+        assertEquals("pay the rent", drafts.load("alice"));
+    }
+
+    @Test
+    public void cancelIgnoresLateCallbacks() {
+        ScriptedRecognizer recognizer = new ScriptedRecognizer("feed the cat");
+        DictationSession dictation = session(recognizer);
+        dictation.start(null);
+
+        recognizer.speak(clock, 100);
+        Recognizer.Listener stale = recognizer.listener;
+        dictation.cancel();
+        stale.onResult("feed the cat");
+        clock.advance(CHECKPOINT_MS);
+
+        assertEquals(1, recognizer.cancels);
+        assertEquals(1, recognizer.starts);
+        assertTrue(finished.isEmpty());
+        assertFalse(dictation.isActive());
+        assertEquals("feed the cat", drafts.load("alice"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Manual clock for JVM tests: delayed tasks run only when advance() passes their due time.
+public class FakeClock implements Clock {
+    private final List<long[]> times = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private long now;
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        times.add(new long[]{now + delayMs});
+        tasks.add(task);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            if (tasks.get(i) == task) {
+                tasks.remove(i);
+                times.remove(i);
+            }
+        }
+    }
+
+    public void advance(long ms) {
+        long target = now + ms;
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < tasks.size(); i++) {
+                if (times.get(i)[0] <= target && (next == -1 || times.get(i)[0] < times.get(next)[0])) {
+                    next = i;
+                }
+            }
+            if (next == -1) {
+                break;
+            }
+            now = times.remove(next)[0];
+            tasks.remove(next).run();
+        }
+        now = target;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FileAudioStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private FileAudioStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.newFolder("audio");
+        store = new FileAudioStore(root, Runnable::run, Runnable::run);
+    }
+
+    private void write(int index, byte[] data, int length) {
+        UserRepositoryTest.Recorder<Void> written = new UserRepositoryTest.Recorder<>();
+        store.writeChunk("alice", "clip1", index, data, length, written);
+        assertNull(written.error);
+    }
+
+    private AudioStore.Status status() {
+        UserRepositoryTest.Recorder<AudioStore.Status> status = new UserRepositoryTest.Recorder<>();
+        store.loadStatus("alice", "clip1", status);
+        assertNull(status.error);
+        return status.value;
+    }
+
+    @Test
+    public void storesChunksByIndex() {
+        write(0, new byte[]{1, 2, 3, 4}, 4);
+        write(1, new byte[]{5, 6, 0, 0}, 2);
+
+        UserRepositoryTest.Recorder<byte[]> chunk = new UserRepositoryTest.Recorder<>();
+        store.readChunk("alice", "clip1", 1, chunk);
+        assertArrayEquals(new byte[]{5, 6}, chunk.value);
+        store.readChunk("alice", "clip1", 2, chunk);
+        assertNull(chunk.value);
+        assertNull(chunk.error);
+        // Only whole chunks are left behind.
+        assertEquals(2, new File(root, "alice/clip1").list().length);
+    }
+
+    @Test
+    public void statusCountsChunksUpToTheFirstGap() {
+        write(0, new byte[4], 4);
+        write(1, new byte[4], 4);
+        write(3, new byte[4], 4);
+
+        AudioStore.Status status = status();
+        assertEquals(2, status.getStoredChunks());
+        assertFalse(status.isFinished());
+        assertEquals(-1, status.getLength());
+    }
+
+    @Test
+    public void finishRecordsCountAndLength() {
+        write(0, new byte[4], 4);
+        write(1, new byte[4], 1);
+        UserRepositoryTest.Recorder<Void> finished = new UserRepositoryTest.Recorder<>();
+        store.finish("alice", "clip1", 2, 5, finished);
+
+        AudioStore.Status status = status();
+        assertTrue(status.isComplete());
+        assertEquals(2, status.getTotalChunks());
+        assertEquals(5, status.getLength());
+    }
+
+    @Test
+    public void deleteRemovesTheClip() {
+        write(0, new byte[4], 4);
+        assertEquals(Collections.singletonList("clip1"), store.listClips("alice"));
+
+        UserRepositoryTest.Recorder<Void> deleted = new UserRepositoryTest.Recorder<>();
+        store.delete("alice", "clip1", deleted);
+
+        assertNull(deleted.error);
+        assertTrue(store.listClips("alice").isEmpty());
+        assertEquals(0, status().getStoredChunks());
+    }
+
+    @Test
+    public void notedMarkGoesWithTheClip() {
+        write(0, new byte[4], 4);
+        assertFalse(store.isNoted("alice", "clip1"));
+
+        UserRepositoryTest.Recorder<Void> noted = new UserRepositoryTest.Recorder<>();
+        store.markNoted("alice", "clip1", noted);
+
+        assertNull(noted.error);
+        assertTrue(store.isNoted("alice", "clip1"));
+        assertEquals(1, status().getStoredChunks());
+        store.delete("alice", "clip1", new UserRepositoryTest.Recorder<>());
+        assertFalse(store.isNoted("alice", "clip1"));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LatencyRecorderTest {
+    private long nanos;
+    private List<String> trace;
+    private LatencyRecorder recorder;
+
+    @Before
+    public void setUp() {
+        trace = new ArrayList<>();
+        recorder = new LatencyRecorder(new LatencyRecorder.Tracer() {
+            @Override
+            public void beginAsync(String name, int cookie) {
+                trace.add("begin " + name + " " + cookie);
+            }
+
+            @Override
+            public void endAsync(String name, int cookie) {
+                trace.add("end " + name + " " + cookie);
+            }
+        }, () -> nanos);
+    }
+
+    @Test
+    public void everyValueIsReportedWithinBucketPrecision() {
+        for (long value = 1; value < LatencyHistogram.MAX_VALUE_US; value = value * 3 / 2 + 1) {
+            long high = LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(value));
+            assertTrue(high >= value);
+            assertTrue("value " + value + " reported as " + high, high - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i = 1; i < LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE_US); i++) {
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.highestValueAt(i - 1) + 1));
+        }
+    }
+
+    @Test
+    public void percentilesFollowTheRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMin());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000, histogram.getValueAtPercentile(50), 500_000 / 16);
+        assertEquals(990_000, histogram.getValueAtPercentile(99), 990_000 / 16);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void spanRecordsElapsedTimeAndMatchingTraceSection() {
+        nanos = 5_000_000_000L;
+        long span = recorder.begin(Stage.LOGIN_DECRYPT);
+        nanos += 12_000_000;
+        recorder.end(Stage.LOGIN_DECRYPT, span);
+
+        LatencyHistogram histogram = recorder.get(Stage.LOGIN_DECRYPT);
+        assertEquals(1, histogram.getCount());
+        assertEquals(12_000, histogram.getMax());
+        assertEquals(2, trace.size());
+        assertEquals(trace.get(0).replace("begin", "end"), trace.get(1));
+        assertTrue(trace.get(0).contains("login.decrypt"));
+    }
+
+    @Test
+    public void savedHistogramsAddUpAcrossRuns() throws IOException {
+        recorder.record(Stage.NOTE_SAVE, 3_000_000);
+        recorder.record(Stage.NOTE_SAVE, 5_000_000);
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        recorder.save(saved);
+
+        LatencyRecorder nextRun = new LatencyRecorder(LatencyRecorder.Tracer.NONE);
+        nextRun.record(Stage.NOTE_SAVE, 40_000_000);
+        nextRun.load(new ByteArrayInputStream(saved.toByteArray()));
+
+        LatencyHistogram histogram = nextRun.get(Stage.NOTE_SAVE);
+        assertEquals(3, histogram.getCount());
+        assertEquals(3_000, histogram.getMin());
+        assertEquals(40_000, histogram.getMax());
+        assertEquals(0, nextRun.get(Stage.LOGIN_TOTAL).getCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void foreignFileIsRejected() throws IOException {
+        recorder.load(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test
+    public void csvListsOnlyStagesWithSamples() throws IOException {
+        recorder.record(Stage.LOGIN_CREDENTIAL_FETCH, 250_000_000);
+        StringWriter csv = new StringWriter();
+        recorder.exportCsv(csv);
+
+        String[] lines = csv.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("stage,count,"));
+        assertTrue(lines[1].startsWith("login.credentialFetch,1,250.0,"));
+    }
+}
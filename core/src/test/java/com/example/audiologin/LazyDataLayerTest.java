@@ -0,0 +1,113 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LazyDataLayerTest {
+    private InMemoryBackend backend;
+    private ArrayDeque<Runnable> initTasks;
+    private ArrayDeque<Runnable> mainTasks;
+    private int created;
+    private LazyDataLayer layer;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        initTasks = new ArrayDeque<>();
+        mainTasks = new ArrayDeque<>();
+        layer = new LazyDataLayer(() -> {
+            created++;
+            return new InMemoryDataLayer(backend);
+        }, initTasks::add, mainTasks::add);
+    }
+
+    private static void run(ArrayDeque<Runnable> tasks) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void nothingIsCreatedUntilTheFirstCall() {
+        layer.getUserRepository();
+        layer.setCurrentUser(null);
+        assertTrue(initTasks.isEmpty());
+
+        UserRepositoryTest.Recorder<Boolean> exists = new UserRepositoryTest.Recorder<>();
+        layer.getUserRepository().userExists("alice", exists);
+        assertEquals(1, initTasks.size());
+        assertNull(exists.value);
+
+        run(initTasks);
+        run(mainTasks);
+        assertEquals(1, created);
+        assertEquals(Boolean.FALSE, exists.value);
+    }
+
+    @Test
+    public void callsMadeWhileCreatingRunInOrder() {
+        UserRepositoryTest.Recorder<Void> registered = new UserRepositoryTest.Recorder<>();
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        layer.getUserRepository().register("alice", "secret", registered);
+        layer.getUserRepository().loadCredential("alice", credential);
+
+        run(initTasks);
+        run(mainTasks);
+
+        assertEquals(1, created);
+        assertNull(registered.error);
+        assertEquals("secret", credential.value);
+    }
+
+    @Test
+    public void aFailedFactoryFailsEveryCall() {
+        LazyDataLayer broken = new LazyDataLayer(() -> {
+            throw new IllegalStateException("no google-services.json");
+        }, initTasks::add, mainTasks::add);
+        UserRepositoryTest.Recorder<Void> written = new UserRepositoryTest.Recorder<>();
+        broken.getRemoteWriter().write(Collections.<String, Object>singletonMap("a", "b"), written);
+        run(initTasks);
+        run(mainTasks);
+        assertEquals("no google-services.json", written.error.getMessage());
+
+        UserRepositoryTest.Recorder<Boolean> later = new UserRepositoryTest.Recorder<>();
+        broken.getUserRepository().userExists("alice", later);
+        assertNotNull(later.error);
+        assertTrue(initTasks.isEmpty());
+    }
+
+    @Test
+    public void cancellingBeforeCreationNeverSubscribes() {
+        List<String> seen = new ArrayList<>();
+        NotesRepository.Subscription subscription = layer.getNotesRepository().observe("alice", null,
+                new NotesRepository.NotesListener() {
+                    @Override
+                    public void onNoteChanged(Note note) {
+                        seen.add(note.getText());
+                    }
+
+                    @Override
+                    public void onNoteRemoved(String key) {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        seen.add("error");
+                    }
+                });
+        subscription.cancel();
+        run(initTasks);
+        run(mainTasks);
+
+        layer.getNotesRepository().saveNote("alice", "milk", new UserRepositoryTest.Recorder<>());
+        assertTrue(seen.isEmpty());
+    }
+}
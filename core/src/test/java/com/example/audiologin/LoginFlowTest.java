@@ -0,0 +1,108 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LoginFlowTest {
+    private InMemoryBackend backend;
+    private FakeClock clock;
+    private CryptoService crypto;
+    private NoteKeyring keyring;
+    private List<String> events;
+    private LoginFlow login;
+
+    @Before
+    public void setUp() throws Exception {
+        backend = new InMemoryBackend();
+        clock = new FakeClock();
+        crypto = new CryptoService(Runnable::run, Runnable::run);
+        keyring = new NoteKeyring();
+        events = new ArrayList<>();
+        InMemoryUserRepository users = new InMemoryUserRepository(backend);
+        users.register("alice", CryptoHelper.encrypt("cow,crow"), new UserRepositoryTest.Recorder<>());
+
+        CredentialPrefetcher credentials = new CredentialPrefetcher(users, clock, 300, 60000, 4, null);
+        NotesPrefetch prefetch = new NotesPrefetch(new InMemoryNotesRepository(backend), 20);
+        login = new LoginFlow(credentials, crypto, keyring, prefetch,
+                new LatencyRecorder(LatencyRecorder.Tracer.NONE), new RecordingListener());
+    }
+
+    @Test
+    public void matchingSelectionUnlocksTheNoteKey() {
+        login.start("alice");
+        login.beginSelection();
+        login.select("Cow");
+        login.select("crow");
+
+        assertEquals("[challenge, verified, unlocked]", events.toString());
+        assertTrue(keyring.isUnlocked("alice"));
+    }
+
+    @Test
+    public void wrongOrderIsRejected() {
+        login.start("alice");
+        login.beginSelection();
+        login.select("crow");
+        login.select("cow");
+        login.select("sheep");
+
+        assertEquals("[challenge, rejected]", events.toString());
+        assertFalse(keyring.isUnlocked("alice"));
+    }
+
+    @Test
+    public void selectionsBeforeTheChallengeAreIgnored() {
+        login.select("cow");
+        assertEquals(0, login.getSelectedCount());
+
+        login.start("bob");
+        assertEquals("[no credential]", events.toString());
+    }
+
+    private class RecordingListener implements LoginFlow.Listener {
+        @Override
+        public void onChallenge(String username) {
+            events.add("challenge");
+        }
+
+        @Override
+        public void onNoCredential(String username) {
+            events.add("no credential");
+        }
+
+        @Override
+        public void onLookupFailed(Exception e) {
+            events.add("lookup failed");
+        }
+
+        @Override
+        public void onDecryptFailed(Exception e) {
+            events.add("decrypt failed");
+        }
+
+        @Override
+        public void onRejected() {
+            events.add("rejected");
+        }
+
+        @Override
+        public void onVerified() {
+            events.add("verified");
+        }
+
+        @Override
+        public void onNotesUnlocked() {
+            events.add("unlocked");
+        }
+
+        @Override
+        public void onKeyDeriveFailed(Exception e) {
+            events.add("derive failed");
+        }
+    }
+}
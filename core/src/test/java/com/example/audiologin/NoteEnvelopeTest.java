@@ -0,0 +1,190 @@
+package com.example.audiologin;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NoteEnvelopeTest {
+    private static final String LONG_NOTE = "Remember to call the pharmacy about the refill, then pick up milk, bread and eggs. "
+            + "Remember to call the pharmacy about the refill before Friday because the pharmacy closes early on Friday.";
+
+    private static NoteEnvelope alice;
+    private static NoteEnvelope bob;
+
+    @BeforeClass
+    public static void deriveKeys() throws Exception {
+        alice = NoteEnvelope.derive("alice", "cat,sheep");
+        bob = NoteEnvelope.derive("bob", "cat,sheep");
+    }
+
+    @Test
+    public void sealedNoteOpensToTheSameText() throws Exception {
+        for (String text : Arrays.asList("", "Milk", LONG_NOTE, "Café at 9 — ☕")) {
+            String sealed = alice.seal(text);
+            assertTrue(NoteEnvelope.isSealed(sealed));
+            assertEquals(text, alice.open(sealed));
+        }
+    }
+
+    @Test
+    public void longNotesAreSmallerThanPlainText() throws Exception {
+        assertTrue(alice.seal(LONG_NOTE).length() < LONG_NOTE.length());
+    }
+
+    @Test
+    public void sealingTwiceGivesDifferentCiphertext() throws Exception {
+        assertNotEquals(alice.seal("Milk"), alice.seal("Milk"));
+    }
+
+    @Test
+    public void keyIsStableAcrossSessions() throws Exception {
+        String sealed = alice.seal("Milk");
+
+        assertEquals("Milk", NoteEnvelope.derive("alice", "cat,sheep").open(sealed));
+    }
+
+    @Test(expected = java.security.GeneralSecurityException.class)
+    public void anotherUsersKeyCannotOpen() throws Exception {
+        bob.open(alice.seal("Milk"));
+    }
+
+    @Test(expected = java.security.GeneralSecurityException.class)
+    public void tamperedEnvelopeIsRejected() throws Exception {
+        String sealed = alice.seal(LONG_NOTE);
+        char[] chars = sealed.toCharArray();
+        int index = chars.length / 2;
+        chars[index] = chars[index] == 'A' ? 'B' : 'A';
+        alice.open(new String(chars));
+    }
+
+    @Test
+    public void pageOpensInOnePassKeepingLegacyNotes() throws Exception {
+        List<Note> stored = new ArrayList<>();
+        stored.add(new Note("-N1", "Written before envelopes"));
+        stored.add(new Note("-N2", alice.seal(LONG_NOTE)));
+        stored.add(new Note("-N3", bob.seal("Not for alice")));
+        stored.add(new Note("-N4", alice.seal("Milk")));
+
+        List<Note> opened = alice.openAll(stored);
+
+        assertEquals(3, opened.size());
+        assertEquals("Written before envelopes", opened.get(0).getText());
+        assertEquals(LONG_NOTE, opened.get(1).getText());
+        assertEquals(new Note("-N4", "Milk"), opened.get(2));
+    }
+
+    @Test
+    public void savedNotesAreSealedOnTheServerAndPlainLocally() {
+        InMemoryBackend backend = new InMemoryBackend();
+        FakeClock clock = new FakeClock();
+        SyncQueue queue = new SyncQueue(new InMemoryOutboxStore(), new InMemoryRemoteWriter(backend), clock, 0, 10, 1000, 1000);
+        NoteKeyring keyring = new NoteKeyring();
+        keyring.unlock("alice", alice);
+        InMemoryNotesStore local = new InMemoryNotesStore();
+        OfflineNotesRepository notes = new OfflineNotesRepository(new InMemoryNotesRepository(backend), local,
+                queue, keyring, Runnable::run, Runnable::run);
+
+        UserRepositoryTest.Recorder<Note> saved = new UserRepositoryTest.Recorder<>();
+        notes.saveNote("alice", LONG_NOTE, saved);
+        clock.advance(0);
+
+        Object onServer = backend.get("users/alice/notes/" + saved.value.getKey());
+        assertTrue(NoteEnvelope.isSealed((String) onServer));
+        assertEquals(LONG_NOTE, local.loadPage("alice", null, 10).get(0).getText());
+
+        UserRepositoryTest.Recorder<List<Note>> page = new UserRepositoryTest.Recorder<>();
+        notes.loadPage("alice", null, 10, page);
+        assertEquals(LONG_NOTE, page.value.get(0).getText());
+
+        keyring.lock();
+        UserRepositoryTest.Recorder<List<Note>> locked = new UserRepositoryTest.Recorder<>();
+        new OfflineNotesRepository(new InMemoryNotesRepository(backend), new InMemoryNotesStore(),
+                queue, keyring, Runnable::run, Runnable::run).loadPage("alice", null, 10, locked);
+        assertNull(locked.value);
+        assertTrue(locked.error instanceof GeneralSecurityException);
+    }
+
+    @Test
+    public void saveFailsWhileTheKeyIsLocked() {
+        InMemoryBackend backend = new InMemoryBackend();
+        FakeClock clock = new FakeClock();
+        SyncQueue queue = new SyncQueue(new InMemoryOutboxStore(), new InMemoryRemoteWriter(backend), clock, 0, 10, 1000, 1000);
+        InMemoryNotesStore local = new InMemoryNotesStore();
+        OfflineNotesRepository notes = new OfflineNotesRepository(new InMemoryNotesRepository(backend), local,
+                queue, new NoteKeyring(), Runnable::run, Runnable::run);
+
+        UserRepositoryTest.Recorder<Note> saved = new UserRepositoryTest.Recorder<>();
+        notes.saveNote("alice", "Pin is 1234", saved);
+        clock.advance(0);
+
+        assertNull(saved.value);
+        assertTrue(saved.error instanceof GeneralSecurityException);
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(0, backend.getWrites());
+        assertTrue(local.loadPage("alice", null, 10).isEmpty());
+    }
+
+    @Test
+    public void observedNotesAreOpenedOffTheMainThreadInOneBatch() throws Exception {
+        InMemoryBackend backend = new InMemoryBackend();
+        backend.set("users/alice/notes/n1", alice.seal("First"));
+        backend.set("users/alice/notes/n2", bob.seal("Not for alice"));
+        backend.set("users/alice/notes/n3", alice.seal(LONG_NOTE));
+        List<Integer> batches = new ArrayList<>();
+        NoteKeyring keyring = new NoteKeyring() {
+            @Override
+            public List<Note> openAll(String username, List<Note> stored) throws GeneralSecurityException {
+                batches.add(stored.size());
+                return super.openAll(username, stored);
+            }
+        };
+        keyring.unlock("alice", alice);
+        SyncQueue queue = new SyncQueue(new InMemoryOutboxStore(), new InMemoryRemoteWriter(backend), new FakeClock(),
+                0, 10, 1000, 1000);
+        List<Runnable> io = new ArrayList<>();
+        InMemoryNotesStore local = new InMemoryNotesStore();
+        OfflineNotesRepository notes = new OfflineNotesRepository(new InMemoryNotesRepository(backend), local,
+                queue, keyring, io::add, Runnable::run);
+        List<String> heard = new ArrayList<>();
+
+        notes.observe("alice", null, new NotesRepository.NotesListener() {
+            @Override
+            public void onNoteChanged(Note note) {
+                heard.add(note.getText());
+            }
+
+            @Override
+            public void onNoteRemoved(String key) {
+                heard.add("removed " + key);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                fail(e.toString());
+            }
+        });
+        backend.set("users/alice/notes/n1", null);
+        UserRepositoryTest.Recorder<Note> saved = new UserRepositoryTest.Recorder<>();
+        notes.saveNote("alice", "Milk", saved);
+
+        assertTrue(heard.isEmpty());
+        assertNull(saved.value);
+        assertEquals(0, queue.getPendingCount());
+
+        for (int i = 0; i < io.size(); i++) {
+            io.get(i).run();
+        }
+
+        assertEquals(Arrays.asList(3), batches);
+        assertEquals(Arrays.asList("First", LONG_NOTE, "removed n1", "Milk"), heard);
+        assertEquals("Milk", saved.value.getText());
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(2, local.loadPage("alice", null, 10).size());
+    }
+}
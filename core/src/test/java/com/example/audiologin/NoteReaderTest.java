@@ -0,0 +1,143 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NoteReaderTest {
+    private static final String NOTE = "Call the pharmacy. Ask about the refill! Is it ready? Then buy milk.";
+
+    // Stands in for SpeechService: chunks play in order, each started and finished by the test.
+    private static class FakeSpeaker implements NoteReader.Speaker {
+        final List<String> handedOver = new ArrayList<>();
+        final List<Runnable[]> callbacks = new ArrayList<>();
+        int stops;
+
+        @Override
+        public void speak(String text, Runnable onStart, Runnable onDone) {
+            handedOver.add(text);
+            callbacks.add(new Runnable[]{onStart, onDone});
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+        }
+
+        void play(int utterance) {
+            callbacks.get(utterance)[0].run();
+        }
+
+        void finish(int utterance) {
+            callbacks.get(utterance)[1].run();
+        }
+    }
+
+    private FakeSpeaker speaker;
+    private List<String> events;
+    private NoteReader reader;
+
+    @Before
+    public void setUp() {
+        speaker = new FakeSpeaker();
+        events = new ArrayList<>();
+        reader = new NoteReader(speaker, 2, 100, new NoteReader.Listener() {
+            @Override
+            public void onChunkStarted(int index, int count) {
+                events.add(index + "/" + count);
+            }
+
+            @Override
+            public void onFinished() {
+                events.add("finished");
+            }
+        });
+    }
+
+    @Test
+    public void splitsAtSentenceBoundaries() {
+        assertEquals(Arrays.asList("Call the pharmacy.", "Ask about the refill!", "Is it ready?", "Then buy milk."),
+                NoteReader.split(NOTE, 100));
+        assertEquals(Arrays.asList("He said \"wait.\"", "Version 2.5 is out"),
+                NoteReader.split("He said \"wait.\" Version 2.5 is out", 100));
+    }
+
+    @Test
+    public void unpunctuatedDictationIsSplitAtSpacesWithinTheLimit() {
+        String dictated = "remember to call the pharmacy about the refill before friday and buy milk";
+        List<String> chunks = NoteReader.split(dictated, 30);
+
+        assertEquals(Arrays.asList("remember to call the pharmacy", "about the refill before friday",
+                "and buy milk"), chunks);
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 30);
+        }
+    }
+
+    @Test
+    public void onlyTheLookaheadIsHandedOverRegardlessOfLength() {
+        StringBuilder longNote = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            longNote.append("Sentence number ").append(i).append(". ");
+        }
+        reader.read(longNote.toString());
+
+        assertEquals(Arrays.asList("Sentence number 0.", "Sentence number 1."), speaker.handedOver);
+        speaker.play(0);
+        speaker.finish(0);
+        assertEquals(3, speaker.handedOver.size());
+        assertEquals(500, reader.getChunkCount());
+    }
+
+    @Test
+    public void pauseAndResumeRestartTheSentenceBeingHeard() {
+        reader.read(NOTE);
+        speaker.play(0);
+        speaker.finish(0);
+        speaker.play(1);
+        reader.pause();
+        assertEquals(1, speaker.stops);
+        assertFalse(reader.isPlaying());
+
+        // Late callbacks from the stopped utterances change nothing.
+        speaker.finish(1);
+        speaker.play(2);
+        assertEquals(1, reader.getPosition());
+
+        reader.resume();
+        assertEquals("Ask about the refill!", speaker.handedOver.get(3));
+        assertEquals(1, reader.getPosition());
+    }
+
+    @Test
+    public void skipMovesBySentenceAndFinishesAtTheEnd() {
+        reader.read(NOTE);
+        speaker.play(0);
+        reader.skip(2);
+        assertEquals("Is it ready?", speaker.handedOver.get(2));
+
+        speaker.play(2);
+        reader.skip(-1);
+        assertEquals("Ask about the refill!", speaker.handedOver.get(4));
+
+        reader.skip(10);
+        assertEquals("finished", events.get(events.size() - 1));
+        assertFalse(reader.isPlaying());
+    }
+
+    @Test
+    public void readingToTheEndFinishes() {
+        reader.read("One. Two.");
+        speaker.play(0);
+        speaker.finish(0);
+        speaker.play(1);
+        speaker.finish(1);
+
+        assertEquals("[0/2, 1/2, finished]", events.toString());
+    }
+}
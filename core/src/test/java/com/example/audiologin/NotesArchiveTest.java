@@ -0,0 +1,206 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotesArchiveTest {
+    private InMemoryBackend backend;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        for (int i = 0; i < 25; i++) {
+            backend.set("users/alice/notes/" + String.format("-N%03d", i), "sealed note " + i);
+        }
+    }
+
+    private NotesArchive archive(SyncQueue.RemoteWriter writer, int batchSize, int maxInFlight) {
+        return new NotesArchive(new InMemoryNotesRepository(backend), writer, null, null, Runnable::run, Runnable::run,
+                10, batchSize, maxInFlight, 5000);
+    }
+
+    private String export(String username) {
+        StringWriter out = new StringWriter();
+        UserRepositoryTest.Recorder<Integer> done = new UserRepositoryTest.Recorder<>();
+        archive(new InMemoryRemoteWriter(backend), 10, 2).export(username, out, done);
+        assertNull(done.error);
+        return out.toString();
+    }
+
+    @Test
+    public void exportsOneLinePerNoteInPages() {
+        String archive = export("alice");
+
+        String[] lines = archive.split("\n");
+        assertEquals(NotesArchive.HEADER, lines[0]);
+        assertEquals(26, lines.length);
+        // Newest page first, each page in key order.
+        assertEquals("-N015\tsealed note 15", lines[1]);
+        assertEquals("-N004\tsealed note 4", lines[25]);
+        // 25 notes in pages of 10; the short third page ends it.
+        assertEquals(3, backend.getReads());
+    }
+
+    @Test
+    public void exportIncludesNotesStillInTheOutbox() {
+        FakeClock clock = new FakeClock();
+        InMemoryBackend offline = new InMemoryBackend();
+        offline.setFailWrites(true);
+        SyncQueue outbox = new SyncQueue(new InMemoryOutboxStore(), new InMemoryRemoteWriter(offline), clock,
+                0, 10, 1000, 1000);
+        outbox.enqueue("users/alice/notes/-N003", "sealed edit of 3");
+        outbox.enqueue("users/alice/notes/-N100", "sealed note 100");
+        outbox.enqueue("users/bob/notes/-N200", "not alice's");
+        StringWriter out = new StringWriter();
+        UserRepositoryTest.Recorder<Integer> done = new UserRepositoryTest.Recorder<>();
+
+        new NotesArchive(new InMemoryNotesRepository(backend), new InMemoryRemoteWriter(backend), outbox, null,
+                Runnable::run, Runnable::run, 10, 10, 2, 5000).export("alice", out, done);
+
+        assertEquals(Integer.valueOf(26), done.value);
+        String archive = out.toString();
+        assertFalse(archive.contains("sealed note 3\n"));
+        assertFalse(archive.contains("not alice's"));
+        assertTrue(archive.endsWith("-N003\tsealed edit of 3\n-N100\tsealed note 100\n"));
+    }
+
+    @Test
+    public void importGivesUpWhenWritesAreNeverAcknowledged() {
+        String archive = export("alice");
+        List<Integer> sent = new ArrayList<>();
+        UserRepositoryTest.Recorder<Integer> done = new UserRepositoryTest.Recorder<>();
+
+        new NotesArchive(new InMemoryNotesRepository(backend), (updates, callback) -> sent.add(updates.size()), null,
+                null, Runnable::run, Runnable::run, 10, 5, 2, 50).importInto("alice", new StringReader(archive), done);
+
+        assertNull(done.value);
+        assertNotNull(done.error);
+        assertEquals("[5, 5]", sent.toString());
+    }
+
+    @Test
+    public void escapesSurviveARoundTrip() throws Exception {
+        String text = "tab\there\nnew line \\ backslash\r";
+        assertEquals("tab\\there\\nnew line \\\\ backslash\\r", NotesArchive.escape(text));
+        assertEquals(text, NotesArchive.unescape(NotesArchive.escape(text)));
+        assertSame("plain", NotesArchive.escape("plain"));
+    }
+
+    @Test
+    public void importWritesBatchedUpdates() {
+        String archive = export("alice");
+        InMemoryBackend target = new InMemoryBackend();
+        List<Integer> batchSizes = new ArrayList<>();
+        InMemoryRemoteWriter writer = new InMemoryRemoteWriter(target);
+        UserRepositoryTest.Recorder<Integer> done = new UserRepositoryTest.Recorder<>();
+
+        archive((updates, callback) -> {
+            batchSizes.add(updates.size());
+            writer.write(updates, callback);
+        }, 10, 2).importInto("alice", new StringReader(archive), done);
+
+        assertEquals(Integer.valueOf(25), done.value);
+        assertEquals("[10, 10, 5]", batchSizes.toString());
+        assertEquals("sealed note 7", target.get("users/alice/notes/-N007"));
+        assertEquals(3, target.getWrites());
+    }
+
+    @Test
+    public void importKeepsAtMostMaxInFlightBatches() throws Exception {
+        String archive = export("alice");
+        List<DataCallback<Void>> pending = new ArrayList<>();
+        int[] mostInFlight = new int[1];
+        UserRepositoryTest.Recorder<Integer> done = new UserRepositoryTest.Recorder<>();
+        SyncQueue.RemoteWriter slow = (updates, callback) -> {
+            synchronized (pending) {
+                pending.add(callback);
+                mostInFlight[0] = Math.max(mostInFlight[0], pending.size());
+            }
+        };
+        Thread importer = new Thread(() -> archive(slow, 5, 2).importInto("alice", new StringReader(archive), done));
+        importer.start();
+
+        // Acknowledge batches one at a time as they arrive.
+        int acknowledged = 0;
+        while (acknowledged < 5) {
+            DataCallback<Void> next = null;
+            synchronized (pending) {
+                if (!pending.isEmpty()) {
+                    next = pending.remove(0);
+                }
+            }
+            if (next == null) {
+                Thread.sleep(1);
+                continue;
+            }
+            next.onSuccess(null);
+            acknowledged++;
+        }
+        importer.join(5000);
+
+        assertEquals(2, mostInFlight[0]);
+        assertEquals(Integer.valueOf(25), done.value);
+    }
+
+    @Test
+    public void failedBatchStopsTheImport() {
+        String archive = export("alice");
+        InMemoryBackend target = new InMemoryBackend();
+        target.setFailWrites(true);
+        UserRepositoryTest.Recorder<Integer> done = new UserRepositoryTest.Recorder<>();
+
+        archive(new InMemoryRemoteWriter(target), 10, 2).importInto("alice", new StringReader(archive), done);
+
+        assertNotNull(done.error);
+        assertNull(done.value);
+    }
+
+    @Test
+    public void rejectsMalformedArchives() {
+        UserRepositoryTest.Recorder<Integer> done = new UserRepositoryTest.Recorder<>();
+        archive(new InMemoryRemoteWriter(backend), 10, 2)
+                .importInto("alice", new StringReader("not an archive\n"), done);
+        assertNotNull(done.error);
+
+        long writes = backend.getWrites();
+        UserRepositoryTest.Recorder<Integer> badKey = new UserRepositoryTest.Recorder<>();
+        archive(new InMemoryRemoteWriter(backend), 10, 2).importInto("alice",
+                new StringReader(NotesArchive.HEADER + "\n../bob/notes/-X\tvalue\n"), badKey);
+        assertNotNull(badKey.error);
+        assertEquals(writes, backend.getWrites());
+    }
+
+    @Test
+    public void importOnlyAcceptsArchivesThatOpenWithTheUsersKey() throws Exception {
+        NoteEnvelope alice = NoteEnvelope.derive("alice", "cat,sheep");
+        NoteEnvelope bob = NoteEnvelope.derive("bob", "cat,sheep");
+        NoteKeyring keyring = new NoteKeyring();
+        keyring.unlock("alice", alice);
+        InMemoryBackend target = new InMemoryBackend();
+        String own = NotesArchive.HEADER + "\n-N001\t" + alice.seal("Milk") + "\n";
+        String bobs = NotesArchive.HEADER + "\n-N001\t" + bob.seal("Bread") + "\n";
+        String unsealed = NotesArchive.HEADER + "\n-N001\tMilk\n";
+
+        for (String archive : new String[]{bobs, unsealed}) {
+            UserRepositoryTest.Recorder<Integer> refused = new UserRepositoryTest.Recorder<>();
+            new NotesArchive(new InMemoryNotesRepository(target), new InMemoryRemoteWriter(target), null, keyring,
+                    Runnable::run, Runnable::run, 10, 10, 2, 5000)
+                    .importInto("alice", new StringReader(archive), refused);
+            assertTrue(refused.error instanceof GeneralSecurityException);
+        }
+        assertEquals(0, target.getWrites());
+
+        UserRepositoryTest.Recorder<Integer> restored = new UserRepositoryTest.Recorder<>();
+        new NotesArchive(new InMemoryNotesRepository(target), new InMemoryRemoteWriter(target), null, keyring,
+                Runnable::run, Runnable::run, 10, 10, 2, 5000).importInto("alice", new StringReader(own), restored);
+        assertEquals(Integer.valueOf(1), restored.value);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotesIndexTest {
+    private NotesIndex index;
+
+    @Before
+    public void setUp() {
+        index = new NotesIndex();
+        index.putAll(Arrays.asList(
+                new Note("-N01", "Call the pharmacy about the refill."),
+                new Note("-N02", "Pick up milk and bread"),
+                new Note("-N03", "Ask the pharmacist about refills before Friday"),
+                new Note("-N04", "Pay the electricity bill")));
+    }
+
+    private static List<String> keys(List<Note> notes) {
+        List<String> keys = new ArrayList<>();
+        for (Note note : notes) {
+            keys.add(note.getKey());
+        }
+        return keys;
+    }
+
+    @Test
+    public void termsAreLowerCasedDistinctWords() {
+        assertEquals(Arrays.asList("don", "t", "forget", "the", "2nd", "bill"),
+                NotesIndex.terms("Don't forget the 2nd bill... the BILL!"));
+    }
+
+    @Test
+    public void everyQueryWordMustMatch() {
+        assertEquals(Arrays.asList("-N02"), keys(index.search("milk bread", 10)));
+        assertTrue(index.search("milk pharmacy", 10).isEmpty());
+        assertTrue(index.search("  ...", 10).isEmpty());
+    }
+
+    @Test
+    public void exactMatchesRankAbovePrefixMatches() {
+        // N01 has "refill" itself; N03 only "refills".
+        assertEquals(Arrays.asList("-N01", "-N03"), keys(index.search("Pharma refill", 10)));
+        assertEquals(Arrays.asList("-N03"), keys(index.search("refills", 10)));
+    }
+
+    @Test
+    public void tiesGoToTheNewestNote() {
+        assertEquals(Arrays.asList("-N04", "-N03", "-N01"), keys(index.search("the", 10)));
+        assertEquals(Arrays.asList("-N04", "-N03"), keys(index.search("the", 2)));
+
+        // Synced late, but older than everything else.
+        index.put(new Note("-N00", "Charge the hearing aid"));
+        assertEquals(Arrays.asList("-N04", "-N03", "-N01", "-N00"), keys(index.search("the", 10)));
+    }
+
+    @Test
+    public void editsAndRemovalsUpdateTheIndex() {
+        index.put(new Note("-N02", "Pick up batteries for the radio"));
+        index.remove("-N04");
+
+        assertTrue(index.search("milk", 10).isEmpty());
+        assertEquals(Arrays.asList("-N02"), keys(index.search("batteries", 10)));
+        assertTrue(index.search("electricity", 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void compactsOnceMostEntriesAreDead() {
+        NotesIndex big = new NotesIndex();
+        for (int i = 0; i < 200; i++) {
+            big.put(new Note(String.format("-K%03d", i), "note number " + i));
+        }
+        long before = big.getPostingCount();
+        for (int i = 0; i < 150; i++) {
+            big.remove(String.format("-K%03d", i));
+        }
+
+        assertEquals(50, big.size());
+        assertTrue(big.getPostingCount() <= before / 2);
+        assertEquals(Arrays.asList("-K199", "-K198"), keys(big.search("note", 2)));
+        assertEquals(Collections.singletonList("-K175"), keys(big.search("175", 5)));
+    }
+
+    @Test
+    public void unchangedNotesAreNotReindexed() {
+        long postings = index.getPostingCount();
+        index.put(new Note("-N01", "Call the pharmacy about the refill."));
+
+        assertEquals(postings, index.getPostingCount());
+    }
+
+    @Test
+    public void indexedStoreKeepsTheIndexInStep() {
+        InMemoryNotesStore local = new InMemoryNotesStore();
+        local.putAll("alice", Arrays.asList(new Note("-N01", "water the plants")));
+        IndexedNotesStore store = new IndexedNotesStore(local);
+        store.putAll("alice", Arrays.asList(new Note("-N02", "return the library audiobooks")));
+
+        NotesIndex alice = store.indexFor("alice");
+        assertEquals(2, alice.size());
+        store.putAll("alice", Arrays.asList(new Note("-N03", "water the garden")));
+        store.remove("alice", "-N01");
+
+        assertEquals(Arrays.asList("-N03"), keys(alice.search("water", 10)));
+        assertEquals(2, local.loadRange("alice", "", "\uffff").size());
+        assertEquals(0, store.indexFor("bob").size());
+    }
+
+    @Test
+    public void backfillIndexesNotesNeverScrolledTo() throws Exception {
+        NoteEnvelope alice = NoteEnvelope.derive("alice", "cat,sheep");
+        InMemoryBackend backend = new InMemoryBackend();
+        for (int i = 10; i < 35; i++) {
+            backend.set("users/alice/notes/-N" + i, alice.seal(i == 12 ? "renew the bus pass" : "note " + i));
+        }
+        NoteKeyring keyring = new NoteKeyring();
+        keyring.unlock("alice", alice);
+        IndexedNotesStore store = new IndexedNotesStore(new InMemoryNotesStore());
+        SyncQueue queue = new SyncQueue(new InMemoryOutboxStore(), new InMemoryRemoteWriter(backend), new FakeClock(),
+                0, 10, 1000, 1000);
+        OfflineNotesRepository notes = new OfflineNotesRepository(new InMemoryNotesRepository(backend), store,
+                queue, keyring, Runnable::run, Runnable::run);
+        notes.loadPage("alice", null, 10, new UserRepositoryTest.Recorder<>());
+        NotesIndex index = store.indexFor("alice");
+        assertTrue(index.search("bus", 10).isEmpty());
+        assertFalse(store.isComplete("alice"));
+
+        UserRepositoryTest.Recorder<Integer> copied = new UserRepositoryTest.Recorder<>();
+        notes.backfill("alice", 10, copied);
+        store.markComplete("alice");
+
+        assertEquals(Integer.valueOf(25), copied.value);
+        assertEquals(25, index.size());
+        assertEquals(Arrays.asList("-N12"), keys(index.search("bus", 10)));
+        assertTrue(store.isComplete("alice"));
+        store.forget("alice");
+        assertFalse(store.isComplete("alice"));
+    }
+}
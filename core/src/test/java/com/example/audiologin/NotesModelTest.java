@@ -0,0 +1,49 @@
+package com.example.audiologin;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotesModelTest {
+
+    @Test
+    public void snapshotIsOrderedByKey() {
+        NotesModel model = new NotesModel();
+        model.put(new Note("-N3", "third"));
+        model.put(new Note("-N1", "first"));
+        model.put(new Note("-N2", "second"));
+
+        List<Note> notes = model.snapshot();
+
+        assertEquals("first", notes.get(0).getText());
+        assertEquals("second", notes.get(1).getText());
+        assertEquals("third", notes.get(2).getText());
+    }
+
+    @Test
+    public void deltasOnlyReportRealChanges() {
+        NotesModel model = new NotesModel();
+
+        assertTrue(model.put(new Note("-N1", "milk")));
+        assertFalse(model.put(new Note("-N1", "milk")));
+        assertTrue(model.put(new Note("-N1", "oat milk")));
+        assertEquals("oat milk", model.get("-N1").getText());
+        assertTrue(model.remove("-N1"));
+        assertFalse(model.remove("-N1"));
+        assertEquals(0, model.size());
+    }
+
+    @Test
+    public void snapshotIsDetachedFromLaterChanges() {
+        NotesModel model = new NotesModel();
+        model.put(new Note("-N1", "milk"));
+        List<Note> before = model.snapshot();
+
+        model.put(new Note("-N2", "bread"));
+
+        assertEquals(1, before.size());
+        assertEquals(2, model.snapshot().size());
+    }
+}
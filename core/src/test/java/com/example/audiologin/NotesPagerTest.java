@@ -0,0 +1,159 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class NotesPagerTest {
+    private static final int PAGE_SIZE = 20;
+    private static final int KEEP_PAGES = 2;
+    private static final int SCREEN = 8;
+
+    private InMemoryBackend backend;
+    private NotesPager pager;
+    private int changes;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        changes = 0;
+    }
+
+    private void createNotes(String username, int count) {
+        Map<String, Object> notes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            notes.put("users/" + username + "/notes/" + key(i), text(i));
+        }
+        backend.update(notes);
+    }
+
+    private static String key(int i) {
+        return String.format("-N%07d", i);
+    }
+
+    private static String text(int i) {
+        return String.format("Dictated note %05d", i);
+    }
+
+    private NotesPager newPager(String username) {
+        return new NotesPager(new InMemoryNotesRepository(backend), username, PAGE_SIZE, KEEP_PAGES, new NotesPager.Listener() {
+            @Override
+            public void onNotesChanged() {
+                changes++;
+            }
+
+            @Override
+            public void onError(Exception e) {
+                fail(e.getMessage());
+            }
+        });
+    }
+
+    @Test
+    public void firstPageIsNewestNotesFirst() {
+        createNotes("alice", 100);
+        pager = newPager("alice");
+
+        pager.start();
+
+        List<Note> notes = pager.getNotes();
+        assertEquals(PAGE_SIZE, notes.size());
+        assertEquals(text(99), notes.get(0).getText());
+        assertEquals(text(80), notes.get(PAGE_SIZE - 1).getText());
+    }
+
+    @Test
+    public void firstPageCostDoesNotGrowWithHistory() {
+        createNotes("small", 50);
+        createNotes("large", 20000);
+
+        long before = backend.getBytesRead();
+        newPager("small").start();
+        long small = backend.getBytesRead() - before;
+
+        before = backend.getBytesRead();
+        newPager("large").start();
+        long large = backend.getBytesRead() - before;
+
+        assertEquals(small, large);
+    }
+
+    @Test
+    public void scrollingThroughHistoryKeepsMemoryBounded() {
+        int total = 10000;
+        createNotes("bob", total);
+        pager = newPager("bob");
+        pager.start();
+
+        int maxLoaded = 0;
+        int position = 0;
+        int seen = 0;
+        String expectedNext = text(total - 1);
+        for (int step = 0; step < total * 2 && seen < total; step++) {
+            int index = indexOfText(pager.getNotes(), expectedNext);
+            if (index >= 0) {
+                seen++;
+                expectedNext = text(total - 1 - seen);
+                position = index;
+            }
+            pager.onVisibleRange(position, position + SCREEN);
+            maxLoaded = Math.max(maxLoaded, pager.getLoadedCount());
+        }
+
+        assertEquals(total, seen);
+        assertTrue("loaded " + maxLoaded, maxLoaded <= PAGE_SIZE * (2 * KEEP_PAGES + 3));
+    }
+
+    @Test
+    public void scrollingBackReloadsEvictedPages() {
+        createNotes("carol", 1000);
+        pager = newPager("carol");
+        pager.start();
+        for (int position = 0; position < 300; position += SCREEN) {
+            scrollToText(text(999 - position));
+        }
+
+        for (int position = 300; position >= 0; position -= SCREEN) {
+            scrollToText(text(999 - position));
+        }
+
+        assertEquals(text(999), pager.getNotes().get(0).getText());
+        assertTrue(pager.getLoadedCount() <= PAGE_SIZE * (2 * KEEP_PAGES + 3));
+    }
+
+    private void scrollToText(String text) {
+        int index = indexOfText(pager.getNotes(), text);
+        assertTrue(text + " not loaded", index >= 0);
+        pager.onVisibleRange(index, index + SCREEN);
+    }
+
+    @Test
+    public void newNotesArriveLiveAtTheTop() {
+        createNotes("dave", 30);
+        pager = newPager("dave");
+        pager.start();
+        int before = changes;
+
+        backend.set("users/dave/notes/" + key(30), "Fresh note");
+
+        assertTrue(changes > before);
+        assertEquals("Fresh note", pager.getNotes().get(0).getText());
+
+        pager.stop();
+        assertEquals(0, backend.getListenerCount());
+    }
+
+    private static int indexOfText(List<Note> notes, String text) {
+        for (int i = 0; i < notes.size(); i++) {
+            if (notes.get(i).getText().equals(text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
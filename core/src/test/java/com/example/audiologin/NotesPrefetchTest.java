@@ -0,0 +1,124 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class NotesPrefetchTest {
+    private static final int PAGE_SIZE = 20;
+
+    private InMemoryBackend backend;
+    private NotesPrefetch prefetch;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        Map<String, Object> notes = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            notes.put("users/alice/notes/" + String.format("-N%07d", i), "Note " + i);
+        }
+        backend.update(notes);
+        prefetch = new NotesPrefetch(new InMemoryNotesRepository(backend), PAGE_SIZE);
+    }
+
+    @Test
+    public void prefetchedPageSeedsThePagerWithoutAnotherQuery() {
+        prefetch.start("alice");
+        long readsAfterPrefetch = backend.getReads();
+
+        NotesPager pager = new NotesPager(new InMemoryNotesRepository(backend), "alice", PAGE_SIZE, 2, new NotesPager.Listener() {
+            @Override
+            public void onNotesChanged() {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                fail(e.getMessage());
+            }
+        });
+        UserRepositoryTest.Recorder<List<Note>> page = new UserRepositoryTest.Recorder<>();
+        assertTrue(prefetch.take("alice", page));
+        pager.start(page.value);
+
+        assertEquals(readsAfterPrefetch, backend.getReads());
+        assertEquals(PAGE_SIZE, pager.getNotes().size());
+        assertEquals("Note 99", pager.getNotes().get(0).getText());
+    }
+
+    @Test
+    public void takeBeforeTheFetchCompletesWaitsForIt() {
+        DeferredNotesRepository deferred = new DeferredNotesRepository(new InMemoryNotesRepository(backend));
+        prefetch = new NotesPrefetch(deferred, PAGE_SIZE);
+        prefetch.start("alice");
+
+        UserRepositoryTest.Recorder<List<Note>> page = new UserRepositoryTest.Recorder<>();
+        assertTrue(prefetch.take("alice", page));
+        assertNull(page.value);
+
+        deferred.complete();
+        assertEquals(PAGE_SIZE, page.value.size());
+    }
+
+    @Test
+    public void pageIsOnlyForTheUserItWasFetchedForAndOnlyOnce() {
+        prefetch.start("alice");
+
+        assertFalse(prefetch.take("bob", new UserRepositoryTest.Recorder<>()));
+        assertTrue(prefetch.take("alice", new UserRepositoryTest.Recorder<>()));
+        assertFalse(prefetch.take("alice", new UserRepositoryTest.Recorder<>()));
+    }
+
+    @Test
+    public void clearedPrefetchIgnoresALateResult() {
+        DeferredNotesRepository deferred = new DeferredNotesRepository(new InMemoryNotesRepository(backend));
+        prefetch = new NotesPrefetch(deferred, PAGE_SIZE);
+        prefetch.start("alice");
+        UserRepositoryTest.Recorder<List<Note>> page = new UserRepositoryTest.Recorder<>();
+        prefetch.take("alice", page);
+
+        prefetch.clear();
+        deferred.complete();
+
+        assertNull(page.value);
+        assertFalse(prefetch.take("alice", new UserRepositoryTest.Recorder<>()));
+    }
+
+    // Holds back loadPage results until complete() is called.
+    private static class DeferredNotesRepository implements NotesRepository {
+        private final NotesRepository delegate;
+        private Runnable pending;
+
+        DeferredNotesRepository(NotesRepository delegate) {
+            this.delegate = delegate;
+        }
+
+        void complete() {
+            pending.run();
+        }
+
+        @Override
+        public void loadPage(String username, String beforeKey, int limit, DataCallback<List<Note>> callback) {
+            pending = () -> delegate.loadPage(username, beforeKey, limit, callback);
+        }
+
+        @Override
+        public void loadRange(String username, String startKey, String endKey, DataCallback<List<Note>> callback) {
+            delegate.loadRange(username, startKey, endKey, callback);
+        }
+
+        @Override
+        public void saveNote(String username, String text, DataCallback<Note> callback) {
+            delegate.saveNote(username, text, callback);
+        }
+
+        @Override
+        public Subscription observe(String username, String startKey, NotesListener listener) {
+            return delegate.observe(username, startKey, listener);
+        }
+    }
+}
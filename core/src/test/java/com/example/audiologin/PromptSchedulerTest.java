@@ -0,0 +1,144 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PromptSchedulerTest {
+
+    // Stand-in for an utterance or clip that completes after a fixed duration.
+    private PromptScheduler.Step timed(String name, long durationMs) {
+        return done -> {
+            log.add(name + "@" + clock.now());
+            clock.postDelayed(done, durationMs);
+        };
+    }
+
+    private FakeClock clock;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        log = new ArrayList<>();
+    }
+
+    @Test
+    public void stepsRunInOrderOnCompletion() {
+        PromptScheduler scheduler = new PromptScheduler(clock, 0);
+        scheduler.then(timed("a", 300)).then(timed("b", 100)).then(timed("c", 50));
+
+        clock.advance(1000);
+
+        assertEquals(Arrays.asList("a@0", "b@300", "c@400"), log);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void minimumGapSeparatesSteps() {
+        PromptScheduler scheduler = new PromptScheduler(clock, 200);
+        scheduler.then(timed("a", 300)).then(timed("b", 100));
+
+        clock.advance(1000);
+
+        assertEquals(Arrays.asList("a@0", "b@500"), log);
+    }
+
+    @Test
+    public void stepAddedAfterGapStartsImmediately() {
+        PromptScheduler scheduler = new PromptScheduler(clock, 200);
+        scheduler.then(timed("a", 100));
+        clock.advance(1000);
+        scheduler.then(timed("b", 100));
+
+        assertEquals(Arrays.asList("a@0", "b@1000"), log);
+    }
+
+    @Test
+    public void pauseDelaysNextStep() {
+        PromptScheduler scheduler = new PromptScheduler(clock, 0);
+        scheduler.then(timed("a", 100)).pause(700).then(timed("b", 100));
+
+        clock.advance(2000);
+
+        assertEquals(Arrays.asList("a@0", "b@800"), log);
+    }
+
+    @Test
+    public void cancelDropsQueuedStepsAndIgnoresLateCompletion() {
+        PromptScheduler scheduler = new PromptScheduler(clock, 0);
+        Runnable[] pending = new Runnable[1];
+        scheduler.then(done -> pending[0] = done).then(timed("never", 100));
+
+        scheduler.cancel();
+        pending[0].run();
+        clock.advance(1000);
+
+        assertTrue(log.isEmpty());
+        scheduler.then(timed("after", 100));
+        assertEquals(Arrays.asList("after@1000"), log);
+    }
+
+    @Test
+    public void duplicateCompletionAdvancesOnce() {
+        PromptScheduler scheduler = new PromptScheduler(clock, 0);
+        scheduler.then(done -> {
+            done.run();
+            done.run();
+        }).then(timed("b", 100)).then(timed("c", 100));
+
+        clock.advance(150);
+
+        assertEquals(Arrays.asList("b@0", "c@100"), log);
+    }
+
+    @Test
+    public void stepsQueuedWhileBusyRunAfterPendingOnes() {
+        PromptScheduler scheduler = new PromptScheduler(clock, 0);
+        scheduler.then(timed("a", 100)).then(done -> {
+            scheduler.then(timed("queued", 10));
+            done.run();
+        }).then(timed("b", 10));
+
+        clock.advance(1000);
+
+        assertEquals(Arrays.asList("a@0", "b@100", "queued@110"), log);
+    }
+
+    // Login-shaped run with uneven step lengths: each step, pauses included, starts exactly the gap
+    // after the previous one reported done, whatever that step's duration was.
+    @Test
+    public void eachStepStartsOneGapAfterThePreviousDone() {
+        long gap = 150;
+        long[] durations = {2500, 900, 700, 40, 700, 1300, 700, 1200};
+        List<Long> starts = new ArrayList<>();
+        List<Long> dones = new ArrayList<>();
+        PromptScheduler scheduler = new PromptScheduler(clock, gap);
+        for (long duration : durations) {
+            scheduler.then(done -> {
+                starts.add(clock.now());
+                clock.postDelayed(() -> {
+                    dones.add(clock.now());
+                    done.run();
+                }, duration);
+            });
+        }
+
+        clock.advance(20000);
+
+        assertEquals(durations.length, dones.size());
+        assertEquals(0L, (long) starts.get(0));
+        for (int i = 0; i < durations.length; i++) {
+            assertEquals(starts.get(i) + durations[i], (long) dones.get(i));
+            if (i > 0) {
+                assertEquals("step " + i, dones.get(i - 1) + gap, (long) starts.get(i));
+            }
+        }
+        assertTrue(scheduler.isIdle());
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.audiologin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Wraps a store for tests: logs chunk reads and writes, and can fail the next few writes, or the
+// next few of one chunk.
+public class RecordingAudioStore implements AudioStore {
+    private final AudioStore store;
+    final List<Integer> reads = new ArrayList<>();
+    final List<Integer> writes = new ArrayList<>();
+    int failWrites;
+    int failChunk = -1;
+
+    public RecordingAudioStore(AudioStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public synchronized void writeChunk(String username, String clipId, int index, byte[] data, int length,
+                                        DataCallback<Void> callback) {
+        if (failWrites > 0 && (failChunk < 0 || index == failChunk)) {
+            failWrites--;
+            callback.onFailure(new IOException("Write of chunk " + index + " refused"));
+            return;
+        }
+        writes.add(index);
+        store.writeChunk(username, clipId, index, data, length, callback);
+    }
+
+    @Override
+    public synchronized void readChunk(String username, String clipId, int index, DataCallback<byte[]> callback) {
+        reads.add(index);
+        store.readChunk(username, clipId, index, callback);
+    }
+
+    @Override
+    public void finish(String username, String clipId, int totalChunks, long length, DataCallback<Void> callback) {
+        store.finish(username, clipId, totalChunks, length, callback);
+    }
+
+    @Override
+    public void loadStatus(String username, String clipId, DataCallback<Status> callback) {
+        store.loadStatus(username, clipId, callback);
+    }
+
+    @Override
+    public void delete(String username, String clipId, DataCallback<Void> callback) {
+        store.delete(username, clipId, callback);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// Synthetic timelines: clips of 1000ms, a 400ms window and 150ms gap between them, as the login screen plays them.
+public class SelectionTimelineTest {
+    private static final long WINDOW_MS = 400;
+    private static final long REACTION_MS = 250;
+
+    private SelectionTimeline timeline;
+    private List<String> picked;
+    private DoubleTapRecognizer doubleTap;
+
+    @Before
+    public void setUp() {
+        timeline = new SelectionTimeline(WINDOW_MS, REACTION_MS);
+        picked = new ArrayList<>();
+        doubleTap = new DoubleTapRecognizer(200, 250, 30, firstDownAt -> picked.add(timeline.resolve(firstDownAt)));
+        // cat 0-1000, cow 1550-2550, crow 3100-4100
+        timeline.onStarted("cat", 0);
+        timeline.onEnded(1000);
+        timeline.onStarted("cow", 1550);
+        timeline.onEnded(2550);
+        timeline.onStarted("crow", 3100);
+    }
+
+    private void tap(long downAt, long upAt) {
+        doubleTap.onDown(downAt, 100, 200);
+        doubleTap.onUp(upAt);
+    }
+
+    @Test
+    public void tapPicksTheClipAudibleAtFirstTouch() {
+        tap(2400, 2480);
+        tap(2600, 2650);
+
+        assertEquals("[cow]", picked.toString());
+    }
+
+    @Test
+    public void gestureFinishingDuringTheNextClipStillPicksTheFirstOne() {
+        // Starts in cow's window; the second tap lands after crow has begun.
+        tap(2900, 2990);
+        tap(3200, 3260);
+
+        assertEquals("[cow]", picked.toString());
+    }
+
+    @Test
+    public void touchRightAfterAClipStartsIsAReactionToThePreviousOne() {
+        assertEquals("cow", timeline.resolve(3100 + REACTION_MS - 1));
+        assertEquals("crow", timeline.resolve(3100 + REACTION_MS));
+    }
+
+    @Test
+    public void touchLongAfterTheLastClipPicksNothing() {
+        timeline.onEnded(4100);
+        assertEquals("crow", timeline.resolve(4100 + WINDOW_MS));
+        assertNull(timeline.resolve(4100 + WINDOW_MS + REACTION_MS + 1));
+        assertNull(new SelectionTimeline(WINDOW_MS, REACTION_MS).resolve(500));
+    }
+
+    @Test
+    public void slowOrMovingTapsAreNotDoubleTaps() {
+        // Held too long.
+        tap(500, 800);
+        tap(900, 950);
+        // Too far apart.
+        tap(1600, 1650);
+        tap(1950, 2000);
+        // A swipe for the first touch.
+        doubleTap.onDown(2500, 100, 200);
+        doubleTap.onMove(2550, 100, 300);
+        doubleTap.onUp(2580);
+        tap(2650, 2700);
+
+        assertTrue(picked.isEmpty());
+    }
+}
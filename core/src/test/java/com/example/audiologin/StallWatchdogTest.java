@@ -0,0 +1,198 @@
+package com.example.audiologin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StallWatchdogTest {
+    private static final long INTERVAL_MS = 10;
+    private static final long THRESHOLD_MS = 100;
+
+    private ExecutorService main;
+    private Thread mainThread;
+    private ExecutorService workers;
+    private List<StallWatchdog.Incident> heard;
+    private StallWatchdog watchdog;
+    private LoginFlow login;
+
+    @Before
+    public void setUp() throws Exception {
+        main = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "main"));
+        mainThread = main.submit(Thread::currentThread).get();
+        workers = Executors.newFixedThreadPool(2);
+        heard = Collections.synchronizedList(new ArrayList<>());
+        watchdog = new StallWatchdog(main, mainThread, INTERVAL_MS, THRESHOLD_MS, 2, heard::add);
+        watchdog.start();
+    }
+
+    @After
+    public void tearDown() {
+        watchdog.stop();
+        main.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private static void blockFor(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Waits until the main thread is idle and the watchdog has seen a heartbeat after it.
+    private void settle() throws Exception {
+        main.submit(() -> { }).get();
+        Thread.sleep(INTERVAL_MS * 5);
+    }
+
+    @Test
+    public void blockedMainThreadIsRecordedWithStageAndStack() throws Exception {
+        watchdog.setStage("login");
+        main.execute(() -> blockFor(300));
+        settle();
+
+        List<StallWatchdog.Incident> incidents = watchdog.getIncidents();
+        assertEquals(1, incidents.size());
+        StallWatchdog.Incident stall = incidents.get(0);
+        assertEquals("login", stall.getStage());
+        assertTrue(stall.isFinished());
+        assertTrue(stall.getDurationMs() >= 250);
+        boolean blamed = false;
+        for (StackTraceElement frame : stall.getStack()) {
+            blamed |= frame.getMethodName().equals("blockFor");
+        }
+        assertTrue(blamed);
+        assertEquals(1, heard.size());
+        assertFalse(heard.get(0).isFinished());
+    }
+
+    @Test
+    public void shortTasksAreNotStalls() throws Exception {
+        watchdog.setStage("notes");
+        // A backlog counts too, so each task finishes before the next is posted.
+        for (int i = 0; i < 20; i++) {
+            main.submit(() -> blockFor(5)).get();
+        }
+        settle();
+
+        assertTrue(watchdog.getIncidents().isEmpty());
+        assertEquals(0, watchdog.getLongestStallMs("notes"));
+    }
+
+    @Test
+    public void keepsTheNewestIncidents() throws Exception {
+        String[] stages = {"welcome", "registration", "notes"};
+        for (String stage : stages) {
+            main.execute(() -> watchdog.setStage(stage));
+            main.execute(() -> blockFor(150));
+            settle();
+        }
+
+        List<StallWatchdog.Incident> incidents = watchdog.getIncidents();
+        assertEquals(2, incidents.size());
+        assertEquals("registration", incidents.get(0).getStage());
+        assertEquals("notes", incidents.get(1).getStage());
+        StringWriter out = new StringWriter();
+        watchdog.export(out);
+        assertTrue(out.toString().contains(" notes "));
+        assertTrue(out.toString().contains("blockFor"));
+    }
+
+    @Test
+    public void restartedWatchdogStillSeesStalls() throws Exception {
+        // Many more heartbeats answered than the stall below lasts intervals.
+        Thread.sleep(THRESHOLD_MS * 6);
+        watchdog.stop();
+        main.execute(() -> blockFor(150));
+        settle();
+        assertTrue(watchdog.getIncidents().isEmpty());
+
+        watchdog.start();
+        watchdog.setStage("notes");
+        main.execute(() -> blockFor(300));
+        settle();
+
+        assertEquals(1, watchdog.getIncidents().size());
+        assertEquals("notes", watchdog.getIncidents().get(0).getStage());
+    }
+
+    @Test
+    public void loginFlowStaysWithinItsBudget() throws Exception {
+        InMemoryBackend backend = new InMemoryBackend();
+        InMemoryUserRepository users = new InMemoryUserRepository(backend);
+        users.register("alice", CryptoHelper.encrypt("cow,crow"), new UserRepositoryTest.Recorder<>());
+        // Lookups and key derivation on the workers, callbacks on the watched main thread, as in the app.
+        CryptoService crypto = new CryptoService(workers, main);
+        CredentialPrefetcher credentials = new CredentialPrefetcher(users, new FakeClock(), 300, 60000, 4, null);
+        NotesPrefetch prefetch = new NotesPrefetch(new InMemoryNotesRepository(backend), 20);
+        NoteKeyring keyring = new NoteKeyring();
+        CountDownLatch unlocked = new CountDownLatch(1);
+        login = new LoginFlow(credentials, crypto, keyring, prefetch,
+                new LatencyRecorder(LatencyRecorder.Tracer.NONE), new SelectingListener(unlocked));
+        watchdog.setStage("login");
+
+        main.execute(() -> login.start("alice"));
+        assertTrue(unlocked.await(10, TimeUnit.SECONDS));
+        settle();
+
+        assertTrue(keyring.isUnlocked("alice"));
+        assertEquals(0, watchdog.getLongestStallMs("login"));
+    }
+
+    // Picks the right animals as soon as the challenge is up.
+    private class SelectingListener implements LoginFlow.Listener {
+        private final CountDownLatch unlocked;
+
+        SelectingListener(CountDownLatch unlocked) {
+            this.unlocked = unlocked;
+        }
+
+        @Override
+        public void onChallenge(String username) {
+            login.beginSelection();
+            login.select("cow");
+            login.select("crow");
+        }
+
+        @Override
+        public void onNoCredential(String username) {
+        }
+
+        @Override
+        public void onLookupFailed(Exception e) {
+        }
+
+        @Override
+        public void onDecryptFailed(Exception e) {
+        }
+
+        @Override
+        public void onRejected() {
+        }
+
+        @Override
+        public void onVerified() {
+        }
+
+        @Override
+        public void onNotesUnlocked() {
+            unlocked.countDown();
+        }
+
+        @Override
+        public void onKeyDeriveFailed(Exception e) {
+        }
+    }
+}
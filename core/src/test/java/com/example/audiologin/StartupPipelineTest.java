@@ -0,0 +1,75 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StartupPipelineTest {
+    private ArrayDeque<Runnable> tasks;
+    private List<String> events;
+    private StartupPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        tasks = new ArrayDeque<>();
+        events = new ArrayList<>();
+        pipeline = new StartupPipeline(tasks::add, LatencyRecorder.Tracer.NONE, new StartupPipeline.Listener() {
+            @Override
+            public void onStepFinished(String name, long elapsedNanos) {
+                events.add(name + " done");
+            }
+
+            @Override
+            public void onStepFailed(String name, Exception e) {
+                events.add(name + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void stepsWaitForStartAndTheirDependencies() {
+        pipeline.add("speech", () -> events.add("speech"));
+        pipeline.add("sounds", () -> events.add("sounds"), "speech");
+        pipeline.add("latency", () -> events.add("latency"));
+        runTasks();
+        assertTrue(events.isEmpty());
+
+        pipeline.start();
+        runTasks();
+
+        assertEquals("[speech, speech done, latency, latency done, sounds, sounds done]", events.toString());
+        assertTrue(pipeline.whenDone("sounds").isDone());
+    }
+
+    @Test
+    public void aFailedStepSkipsItsDependents() {
+        pipeline.add("database", () -> {
+            throw new IOException("disk full");
+        });
+        pipeline.add("outbox", () -> events.add("outbox"), "database");
+        pipeline.add("speech", () -> events.add("speech"));
+        pipeline.start();
+        runTasks();
+
+        assertEquals("[database failed: disk full, outbox failed: disk full, speech, speech done]", events.toString());
+        assertTrue(pipeline.whenDone("outbox").isCompletedExceptionally());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dependenciesMustBeAddedFirst() {
+        pipeline.add("sounds", () -> events.add("sounds"), "speech");
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SubscriptionRegistryTest {
+    private static final long GRACE_MS = 30000;
+
+    private InMemoryBackend backend;
+    private FakeClock clock;
+    private SubscriptionRegistry registry;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        clock = new FakeClock();
+        registry = new SubscriptionRegistry(new InMemoryNotesRepository(backend), clock, GRACE_MS);
+        backend.set("users/alice/notes/n1", "milk");
+        backend.set("users/alice/notes/n2", "bread");
+    }
+
+    @Test
+    public void observersOfOneQueryShareAnUpstreamListener() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        registry.observe("alice", null, first);
+        long bytesAfterFirst = registry.getBytesReceived();
+        registry.observe("alice", null, second);
+
+        assertEquals(1, backend.getListenerCount());
+        assertEquals(1, registry.getListenerCount());
+        assertEquals(2, registry.getObserverCount());
+        assertEquals(bytesAfterFirst, registry.getBytesReceived());
+        assertEquals("[milk, bread]", second.events.toString());
+
+        backend.set("users/alice/notes/n3", "eggs");
+        assertEquals("[milk, bread, eggs]", first.events.toString());
+        assertEquals("[milk, bread, eggs]", second.events.toString());
+    }
+
+    @Test
+    public void pausedObserverGetsOnlyWhatItMissedOnResume() {
+        Recorder recorder = new Recorder();
+        NotesRepository.Subscription subscription = registry.observe("alice", null, recorder);
+        subscription.pause();
+
+        backend.set("users/alice/notes/n2", "brown bread");
+        backend.set("users/alice/notes/n2", "rye bread");
+        backend.set("users/alice/notes/n3", "eggs");
+        backend.set("users/alice/notes/n1", null);
+        assertEquals("[milk, bread]", recorder.events.toString());
+
+        subscription.resume();
+        assertEquals("[milk, bread, rye bread, eggs, -n1]", recorder.events.toString());
+    }
+
+    @Test
+    public void upstreamDetachesAfterTheGracePeriodAndResumesWithDeltas() {
+        Recorder recorder = new Recorder();
+        NotesRepository.Subscription subscription = registry.observe("alice", null, recorder);
+        subscription.pause();
+        clock.advance(GRACE_MS - 1);
+        assertEquals(1, backend.getListenerCount());
+
+        clock.advance(1);
+        assertEquals(0, backend.getListenerCount());
+        assertEquals(0, registry.getListenerCount());
+
+        backend.set("users/alice/notes/n1", null);
+        backend.set("users/alice/notes/n3", "eggs");
+        subscription.resume();
+
+        assertEquals(1, backend.getListenerCount());
+        assertEquals("[milk, bread, eggs, -n1]", recorder.events.toString());
+    }
+
+    @Test
+    public void reenteringWithinTheGracePeriodKeepsTheListener() {
+        NotesRepository.Subscription first = registry.observe("alice", null, new Recorder());
+        first.cancel();
+        clock.advance(GRACE_MS / 2);
+
+        Recorder again = new Recorder();
+        registry.observe("alice", null, again);
+        clock.advance(GRACE_MS);
+
+        assertEquals(1, backend.getListenerCount());
+        assertEquals("[milk, bread]", again.events.toString());
+    }
+
+    @Test
+    public void lastCancelReleasesTheQuery() {
+        registry.observe("alice", null, new Recorder()).cancel();
+        clock.advance(GRACE_MS);
+
+        assertEquals(0, backend.getListenerCount());
+        assertEquals(0, registry.getObserverCount());
+    }
+
+    private static class Recorder implements NotesRepository.NotesListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onNoteChanged(Note note) {
+            events.add(note.getText());
+        }
+
+        @Override
+        public void onNoteRemoved(String key) {
+            events.add("-" + key);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            events.add("error");
+        }
+    }
+}
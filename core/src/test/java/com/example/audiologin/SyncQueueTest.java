@@ -0,0 +1,204 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SyncQueueTest {
+    private static final long FLUSH_DELAY_MS = 500;
+    private static final int MAX_BATCH = 4;
+    private static final long INITIAL_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 8000;
+
+    private InMemoryBackend backend;
+    private InMemoryOutboxStore outbox;
+    private FakeClock clock;
+    private SyncQueue queue;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        outbox = new InMemoryOutboxStore();
+        clock = new FakeClock();
+        queue = newQueue();
+    }
+
+    private SyncQueue newQueue() {
+        return new SyncQueue(outbox, new InMemoryRemoteWriter(backend), clock,
+                FLUSH_DELAY_MS, MAX_BATCH, INITIAL_BACKOFF_MS, MAX_BACKOFF_MS);
+    }
+
+    @Test
+    public void repeatedWritesToOnePathAreCoalesced() {
+        queue.enqueue("users/alice/notes/n1", "draft");
+        queue.enqueue("users/alice/notes/n1", "draft two");
+        queue.enqueue("users/alice/notes/n1", "final");
+
+        clock.advance(FLUSH_DELAY_MS);
+
+        assertEquals("final", backend.get("users/alice/notes/n1"));
+        assertEquals(1, backend.getWrites());
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void writesAreSentInBoundedBatches() {
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue("users/alice/notes/n" + i, "note " + i);
+        }
+
+        clock.advance(FLUSH_DELAY_MS);
+
+        assertEquals(3, backend.getWrites());
+        assertEquals(3, queue.getBatchesSent());
+        assertEquals("note 9", backend.get("users/alice/notes/n9"));
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void failedBatchIsRetriedWithBackoff() {
+        backend.setFailWrites(true);
+        queue.enqueue("users/alice/notes/n1", "note");
+
+        clock.advance(FLUSH_DELAY_MS);
+        assertEquals(1, queue.getFailures());
+        clock.advance(INITIAL_BACKOFF_MS);
+        assertEquals(2, queue.getFailures());
+        clock.advance(INITIAL_BACKOFF_MS);
+        assertEquals(2, queue.getFailures());
+        clock.advance(INITIAL_BACKOFF_MS);
+        assertEquals(3, queue.getFailures());
+
+        // Further writes wait for the retry instead of hammering the backend.
+        queue.enqueue("users/alice/notes/n2", "another");
+        clock.advance(FLUSH_DELAY_MS);
+        assertEquals(3, queue.getFailures());
+
+        backend.setFailWrites(false);
+        clock.advance(4 * INITIAL_BACKOFF_MS);
+        assertEquals("note", backend.get("users/alice/notes/n1"));
+        assertEquals("another", backend.get("users/alice/notes/n2"));
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        backend.setFailWrites(true);
+        queue.enqueue("usernames/alice", true);
+        clock.advance(FLUSH_DELAY_MS);
+        clock.advance(60 * MAX_BACKOFF_MS);
+
+        int failures = queue.getFailures();
+        clock.advance(MAX_BACKOFF_MS);
+
+        assertEquals(failures + 1, queue.getFailures());
+    }
+
+    @Test
+    public void pendingWritesSurviveRestart() {
+        backend.setFailWrites(true);
+        queue.enqueue("users/alice/notes/n1", "written offline");
+        clock.advance(FLUSH_DELAY_MS);
+        assertEquals(1, outbox.size());
+
+        backend.setFailWrites(false);
+        SyncQueue restarted = newQueue();
+        clock.advance(0);
+
+        assertEquals("written offline", backend.get("users/alice/notes/n1"));
+        assertEquals(0, restarted.getPendingCount());
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void storedOutboxIsReadOffTheCallingThread() {
+        Map<String, Object> previousRun = new LinkedHashMap<>();
+        previousRun.put("users/alice/notes/n1", "written offline");
+        previousRun.put("users/alice/notes/n2", "also offline");
+        outbox.put(previousRun);
+
+        List<Runnable> io = new ArrayList<>();
+        SyncQueue restarted = new SyncQueue(outbox, new InMemoryRemoteWriter(backend), clock, io::add, Runnable::run,
+                FLUSH_DELAY_MS, MAX_BATCH, INITIAL_BACKOFF_MS, MAX_BACKOFF_MS);
+        OfflineUserRepository users = new OfflineUserRepository(new InMemoryUserRepository(backend), restarted);
+        UserRepositoryTest.Recorder<Boolean> exists = new UserRepositoryTest.Recorder<>();
+        users.userExists("bob", exists);
+        restarted.enqueue("users/alice/notes/n2", "edited");
+        restarted.enqueue("users/alice/notes/n3", "new");
+        clock.advance(FLUSH_DELAY_MS);
+
+        // Nothing is sent or answered before the stored writes are known.
+        assertFalse(restarted.isLoaded());
+        assertTrue(restarted.isPending("users/alice/notes/n1"));
+        assertNull(exists.value);
+        assertEquals(0, backend.getWrites());
+
+        io.get(0).run();
+        clock.advance(0);
+
+        assertEquals(false, exists.value);
+        assertEquals("written offline", backend.get("users/alice/notes/n1"));
+        assertEquals("edited", backend.get("users/alice/notes/n2"));
+        assertEquals("new", backend.get("users/alice/notes/n3"));
+        assertEquals(0, restarted.getPendingCount());
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void registrationIsOneMultiPathWriteAndVisibleBeforeSync() {
+        backend.setFailWrites(true);
+        OfflineUserRepository users = new OfflineUserRepository(new InMemoryUserRepository(backend), queue);
+        users.register("alice", "secret", new UserRepositoryTest.Recorder<>());
+
+        UserRepositoryTest.Recorder<Boolean> exists = new UserRepositoryTest.Recorder<>();
+        users.userExists("alice", exists);
+        assertEquals(true, exists.value);
+        UserRepositoryTest.Recorder<String> credential = new UserRepositoryTest.Recorder<>();
+        users.loadCredential("alice", credential);
+        assertEquals("secret", credential.value);
+
+        backend.setFailWrites(false);
+        queue.retryNow();
+        clock.advance(0);
+        assertEquals("secret", backend.get("users/alice/AudioLogin"));
+        assertEquals(true, backend.get("usernames/alice"));
+        assertEquals(1, backend.getWrites());
+    }
+
+    @Test
+    public void noteSavedOfflineIsReadableAndSyncedLater() throws Exception {
+        backend.setFailWrites(true);
+        NoteEnvelope envelope = NoteEnvelope.derive("alice", "cat,sheep");
+        NoteKeyring keyring = new NoteKeyring();
+        keyring.unlock("alice", envelope);
+        OfflineNotesRepository notes = new OfflineNotesRepository(new InMemoryNotesRepository(backend),
+                new InMemoryNotesStore(), queue, keyring, Runnable::run, Runnable::run);
+        UserRepositoryTest.Recorder<Note> saved = new UserRepositoryTest.Recorder<>();
+        notes.saveNote("alice", "Buy milk", saved);
+        assertNotNull(saved.value);
+
+        List<Note> page = loadPage(notes);
+        assertEquals(1, page.size());
+        assertEquals("Buy milk", page.get(0).getText());
+
+        backend.setFailWrites(false);
+        clock.advance(10 * INITIAL_BACKOFF_MS);
+        assertEquals("Buy milk", envelope.open((String) backend.get("users/alice/notes/" + saved.value.getKey())));
+        assertEquals(1, loadPage(notes).size());
+    }
+
+    private List<Note> loadPage(OfflineNotesRepository notes) {
+        UserRepositoryTest.Recorder<List<Note>> recorder = new UserRepositoryTest.Recorder<>();
+        notes.loadPage("alice", null, 20, recorder);
+        assertNull(recorder.error);
+        return recorder.value;
+    }
+}
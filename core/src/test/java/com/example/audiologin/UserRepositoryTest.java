@@ -0,0 +1,100 @@
+package com.example.audiologin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class UserRepositoryTest {
+    private InMemoryBackend backend;
+    private InMemoryUserRepository repository;
+
+    @Before
+    public void setUp() {
+        backend = new InMemoryBackend();
+        repository = new InMemoryUserRepository(backend);
+    }
+
+    @Test
+    public void registerAddsUsernameIndex() {
+        repository.register("alice", "secret", new Recorder<>());
+
+        assertEquals(true, backend.get("usernames/alice"));
+        assertEquals("secret", backend.get("users/alice/AudioLogin"));
+        assertEquals(true, exists("alice"));
+        assertEquals(false, exists("bob"));
+    }
+
+    @Test
+    public void legacyUserWithoutIndexIsFound() {
+        backend.set("users/carol/AudioLogin", "secret");
+
+        assertEquals(true, exists("carol"));
+    }
+
+    @Test
+    public void credentialIsLoadedFromItsLeaf() {
+        repository.register("dora", "secret", new Recorder<>());
+
+        Recorder<String> credential = new Recorder<>();
+        repository.loadCredential("dora", credential);
+        assertEquals("secret", credential.value);
+
+        Recorder<String> missing = new Recorder<>();
+        repository.loadCredential("nobody", missing);
+        assertNull(missing.error);
+        assertNull(missing.value);
+    }
+
+    @Test
+    public void probeCostDoesNotDependOnNoteCount() {
+        long[] bytes = new long[3];
+        int[] noteCounts = {0, 100, 5000};
+        for (int i = 0; i < noteCounts.length; i++) {
+            String username = "user" + i;
+            repository.register(username, "secret", new Recorder<>());
+            addNotes(username, noteCounts[i]);
+
+            long before = backend.getBytesRead();
+            assertEquals(true, exists(username));
+            bytes[i] = backend.getBytesRead() - before;
+        }
+
+        assertEquals(bytes[0], bytes[1]);
+        assertEquals(bytes[0], bytes[2]);
+        assertTrue(bytes[0] < 16);
+    }
+
+    private void addNotes(String username, int count) {
+        Map<String, Object> notes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            notes.put("users/" + username + "/notes/note" + i, "Remember to buy milk and call the pharmacy about refill " + i);
+        }
+        backend.update(notes);
+    }
+
+    private Boolean exists(String username) {
+        Recorder<Boolean> recorder = new Recorder<>();
+        repository.userExists(username, recorder);
+        assertNull(recorder.error);
+        return recorder.value;
+    }
+
+    static class Recorder<T> implements DataCallback<T> {
+        T value;
+        Exception error;
+
+        @Override
+        public void onSuccess(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            this.error = e;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+// Headless load test for the plain-Java flows: thousands of simulated sessions, no emulator
+// and no network. Run with ./gradlew :loadtest:run --args="--users 2000 --workers 8"
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    implementation(project(":core"))
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass.set("com.example.audiologin.LoadDriver")
+}
+
+// Backup and restore of one user's notes at scale: ./gradlew :loadtest:runArchive --args="--notes 100000"
+tasks.register<JavaExec>("runArchive") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.audiologin.ArchiveLoad")
+}
@@ -0,0 +1,255 @@
+package com.example.audiologin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Backs up one user's notes from the in-memory backend to a file and restores them into an empty
+// one, timing both. A second pass repeats the transfer while a sampler thread forces a GC and
+// reads the heap every few milliseconds, giving the peak live memory above what the backend
+// itself holds; the import in that pass writes to a sink so stored notes do not count. For
+// comparison it also loads every note into one list, as the notes screen used to.
+//   ./gradlew :loadtest:runArchive --args="--notes 100000"
+public class ArchiveLoad {
+    private static final int PAGE_SIZE = 500;
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final long WRITE_TIMEOUT_MS = 60000;
+    private static final long SAMPLE_MS = 5;
+    private static final String USER = "alice";
+
+    public static class Result {
+        public int notes;
+        public int exported;
+        public int imported;
+        public long archiveBytes;
+        public long exportNanos;
+        public long importNanos;
+        public long exportPeakBytes;
+        public long importPeakBytes;
+        public long loadAllPeakBytes;
+
+        public void print(PrintStream out) {
+            out.printf("notes %d, archive %d KiB%n", notes, archiveBytes / 1024);
+            out.printf("export %d notes in %.2fs, %.0f notes/s, peak heap +%d KiB%n", exported,
+                    exportNanos / 1e9, exported / (exportNanos / 1e9), exportPeakBytes / 1024);
+            out.printf("import %d notes in %.2fs, %.0f notes/s, peak heap +%d KiB%n", imported,
+                    importNanos / 1e9, imported / (importNanos / 1e9), importPeakBytes / 1024);
+            out.printf("load everything into a list: peak heap +%d KiB%n", loadAllPeakBytes / 1024);
+        }
+    }
+
+    // Acknowledges each update latencyMs later from a small pool, like a round trip to the server.
+    private static class LatentWriter implements SyncQueue.RemoteWriter {
+        final SyncQueue.RemoteWriter target;
+        final ScheduledExecutorService network;
+        final long latencyMs;
+
+        LatentWriter(SyncQueue.RemoteWriter target, ScheduledExecutorService network, long latencyMs) {
+            this.target = target;
+            this.network = network;
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public void write(Map<String, Object> updates, DataCallback<Void> callback) {
+            network.schedule(() -> target.write(updates, callback), latencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Tracks the most heap left after a full collection, sampled on its own thread.
+    private static class HeapSampler extends Thread {
+        final AtomicLong peak = new AtomicLong();
+        volatile boolean running = true;
+
+        HeapSampler() {
+            super("heap-sampler");
+            setDaemon(true);
+        }
+
+        static long liveBytes() {
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long live = liveBytes();
+                peak.accumulateAndGet(live, Math::max);
+                try {
+                    Thread.sleep(SAMPLE_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long stop(long baseline) throws InterruptedException {
+            running = false;
+            join();
+            return Math.max(0, Math.max(peak.get(), liveBytes()) - baseline);
+        }
+    }
+
+    static InMemoryBackend seed(int notes, long seed) {
+        InMemoryBackend backend = new InMemoryBackend();
+        Random random = new Random(seed);
+        char[] sealed = new char[160];
+        for (int i = 0; i < notes; i++) {
+            for (int c = 0; c < sealed.length; c++) {
+                sealed[c] = (char) ('A' + random.nextInt(26));
+            }
+            backend.set("users/" + USER + "/notes/" + String.format("-N%08d", i), new String(sealed));
+        }
+        return backend;
+    }
+
+    public static Result run(int notes, long latencyMs, File archive) throws Exception {
+        Result result = new Result();
+        result.notes = notes;
+        InMemoryBackend source = seed(notes, 42);
+        ExecutorService io = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "archive"));
+        ScheduledExecutorService network = Executors.newScheduledThreadPool(MAX_IN_FLIGHT);
+        try {
+            InMemoryBackend target = new InMemoryBackend();
+            NotesArchive backup = new NotesArchive(new InMemoryNotesRepository(source),
+                    new InMemoryRemoteWriter(source), null, null, io, Runnable::run, PAGE_SIZE, BATCH_SIZE, MAX_IN_FLIGHT,
+                    WRITE_TIMEOUT_MS);
+            NotesArchive restore = new NotesArchive(new InMemoryNotesRepository(target),
+                    new LatentWriter(new InMemoryRemoteWriter(target), network, latencyMs), null, null, io, Runnable::run,
+                    PAGE_SIZE, BATCH_SIZE, MAX_IN_FLIGHT, WRITE_TIMEOUT_MS);
+
+            long start = System.nanoTime();
+            result.exported = export(backup, archive);
+            result.exportNanos = System.nanoTime() - start;
+            result.archiveBytes = archive.length();
+            start = System.nanoTime();
+            result.imported = restore(restore, archive);
+            result.importNanos = System.nanoTime() - start;
+            if (result.imported != notes || target.query("users/" + USER + "/notes", null, false, null, false, 0).size() != notes) {
+                throw new IllegalStateException("Restored " + result.imported + " of " + notes + " notes");
+            }
+            target = null;
+
+            long baseline = HeapSampler.liveBytes();
+            HeapSampler sampler = new HeapSampler();
+            sampler.start();
+            export(backup, archive);
+            result.exportPeakBytes = sampler.stop(baseline);
+
+            NotesArchive sink = new NotesArchive(new InMemoryNotesRepository(source),
+                    new LatentWriter((updates, callback) -> callback.onSuccess(null), network, latencyMs),
+                    null, null, io, Runnable::run, PAGE_SIZE, BATCH_SIZE, MAX_IN_FLIGHT, WRITE_TIMEOUT_MS);
+            baseline = HeapSampler.liveBytes();
+            sampler = new HeapSampler();
+            sampler.start();
+            restore(sink, archive);
+            result.importPeakBytes = sampler.stop(baseline);
+
+            baseline = HeapSampler.liveBytes();
+            sampler = new HeapSampler();
+            sampler.start();
+            List<String> everything = loadAll(source);
+            result.loadAllPeakBytes = sampler.stop(baseline);
+            if (everything.size() != notes) {
+                throw new IllegalStateException("Loaded " + everything.size() + " of " + notes + " notes");
+            }
+        } finally {
+            io.shutdown();
+            network.shutdown();
+        }
+        return result;
+    }
+
+    private static int export(NotesArchive archive, File file) throws Exception {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()),
+                StandardCharsets.UTF_8));
+        return await(callback -> archive.export(USER, out, callback));
+    }
+
+    private static int restore(NotesArchive archive, File file) throws Exception {
+        BufferedReader in = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()),
+                StandardCharsets.UTF_8));
+        return await(callback -> archive.importInto(USER, in, callback));
+    }
+
+    private interface Call {
+        void start(DataCallback<Integer> callback);
+    }
+
+    private static int await(Call call) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Object> outcome = new AtomicReference<>();
+        call.start(new DataCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer count) {
+                outcome.set(count);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                outcome.set(e);
+                done.countDown();
+            }
+        });
+        done.await();
+        if (outcome.get() instanceof Exception) {
+            throw (Exception) outcome.get();
+        }
+        return (Integer) outcome.get();
+    }
+
+    // The old path: every note's text in one list before anything is written.
+    private static List<String> loadAll(InMemoryBackend backend) {
+        List<String> texts = new ArrayList<>();
+        for (Object value : backend.query("users/" + USER + "/notes", null, false, null, false, 0).values()) {
+            texts.add((String) value);
+        }
+        return texts;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int notes = 100000;
+        long latencyMs = 5;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--notes":
+                    notes = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--latency-ms":
+                    latencyMs = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        File archive = File.createTempFile("notes", ".txt");
+        try {
+            run(notes, latencyMs, archive).print(System.out);
+        } finally {
+            if (!archive.delete()) {
+                archive.deleteOnExit();
+            }
+        }
+    }
+}
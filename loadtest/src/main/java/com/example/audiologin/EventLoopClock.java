@@ -0,0 +1,74 @@
+package com.example.audiologin;
+
+import java.util.PriorityQueue;
+
+// Simulated time for one load-test worker. Tasks run in due-time order on the calling thread and
+// the clock jumps straight to each one, so debounce windows, sync flushes and user think time
+// cost nothing in wall time. nanoTime() is the worker's timeline for latency spans: the simulated
+// waits plus the real time tasks take to run, never going backwards. Not thread-safe: each worker
+// owns its clock.
+public class EventLoopClock implements Clock {
+
+    private static class Task implements Comparable<Task> {
+        final long dueAt;
+        final long seq;
+        final Runnable runnable;
+
+        Task(long dueAt, long seq, Runnable runnable) {
+            this.dueAt = dueAt;
+            this.seq = seq;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (dueAt != other.dueAt) {
+                return Long.compare(dueAt, other.dueAt);
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long now;
+    private long nextSeq;
+    private long taskBaseNanos;
+    private long taskStartedAt = System.nanoTime();
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        tasks.add(new Task(now + Math.max(0, delayMs), nextSeq++, task));
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        tasks.removeIf(scheduled -> scheduled.runnable == task);
+    }
+
+    public long nanoTime() {
+        return taskBaseNanos + (System.nanoTime() - taskStartedAt);
+    }
+
+    public void post(Runnable task) {
+        postDelayed(task, 0);
+    }
+
+    // Runs until nothing is scheduled; returns how many tasks ran.
+    public long runUntilIdle() {
+        long ran = 0;
+        Task task;
+        while ((task = tasks.poll()) != null) {
+            now = task.dueAt;
+            taskBaseNanos = Math.max(now * 1_000_000, nanoTime());
+            taskStartedAt = System.nanoTime();
+            task.runnable.run();
+            ran++;
+        }
+        return ran;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.audiologin;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+// Headless load test: many virtual users go register -> login -> dictate -> read against one
+// shared in-memory backend. Workers are real threads, so the backend sees real contention, while
+// each worker's users interleave on simulated time. Latencies are measured on the worker's
+// timeline (see EventLoopClock): think time and app delays as configured, no network, plus the
+// real cost of running the code.
+//   ./gradlew :loadtest:run --args="--users 5000 --workers 8 --notes 10"
+public class LoadDriver {
+
+    public static class Result {
+        public int users;
+        public int completed;
+        public final Map<String, Integer> failures = new TreeMap<>();
+        public long wallNanos;
+        public long simulatedMs;
+        public long cpuNanos;
+        public long blockedCount;
+        public long blockedMs = -1;
+        public long backendReads;
+        public long backendWrites;
+        public LatencyRecorder latency;
+
+        public int getFailed() {
+            int failed = 0;
+            for (int count : failures.values()) {
+                failed += count;
+            }
+            return failed;
+        }
+
+        public double getSessionsPerSecond() {
+            return completed / (wallNanos / 1e9);
+        }
+
+        public void print(PrintStream out) throws IOException {
+            out.printf("users %d, completed %d, failed %d%n", users, completed, getFailed());
+            for (Map.Entry<String, Integer> failure : failures.entrySet()) {
+                out.printf("  %s: %d%n", failure.getKey(), failure.getValue());
+            }
+            out.printf("wall %.2fs, cpu %.2fs, simulated %.1f min%n",
+                    wallNanos / 1e9, cpuNanos / 1e9, simulatedMs / 60000.0);
+            out.printf("throughput %.1f sessions/s%n", getSessionsPerSecond());
+            out.printf("backend reads %d, writes %d%n", backendReads, backendWrites);
+            out.printf("contention: threads blocked %d times%s%n", blockedCount,
+                    blockedMs < 0 ? "" : " for " + blockedMs + "ms");
+            out.println();
+            OutputStreamWriter csv = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            latency.exportCsv(csv);
+        }
+    }
+
+    private static class Worker extends Thread {
+        final EventLoopClock clock = new EventLoopClock();
+        final LatencyRecorder latency = new LatencyRecorder(LatencyRecorder.Tracer.NONE, clock::nanoTime);
+        final List<VirtualUser> users = new ArrayList<>();
+        final Map<String, Integer> failures = new TreeMap<>();
+        final CountDownLatch startGate;
+        int completed;
+        long cpuNanos;
+        long blockedCount;
+        long blockedMs;
+
+        Worker(int index, CountDownLatch startGate) {
+            super("load-worker-" + index);
+            this.startGate = startGate;
+        }
+
+        @Override
+        public void run() {
+            try {
+                startGate.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            clock.runUntilIdle();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            cpuNanos = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+            ThreadInfo info = threads.getThreadInfo(getId());
+            blockedCount = info.getBlockedCount();
+            blockedMs = info.getBlockedTime();
+        }
+    }
+
+    public static Result run(LoadProfile profile) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean timeBlocked = threads.isThreadContentionMonitoringSupported();
+        if (timeBlocked) {
+            threads.setThreadContentionMonitoringEnabled(true);
+        }
+
+        InMemoryBackend backend = new InMemoryBackend();
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < profile.workers; i++) {
+            workers.add(new Worker(i, startGate));
+        }
+        for (int i = 0; i < profile.users; i++) {
+            Worker worker = workers.get(i % profile.workers);
+            CryptoService crypto = new CryptoService(Runnable::run, worker.clock::post);
+            VirtualUser user = new VirtualUser("user" + i, backend, worker.clock, crypto, profile, worker.latency,
+                    new Random(profile.seed * 31 + i), new VirtualUser.Outcome() {
+                @Override
+                public void onFinished(VirtualUser user) {
+                    worker.completed++;
+                }
+
+                @Override
+                public void onFailed(VirtualUser user, String reason) {
+                    worker.failures.merge(reason, 1, Integer::sum);
+                }
+            });
+            user.start(profile.users == 1 ? 0 : profile.rampUpMs * i / (profile.users - 1));
+            worker.users.add(user);
+        }
+
+        for (Worker worker : workers) {
+            worker.start();
+        }
+        long startedAt = System.nanoTime();
+        startGate.countDown();
+        for (Worker worker : workers) {
+            worker.join();
+        }
+
+        Result result = new Result();
+        result.wallNanos = System.nanoTime() - startedAt;
+        result.users = profile.users;
+        result.latency = new LatencyRecorder(LatencyRecorder.Tracer.NONE);
+        result.backendReads = backend.getReads();
+        result.backendWrites = backend.getWrites();
+        result.blockedMs = timeBlocked ? 0 : -1;
+        for (Worker worker : workers) {
+            result.completed += worker.completed;
+            result.latency.add(worker.latency);
+            result.simulatedMs = Math.max(result.simulatedMs, worker.clock.now());
+            result.cpuNanos += worker.cpuNanos;
+            result.blockedCount += worker.blockedCount;
+            if (timeBlocked) {
+                result.blockedMs += worker.blockedMs;
+            }
+            for (Map.Entry<String, Integer> failure : worker.failures.entrySet()) {
+                result.failures.merge(failure.getKey(), failure.getValue(), Integer::sum);
+            }
+            for (VirtualUser user : worker.users) {
+                if (!user.isDone()) {
+                    result.failures.merge("stalled", 1, Integer::sum);
+                }
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Result result = run(LoadProfile.parse(args));
+        result.print(System.out);
+        System.out.flush();
+        if (result.getFailed() > 0) {
+            System.exit(1);
+        }
+    }
+}
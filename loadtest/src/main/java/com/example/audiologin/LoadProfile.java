@@ -0,0 +1,57 @@
+package com.example.audiologin;
+
+// Knobs for a load run. Times are simulated milliseconds except where noted; the defaults mirror
+// the app's own settings and a plausible pace for a person using the app by ear.
+public class LoadProfile {
+    public int users = 2000;
+    public int workers = Runtime.getRuntime().availableProcessors();
+    public int notesPerUser = 5;
+    public long seed = 42;
+    // Sessions start spread evenly over this window.
+    public long rampUpMs = 10 * 60 * 1000;
+
+    public long keystrokeMs = 180;
+    public long selectionThinkMs = 2500;
+    public long stepThinkMs = 1500;
+    public long dictationThinkMs = 8000;
+
+    public int pageSize = 50;
+    public long syncFlushDelayMs = 500;
+    public int syncMaxBatch = 100;
+    public long syncInitialBackoffMs = 2000;
+    public long syncMaxBackoffMs = 5 * 60 * 1000;
+    public long credentialDebounceMs = 300;
+    public long credentialTtlMs = 60 * 1000;
+    public int credentialCacheSize = 8;
+
+    public static LoadProfile parse(String[] args) {
+        LoadProfile profile = new LoadProfile();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--users":
+                    profile.users = Integer.parseInt(value);
+                    break;
+                case "--workers":
+                    profile.workers = Integer.parseInt(value);
+                    break;
+                case "--notes":
+                    profile.notesPerUser = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    profile.seed = Long.parseLong(value);
+                    break;
+                case "--ramp-up-ms":
+                    profile.rampUpMs = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        return profile;
+    }
+}
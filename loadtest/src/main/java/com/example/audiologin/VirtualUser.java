@@ -0,0 +1,242 @@
+package com.example.audiologin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// One simulated person on their own phone: register, log in, dictate a few notes, read them back.
+// The phone has its own outbox, local store, keyring and prefetchers; only the backend is shared.
+// Every step runs on the worker's EventLoopClock, with think time between steps in simulated time.
+public class VirtualUser implements RegistrationFlow.Listener, LoginFlow.Listener {
+    private static final String[] ANIMALS = {"cat", "cow", "crow", "sheep"};
+    private static final String[] WORDS = {"remember", "to", "call", "the", "pharmacy", "about", "my",
+            "prescription", "refill", "before", "friday", "buy", "milk", "bread", "and", "eggs", "bus",
+            "leaves", "at", "half", "past", "nine", "dentist", "appointment", "tomorrow", "morning"};
+
+    public interface Outcome {
+        void onFinished(VirtualUser user);
+
+        void onFailed(VirtualUser user, String reason);
+    }
+
+    private final String username;
+    private final List<String> password = new ArrayList<>();
+    private final EventLoopClock clock;
+    private final LoadProfile profile;
+    private final LatencyRecorder latency;
+    private final Random random;
+    private final Outcome outcome;
+    private final SyncQueue syncQueue;
+    private final OfflineNotesRepository notes;
+    private final CredentialPrefetcher credentials;
+    private final RegistrationFlow registration;
+    private final LoginFlow login;
+    private final List<String> dictated = new ArrayList<>();
+    private boolean done;
+
+    public VirtualUser(String username, InMemoryBackend backend, EventLoopClock clock, CryptoService crypto,
+                       LoadProfile profile, LatencyRecorder latency, Random random, Outcome outcome) {
+        this.username = username;
+        this.clock = clock;
+        this.profile = profile;
+        this.latency = latency;
+        this.random = random;
+        this.outcome = outcome;
+        int first = random.nextInt(ANIMALS.length);
+        password.add(ANIMALS[first]);
+        password.add(ANIMALS[(first + 1 + random.nextInt(ANIMALS.length - 1)) % ANIMALS.length]);
+
+        NoteKeyring keyring = new NoteKeyring();
+        syncQueue = new SyncQueue(new InMemoryOutboxStore(), new InMemoryRemoteWriter(backend), clock,
+                profile.syncFlushDelayMs, profile.syncMaxBatch, profile.syncInitialBackoffMs, profile.syncMaxBackoffMs);
+        notes = new OfflineNotesRepository(new InMemoryNotesRepository(backend), new InMemoryNotesStore(), syncQueue,
+                keyring, Runnable::run, clock::post);
+        OfflineUserRepository users = new OfflineUserRepository(new InMemoryUserRepository(backend), syncQueue);
+        credentials = new CredentialPrefetcher(users, clock, profile.credentialDebounceMs,
+                profile.credentialTtlMs, profile.credentialCacheSize, null);
+        registration = new RegistrationFlow(users, crypto, latency, this);
+        login = new LoginFlow(credentials, crypto, keyring, new NotesPrefetch(notes, profile.pageSize), latency, this);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void start(long delayMs) {
+        clock.postDelayed(() -> registration.checkUsername(username), delayMs);
+    }
+
+    private void later(long meanMs, Runnable step) {
+        clock.postDelayed(step, meanMs / 2 + (long) (random.nextDouble() * meanMs));
+    }
+
+    private void fail(String reason) {
+        if (!done) {
+            done = true;
+            outcome.onFailed(this, reason);
+        }
+    }
+
+    // Registration
+
+    @Override
+    public void onUsernameAvailable(String username) {
+        later(profile.selectionThinkMs, () -> {
+            registration.select(password.get(0));
+            later(profile.selectionThinkMs, () -> registration.select(password.get(1)));
+        });
+    }
+
+    @Override
+    public void onUsernameTaken(String username) {
+        fail("username taken");
+    }
+
+    @Override
+    public void onCheckFailed(Exception e) {
+        fail("username check failed");
+    }
+
+    @Override
+    public void onEncryptFailed(Exception e) {
+        fail("encrypt failed");
+    }
+
+    @Override
+    public void onRegistered(String username) {
+        later(profile.stepThinkMs, this::typeUsername);
+    }
+
+    @Override
+    public void onSaveFailed(Exception e) {
+        fail("registration write failed");
+    }
+
+    // Login
+
+    private void typeUsername() {
+        long at = 0;
+        for (int i = 1; i <= username.length(); i++) {
+            String typed = username.substring(0, i);
+            at += profile.keystrokeMs;
+            clock.postDelayed(() -> credentials.onUsernameChanged(typed), at);
+        }
+        clock.postDelayed(() -> login.start(username), at + profile.keystrokeMs);
+    }
+
+    @Override
+    public void onChallenge(String username) {
+        login.beginSelection();
+        later(profile.selectionThinkMs, () -> {
+            login.select(password.get(0));
+            later(profile.selectionThinkMs, () -> login.select(password.get(1)));
+        });
+    }
+
+    @Override
+    public void onNoCredential(String username) {
+        fail("no credential");
+    }
+
+    @Override
+    public void onLookupFailed(Exception e) {
+        fail("credential lookup failed");
+    }
+
+    @Override
+    public void onDecryptFailed(Exception e) {
+        fail("decrypt failed");
+    }
+
+    @Override
+    public void onRejected() {
+        fail("password rejected");
+    }
+
+    @Override
+    public void onVerified() {
+    }
+
+    @Override
+    public void onNotesUnlocked() {
+        login.finish();
+        later(profile.stepThinkMs, this::dictateNext);
+    }
+
+    @Override
+    public void onKeyDeriveFailed(Exception e) {
+        fail("note key derive failed");
+    }
+
+    // Notes
+
+    private void dictateNext() {
+        if (dictated.size() == profile.notesPerUser) {
+            // Read back once the outbox has had time to reach the server.
+            clock.postDelayed(this::readBack, profile.syncFlushDelayMs + profile.stepThinkMs);
+            return;
+        }
+        String text = sentence();
+        long saveSpan = latency.begin(Stage.NOTE_SAVE);
+        notes.saveNote(username, text, new DataCallback<Note>() {
+            @Override
+            public void onSuccess(Note saved) {
+                latency.end(Stage.NOTE_SAVE, saveSpan);
+                dictated.add(text);
+                later(profile.dictationThinkMs, VirtualUser.this::dictateNext);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latency.end(Stage.NOTE_SAVE, saveSpan);
+                fail("note save failed");
+            }
+        });
+    }
+
+    private void readBack() {
+        if (syncQueue.getPendingCount() > 0) {
+            fail("outbox not drained");
+            return;
+        }
+        long readSpan = latency.begin(Stage.NOTES_FIRST_PAGE);
+        notes.loadPage(username, null, profile.pageSize, new DataCallback<List<Note>>() {
+            @Override
+            public void onSuccess(List<Note> page) {
+                latency.end(Stage.NOTES_FIRST_PAGE, readSpan);
+                List<String> texts = new ArrayList<>();
+                for (Note note : page) {
+                    texts.add(note.getText());
+                }
+                if (!texts.equals(dictated)) {
+                    fail("notes read back differ");
+                } else if (!done) {
+                    done = true;
+                    outcome.onFinished(VirtualUser.this);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latency.end(Stage.NOTES_FIRST_PAGE, readSpan);
+                fail("notes read failed");
+            }
+        });
+    }
+
+    private String sentence() {
+        int words = 4 + random.nextInt(12);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.audiologin;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class ArchiveLoadTest {
+
+    @Test
+    public void everyNoteIsBackedUpAndRestored() throws Exception {
+        File archive = File.createTempFile("notes", ".txt");
+        try {
+            ArchiveLoad.Result result = ArchiveLoad.run(2000, 0, archive);
+
+            assertEquals(2000, result.exported);
+            assertEquals(2000, result.imported);
+            assertTrue(result.archiveBytes > 2000 * 160);
+        } finally {
+            assertTrue(archive.delete());
+        }
+    }
+}
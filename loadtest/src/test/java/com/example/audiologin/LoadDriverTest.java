@@ -0,0 +1,39 @@
+package com.example.audiologin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LoadDriverTest {
+
+    private static LoadProfile smallProfile() {
+        LoadProfile profile = new LoadProfile();
+        profile.users = 40;
+        profile.workers = 4;
+        profile.notesPerUser = 3;
+        profile.rampUpMs = 30000;
+        return profile;
+    }
+
+    @Test
+    public void everySessionCompletes() throws InterruptedException {
+        LoadDriver.Result result = LoadDriver.run(smallProfile());
+
+        assertEquals(0, result.getFailed());
+        assertEquals(40, result.completed);
+        assertEquals(40, result.latency.get(Stage.LOGIN_TOTAL).getCount());
+        assertEquals(40, result.latency.get(Stage.REGISTRATION_ENCRYPT).getCount());
+        assertEquals(120, result.latency.get(Stage.NOTE_SAVE).getCount());
+        assertEquals(40, result.latency.get(Stage.NOTES_FIRST_PAGE).getCount());
+    }
+
+    @Test
+    public void sameSeedDrivesTheSameTraffic() throws InterruptedException {
+        LoadDriver.Result first = LoadDriver.run(smallProfile());
+        LoadDriver.Result second = LoadDriver.run(smallProfile());
+
+        assertEquals(first.backendReads, second.backendReads);
+        assertEquals(first.backendWrites, second.backendWrites);
+        assertEquals(first.simulatedMs, second.simulatedMs);
+    }
+}
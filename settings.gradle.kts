@@ -21,3 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "AudioLogin"
 include(":app")
+include(":core")
+include(":benchmarks")
+include(":loadtest")